@@ -0,0 +1,593 @@
+package com.smartpark.api;
+
+import com.smartpark.exceptions.ReservationRejectedException;
+import com.smartpark.exceptions.SlotNotAvailableException;
+import com.smartpark.model.*;
+import com.smartpark.service.DynamicPricing;
+import com.smartpark.service.OccupancySnapshot;
+import com.smartpark.service.ParkingSystem;
+import com.smartpark.service.UserService;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * JSON-over-HTTP API on the JDK's built-in HttpServer, so apps and kiosks
+ * can use one running system at the same time as the console.
+ *
+ *   POST /api/users                  {"username", "password"[, "role"]}  register (staff roles: admins only)
+ *   POST /api/login                  {"username", "password"}            -> {"token", ...}
+ *   POST /api/logout
+ *   POST /api/bookings               {"slotId"} | {"slotType", "gateId"} | {"plate"} | {}   reserve (users)
+ *   GET  /api/bookings/{id}          owner or staff
+ *   POST /api/bookings/{id}/entry    staff
+ *   POST /api/bookings/{id}/exit     staff
+ *   POST /api/plates/{plate}/entry   staff, ANPR read (misreads are matched as at the gates)
+ *   POST /api/plates/{plate}/exit    staff
+ *   GET  /api/occupancy              free counts; "?slots=true" adds every slot (staff)
+ *   GET  /api/fees
+ *
+ * Logged-in calls send "Authorization: Bearer <token>". A token expires
+ * after API_SESSION_IDLE_MS without use, or API_SESSION_MAX_AGE_MS after
+ * login, and at most API_MAX_SESSIONS are held (the oldest logins are
+ * dropped first). Gate calls may send
+ * an "Idempotency-Key" header, which becomes the gate request id, so a
+ * retried request is answered without running twice. Errors come back as
+ * {"error": "..."} with a matching status code; rejected reservations get
+ * 429 and a Retry-After header.
+ *
+ * Each exchange runs on its own virtual thread when the JDK provides them
+ * (21 and later), so thousands of slow clients only cost memory; older JDKs
+ * use a fixed pool of API_FALLBACK_THREADS. Handlers do no I/O besides the
+ * exchange itself, and bodies are capped at API_MAX_BODY_BYTES.
+ */
+public class ApiServer {
+
+    private static final String PREFIX = "/api/";
+
+    private final ParkingSystem parkingSystem;
+    private final UserService userService;
+    private final int port;
+
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Session> logins = new ConcurrentLinkedQueue<>(); // oldest first
+    private final AtomicInteger loginCount = new AtomicInteger();
+    private final SecureRandom random = new SecureRandom();
+
+    /*
+     * A logged-in user behind a token.
+     */
+    private static final class Session {
+        final String token;
+        final User user;
+        final long createdAt;
+        volatile long lastUsed;
+
+        Session(String token, User user, long now) {
+            this.token = token;
+            this.user = user;
+            this.createdAt = now;
+            this.lastUsed = now;
+        }
+
+        boolean isExpired(long now) {
+            return now - lastUsed > Constants.API_SESSION_IDLE_MS
+                    || now - createdAt > Constants.API_SESSION_MAX_AGE_MS;
+        }
+    }
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public ApiServer(ParkingSystem parkingSystem, UserService userService, int port) {
+        this.parkingSystem = parkingSystem;
+        this.userService = userService;
+        this.port = port;
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) return;
+        // Responses go out as two writes (headers, body); without TCP_NODELAY
+        // the second one waits for the client's delayed ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(port), Constants.API_BACKLOG);
+        executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext(PREFIX, this::handle);
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server == null) return;
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+    }
+
+    /*
+     * Port actually bound (useful when started on port 0).
+     */
+    public synchronized int getPort() {
+        return (server == null) ? port : server.getAddress().getPort();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /*
+     * A virtual-thread-per-task executor where the JDK has one, looked up by
+     * method handle so the code still compiles and runs on JDK 17.
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            MethodHandle factory = MethodHandles.publicLookup().findStatic(Executors.class,
+                    "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+            return (ExecutorService) factory.invoke();
+        } catch (Throwable e) {
+            return Executors.newFixedThreadPool(Constants.API_FALLBACK_THREADS, r -> {
+                Thread t = new Thread(r, "api-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /*
+     * ROUTING
+     */
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String[] path = splitPath(exchange.getRequestURI());
+            if (path.length == 0) {
+                sendError(exchange, 404, "Not found.");
+                return;
+            }
+
+            switch (path[0]) {
+                case "users":
+                    if (path.length != 1) sendError(exchange, 404, "Not found.");
+                    else if (requireMethod(exchange, method, "POST")) register(exchange);
+                    break;
+                case "login":
+                    if (requireMethod(exchange, method, "POST")) login(exchange);
+                    break;
+                case "logout":
+                    if (requireMethod(exchange, method, "POST")) logout(exchange);
+                    break;
+                case "bookings":
+                    routeBookings(exchange, method, path);
+                    break;
+                case "plates":
+                    if (path.length != 3) sendError(exchange, 404, "Not found.");
+                    else if (requireMethod(exchange, method, "POST")) gateByPlate(exchange, path[1], path[2]);
+                    break;
+                case "occupancy":
+                    if (requireMethod(exchange, method, "GET")) occupancy(exchange);
+                    break;
+                case "fees":
+                    if (requireMethod(exchange, method, "GET")) fees(exchange);
+                    break;
+                default:
+                    sendError(exchange, 404, "Not found.");
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            System.out.println("[Error] API request failed: " + e);
+            sendError(exchange, 500, "Internal error.");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void routeBookings(HttpExchange exchange, String method, String[] path) throws IOException {
+        if (path.length == 1) {
+            if (requireMethod(exchange, method, "POST")) reserve(exchange);
+            return;
+        }
+        int bookingId = parseId(path[1]);
+        if (bookingId < 0 || path.length > 3) {
+            sendError(exchange, 404, "Not found.");
+        } else if (path.length == 2) {
+            if (requireMethod(exchange, method, "GET")) getBooking(exchange, bookingId);
+        } else if (requireMethod(exchange, method, "POST")) {
+            gateById(exchange, bookingId, path[2]);
+        }
+    }
+
+    /*
+     * USERS AND SESSIONS
+     */
+
+    private void register(HttpExchange exchange) throws IOException {
+        Map<String, String> body = readBody(exchange);
+        if (body == null) return;
+        String role = body.getOrDefault("role", Constants.ROLE_USER).toUpperCase(Locale.ROOT);
+
+        if (!Constants.ROLE_USER.equals(role)) {
+            User caller = session(exchange);
+            if (caller == null || !Constants.ROLE_ADMIN.equals(caller.getRole())) {
+                sendError(exchange, 403, "Only administrators can register staff.");
+                return;
+            }
+            if (!Constants.ROLE_ATTENDANT.equals(role) && !Constants.ROLE_ADMIN.equals(role)) {
+                sendError(exchange, 400, "Unknown role " + role + ".");
+                return;
+            }
+        }
+
+        User created = userService.register(body.get("username"), body.getOrDefault("password", ""), role);
+        if (created == null) {
+            sendError(exchange, 409, "Username already taken or invalid.");
+            return;
+        }
+        send(exchange, 201, userJson(new Json.Writer().beginObject(), created).endObject().toString());
+    }
+
+    private void login(HttpExchange exchange) throws IOException {
+        Map<String, String> body = readBody(exchange);
+        if (body == null) return;
+        User user = userService.login(body.get("username"), body.getOrDefault("password", ""));
+        if (user == null) {
+            sendError(exchange, 401, "Invalid credentials.");
+            return;
+        }
+        String token = newToken();
+        startSession(token, user);
+        Json.Writer json = new Json.Writer().beginObject().field("token", token);
+        send(exchange, 200, userJson(json, user).endObject().toString());
+    }
+
+    private void logout(HttpExchange exchange) throws IOException {
+        String token = bearerToken(exchange);
+        if (token == null || sessions.remove(token) == null) {
+            sendError(exchange, 401, "Not logged in.");
+            return;
+        }
+        send(exchange, 200, new Json.Writer().beginObject().field("loggedOut", true).endObject().toString());
+    }
+
+    /*
+     * BOOKINGS AND GATES
+     */
+
+    private void reserve(HttpExchange exchange) throws IOException {
+        User user = requireRole(exchange, Constants.ROLE_USER, null);
+        if (user == null) return;
+        Map<String, String> body = readBody(exchange);
+        if (body == null) return;
+
+        try {
+            Booking booking;
+            if (body.containsKey("slotId")) {
+                booking = parkingSystem.reserveSlot(intField(body, "slotId"), user);
+            } else if (body.containsKey("slotType")) {
+                String type = body.get("slotType").toUpperCase(Locale.ROOT);
+                if (!body.containsKey("gateId")) {
+                    sendError(exchange, 400, "slotType needs a gateId.");
+                    return;
+                }
+                booking = parkingSystem.reserveSlot(type, intField(body, "gateId"), user);
+            } else if (body.containsKey("plate")) {
+                AbstractVehicle vehicle = ownVehicle(user, body.get("plate"));
+                if (vehicle == null) {
+                    sendError(exchange, 404, "No vehicle " + body.get("plate") + " registered to you.");
+                    return;
+                }
+                booking = parkingSystem.reserveSlot(vehicle, user);
+            } else {
+                booking = parkingSystem.reserveSlot(user.getUsername(), user);
+            }
+            send(exchange, 201, bookingJson(booking));
+        } catch (ReservationRejectedException e) {
+            long seconds = Math.max(1, (e.getRetryAfterMs() + 999) / 1000);
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(seconds));
+            sendError(exchange, 429, e.getMessage());
+        } catch (SlotNotAvailableException e) {
+            sendError(exchange, 409, e.getMessage());
+        }
+    }
+
+    private void getBooking(HttpExchange exchange, int bookingId) throws IOException {
+        User user = requireLogin(exchange);
+        if (user == null) return;
+        Booking booking = parkingSystem.findBookingById(bookingId);
+        if (booking == null && !parkingSystem.isHistoryLoaded()) {
+            // Possibly an old booking a warm start has not read yet
+            parkingSystem.ensureHistoryLoaded();
+            booking = parkingSystem.findBookingById(bookingId);
+        }
+        if (booking == null || (Constants.ROLE_USER.equals(user.getRole()) && !user.getUsername().equals(booking.getUsername()))) {
+            sendError(exchange, 404, "Booking " + bookingId + " not found.");
+            return;
+        }
+        send(exchange, 200, bookingJson(booking));
+    }
+
+    private void gateById(HttpExchange exchange, int bookingId, String action) throws IOException {
+        if (!isGateAction(action)) {
+            sendError(exchange, 404, "Not found.");
+            return;
+        }
+        if (requireRole(exchange, Constants.ROLE_ATTENDANT, Constants.ROLE_ADMIN) == null) return;
+        runGate(exchange, action, parkingSystem.findBookingById(bookingId), String.valueOf(bookingId));
+    }
+
+    private void gateByPlate(HttpExchange exchange, String plate, String action) throws IOException {
+        if (!isGateAction(action)) {
+            sendError(exchange, 404, "Not found.");
+            return;
+        }
+        if (requireRole(exchange, Constants.ROLE_ATTENDANT, Constants.ROLE_ADMIN) == null) return;
+        int status = "entry".equals(action) ? Constants.STATUS_CODE_PENDING : Constants.STATUS_CODE_ACTIVE;
+        runGate(exchange, action, parkingSystem.getVehicleRegistry().resolveOpenBooking(plate, status), plate);
+    }
+
+    private void runGate(HttpExchange exchange, String action, Booking booking, String what) throws IOException {
+        if (booking == null) {
+            sendError(exchange, 404, "No booking for " + what + ".");
+            return;
+        }
+        String requestId = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+        ParkingSystem.Attendant attendant = parkingSystem.getAttendant();
+        GateOutcome outcome = "entry".equals(action) ? attendant.markEntry(requestId, booking)
+                                                     : attendant.markExit(requestId, booking);
+        switch (outcome) {
+            case SUCCESS:
+                send(exchange, 200, bookingJson(booking));
+                break;
+            case BOOKING_NOT_FOUND:
+                sendError(exchange, 404, "No booking for " + what + ".");
+                break;
+            case SLOT_NOT_FOUND:
+                sendError(exchange, 500, "Booking " + booking.getBookingId() + " refers to a missing slot.");
+                break;
+            default:
+                sendError(exchange, 409, outcome + ": booking " + booking.getBookingId() + " is " + booking.getStatus() + ".");
+        }
+    }
+
+    /*
+     * OCCUPANCY AND FEES (no login needed for the totals)
+     */
+
+    private void occupancy(HttpExchange exchange) throws IOException {
+        String query = exchange.getRequestURI().getRawQuery();
+        boolean withSlots = query != null && query.contains("slots=true");
+        if (withSlots && requireRole(exchange, Constants.ROLE_ATTENDANT, Constants.ROLE_ADMIN) == null) return;
+
+        // Every figure comes from one snapshot: consistent, and read without locking
+        OccupancySnapshot snapshot = parkingSystem.getOccupancySnapshot();
+        Json.Writer json = new Json.Writer().beginObject()
+                .field("version", snapshot.getVersion())
+                .field("slotCount", snapshot.getSlotCount())
+                .field("freeCount", snapshot.getFreeCount())
+                .field("occupiedCount", snapshot.getOccupiedCount())
+                .beginObject("freeByType")
+                .field(Constants.SLOT_COMPACT, snapshot.getFreeCount(Constants.SLOT_COMPACT))
+                .field(Constants.SLOT_REGULAR, snapshot.getFreeCount(Constants.SLOT_REGULAR))
+                .field(Constants.SLOT_LARGE, snapshot.getFreeCount(Constants.SLOT_LARGE))
+                .field(Constants.SLOT_HANDICAPPED, snapshot.getFreeCount(Constants.SLOT_HANDICAPPED))
+                .endObject();
+        if (withSlots) {
+            json.beginArray("slots");
+            for (int i = 0; i < snapshot.getSlotCount(); i++) {
+                json.beginObject()
+                    .field("slotId", snapshot.getSlotId(i))
+                    .field("type", snapshot.getSlotType(i))
+                    .field("occupied", snapshot.isOccupied(i))
+                    .endObject();
+            }
+            json.endArray();
+        }
+        send(exchange, 200, json.endObject().toString());
+    }
+
+    // Current rates per slot type, with the occupancy multipliers they include
+    private void fees(HttpExchange exchange) throws IOException {
+        DynamicPricing.PriceTable prices = parkingSystem.getPriceTable();
+        send(exchange, 200, new Json.Writer().beginObject()
+                .field("unit", "minute")
+                .field("dynamic", parkingSystem.isDynamicPricingEnabled())
+                .field(Constants.SLOT_COMPACT, prices.getRate(Constants.SLOT_CODE_COMPACT))
+                .field(Constants.SLOT_REGULAR, prices.getRate(Constants.SLOT_CODE_REGULAR))
+                .field(Constants.SLOT_LARGE, prices.getRate(Constants.SLOT_CODE_LARGE))
+                .field(Constants.SLOT_HANDICAPPED, prices.getRate(Constants.SLOT_CODE_HANDICAPPED))
+                .beginObject("multipliers")
+                .field(Constants.SLOT_COMPACT, prices.getMultiplier(Constants.SLOT_CODE_COMPACT))
+                .field(Constants.SLOT_REGULAR, prices.getMultiplier(Constants.SLOT_CODE_REGULAR))
+                .field(Constants.SLOT_LARGE, prices.getMultiplier(Constants.SLOT_CODE_LARGE))
+                .field(Constants.SLOT_HANDICAPPED, prices.getMultiplier(Constants.SLOT_CODE_HANDICAPPED))
+                .endObject()
+                .endObject().toString());
+    }
+
+    /*
+     * HELPERS
+     */
+
+    private static String bookingJson(Booking b) {
+        Json.Writer json = new Json.Writer().beginObject()
+                .field("bookingId", b.getBookingId().longValue())
+                .field("username", b.getUsername())
+                .field("slotId", b.getSlotId())
+                .field("status", b.getStatus())
+                .field("plate", b.getLicensePlate())
+                .field("creationTime", b.getCreationTime())
+                .field("entryTime", b.getEntryTime())
+                .field("exitTime", b.getExitTime());
+        if (b.getAmount() != null) json.field("amount", b.getAmount().doubleValue());
+        if (b.hasWindow()) json.field("windowStart", b.getWindowStart()).field("windowEnd", b.getWindowEnd());
+        return json.endObject().toString();
+    }
+
+    private static Json.Writer userJson(Json.Writer json, User u) {
+        return json.field("userId", u.getUserId().longValue())
+                   .field("username", u.getUsername())
+                   .field("role", u.getRole());
+    }
+
+    // A vehicle object for one of the user's registered plates, or null
+    private AbstractVehicle ownVehicle(User user, String plate) {
+        if (plate == null || !user.getUsername().equals(parkingSystem.getVehicleRegistry().getOwner(plate))) return null;
+        String type = parkingSystem.getVehicleRegistry().getType(plate);
+        return "Motorcycle".equals(type) ? new Motorcycle(plate) : new Car(plate);
+    }
+
+    private User requireLogin(HttpExchange exchange) throws IOException {
+        User user = session(exchange);
+        if (user == null) sendError(exchange, 401, "Login required.");
+        return user;
+    }
+
+    // Logged-in user with one of the roles (second may be null), or null after an error reply
+    private User requireRole(HttpExchange exchange, String role, String otherRole) throws IOException {
+        User user = requireLogin(exchange);
+        if (user == null) return null;
+        if (!user.getRole().equals(role) && !user.getRole().equals(otherRole)) {
+            sendError(exchange, 403, "Access denied for role " + user.getRole() + ".");
+            return null;
+        }
+        return user;
+    }
+
+    private User session(HttpExchange exchange) {
+        String token = bearerToken(exchange);
+        Session s = (token == null) ? null : sessions.get(token);
+        if (s == null) return null;
+        long now = System.currentTimeMillis();
+        if (s.isExpired(now)) {
+            sessions.remove(token, s);
+            return null;
+        }
+        s.lastUsed = now;
+        return s.user;
+    }
+
+    /*
+     * Remember a new login, then drop the oldest logins while there are too
+     * many or the oldest one has expired.
+     */
+    private void startSession(String token, User user) {
+        long now = System.currentTimeMillis();
+        Session s = new Session(token, user, now);
+        sessions.put(token, s);
+        logins.add(s);
+        loginCount.incrementAndGet();
+        while (true) {
+            Session head = logins.peek();
+            if (head == null) return;
+            if (loginCount.get() <= Constants.API_MAX_SESSIONS
+                    && now - head.createdAt <= Constants.API_SESSION_MAX_AGE_MS) return;
+            if (logins.remove(head)) {
+                loginCount.decrementAndGet();
+                sessions.remove(head.token, head);
+            }
+        }
+    }
+
+    private static String bearerToken(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.regionMatches(true, 0, "Bearer ", 0, 7)) return null;
+        return header.substring(7).trim();
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        StringBuilder sb = new StringBuilder(32);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 15, 16)).append(Character.forDigit(b & 15, 16));
+        }
+        return sb.toString();
+    }
+
+    private static boolean requireMethod(HttpExchange exchange, String method, String allowed) throws IOException {
+        if (allowed.equals(method)) return true;
+        exchange.getResponseHeaders().set("Allow", allowed);
+        sendError(exchange, 405, "Use " + allowed + ".");
+        return false;
+    }
+
+    // JSON body as fields (an empty body is an empty object), or null after an error reply
+    private static Map<String, String> readBody(HttpExchange exchange) throws IOException {
+        byte[] bytes;
+        try (InputStream in = exchange.getRequestBody()) {
+            bytes = in.readNBytes(Constants.API_MAX_BODY_BYTES + 1);
+        }
+        if (bytes.length > Constants.API_MAX_BODY_BYTES) {
+            sendError(exchange, 413, "Request body too large.");
+            return null;
+        }
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        return text.isBlank() ? new HashMap<>() : Json.parseObject(text);
+    }
+
+    private static int intField(Map<String, String> body, String name) {
+        try {
+            return Integer.parseInt(body.get(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer.");
+        }
+    }
+
+    private static boolean isGateAction(String action) {
+        return "entry".equals(action) || "exit".equals(action);
+    }
+
+    // Path segments after /api/
+    private static String[] splitPath(URI uri) {
+        String path = uri.getPath();
+        if (path == null || !path.startsWith(PREFIX)) return new String[0];
+        String rest = path.substring(PREFIX.length());
+        if (rest.endsWith("/")) rest = rest.substring(0, rest.length() - 1);
+        return rest.isEmpty() ? new String[0] : rest.split("/");
+    }
+
+    // Non-negative int value of an all-digit segment, or -1
+    private static int parseId(String segment) {
+        if (segment.isEmpty() || segment.length() > 9) return -1;
+        for (int i = 0; i < segment.length(); i++) {
+            if (segment.charAt(i) < '0' || segment.charAt(i) > '9') return -1;
+        }
+        return Integer.parseInt(segment);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, new Json.Writer().beginObject().field("error", message).endObject().toString());
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
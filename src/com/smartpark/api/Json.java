@@ -0,0 +1,257 @@
+package com.smartpark.api;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Minimal JSON support for the HTTP API, without reflection or libraries.
+ *
+ * Requests are flat objects ({"slotId": 3, "username": "ann"}), parsed into
+ * a map of field name to value text: strings are unescaped, numbers and
+ * booleans are kept as written, null fields are left out. Nested objects
+ * and arrays are rejected. Responses are built with Writer, which appends
+ * straight into one StringBuilder.
+ */
+public final class Json {
+
+    private Json() { }
+
+    /*
+     * Fields of a flat JSON object. Throws IllegalArgumentException if the
+     * text is not one.
+     */
+    public static Map<String, String> parseObject(String text) {
+        Map<String, String> fields = new HashMap<>();
+        int[] pos = { skipBlanks(text, 0) };
+        expect(text, pos, '{');
+        if (peek(text, pos) == '}') {
+            pos[0]++;
+        } else {
+            while (true) {
+                String name = readString(text, pos);
+                expect(text, pos, ':');
+                String value = readValue(text, pos);
+                if (value != null) fields.put(name, value);
+                char c = next(text, pos);
+                if (c == '}') break;
+                if (c != ',') throw new IllegalArgumentException("Expected ',' or '}' at " + (pos[0] - 1));
+            }
+        }
+        if (skipBlanks(text, pos[0]) != text.length()) {
+            throw new IllegalArgumentException("Unexpected text after the object");
+        }
+        return fields;
+    }
+
+    // String, number, true or false as text; null for a JSON null
+    private static String readValue(String text, int[] pos) {
+        char c = peek(text, pos);
+        if (c == '"') return readString(text, pos);
+        if (c == '{' || c == '[') throw new IllegalArgumentException("Nested values are not supported");
+
+        int start = pos[0];
+        while (pos[0] < text.length()) {
+            char d = text.charAt(pos[0]);
+            if (d == ',' || d == '}' || d == ' ' || d == '\t' || d == '\r' || d == '\n') break;
+            pos[0]++;
+        }
+        String word = text.substring(start, pos[0]);
+        if (word.equals("null")) return null;
+        if (word.equals("true") || word.equals("false") || isNumber(word)) return word;
+        throw new IllegalArgumentException("Invalid value at " + start);
+    }
+
+    private static String readString(String text, int[] pos) {
+        expect(text, pos, '"');
+        StringBuilder sb = null;
+        int start = pos[0];
+        while (true) {
+            if (pos[0] >= text.length()) throw new IllegalArgumentException("Unterminated string");
+            char c = text.charAt(pos[0]++);
+            if (c == '"') break;
+            if (c != '\\') {
+                if (sb != null) sb.append(c);
+                continue;
+            }
+            // First escape: copy what came before, then build the rest by hand
+            if (sb == null) sb = new StringBuilder(text.substring(start, pos[0] - 1));
+            if (pos[0] >= text.length()) throw new IllegalArgumentException("Unterminated string");
+            char e = text.charAt(pos[0]++);
+            switch (e) {
+                case '"': sb.append('"'); break;
+                case '\\': sb.append('\\'); break;
+                case '/': sb.append('/'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (pos[0] + 4 > text.length()) throw new IllegalArgumentException("Bad \\u escape");
+                    try {
+                        sb.append((char) Integer.parseInt(text.substring(pos[0], pos[0] + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("Bad \\u escape");
+                    }
+                    pos[0] += 4;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Bad escape \\" + e);
+            }
+        }
+        return (sb == null) ? text.substring(start, pos[0] - 1) : sb.toString();
+    }
+
+    private static boolean isNumber(String word) {
+        if (word.isEmpty()) return false;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if ((c < '0' || c > '9') && c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E') return false;
+        }
+        return true;
+    }
+
+    private static void expect(String text, int[] pos, char wanted) {
+        if (next(text, pos) != wanted) {
+            throw new IllegalArgumentException("Expected '" + wanted + "' at " + (pos[0] - 1));
+        }
+    }
+
+    // Next non-blank character, consumed
+    private static char next(String text, int[] pos) {
+        char c = peek(text, pos);
+        pos[0]++;
+        return c;
+    }
+
+    // Next non-blank character, not consumed
+    private static char peek(String text, int[] pos) {
+        pos[0] = skipBlanks(text, pos[0]);
+        if (pos[0] >= text.length()) throw new IllegalArgumentException("Unexpected end of input");
+        return text.charAt(pos[0]);
+    }
+
+    private static int skipBlanks(String text, int i) {
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') break;
+            i++;
+        }
+        return i;
+    }
+
+    /*
+     * Builds a JSON document field by field:
+     *   new Json.Writer().beginObject().field("id", 7).endObject().toString()
+     * Commas are inserted automatically; nesting is limited to MAX_DEPTH.
+     */
+    public static final class Writer {
+
+        private static final int MAX_DEPTH = 16;
+
+        private final StringBuilder sb = new StringBuilder(256);
+        private final boolean[] hasItems = new boolean[MAX_DEPTH];
+        private int depth;
+
+        public Writer beginObject() {
+            separator();
+            return open('{');
+        }
+
+        public Writer beginObject(String name) {
+            name(name);
+            return open('{');
+        }
+
+        public Writer endObject() {
+            return close('}');
+        }
+
+        public Writer beginArray(String name) {
+            name(name);
+            return open('[');
+        }
+
+        public Writer endArray() {
+            return close(']');
+        }
+
+        public Writer field(String name, String value) {
+            name(name);
+            if (value == null) sb.append("null");
+            else quote(value);
+            return this;
+        }
+
+        public Writer field(String name, long value) {
+            name(name);
+            sb.append(value);
+            return this;
+        }
+
+        public Writer field(String name, double value) {
+            name(name);
+            if (Double.isNaN(value) || Double.isInfinite(value)) sb.append("null");
+            else sb.append(value);
+            return this;
+        }
+
+        public Writer field(String name, boolean value) {
+            name(name);
+            sb.append(value);
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return sb.toString();
+        }
+
+        private Writer open(char bracket) {
+            if (depth == MAX_DEPTH) throw new IllegalStateException("JSON nested too deeply");
+            sb.append(bracket);
+            hasItems[depth++] = false;
+            return this;
+        }
+
+        private Writer close(char bracket) {
+            depth--;
+            sb.append(bracket);
+            return this;
+        }
+
+        private void name(String name) {
+            separator();
+            quote(name);
+            sb.append(':');
+        }
+
+        private void separator() {
+            if (depth == 0) return;
+            if (hasItems[depth - 1]) sb.append(',');
+            hasItems[depth - 1] = true;
+        }
+
+        private void quote(String s) {
+            sb.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"': sb.append("\\\""); break;
+                    case '\\': sb.append("\\\\"); break;
+                    case '\n': sb.append("\\n"); break;
+                    case '\r': sb.append("\\r"); break;
+                    case '\t': sb.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            sb.append("\\u00");
+                            sb.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 15, 16));
+                        } else {
+                            sb.append(c);
+                        }
+                }
+            }
+            sb.append('"');
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.smartpark.exceptions;
+
+/*
+ * Thrown when admission control sheds a reservation request because a rate
+ * limit or quota is exhausted. The slot may well be free; the caller should
+ * back off for getRetryAfterMs() rather than retry at once.
+ *
+ * Created without a stack trace, since rejections are expected in bulk
+ * during a reservation storm and must stay cheap.
+ */
+public class ReservationRejectedException extends SlotNotAvailableException {
+
+    public static final String REASON_USER_RATE = "USER_RATE";       // this user is reserving too fast
+    public static final String REASON_GLOBAL_RATE = "GLOBAL_RATE";   // the whole system is over its rate
+    public static final String REASON_PENDING_QUOTA = "PENDING_QUOTA"; // too many PENDING bookings held
+
+    private final String reason;
+    private final long retryAfterMs;
+
+    public ReservationRejectedException(String reason, String message, long retryAfterMs) {
+        super(message, false);
+        this.reason = reason;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    /*
+     * Suggested wait before trying again (0 if unknown, e.g. for quotas
+     * that free up only when a booking is used or expires).
+     */
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
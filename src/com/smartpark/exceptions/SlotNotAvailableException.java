@@ -1,18 +1,23 @@
-package com.smartpark.exceptions;
-
-/*
- * Custom checked exception used when a parking slot cannot be reserved
- * because it is already occupied or otherwise unavailable.
- */
-public class SlotNotAvailableException extends Exception {
-
-    // Default error message
-    public SlotNotAvailableException() {
-        super("Requested parking slot is not available.");
-    }
-
-    // Custom error message if needed
-    public SlotNotAvailableException(String message) {
-        super(message);
-    }
-}
+package com.smartpark.exceptions;
+
+/*
+ * Custom checked exception used when a parking slot cannot be reserved
+ * because it is already occupied or otherwise unavailable.
+ */
+public class SlotNotAvailableException extends Exception {
+
+    // Default error message
+    public SlotNotAvailableException() {
+        super("Requested parking slot is not available.");
+    }
+
+    // Custom error message if needed
+    public SlotNotAvailableException(String message) {
+        super(message);
+    }
+
+    // For high-volume subclasses that can skip filling in the stack trace
+    protected SlotNotAvailableException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
+}
@@ -0,0 +1,177 @@
+package com.smartpark.gate;
+
+import com.smartpark.model.Constants;
+import com.smartpark.model.GateOutcome;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.security.SecureRandom;
+
+/*
+ * Blocking GateProtocol client for a barrier controller (or a test).
+ *
+ * send() queues a request, flush() writes all queued requests at once and
+ * receive() reads the next reply, so commands can be pipelined. A command
+ * that may have to be retried gets a request id from newRequestId(); sent
+ * again with the same id, it returns the first outcome. At most
+ * pipelineDepth requests may be waiting for a reply; the depth is capped so
+ * the server's output buffer can hold all their replies, otherwise a client
+ * that writes without reading could stall both sides. The fields of the
+ * last reply are kept in this object instead of a new one per message.
+ * Not thread-safe: one client per controller thread.
+ */
+public class GateClient implements AutoCloseable {
+
+    private final SocketChannel channel;
+    private final ByteBuffer out;
+    private final ByteBuffer in;
+    private final int pipelineDepth;
+    private int nextTag;
+    private final long requestIdBase; // random high half, so ids differ between controllers
+    private int nextRequestId;
+    private int outstanding;   // requests sent without a reply read yet
+
+    // Last reply received
+    private byte op;
+    private int tag;
+    private GateOutcome outcome;
+    private int bookingId;
+    private int slotId;
+    private int statusCode;
+    private long amountCents;
+
+    public GateClient(String host, int port) throws IOException {
+        this(host, port, 64);
+    }
+
+    /*
+     * pipelineDepth: how many requests may wait for replies at once.
+     */
+    public GateClient(String host, int port, int pipelineDepth) throws IOException {
+        this.pipelineDepth = Math.max(1, Math.min(pipelineDepth, maxPipelineDepth()));
+        channel = SocketChannel.open();
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.connect(new InetSocketAddress(host, port));
+        out = ByteBuffer.allocateDirect(GateProtocol.REQUEST_FRAME * this.pipelineDepth);
+        in = ByteBuffer.allocateDirect(GateProtocol.RESPONSE_FRAME * this.pipelineDepth);
+        in.flip();
+        requestIdBase = new SecureRandom().nextLong() & 0xFFFFFFFF00000000L;
+    }
+
+    /*
+     * Send one command and wait for its reply.
+     */
+    public GateOutcome call(byte op, int bookingId) throws IOException {
+        send(op, bookingId);
+        flush();
+        receive();
+        return outcome;
+    }
+
+    public GateOutcome entry(int bookingId) throws IOException {
+        return call(GateProtocol.OP_ENTRY, bookingId);
+    }
+
+    public GateOutcome exit(int bookingId) throws IOException {
+        return call(GateProtocol.OP_EXIT, bookingId);
+    }
+
+    public GateOutcome lookup(int bookingId) throws IOException {
+        return call(GateProtocol.OP_LOOKUP, bookingId);
+    }
+
+    /*
+     * As above, with a request id for retries.
+     */
+    public GateOutcome call(byte op, long requestId, int bookingId) throws IOException {
+        send(op, requestId, bookingId);
+        flush();
+        receive();
+        return outcome;
+    }
+
+    public GateOutcome entry(long requestId, int bookingId) throws IOException {
+        return call(GateProtocol.OP_ENTRY, requestId, bookingId);
+    }
+
+    public GateOutcome exit(long requestId, int bookingId) throws IOException {
+        return call(GateProtocol.OP_EXIT, requestId, bookingId);
+    }
+
+    /*
+     * A request id no other command of this or another controller uses (never 0).
+     */
+    public long newRequestId() {
+        nextRequestId++;
+        if (nextRequestId == 0) nextRequestId++;
+        return requestIdBase | (nextRequestId & 0xFFFFFFFFL);
+    }
+
+    /*
+     * Queue a request; returns its tag. Throws IllegalStateException when
+     * pipelineDepth requests are already waiting for replies.
+     */
+    public int send(byte op, int bookingId) {
+        return send(op, 0L, bookingId);
+    }
+
+    public int send(byte op, long requestId, int bookingId) {
+        if (outstanding == pipelineDepth) {
+            throw new IllegalStateException("Pipeline full: receive replies before sending more.");
+        }
+        outstanding++;
+        int t = nextTag++;
+        GateProtocol.putRequest(out, op, t, requestId, bookingId);
+        return t;
+    }
+
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) channel.write(out);
+        out.clear();
+    }
+
+    /*
+     * Read the next reply into this client's reply fields.
+     */
+    public void receive() throws IOException {
+        while (in.remaining() < GateProtocol.RESPONSE_FRAME) {
+            in.compact();
+            int n = channel.read(in);
+            in.flip();
+            if (n < 0) throw new EOFException("Gate server closed the connection");
+        }
+        if (in.getShort() != GateProtocol.RESPONSE_LENGTH) throw new IOException("Malformed reply from gate server");
+        outstanding--;
+        op = in.get();
+        tag = in.getInt();
+        outcome = GateProtocol.outcome(in.get());
+        bookingId = in.getInt();
+        slotId = in.getInt();
+        statusCode = in.get();
+        amountCents = in.getLong();
+    }
+
+    public int getPipelineDepth() { return pipelineDepth; }
+    public byte getOp() { return op; }
+    public int getTag() { return tag; }
+    public GateOutcome getOutcome() { return outcome; }
+    public int getBookingId() { return bookingId; }
+    public int getSlotId() { return slotId; }
+    public int getStatusCode() { return statusCode; }
+    public long getAmountCents() { return amountCents; }
+
+    // Replies that always fit in the server's output buffer
+    private static int maxPipelineDepth() {
+        return Constants.GATE_BUFFER_BYTES / GateProtocol.RESPONSE_FRAME;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,98 @@
+package com.smartpark.gate;
+
+import com.smartpark.model.Booking;
+import com.smartpark.model.GateOutcome;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Binary protocol between barrier controllers and GateServer.
+ *
+ * Every frame is  [length:short][body]  where length counts the body bytes.
+ * Both bodies have a fixed size, so a peer can check a frame from its
+ * length field alone:
+ *
+ *   request   [op:byte][tag:int][requestId:long][bookingId:int]
+ *   response  [op:byte][tag:int][outcome:byte][bookingId:int][slotId:int]
+ *             [status:byte][amountCents:long]
+ *
+ * tag is chosen by the controller and echoed back, so it can pipeline
+ * commands and still match the answers (which arrive in request order).
+ * requestId makes entries and exits safe to retry: a controller that
+ * repeats a command after a timeout sends the same id and gets the outcome
+ * of the first attempt (see Attendant.markEntry(String, Booking)). Ids
+ * must be unique across controllers (GateClient.newRequestId() picks
+ * random ones); 0 means no deduplication. Requests in the older format
+ * without requestId (LEGACY_REQUEST_LENGTH) are still accepted.
+ * outcome is the GateOutcome ordinal; status is the booking's status
+ * symbol code (see Symbols); amountCents is the fee after an exit, -1 when
+ * the booking has none. All values are big-endian.
+ */
+public final class GateProtocol {
+
+    private GateProtocol() { }
+
+    // OPERATIONS
+    public static final byte OP_PING = 0;    // liveness check, bookingId ignored
+    public static final byte OP_ENTRY = 1;   // Attendant.markEntry
+    public static final byte OP_EXIT = 2;    // Attendant.markExit
+    public static final byte OP_LOOKUP = 3;  // current state of a booking, no change
+
+    public static final int REQUEST_LENGTH = 1 + 4 + 8 + 4;
+    public static final int LEGACY_REQUEST_LENGTH = 1 + 4 + 4;
+    public static final int RESPONSE_LENGTH = 1 + 4 + 1 + 4 + 4 + 1 + 8;
+    public static final int REQUEST_FRAME = 2 + REQUEST_LENGTH;
+    public static final int RESPONSE_FRAME = 2 + RESPONSE_LENGTH;
+
+    private static final GateOutcome[] OUTCOMES = GateOutcome.values();
+
+    public static void putRequest(ByteBuffer buf, byte op, int tag, long requestId, int bookingId) {
+        buf.putShort((short) REQUEST_LENGTH);
+        buf.put(op);
+        buf.putInt(tag);
+        buf.putLong(requestId);
+        buf.putInt(bookingId);
+    }
+
+    /*
+     * Request without deduplication.
+     */
+    public static void putRequest(ByteBuffer buf, byte op, int tag, int bookingId) {
+        putRequest(buf, op, tag, 0L, bookingId);
+    }
+
+    /*
+     * Gate request id as a deduplication key, or null for 0 (none).
+     */
+    static String requestKey(long requestId) {
+        return (requestId == 0) ? null : "gate:" + Long.toHexString(requestId);
+    }
+
+    /*
+     * Response for a command; booking may be null (not found, ping).
+     */
+    static void putResponse(ByteBuffer buf, byte op, int tag, GateOutcome outcome, Booking booking) {
+        buf.putShort((short) RESPONSE_LENGTH);
+        buf.put(op);
+        buf.putInt(tag);
+        buf.put((byte) outcome.ordinal());
+        if (booking == null) {
+            buf.putInt(-1);
+            buf.putInt(-1);
+            buf.put((byte) -1);
+            buf.putLong(-1);
+            return;
+        }
+        buf.putInt(booking.getBookingId().intValue());
+        buf.putInt(booking.getSlotId());
+        buf.put((byte) booking.getStatusCode());
+        buf.putLong(booking.hasAmount() ? Math.round(booking.getAmountValue() * 100) : -1);
+    }
+
+    /*
+     * GateOutcome for an outcome byte, or null if it is out of range.
+     */
+    public static GateOutcome outcome(int code) {
+        return (code >= 0 && code < OUTCOMES.length) ? OUTCOMES[code] : null;
+    }
+}
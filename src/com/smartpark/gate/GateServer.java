@@ -0,0 +1,256 @@
+package com.smartpark.gate;
+
+import com.smartpark.model.Booking;
+import com.smartpark.model.Constants;
+import com.smartpark.model.GateOutcome;
+import com.smartpark.service.ParkingSystem;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/*
+ * Non-blocking server for barrier controllers speaking GateProtocol.
+ *
+ * One selector thread accepts connections, reads every complete request
+ * frame it has, runs it straight against the Attendant and writes all the
+ * answers back with one write, so pipelined commands cost one system call
+ * each way per batch. Each connection gets a direct input and output buffer
+ * of GATE_BUFFER_BYTES when it is accepted; after that, framing, lookup and
+ * the reply allocate nothing per message.
+ *
+ * If a controller stops reading, its output buffer fills up; the server
+ * then stops taking requests from it until the answers are written, rather
+ * than buffering without limit. A malformed frame closes the connection.
+ *
+ * Entries and exits with a request id go through the Attendant's request
+ * deduplication, like HTTP commands with an Idempotency-Key: a retried
+ * command gets the outcome of the first attempt rather than INVALID_STATE.
+ * Only those commands allocate (the cache entry). Commands run under the
+ * Attendant monitor, and so do the booking listeners they fire; listeners
+ * only queue work for their own threads (store writers, replication,
+ * settlement), so no I/O happens while the selector thread holds it.
+ */
+public class GateServer implements Runnable {
+
+    private final ParkingSystem parkingSystem;
+    private final int port;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private volatile boolean running;
+    private volatile long commandCount;
+
+    /*
+     * Buffers and state of one controller connection.
+     */
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer in;   // filled by reads, drained by frames (kept in write mode)
+        final ByteBuffer out;  // replies waiting to be written (kept in write mode)
+
+        Connection(SocketChannel channel, int bufferBytes) {
+            this.channel = channel;
+            this.in = ByteBuffer.allocateDirect(bufferBytes);
+            this.out = ByteBuffer.allocateDirect(bufferBytes);
+        }
+    }
+
+    public GateServer(ParkingSystem parkingSystem, int port) {
+        this.parkingSystem = parkingSystem;
+        this.port = port;
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) return;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+
+        thread = new Thread(this, "gate-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        Selector s = selector;
+        if (s != null) s.wakeup();
+        Thread t = thread;
+        if (t != null) {
+            try {
+                t.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+     * Port actually bound (useful when started on port 0).
+     */
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException | RuntimeException e) {
+            return port;
+        }
+    }
+
+    public long getCommandCount() {
+        return commandCount;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) accept();
+                        else serve(key);
+                    } catch (IOException e) {
+                        close(key);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) System.out.println("[Error] Gate server stopped: " + e.getMessage());
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.register(selector, SelectionKey.OP_READ, new Connection(channel, Constants.GATE_BUFFER_BYTES));
+        }
+    }
+
+    /*
+     * Flush pending replies, then read and answer as many requests as fit.
+     */
+    private void serve(SelectionKey key) throws IOException {
+        Connection c = (Connection) key.attachment();
+
+        if (key.isWritable() && !flush(c)) return;
+
+        if (key.isReadable() && c.channel.read(c.in) < 0) {
+            close(key);
+            return;
+        }
+        // Also after a write: requests may be waiting for room in the output buffer
+        if (!process(c)) {
+            close(key);
+            return;
+        }
+
+        // Replies still waiting: stop reading until the controller takes them
+        boolean drained = flush(c);
+        key.interestOps(drained ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+    }
+
+    /*
+     * Answer every complete frame in the input buffer for which the output
+     * buffer has room. Returns false on a malformed frame.
+     */
+    private boolean process(Connection c) {
+        ByteBuffer in = c.in;
+        ByteBuffer out = c.out;
+        in.flip();
+        while (in.remaining() >= 2 && out.remaining() >= GateProtocol.RESPONSE_FRAME) {
+            int pos = in.position();
+            int length = in.getShort(pos);
+            if (length != GateProtocol.REQUEST_LENGTH && length != GateProtocol.LEGACY_REQUEST_LENGTH) return false;
+            if (in.remaining() < 2 + length) break;
+            byte op = in.get(pos + 2);
+            int tag = in.getInt(pos + 3);
+            long requestId = 0;
+            int bookingId;
+            if (length == GateProtocol.REQUEST_LENGTH) {
+                requestId = in.getLong(pos + 7);
+                bookingId = in.getInt(pos + 15);
+            } else {
+                bookingId = in.getInt(pos + 7);
+            }
+            in.position(pos + 2 + length);
+
+            if (!execute(op, tag, requestId, bookingId, out)) return false;
+            commandCount++;
+        }
+        in.compact();
+        return true;
+    }
+
+    private boolean execute(byte op, int tag, long requestId, int bookingId, ByteBuffer out) {
+        if (op == GateProtocol.OP_PING) {
+            GateProtocol.putResponse(out, op, tag, GateOutcome.SUCCESS, null);
+            return true;
+        }
+        if (op != GateProtocol.OP_ENTRY && op != GateProtocol.OP_EXIT && op != GateProtocol.OP_LOOKUP) return false;
+
+        Booking booking = parkingSystem.findBookingById(bookingId);
+        GateOutcome outcome;
+        if (booking == null) {
+            outcome = GateOutcome.BOOKING_NOT_FOUND;
+        } else if (op == GateProtocol.OP_ENTRY) {
+            outcome = parkingSystem.getAttendant().markEntry(GateProtocol.requestKey(requestId), booking);
+        } else if (op == GateProtocol.OP_EXIT) {
+            outcome = parkingSystem.getAttendant().markExit(GateProtocol.requestKey(requestId), booking);
+        } else {
+            outcome = GateOutcome.SUCCESS;
+        }
+        GateProtocol.putResponse(out, op, tag, outcome, booking);
+        return true;
+    }
+
+    // Write out pending replies; true once all are written
+    private static boolean flush(Connection c) throws IOException {
+        ByteBuffer out = c.out;
+        if (out.position() == 0) return true;
+        out.flip();
+        c.channel.write(out);
+        boolean drained = !out.hasRemaining();
+        out.compact();
+        return drained;
+    }
+
+    private static void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+    }
+
+    private void shutdown() {
+        try {
+            for (SelectionKey key : selector.keys()) close(key);
+            selector.close();
+            serverChannel.close();
+        } catch (IOException | ClosedSelectorException e) {
+            // shutting down anyway
+        }
+    }
+}
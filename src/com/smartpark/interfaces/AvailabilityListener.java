@@ -0,0 +1,16 @@
+package com.smartpark.interfaces;
+
+import com.smartpark.model.AvailabilityUpdate;
+
+/*
+ * Interface for clients (signage, mobile app) that want slot availability
+ * pushed to them instead of polling the slot list.
+ */
+public interface AvailabilityListener {
+
+    /*
+     * Called with a coalesced batch of changes for the subscribed scope.
+     * Runs on the dispatcher thread; implementations should return quickly.
+     */
+    void availabilityChanged(AvailabilityUpdate update);
+}
@@ -0,0 +1,43 @@
+package com.smartpark.interfaces;
+
+import com.smartpark.model.Booking;
+
+/*
+ * Interface for components that need to follow booking state changes
+ * (replication, indexes, persistence). ParkingSystem calls these methods
+ * right after the change has been applied to the Booking object, usually
+ * under the Attendant monitor, so every gate command waits for them: they
+ * must not block, and storage or network work belongs on a thread of the
+ * listener's own.
+ */
+public interface BookingListener {
+
+    /*
+     * A new PENDING booking was created and its slot assigned, or a
+     * SCHEDULED booking was made for a future window. Also called when a
+     * SCHEDULED booking's window starts and it becomes PENDING.
+     */
+    void bookingReserved(Booking booking);
+
+    /*
+     * The vehicle entered; the booking is now ACTIVE.
+     */
+    void bookingEntered(Booking booking);
+
+    /*
+     * The vehicle exited; the booking is COMPLETED and the slot released.
+     */
+    void bookingExited(Booking booking);
+
+    /*
+     * A PENDING booking timed out, or a SCHEDULED one could not start,
+     * and was CANCELLED.
+     */
+    void bookingExpired(Booking booking);
+
+    /*
+     * A booking was loaded from a file or applied from a replication stream
+     * rather than produced by a local operation.
+     */
+    void bookingRestored(Booking booking);
+}
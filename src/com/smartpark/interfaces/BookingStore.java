@@ -0,0 +1,47 @@
+package com.smartpark.interfaces;
+
+import com.smartpark.model.Booking;
+
+import java.io.IOException;
+
+/*
+ * Storage SPI for bookings. ParkingSystem writes every booking change
+ * through an implementation of this interface, one booking at a time,
+ * instead of rewriting a whole file.
+ */
+public interface BookingStore {
+
+    /*
+     * Visitor for range scans. Return false to stop early.
+     */
+    interface BookingVisitor {
+        boolean visit(Booking booking);
+    }
+
+    /*
+     * Insert a booking, or replace the stored copy with the same id.
+     */
+    void putBooking(Booking booking) throws IOException;
+
+    /*
+     * Record a status change (entry, exit, expiry). Only the status,
+     * amount and timestamps of the booking have changed.
+     */
+    void updateStatus(Booking booking) throws IOException;
+
+    /*
+     * Stored booking with this id, or null.
+     */
+    Booking getBooking(int bookingId) throws IOException;
+
+    /*
+     * Visit stored bookings with fromId <= id < toId in id order.
+     */
+    void scanBookings(int fromId, int toId, BookingVisitor visitor) throws IOException;
+
+    /*
+     * Make every write so far durable. Writes before a sync may be lost
+     * in a crash.
+     */
+    void sync() throws IOException;
+}
@@ -1,20 +1,37 @@
-package com.smartpark.interfaces;
-
-import com.smartpark.model.Booking;
-
-/*
- * Interface defining actions related to marking
- * the entry and exit of vehicles into the parking area.
- */
-public interface EntryExitHandler {
-
-    /*
-     * Mark the entry of a vehicle associated with a booking.
-     */
-    void markEntry(Booking booking);
-
-    /*
-     * Mark the exit of a vehicle associated with a booking.
-     */
-    void markExit(Booking booking);
-}
+package com.smartpark.interfaces;
+
+import com.smartpark.model.Booking;
+import com.smartpark.model.GateOutcome;
+
+/*
+ * Interface defining actions related to marking
+ * the entry and exit of vehicles into the parking area.
+ */
+public interface EntryExitHandler {
+
+    /*
+     * Mark the entry of a vehicle associated with a booking.
+     */
+    GateOutcome markEntry(Booking booking);
+
+    /*
+     * Mark the exit of a vehicle associated with a booking.
+     */
+    GateOutcome markExit(Booking booking);
+
+    /*
+     * Same as above at a given time (epoch milliseconds) instead of now,
+     * for gate events recorded earlier, e.g. replayed after an outage.
+     */
+    GateOutcome markEntry(Booking booking, long entryTime);
+
+    GateOutcome markExit(Booking booking, long exitTime);
+
+    /*
+     * Same as above for commands that carry a request id: a retried command
+     * with the same id returns the first outcome and changes nothing.
+     */
+    GateOutcome markEntry(String requestId, Booking booking);
+
+    GateOutcome markExit(String requestId, Booking booking);
+}
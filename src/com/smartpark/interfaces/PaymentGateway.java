@@ -0,0 +1,26 @@
+package com.smartpark.interfaces;
+
+import com.smartpark.model.PaymentIntent;
+
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Adapter to an external payment processor.
+ *
+ * Implementations must be asynchronous: submit returns immediately and the
+ * future completes when the processor has answered. Each intent carries an
+ * idempotency key; submitting the same key again must not charge twice.
+ */
+public interface PaymentGateway {
+
+    int RESULT_OK = 0;         // settled
+    int RESULT_DECLINED = 1;   // permanently refused, do not retry
+    int RESULT_RETRY = 2;      // transient failure, safe to resubmit
+
+    /*
+     * Submit intents[0..count) as one batch. The future yields one RESULT_*
+     * code per intent; completing exceptionally means the whole batch may be
+     * retried.
+     */
+    CompletableFuture<int[]> submit(PaymentIntent[] intents, int count);
+}
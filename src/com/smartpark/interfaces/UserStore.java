@@ -0,0 +1,61 @@
+package com.smartpark.interfaces;
+
+import com.smartpark.model.User;
+
+import java.io.IOException;
+
+/*
+ * Storage SPI for user accounts, written through by UserService.
+ */
+public interface UserStore {
+
+    /*
+     * Visitor for scans. Return false to stop early.
+     */
+    interface UserVisitor {
+        boolean visit(User user);
+    }
+
+    /*
+     * Insert a user, or replace the stored copy with the same username.
+     */
+    void putUser(User user) throws IOException;
+
+    /*
+     * Stored user with this username, or null.
+     */
+    User getUser(String username) throws IOException;
+
+    /*
+     * Stored user with this id, or null.
+     */
+    User getUserById(int userId) throws IOException;
+
+    /*
+     * Highest user id ever stored (0 if none), so new ids can be
+     * handed out without reading every user.
+     */
+    int getLastUserId() throws IOException;
+
+    /*
+     * Visit every stored user in username order.
+     */
+    void scanUsers(UserVisitor visitor) throws IOException;
+
+    /*
+     * Record that a booking belongs to a user. Booking ids are stored apart
+     * from the account, so this is one small write however many bookings
+     * the user already has, and putUser/getUser do not carry them.
+     */
+    void addBookingId(String username, int bookingId) throws IOException;
+
+    /*
+     * Ids of every booking recorded for the user, in id order.
+     */
+    int[] getBookingIds(String username) throws IOException;
+
+    /*
+     * Make every write so far durable.
+     */
+    void sync() throws IOException;
+}
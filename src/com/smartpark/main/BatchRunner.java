@@ -0,0 +1,314 @@
+package com.smartpark.main;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Locale;
+
+import com.smartpark.exceptions.SlotNotAvailableException;
+import com.smartpark.model.*;
+import com.smartpark.service.ParkingSystem;
+import com.smartpark.service.UserService;
+
+/*
+ * Runs a stream of CLI commands without prompts, for example to replay
+ * the gate events a controller recorded during an outage.
+ *
+ * One command per line, words separated by spaces or tabs; blank lines and
+ * lines starting with '#' are ignored:
+ *
+ *   register <username> [password] [USER|ATTENDANT|ADMIN]
+ *   vehicle  <username> <plate> [car|motorcycle]
+ *   reserve  <username> <slotId | any | plate>
+ *   entry    <bookingId | plate> [epochMs]
+ *   exit     <bookingId | plate> [epochMs]
+ *   expire   [epochMs]
+ *   save     [file]
+ *   load     [file]
+ *
+ * "reserve ... plate" reserves the best-fitting slot for one of the user's
+ * registered vehicles. entry, exit and expire take the time the event
+ * happened (epoch milliseconds) when it is given, so a backfilled stay is
+ * billed for its real duration and expirations use the recorded clock;
+ * without it they run at the current time. Every command gets one result line
+ * ("<line>: OK ..." or "<line>: FAIL ..."), and a summary with per-command
+ * totals follows at the end. Commands run as the system itself: no login,
+ * no role checks.
+ *
+ * The runner never touches the console; it writes to the stream it is
+ * given, which Main buffers, so a large replay is not held up by terminal
+ * output. Users are remembered in a hash map, so repeated commands do not
+ * scan the user array.
+ */
+public class BatchRunner {
+
+    private static final String[] COMMANDS = { "register", "vehicle", "reserve", "entry", "exit", "expire", "save", "load" };
+    private static final int REGISTER = 0;
+    private static final int VEHICLE = 1;
+    private static final int RESERVE = 2;
+    private static final int ENTRY = 3;
+    private static final int EXIT = 4;
+    private static final int EXPIRE = 5;
+    private static final int SAVE = 6;
+    private static final int LOAD = 7;
+
+    private static final int MAX_WORDS = 8;
+
+    private final ParkingSystem parkingSystem;
+    private final UserService userService;
+    private final PrintStream out;
+
+    private final HashMap<String, User> users = new HashMap<>();
+    private final String[] words = new String[MAX_WORDS];
+
+    private final long[] succeeded = new long[COMMANDS.length];
+    private final long[] failed = new long[COMMANDS.length];
+    private long unknownCount;
+    private long lineNumber;
+
+    public BatchRunner(ParkingSystem parkingSystem, UserService userService, PrintStream out) {
+        this.parkingSystem = parkingSystem;
+        this.userService = userService;
+        this.out = out;
+    }
+
+    /*
+     * Execute every command of the stream, then print the summary.
+     */
+    public void run(BufferedReader in) throws IOException {
+        long started = System.nanoTime();
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            int count = split(line);
+            if (count == 0 || words[0].charAt(0) == '#') continue;
+
+            int command = commandIndex(words[0]);
+            if (command < 0) {
+                unknownCount++;
+                out.println(lineNumber + ": FAIL unknown command " + words[0]);
+                continue;
+            }
+
+            String result = execute(command, count);
+            if (result == null) {
+                succeeded[command]++;
+            } else {
+                failed[command]++;
+                out.println(lineNumber + ": FAIL " + result);
+            }
+        }
+        printSummary(System.nanoTime() - started);
+    }
+
+    public long getSucceededCount() {
+        long total = 0;
+        for (long n : succeeded) total += n;
+        return total;
+    }
+
+    public long getFailedCount() {
+        long total = unknownCount;
+        for (long n : failed) total += n;
+        return total;
+    }
+
+    /*
+     * Run one command. Prints the OK line itself and returns null on
+     * success, otherwise returns the reason it failed.
+     */
+    private String execute(int command, int count) {
+        switch (command) {
+            case REGISTER: {
+                if (count < 2) return "usage: register <username> [password] [role]";
+                String password = (count > 2) ? words[2] : "";
+                String role = (count > 3) ? words[3].toUpperCase(Locale.ROOT) : Constants.ROLE_USER;
+                if (!Constants.ROLE_USER.equals(role) && !Constants.ROLE_ATTENDANT.equals(role)
+                        && !Constants.ROLE_ADMIN.equals(role)) {
+                    return "unknown role " + words[3];
+                }
+                User created = userService.register(words[1], password, role);
+                if (created == null) return "username " + words[1] + " already taken or invalid";
+                users.put(created.getUsername(), created);
+                out.println(lineNumber + ": OK user " + created.getUserId());
+                return null;
+            }
+
+            case VEHICLE: {
+                if (count < 3) return "usage: vehicle <username> <plate> [car|motorcycle]";
+                User user = user(words[1]);
+                if (user == null) return "unknown user " + words[1];
+                boolean motorcycle = (count > 3) && "motorcycle".equalsIgnoreCase(words[3]);
+                AbstractVehicle vehicle = motorcycle ? new Motorcycle(words[2]) : new Car(words[2]);
+                if (!parkingSystem.registerVehicle(user, vehicle)) {
+                    return "invalid plate, or plate registered to another user: " + words[2];
+                }
+                out.println(lineNumber + ": OK vehicle " + LicensePlate.normalize(words[2]));
+                return null;
+            }
+
+            case RESERVE: {
+                if (count < 3) return "usage: reserve <username> <slotId | any | plate>";
+                User user = user(words[1]);
+                if (user == null) return "unknown user " + words[1];
+                try {
+                    Booking booking = reserve(user, words[2]);
+                    if (booking == null) return "no registered vehicle " + words[2] + " for " + words[1];
+                    out.println(lineNumber + ": OK booking " + booking.getBookingId() + " slot " + booking.getSlotId());
+                    return null;
+                } catch (SlotNotAvailableException e) {
+                    return e.getMessage();
+                }
+            }
+
+            case ENTRY:
+            case EXIT: {
+                if (count < 2) return "usage: " + COMMANDS[command] + " <bookingId | plate> [epochMs]";
+                long time = (count > 2) ? parseTime(words[2]) : System.currentTimeMillis();
+                if (time <= 0) return "invalid time " + words[2];
+                Booking booking = booking(words[1]);
+                if (booking == null) return "no booking " + words[1];
+                GateOutcome outcome = (command == ENTRY)
+                        ? parkingSystem.getAttendant().markEntry(booking, time)
+                        : parkingSystem.getAttendant().markExit(booking, time);
+                if (!outcome.isSuccess()) return outcome + " for booking " + booking.getBookingId();
+                if (command == ENTRY) {
+                    out.println(lineNumber + ": OK booking " + booking.getBookingId() + " entered");
+                } else {
+                    out.println(lineNumber + ": OK booking " + booking.getBookingId() + " exited, amount " + booking.getAmount());
+                }
+                return null;
+            }
+
+            case EXPIRE: {
+                long time = (count > 1) ? parseTime(words[1]) : System.currentTimeMillis();
+                if (time <= 0) return "invalid time " + words[1];
+                parkingSystem.processExpirations(time);
+                out.println(lineNumber + ": OK expirations processed");
+                return null;
+            }
+
+            case SAVE: {
+                String file = (count > 1) ? words[1] : Constants.FILE_BOOKINGS_TEXT;
+                parkingSystem.saveBookingsToFile(file);
+                out.println(lineNumber + ": OK saved " + parkingSystem.getBookingCount() + " bookings to " + file);
+                return null;
+            }
+
+            case LOAD: {
+                String file = (count > 1) ? words[1] : Constants.FILE_BOOKINGS_TEXT;
+                parkingSystem.loadBookingsFromFile(file);
+                out.println(lineNumber + ": OK loaded " + parkingSystem.getBookingCount() + " bookings from " + file);
+                return null;
+            }
+
+            default:
+                return "unknown command " + words[0];
+        }
+    }
+
+    /*
+     * Reserve by slot id, "any" free slot, or for a registered vehicle
+     * (null if the plate is not one of the user's vehicles).
+     */
+    private Booking reserve(User user, String target) throws SlotNotAvailableException {
+        int slotId = parseId(target);
+        if (slotId >= 0) return parkingSystem.reserveSlot(slotId, user);
+        if ("any".equalsIgnoreCase(target)) return parkingSystem.reserveSlot(user.getUsername(), user);
+
+        String type = parkingSystem.getVehicleRegistry().getType(target);
+        if (type == null || !user.getUsername().equals(parkingSystem.getVehicleRegistry().getOwner(target))) {
+            return null;
+        }
+        AbstractVehicle vehicle = "Motorcycle".equals(type) ? new Motorcycle(target) : new Car(target);
+        return parkingSystem.reserveSlot(vehicle, user);
+    }
+
+    private User user(String username) {
+        User user = users.get(username);
+        if (user == null) {
+            user = userService.findUserByUsername(username);
+            if (user != null) users.put(username, user);
+        }
+        return user;
+    }
+
+    // Booking by id, otherwise by plate
+    private Booking booking(String idOrPlate) {
+        int id = parseId(idOrPlate);
+        Booking booking = (id >= 0) ? parkingSystem.findBookingById(id) : null;
+        return (booking != null) ? booking : parkingSystem.findOpenBookingByPlate(idOrPlate);
+    }
+
+    private void printSummary(long elapsedNanos) {
+        long ok = getSucceededCount();
+        long bad = getFailedCount();
+        long millis = elapsedNanos / 1000000;
+        long perSecond = (elapsedNanos > 0) ? (ok + bad) * 1000000000L / elapsedNanos : 0;
+
+        out.println();
+        out.println("Batch finished: " + (ok + bad) + " commands, " + ok + " succeeded, " + bad + " failed in " +
+                    millis + " ms (" + perSecond + " commands/s)");
+        for (int i = 0; i < COMMANDS.length; i++) {
+            if (succeeded[i] + failed[i] == 0) continue;
+            out.printf("  %-10s %10d ok %10d failed%n", COMMANDS[i], succeeded[i], failed[i]);
+        }
+        if (unknownCount > 0) {
+            out.printf("  %-10s %10s    %10d failed%n", "unknown", "", unknownCount);
+        }
+    }
+
+    /*
+     * Split a line into words (spaces and tabs) without regular expressions.
+     * Returns the number of words; words past MAX_WORDS are dropped.
+     */
+    private int split(String line) {
+        int count = 0;
+        int length = line.length();
+        int i = 0;
+        while (i < length && count < MAX_WORDS) {
+            while (i < length && isBlank(line.charAt(i))) i++;
+            if (i == length) break;
+            int start = i;
+            while (i < length && !isBlank(line.charAt(i))) i++;
+            words[count++] = line.substring(start, i);
+        }
+        return count;
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    private static int commandIndex(String word) {
+        for (int i = 0; i < COMMANDS.length; i++) {
+            if (COMMANDS[i].equalsIgnoreCase(word)) return i;
+        }
+        return -1;
+    }
+
+    // Positive epoch-millisecond value of an all-digit word, or -1
+    private static long parseTime(String word) {
+        if (word.length() == 0 || word.length() > 18) return -1;
+        long value = 0;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return (value > 0) ? value : -1;
+    }
+
+    // Non-negative int value of an all-digit word, or -1
+    private static int parseId(String word) {
+        if (word.length() == 0 || word.length() > 9) return -1;
+        int value = 0;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
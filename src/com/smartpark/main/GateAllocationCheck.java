@@ -0,0 +1,118 @@
+package com.smartpark.main;
+
+import java.lang.management.ManagementFactory;
+
+import com.smartpark.model.*;
+import com.smartpark.service.ParkingSystem;
+
+/*
+ * Allocation check for the gate hot path.
+ *
+ * Steady-state markEntry/markExit (and rejected gate commands) must not
+ * allocate. This reserves a round of bookings, runs warm-up rounds of
+ * entries and exits so the JIT and every lazily sized structure settle, and
+ * then counts the bytes the calling thread allocates over the measured
+ * rounds. Reservations happen between the measured sections, outside the
+ * count. Exits with status 1 if any measured section allocated.
+ *
+ *   java com.smartpark.main.GateAllocationCheck [slots] [rounds]
+ *
+ * Needs a JVM that reports per-thread allocation (HotSpot).
+ */
+public class GateAllocationCheck {
+
+    // Enough commands for the optimizing JIT to compile the gate path and settle;
+    // a deoptimization inside a measured section shows up as a few hundred bytes
+    private static final int WARMUP_ROUNDS = 100;
+    private static final int PROBE_WARMUP_CALLS = 200000;
+
+    public static void main(String[] args) {
+        int slots = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+
+        java.lang.management.ThreadMXBean plain = ManagementFactory.getThreadMXBean();
+        if (!(plain instanceof com.sun.management.ThreadMXBean)) {
+            System.out.println("[Error] This JVM does not report per-thread allocation.");
+            System.exit(2);
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) plain;
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("[Error] This JVM does not report per-thread allocation.");
+            System.exit(2);
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+        // The probe itself allocates until the JIT has compiled it
+        for (int i = 0; i < PROBE_WARMUP_CALLS; i++) threads.getThreadAllocatedBytes(thread);
+
+        // Sized for every booking the run creates, so no array grows on the gate path
+        ParkingSystem parkingSystem = new ParkingSystem(slots, slots * (WARMUP_ROUNDS + rounds + 1));
+        for (int i = 0; i < slots; i++) parkingSystem.addSlot(Constants.SLOT_REGULAR);
+        ParkingSystem.Attendant attendant = parkingSystem.getAttendant();
+        User user = new User("gatecheck", "gatecheck");
+        Booking[] round = new Booking[slots];
+
+        long entryBytes = 0;
+        long exitBytes = 0;
+        long rejectedBytes = 0;
+        for (int r = 0; r < WARMUP_ROUNDS + rounds; r++) {
+            for (int i = 0; i < slots; i++) {
+                try {
+                    round[i] = parkingSystem.reserveSlot(i + 1, user);
+                } catch (Exception e) {
+                    System.out.println("[Error] Could not reserve slot " + (i + 1) + ": " + e.getMessage());
+                    System.exit(2);
+                }
+            }
+
+            // Each section is its own method, so after the warm-up it runs fully
+            // compiled rather than in the middle of an on-stack replacement
+            long start = threads.getThreadAllocatedBytes(thread);
+            enterAll(attendant, round);
+            long entered = threads.getThreadAllocatedBytes(thread);
+            exitAll(attendant, round);
+            long exited = threads.getThreadAllocatedBytes(thread);
+            rejectAll(attendant, round);
+            long rejected = threads.getThreadAllocatedBytes(thread);
+
+            if (r >= WARMUP_ROUNDS) {
+                entryBytes += entered - start;
+                exitBytes += exited - entered;
+                rejectedBytes += rejected - exited;
+            }
+        }
+
+        long commands = (long) slots * rounds;
+        System.out.println("[System] " + commands + " entries: " + entryBytes + " bytes allocated");
+        System.out.println("[System] " + commands + " exits: " + exitBytes + " bytes allocated");
+        System.out.println("[System] " + (2 * commands) + " rejected commands: " + rejectedBytes + " bytes allocated");
+        if (entryBytes != 0 || exitBytes != 0 || rejectedBytes != 0) {
+            System.out.println("[Error] The gate path allocated.");
+            System.exit(1);
+        }
+        System.out.println("[System] The gate path is allocation-free.");
+    }
+
+    private static void enterAll(ParkingSystem.Attendant attendant, Booking[] round) {
+        for (int i = 0; i < round.length; i++) expect(attendant.markEntry(round[i]), GateOutcome.SUCCESS);
+    }
+
+    private static void exitAll(ParkingSystem.Attendant attendant, Booking[] round) {
+        for (int i = 0; i < round.length; i++) expect(attendant.markExit(round[i]), GateOutcome.SUCCESS);
+    }
+
+    // Commands on completed bookings, which the gate must turn down
+    private static void rejectAll(ParkingSystem.Attendant attendant, Booking[] round) {
+        for (int i = 0; i < round.length; i++) {
+            expect(attendant.markExit(round[i]), GateOutcome.INVALID_STATE);
+            expect(attendant.markEntry(round[i]), GateOutcome.INVALID_STATE);
+        }
+    }
+
+    private static void expect(GateOutcome outcome, GateOutcome expected) {
+        if (outcome != expected) {
+            System.out.println("[Error] Gate command returned " + outcome + ", expected " + expected + ".");
+            System.exit(2);
+        }
+    }
+}
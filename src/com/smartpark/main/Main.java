@@ -1,308 +1,664 @@
-package com.smartpark.main;
-
-import java.io.Console;
-import java.util.Scanner;
-
-import com.smartpark.model.*;
-import com.smartpark.service.*;
-import com.smartpark.exceptions.SlotNotAvailableException;
-
-/*
- * Main entry point for the Smart Parking System application.
- * Handles the Command Line Interface (CLI), user input, and high-level flow control.
- */
-public class Main {
-
-    public static void main(String[] args) {
-
-        // Scanner for standard input (fallback if Console is unavailable)
-        Scanner inputScanner = new Scanner(System.in);
-
-        // Initialize services
-        UserService userService = new UserService();
-        ParkingSystem parkingSystem = new ParkingSystem();
-
-        // Pre-populate the parking lot with some slots for demonstration
-        parkingSystem.addSlot(Constants.SLOT_COMPACT);
-        parkingSystem.addSlot(Constants.SLOT_REGULAR);
-        parkingSystem.addSlot(Constants.SLOT_LARGE);
-        parkingSystem.addSlot(Constants.SLOT_HANDICAPPED);
-
-        // Ensure a default admin exists (username: admin, password: admin)
-        userService.ensureDefaultAdmin();
-        
-        // Session variable to track the currently logged-in user
-        User loggedInUser = null;
-
-        while (true) {
-            // Display the main menu
-            System.out.println("\nSMART PARKING SYSTEM");
-            
-            // Show current user status
-            if (loggedInUser != null) {
-                System.out.println("Logged in as: " + loggedInUser.getUsername() + " [" + loggedInUser.getRole() + "]");
-            } else {
-                System.out.println("Status: Guest");
-            }
-            System.out.println("1. Register (New User)");
-            System.out.println("2. Login");
-            System.out.println("3. Reserve Slot (Users Only)");
-            System.out.println("4. Mark Entry (Attendant/Admin)");
-            System.out.println("5. Mark Exit (Attendant/Admin)");
-            System.out.println("6. Show Slots (Staff Only)");
-            System.out.println("7. Show Parking Fees");
-            System.out.println("8. Save Bookings (Admin Only)");
-            System.out.println("9. Load Bookings (Admin Only)");
-            System.out.println("10. Register Staff (Admin Only)");
-            System.out.println("11. View My History (Users Only)");
-            System.out.println("12. Logout");
-            System.out.println("13. Exit Application");
-
-            int choice = readInt(inputScanner, "Enter choice: ");
-
-            // OPTION 1: REGISTER
-            if (choice == 1) {
-                System.out.print("Enter new username: ");
-                String newUsername = inputScanner.nextLine();
-                
-                // Securely read password
-                String newPassword = readPasswordSecurely(inputScanner, "Enter new password: ");
-
-                User createdUser = userService.register(newUsername, newPassword);
-                if (createdUser != null)
-                    System.out.println("Success: User registered with ID " + createdUser.getUserId());
-                else
-                    System.out.println("Error: Username already taken or invalid.");
-
-            // OPTION 2: LOGIN
-            } else if (choice == 2) {
-                System.out.print("Username: ");
-                String loginUsername = inputScanner.nextLine();
-                
-                // Securely read password
-                String loginPassword = readPasswordSecurely(inputScanner, "Password: ");
-
-                User result = userService.login(loginUsername, loginPassword);
-                if (result != null) {
-                    loggedInUser = result;
-                    System.out.println("Login successful! Welcome, " + loggedInUser.getUsername());
-                } else {
-                    System.out.println("Login failed. Invalid credentials.");
-                }
-
-            // OPTION 3: RESERVE SLOT (User Only)
-            } else if (choice == 3) {
-                if (loggedInUser == null || !Constants.ROLE_USER.equals(loggedInUser.getRole())) {
-                    System.out.println("Access Denied: Only logged-in Users can reserve slots.");
-                    continue;
-                }
-
-                // EXPIRE OLD BOOKINGS: Trigger cleanup before checking availability
-                parkingSystem.processExpirations();
-
-                int targetSlotId = readInt(inputScanner, "Enter slot ID to reserve: ");
-
-                try {
-                    Booking newBooking = parkingSystem.reserveSlot(targetSlotId, loggedInUser);
-                    System.out.println("Success: Booking created with ID: " + newBooking.getBookingId());
-                    System.out.println("NOTE: You have 1 minute to arrive before this booking expires.");
-                } catch (SlotNotAvailableException e) {
-                    System.out.println("Reservation failed: " + e.getMessage());
-                }
-
-            // OPTION 4: MARK ENTRY (Attendant/Admin Only)
-            } else if (choice == 4) {
-                if (loggedInUser == null || 
-                   (!Constants.ROLE_ATTENDANT.equals(loggedInUser.getRole()) && !Constants.ROLE_ADMIN.equals(loggedInUser.getRole()))) {
-                    System.out.println("Access Denied: Only Attendants or Admins can mark entries.");
-                    continue;
-                }
-
-                int bookingId = readInt(inputScanner, "Enter booking ID to mark entry: ");
-
-                Booking booking = parkingSystem.findBookingById(bookingId);
-                if (booking == null) {
-                    System.out.println("Error: Booking not found.");
-                } else {
-                    // Mark entry (timestamps handled inside Attendant class)
-                    parkingSystem.getAttendant().markEntry(booking);
-                    System.out.println("Entry recorded. Gate opened.");
-                }
-
-            // OPTION 5: MARK EXIT (Attendant/Admin Only)
-            } else if (choice == 5) {
-                if (loggedInUser == null || 
-                   (!Constants.ROLE_ATTENDANT.equals(loggedInUser.getRole()) && !Constants.ROLE_ADMIN.equals(loggedInUser.getRole()))) {
-                    System.out.println("Access Denied: Only Attendants or Admins can mark exits.");
-                    continue;
-                }
-
-                int bookingId = readInt(inputScanner, "Enter booking ID to mark exit: ");
-
-                Booking booking = parkingSystem.findBookingById(bookingId);
-                if (booking == null) {
-                    System.out.println("Error: Booking not found.");
-                } else {
-                    // Mark exit (Duration calculation and Billing happens here)
-                    parkingSystem.getAttendant().markExit(booking);
-                    System.out.println("Exit recorded. Duration calculated.");
-                    System.out.printf("TOTAL AMOUNT DUE: $%.2f%n", booking.getAmount());
-                }
-
-            // OPTION 6: SHOW SLOTS (Staff Only)
-            } else if (choice == 6) {
-                 // Check: Regular users shouldn't see global slot status (privacy/security)
-                 if (loggedInUser == null || Constants.ROLE_USER.equals(loggedInUser.getRole())) {
-                     System.out.println("Access Denied: Only Staff can view the master slot list.");
-                     continue;
-                 }
-
-                // EXPIRE OLD BOOKINGS: Ensure the list is up to date
-                parkingSystem.processExpirations();
-
-                System.out.println("\nLive Slot Status");
-                System.out.printf("%-5s | %-15s | %-10s%n", "ID", "Type", "Status");
-                
-                ParkingSystem.ParkingSlot[] slots = parkingSystem.getSlotsArray();
-                
-                for (ParkingSystem.ParkingSlot slot : slots) {
-                    if (slot != null) {
-                        String status = slot.isOccupied() ? "OCCUPIED" : "FREE";
-                        System.out.printf("%-5d | %-15s | %-10s%n", slot.getId(), slot.getType(), status);
-                    }
-                }
-
-            // OPTION 7: SHOW FEES (Public)
-            } else if (choice == 7) {
-                System.out.println("\nCurrent Parking Fees (Per Minute)");
-                System.out.printf("%-20s : $%6.2f / min%n", "Compact Slot", Constants.RATE_COMPACT_FEE);
-                System.out.printf("%-20s : $%6.2f / min%n", "Regular Slot", Constants.RATE_REGULAR_FEE);
-                System.out.printf("%-20s : $%6.2f / min%n", "Large Slot", Constants.RATE_LARGE_FEE);
-                System.out.printf("%-20s : $%6.2f / min%n", "Handicapped Slot", Constants.RATE_HANDICAPPED_FEE);
-
-            // OPTION 8: SAVE (Admin Only)
-            } else if (choice == 8) {
-                if (loggedInUser == null || !Constants.ROLE_ADMIN.equals(loggedInUser.getRole())) {
-                    System.out.println("Access Denied: Only Administrators can save system data.");
-                    continue;
-                }
-                parkingSystem.saveBookingsToFile(Constants.FILE_BOOKINGS_TEXT);
-                System.out.println("System State saved to " + Constants.FILE_BOOKINGS_TEXT);
-
-            // OPTION 9: LOAD (Admin Only)
-            } else if (choice == 9) {
-                if (loggedInUser == null || !Constants.ROLE_ADMIN.equals(loggedInUser.getRole())) {
-                    System.out.println("Access Denied: Only Administrators can load system data.");
-                    continue;
-                }
-                parkingSystem.loadBookingsFromFile(Constants.FILE_BOOKINGS_TEXT);
-                System.out.println("System State loaded from " + Constants.FILE_BOOKINGS_TEXT);
-                
-             //OPTION 10: REGISTER STAFF (Admin Only)
-            } else if (choice == 10) {
-                    // Only Admins can create new staff/admin accounts
-                if (loggedInUser == null || !Constants.ROLE_ADMIN.equals(loggedInUser.getRole())) {
-                    System.out.println("Access Denied: Only Administrators can register staff.");
-                    continue;
-                }
-
-                System.out.print("Enter new staff username: ");
-                String staffUsername = inputScanner.nextLine();
-                    
-                String staffPassword = readPasswordSecurely(inputScanner, "Enter password for staff: ");
-                    
-                String selectedRole;
-                selectedRole = Constants.ROLE_ATTENDANT;
-
-                // Call the new overloaded register method
-                User createdStaff = userService.register(staffUsername, staffPassword, selectedRole);
-                
-                if (createdStaff != null) {
-                    System.out.println("Success: Staff user registered with role: " + createdStaff.getRole());
-                } else {
-                    System.out.println("Error: Username already taken or invalid.");
-                }
-
-            // OPTION 11: VIEW HISTORY (User Only)
-            } else if (choice == 11) {
-                 if (loggedInUser == null || !Constants.ROLE_USER.equals(loggedInUser.getRole())) {
-                    System.out.println("Access Denied: Only Users can view their personal history.");
-                    continue;
-                 }
-                 
-                 System.out.println("\nMy Booking History");
-                 int[] myBookingIds = loggedInUser.getBookingIds();
-                 boolean found = false;
-                 if (myBookingIds != null) {
-                     for (int id : myBookingIds) {
-                         Booking b = parkingSystem.findBookingById(id);
-                         if (b != null) {
-                             System.out.println(b.toString()); // Prints booking details
-                             found = true;
-                         }
-                     }
-                 }
-                 if (!found) {
-                     System.out.println("No bookings found.");
-                 }
-
-            // OPTION 12: LOGOUT
-            } else if (choice == 12) {
-                if (loggedInUser != null) {
-                    System.out.println("User " + loggedInUser.getUsername() + " successfully logged out.");
-                    loggedInUser = null; // Resets the session
-                } else {
-                    System.out.println("No user is currently logged in.");
-                }
-
-            // OPTION 13: EXIT
-            } else if (choice == 13) {
-                System.out.println("Shutting down system. Goodbye!");
-                break;
-
-            } else {
-                System.out.println("Unknown choice. Please select a number from the menu.");
-            }
-        }
-
-        inputScanner.close();
-    }
-
-    /*
-     * Helper method to read integers safely from the scanner.
-     * Prevents the application from crashing if non-numeric input is entered.
-     */
-    private static int readInt(Scanner scanner, String prompt) {
-        while (true) {
-            System.out.print(prompt);
-            String line = scanner.nextLine();
-            try {
-                return Integer.parseInt(line.trim());
-            } catch (NumberFormatException e) {
-                System.out.println("Invalid input. Please enter a valid number.");
-            }
-        }
-    }
-
-    /*
-     * Helper method to read passwords securely.
-     * Uses System.console() to mask characters if available (Command Prompt).
-     * Falls back to standard Scanner input if running in an IDE (where Console is null).
-     */
-    private static String readPasswordSecurely(Scanner scanner, String prompt) {
-        System.out.print(prompt);
-        
-        // Attempt to get the system console
-        Console systemConsole = System.console();
-        
-        if (systemConsole != null) {
-            char[] passwordArray = systemConsole.readPassword();
-            if (passwordArray != null) {
-                return new String(passwordArray);
-            }
-            return "";
-        } else {
-            return scanner.nextLine();
-        }
-    }
+package com.smartpark.main;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Console;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Scanner;
+
+import com.smartpark.api.ApiServer;
+import com.smartpark.gate.GateServer;
+import com.smartpark.model.*;
+import com.smartpark.service.*;
+import com.smartpark.exceptions.SlotNotAvailableException;
+import com.smartpark.replication.ReplicationPrimary;
+import com.smartpark.replication.ReplicationStandby;
+import com.smartpark.storage.KeyValueBookingStore;
+import com.smartpark.storage.LogStructuredStore;
+import com.smartpark.util.SlotLayoutFile;
+
+/*
+ * Main entry point for the Smart Parking System application.
+ * Handles the Command Line Interface (CLI), user input, and high-level flow control.
+ *
+ * Optional arguments:
+ *   --layout <file>             provision slots from a layout file (slotId,type,zone,level[,x,y])
+ *   --store <dir>               keep users and bookings in an embedded store in this directory
+ *   --warm-start                restore open bookings from bookings.txt at startup, history in the background
+ *   --dynamic-pricing           raise or lower rates per slot type with its occupancy, see DynamicPricing
+ *   --checkpoint <seconds>      checkpoint bookings.txt in the background (0 = default interval)
+ *   --gateway-latency <ms>      settle exit fees through the local stand-in payment gateway
+ *   --primary <port>            stream booking changes to a standby on this port
+ *   --standby <host>:<port>     mirror a primary, take over when it goes silent
+ *   --gate-port <port>          accept barrier controllers (binary GateProtocol) on this port
+ *   --http <port>               serve the JSON API on this port, see ApiServer
+ *   --batch <file | ->          run the commands in a file (or stdin) instead of the menu, see BatchRunner
+ */
+public class Main {
+
+    private static final DateTimeFormatter WINDOW_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    public static void main(String[] args) {
+
+        // Scanner for standard input (fallback if Console is unavailable)
+        Scanner inputScanner = new Scanner(System.in);
+
+        // Initialize services
+        UserService userService = new UserService();
+        ParkingSystem parkingSystem = new ParkingSystem();
+
+        // Provision slots from a layout file if one was given,
+        // otherwise pre-populate the parking lot with some slots for demonstration
+        String layoutFile = argValue(args, "--layout");
+        if (layoutFile != null) {
+            try {
+                int added = parkingSystem.provisionSlots(SlotLayoutFile.load(layoutFile));
+                System.out.println("Provisioned " + added + " slots from " + layoutFile);
+            } catch (java.io.IOException e) {
+                System.out.println("Could not load layout: " + e.getMessage());
+                return;
+            }
+        } else {
+            parkingSystem.addSlot(Constants.SLOT_COMPACT);
+            parkingSystem.addSlot(Constants.SLOT_REGULAR);
+            parkingSystem.addSlot(Constants.SLOT_LARGE);
+            parkingSystem.addSlot(Constants.SLOT_HANDICAPPED);
+        }
+
+        // STORAGE: load bookings from the store, look users up on demand, write every change through
+        LogStructuredStore store = null;
+        String storeDir = argValue(args, "--store");
+        if (storeDir != null) {
+            try {
+                store = new LogStructuredStore(storeDir);
+            } catch (java.io.IOException e) {
+                System.out.println("Could not open store: " + e.getMessage());
+                return;
+            }
+            KeyValueBookingStore records = new KeyValueBookingStore(store);
+            userService.setUserStore(records); // users are read on demand
+            parkingSystem.setBookingStore(records);
+            parkingSystem.loadBookingsFromStore();
+            parkingSystem.addBookingListener(userService.getStoreSync());
+            System.out.println("Loaded " + parkingSystem.getBookingCount() + " bookings from " + storeDir);
+        }
+
+        // Ensure a default admin exists (username: admin, password: admin)
+        userService.ensureDefaultAdmin();
+
+        // ADMISSION CONTROL: shed reservation storms instead of letting them hold every slot
+        // (not for batch replays, which come from a trusted source at full speed)
+        String batchSource = argValue(args, "--batch");
+        if (batchSource == null) {
+            parkingSystem.setAdmissionController(new AdmissionController());
+        }
+
+        if (hasFlag(args, "--dynamic-pricing")) {
+            parkingSystem.setDynamicPricing(true);
+        }
+
+        // WARM START: open bookings first so the gates can run, the history follows in the background
+        if (hasFlag(args, "--warm-start")) {
+            if (storeDir != null) {
+                System.out.println("[Warning] --warm-start ignored: bookings were loaded from the store.");
+            } else {
+                parkingSystem.warmStartFromFile(Constants.FILE_BOOKINGS_TEXT);
+                System.out.println("Restored " + parkingSystem.getBookingCount() + " open bookings from "
+                        + Constants.FILE_BOOKINGS_TEXT + "; loading history in the background.");
+                parkingSystem.loadHistoryInBackground();
+            }
+        }
+
+        // CHECKPOINTING: keep bookings.txt current without blocking the menu
+        String checkpointSeconds = argValue(args, "--checkpoint");
+        if (checkpointSeconds != null) {
+            long intervalMs = Constants.CHECKPOINT_INTERVAL_MS;
+            try {
+                long seconds = Long.parseLong(checkpointSeconds);
+                if (seconds > 0) intervalMs = seconds * 1000;
+            } catch (NumberFormatException e) {
+                System.out.println("[Warning] Invalid --checkpoint value, using the default interval.");
+            }
+            parkingSystem.startCheckpointing(Constants.FILE_BOOKINGS_TEXT, intervalMs, Constants.CHECKPOINT_CHANGE_COUNT);
+        }
+
+        // SETTLEMENT: exits queue their fee; a worker settles it with the gateway
+        String gatewayLatency = argValue(args, "--gateway-latency");
+        LocalPaymentGateway gateway = null;
+        if (gatewayLatency != null) {
+            try {
+                gateway = new LocalPaymentGateway(Long.parseLong(gatewayLatency));
+                parkingSystem.startSettlement(gateway);
+            } catch (NumberFormatException e) {
+                System.out.println("[Warning] Invalid --gateway-latency value, settlement disabled.");
+            }
+        }
+
+        // REPLICATION: optionally run as hot standby first, then as primary
+        String standbyOf = argValue(args, "--standby");
+        String primaryPort = argValue(args, "--primary");
+
+        if (standbyOf != null) {
+            int colon = standbyOf.lastIndexOf(':');
+            if (colon <= 0) {
+                System.out.println("Invalid --standby value, expected <host>:<port>");
+                return;
+            }
+            ReplicationStandby standby = new ReplicationStandby(parkingSystem,
+                    standbyOf.substring(0, colon), Integer.parseInt(standbyOf.substring(colon + 1)), true);
+            standby.start();
+            System.out.println("Running as standby of " + standbyOf + ". Waiting for primary failure...");
+            try {
+                standby.awaitPromotion();
+            } catch (InterruptedException e) {
+                return;
+            }
+            System.out.println("Standby promoted. Applied " + standby.getAppliedCount() + " records.");
+        }
+
+        if (primaryPort != null) {
+            ReplicationPrimary primary = new ReplicationPrimary(parkingSystem, Integer.parseInt(primaryPort));
+            try {
+                primary.start();
+                parkingSystem.addBookingListener(primary);
+                System.out.println("Replication primary listening on port " + primary.getPort());
+            } catch (java.io.IOException e) {
+                System.out.println("Could not start replication primary: " + e.getMessage());
+            }
+        }
+        
+        // HTTP API: serve apps and kiosks next to the console
+        ApiServer api = null;
+        String httpPort = argValue(args, "--http");
+        if (httpPort != null) {
+            try {
+                api = new ApiServer(parkingSystem, userService, Integer.parseInt(httpPort));
+                api.start();
+                System.out.println("HTTP API listening on port " + api.getPort());
+            } catch (NumberFormatException | java.io.IOException e) {
+                System.out.println("Could not start HTTP API: " + e.getMessage());
+                api = null;
+            }
+        }
+
+        // GATE CONTROLLERS: compact binary protocol for barrier hardware
+        GateServer gates = null;
+        String gatePort = argValue(args, "--gate-port");
+        if (gatePort != null) {
+            try {
+                gates = new GateServer(parkingSystem, Integer.parseInt(gatePort));
+                gates.start();
+                System.out.println("Gate server listening on port " + gates.getPort());
+            } catch (NumberFormatException | java.io.IOException e) {
+                System.out.println("Could not start gate server: " + e.getMessage());
+                gates = null;
+            }
+        }
+
+        // BATCH MODE: run a command file or stdin stream, then shut down
+        if (batchSource != null) {
+            runBatch(batchSource, parkingSystem, userService);
+            shutdown(parkingSystem, userService, gateway, store, api, gates);
+            return;
+        }
+
+        // Session variable to track the currently logged-in user
+        User loggedInUser = null;
+
+        while (true) {
+            // Display the main menu
+            System.out.println("\nSMART PARKING SYSTEM");
+            
+            // Show current user status
+            if (loggedInUser != null) {
+                System.out.println("Logged in as: " + loggedInUser.getUsername() + " [" + loggedInUser.getRole() + "]");
+            } else {
+                System.out.println("Status: Guest");
+            }
+            System.out.println("1. Register (New User)");
+            System.out.println("2. Login");
+            System.out.println("3. Reserve Slot (Users Only)");
+            System.out.println("4. Mark Entry (Attendant/Admin)");
+            System.out.println("5. Mark Exit (Attendant/Admin)");
+            System.out.println("6. Show Slots (Staff Only)");
+            System.out.println("7. Show Parking Fees");
+            System.out.println("8. Save Bookings (Admin Only)");
+            System.out.println("9. Load Bookings (Admin Only)");
+            System.out.println("10. Register Staff (Admin Only)");
+            System.out.println("11. View My History (Users Only)");
+            System.out.println("12. Logout");
+            System.out.println("13. Exit Application");
+            System.out.println("14. Register Vehicle (Users Only)");
+            System.out.println("15. Reserve Time Window (Users Only)");
+
+            int choice = readInt(inputScanner, "Enter choice: ");
+
+            // OPTION 1: REGISTER
+            if (choice == 1) {
+                System.out.print("Enter new username: ");
+                String newUsername = inputScanner.nextLine();
+                
+                // Securely read password
+                String newPassword = readPasswordSecurely(inputScanner, "Enter new password: ");
+
+                User createdUser = userService.register(newUsername, newPassword);
+                if (createdUser != null)
+                    System.out.println("Success: User registered with ID " + createdUser.getUserId());
+                else
+                    System.out.println("Error: Username already taken or invalid.");
+
+            // OPTION 2: LOGIN
+            } else if (choice == 2) {
+                System.out.print("Username: ");
+                String loginUsername = inputScanner.nextLine();
+                
+                // Securely read password
+                String loginPassword = readPasswordSecurely(inputScanner, "Password: ");
+
+                User result = userService.login(loginUsername, loginPassword);
+                if (result != null) {
+                    loggedInUser = result;
+                    System.out.println("Login successful! Welcome, " + loggedInUser.getUsername());
+                } else {
+                    System.out.println("Login failed. Invalid credentials.");
+                }
+
+            // OPTION 3: RESERVE SLOT (User Only)
+            } else if (choice == 3) {
+                if (loggedInUser == null || !Constants.ROLE_USER.equals(loggedInUser.getRole())) {
+                    System.out.println("Access Denied: Only logged-in Users can reserve slots.");
+                    continue;
+                }
+
+                // EXPIRE OLD BOOKINGS: Trigger cleanup before checking availability
+                parkingSystem.processExpirations();
+
+                int targetSlotId = readInt(inputScanner, "Enter slot ID to reserve: ");
+
+                try {
+                    Booking newBooking = parkingSystem.reserveSlot(targetSlotId, loggedInUser);
+                    System.out.println("Success: Booking created with ID: " + newBooking.getBookingId());
+                    System.out.println("NOTE: You have 1 minute to arrive before this booking expires.");
+                } catch (SlotNotAvailableException e) {
+                    System.out.println("Reservation failed: " + e.getMessage());
+                }
+
+            // OPTION 4: MARK ENTRY (Attendant/Admin Only)
+            } else if (choice == 4) {
+                if (loggedInUser == null || 
+                   (!Constants.ROLE_ATTENDANT.equals(loggedInUser.getRole()) && !Constants.ROLE_ADMIN.equals(loggedInUser.getRole()))) {
+                    System.out.println("Access Denied: Only Attendants or Admins can mark entries.");
+                    continue;
+                }
+
+                System.out.print("Enter booking ID or license plate to mark entry: ");
+                Booking booking = findBookingByIdOrPlate(parkingSystem, inputScanner.nextLine());
+                if (booking == null) {
+                    System.out.println("Error: Booking not found.");
+                } else {
+                    // Mark entry (timestamps handled inside Attendant class)
+                    GateOutcome outcome = parkingSystem.getAttendant().markEntry(booking);
+                    if (outcome.isSuccess()) {
+                        System.out.println("Entry recorded. Gate opened.");
+                    } else {
+                        System.out.println("[Error] Cannot mark entry for Booking ID " + booking.getBookingId() + ": "
+                                + outcome.getMessage() + " Current status: " + booking.getStatus() + ".");
+                    }
+                }
+
+            // OPTION 5: MARK EXIT (Attendant/Admin Only)
+            } else if (choice == 5) {
+                if (loggedInUser == null || 
+                   (!Constants.ROLE_ATTENDANT.equals(loggedInUser.getRole()) && !Constants.ROLE_ADMIN.equals(loggedInUser.getRole()))) {
+                    System.out.println("Access Denied: Only Attendants or Admins can mark exits.");
+                    continue;
+                }
+
+                System.out.print("Enter booking ID or license plate to mark exit: ");
+                Booking booking = findBookingByIdOrPlate(parkingSystem, inputScanner.nextLine());
+                if (booking == null) {
+                    System.out.println("Error: Booking not found.");
+                } else {
+                    // Mark exit (Duration calculation and Billing happens here)
+                    GateOutcome outcome = parkingSystem.getAttendant().markExit(booking);
+                    if (outcome.isSuccess()) {
+                        System.out.println("Exit recorded. Duration calculated.");
+                        System.out.printf("TOTAL AMOUNT DUE: $%.2f%n", booking.getAmountValue());
+                    } else {
+                        System.out.println("[Error] Cannot mark exit for Booking ID " + booking.getBookingId() + ": "
+                                + outcome.getMessage() + " Current status: " + booking.getStatus() + ".");
+                    }
+                }
+
+            // OPTION 6: SHOW SLOTS (Staff Only)
+            } else if (choice == 6) {
+                 // Check: Regular users shouldn't see global slot status (privacy/security)
+                 if (loggedInUser == null || Constants.ROLE_USER.equals(loggedInUser.getRole())) {
+                     System.out.println("Access Denied: Only Staff can view the master slot list.");
+                     continue;
+                 }
+
+                // EXPIRE OLD BOOKINGS: Ensure the list is up to date
+                parkingSystem.processExpirations();
+
+                System.out.println("\nLive Slot Status");
+                System.out.printf("%-5s | %-15s | %-10s%n", "ID", "Type", "Status");
+                
+                // Read from the published snapshot: a consistent view without locking
+                OccupancySnapshot snapshot = parkingSystem.getOccupancySnapshot();
+                
+                for (int i = 0; i < snapshot.getSlotCount(); i++) {
+                    String status = snapshot.isOccupied(i) ? "OCCUPIED" : "FREE";
+                    System.out.printf("%-5d | %-15s | %-10s%n", snapshot.getSlotId(i), snapshot.getSlotType(i), status);
+                }
+                System.out.println("Free: " + snapshot.getFreeCount() + " / " + snapshot.getSlotCount());
+
+            // OPTION 7: SHOW FEES (Public)
+            } else if (choice == 7) {
+                DynamicPricing.PriceTable prices = parkingSystem.getPriceTable();
+                System.out.println("\nCurrent Parking Fees (Per Minute)");
+                printFee("Compact Slot", prices, Constants.SLOT_CODE_COMPACT);
+                printFee("Regular Slot", prices, Constants.SLOT_CODE_REGULAR);
+                printFee("Large Slot", prices, Constants.SLOT_CODE_LARGE);
+                printFee("Handicapped Slot", prices, Constants.SLOT_CODE_HANDICAPPED);
+
+            // OPTION 8: SAVE (Admin Only)
+            } else if (choice == 8) {
+                if (loggedInUser == null || !Constants.ROLE_ADMIN.equals(loggedInUser.getRole())) {
+                    System.out.println("Access Denied: Only Administrators can save system data.");
+                    continue;
+                }
+                parkingSystem.saveBookingsToFile(Constants.FILE_BOOKINGS_TEXT);
+                System.out.println("System State saved to " + Constants.FILE_BOOKINGS_TEXT);
+
+            // OPTION 9: LOAD (Admin Only)
+            } else if (choice == 9) {
+                if (loggedInUser == null || !Constants.ROLE_ADMIN.equals(loggedInUser.getRole())) {
+                    System.out.println("Access Denied: Only Administrators can load system data.");
+                    continue;
+                }
+                parkingSystem.loadBookingsFromFile(Constants.FILE_BOOKINGS_TEXT);
+                System.out.println("System State loaded from " + Constants.FILE_BOOKINGS_TEXT);
+                
+             //OPTION 10: REGISTER STAFF (Admin Only)
+            } else if (choice == 10) {
+                    // Only Admins can create new staff/admin accounts
+                if (loggedInUser == null || !Constants.ROLE_ADMIN.equals(loggedInUser.getRole())) {
+                    System.out.println("Access Denied: Only Administrators can register staff.");
+                    continue;
+                }
+
+                System.out.print("Enter new staff username: ");
+                String staffUsername = inputScanner.nextLine();
+                    
+                String staffPassword = readPasswordSecurely(inputScanner, "Enter password for staff: ");
+                    
+                String selectedRole;
+                selectedRole = Constants.ROLE_ATTENDANT;
+
+                // Call the new overloaded register method
+                User createdStaff = userService.register(staffUsername, staffPassword, selectedRole);
+                
+                if (createdStaff != null) {
+                    System.out.println("Success: Staff user registered with role: " + createdStaff.getRole());
+                } else {
+                    System.out.println("Error: Username already taken or invalid.");
+                }
+
+            // OPTION 11: VIEW HISTORY (User Only)
+            } else if (choice == 11) {
+                 if (loggedInUser == null || !Constants.ROLE_USER.equals(loggedInUser.getRole())) {
+                    System.out.println("Access Denied: Only Users can view their personal history.");
+                    continue;
+                 }
+                 
+                 System.out.println("\nMy Booking History");
+                 parkingSystem.ensureHistoryLoaded();
+                 int[] myBookingIds = loggedInUser.getBookingIds();
+                 boolean found = false;
+                 if (myBookingIds != null) {
+                     for (int id : myBookingIds) {
+                         Booking b = parkingSystem.findBookingById(id);
+                         if (b != null) {
+                             System.out.println(b.toString()); // Prints booking details
+                             found = true;
+                         }
+                     }
+                 }
+                 if (!found) {
+                     System.out.println("No bookings found.");
+                 }
+
+            // OPTION 12: LOGOUT
+            } else if (choice == 12) {
+                if (loggedInUser != null) {
+                    System.out.println("User " + loggedInUser.getUsername() + " successfully logged out.");
+                    loggedInUser = null; // Resets the session
+                } else {
+                    System.out.println("No user is currently logged in.");
+                }
+
+            // OPTION 13: EXIT
+            } else if (choice == 13) {
+                System.out.println("Shutting down system. Goodbye!");
+                break;
+
+            // OPTION 14: REGISTER VEHICLE (User Only)
+            } else if (choice == 14) {
+                if (loggedInUser == null || !Constants.ROLE_USER.equals(loggedInUser.getRole())) {
+                    System.out.println("Access Denied: Only logged-in Users can register vehicles.");
+                    continue;
+                }
+
+                System.out.print("Enter license plate: ");
+                String plate = inputScanner.nextLine();
+                int kind = readInt(inputScanner, "Vehicle type (1 = Car, 2 = Motorcycle): ");
+                AbstractVehicle vehicle = (kind == 2) ? new Motorcycle(plate) : new Car(plate);
+
+                if (parkingSystem.registerVehicle(loggedInUser, vehicle)) {
+                    System.out.println("Success: " + vehicle.getType() + " " + LicensePlate.normalize(plate) + " registered.");
+                } else {
+                    System.out.println("Error: Invalid plate, or plate already registered to another user.");
+                }
+
+            // OPTION 15: RESERVE TIME WINDOW (User Only)
+            } else if (choice == 15) {
+                if (loggedInUser == null || !Constants.ROLE_USER.equals(loggedInUser.getRole())) {
+                    System.out.println("Access Denied: Only logged-in Users can reserve slots.");
+                    continue;
+                }
+
+                System.out.print("Slot type (COMPACT, REGULAR, LARGE, HANDICAPPED): ");
+                String slotType = inputScanner.nextLine().trim().toUpperCase();
+                System.out.print("Start (yyyy-MM-dd HH:mm): ");
+                String startText = inputScanner.nextLine().trim();
+                int hours = readInt(inputScanner, "Duration in hours: ");
+
+                try {
+                    long start = LocalDateTime.parse(startText, WINDOW_FORMAT)
+                                              .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                    long end = start + hours * 3600000L;
+                    Booking newBooking = parkingSystem.reserveWindow(slotType, start, end, loggedInUser);
+                    System.out.println("Success: Booking " + newBooking.getBookingId() + " holds slot " +
+                                       newBooking.getSlotId() + " from " + startText + " for " + hours + " h.");
+                } catch (DateTimeParseException e) {
+                    System.out.println("Invalid start time. Use the format yyyy-MM-dd HH:mm.");
+                } catch (SlotNotAvailableException e) {
+                    System.out.println("Reservation failed: " + e.getMessage());
+                }
+
+            } else {
+                System.out.println("Unknown choice. Please select a number from the menu.");
+            }
+        }
+
+        inputScanner.close();
+        shutdown(parkingSystem, userService, gateway, store, api, gates);
+    }
+
+    /*
+     * Helper method to stop the network servers and background workers and close the store.
+     */
+    private static void shutdown(ParkingSystem parkingSystem, UserService userService, LocalPaymentGateway gateway,
+                                 LogStructuredStore store, ApiServer api, GateServer gates) {
+        if (api != null) api.stop();
+        if (gates != null) gates.stop();
+        parkingSystem.stopCheckpointing();
+        SettlementPipeline settlement = parkingSystem.getSettlement();
+        if (settlement != null) {
+            try {
+                if (!settlement.awaitIdle(5000)) {
+                    System.out.println("[Warning] " + settlement.getOutstandingCount() + " payments still unsettled.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            parkingSystem.stopSettlement();
+            gateway.shutdown();
+            System.out.println("Settled " + settlement.getSettledCount() + " payments.");
+            if (settlement.getDeclinedCount() > 0 || settlement.getFailedCount() > 0) {
+                System.out.println("[Warning] " + settlement.getDeclinedCount() + " payments declined, "
+                        + settlement.getFailedCount() + " failed.");
+            }
+        }
+        if (store != null) {
+            // Let the store writers finish their queues; closing the store syncs its log
+            parkingSystem.setBookingStore(null);
+            userService.stopStoreSync();
+            try {
+                store.close();
+            } catch (java.io.IOException e) {
+                System.out.println("Error closing store: " + e.getMessage());
+            }
+        }
+    }
+
+    /*
+     * Helper method to run batch commands from a file, or from stdin for "-".
+     * System.out is buffered meanwhile, so the result lines and any messages
+     * from the services are written in large blocks instead of line by line.
+     */
+    private static void runBatch(String source, ParkingSystem parkingSystem, UserService userService) {
+        PrintStream console = System.out;
+        PrintStream buffered = new PrintStream(
+                new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+        System.setOut(buffered);
+
+        Reader input = null;
+        try {
+            input = "-".equals(source) ? new InputStreamReader(System.in) : new FileReader(source);
+            new BatchRunner(parkingSystem, userService, buffered).run(new BufferedReader(input, 1 << 16));
+        } catch (IOException e) {
+            buffered.println("[Error] Batch stopped: " + e.getMessage());
+        } finally {
+            buffered.flush();
+            System.setOut(console);
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    // nothing left to read
+                }
+            }
+        }
+    }
+
+    /*
+     * Helper method to read the value following a command line flag, or null.
+     */
+    private static String argValue(String[] args, String flag) {
+        if (args == null) return null;
+        for (int i = 0; i < args.length - 1; i++) {
+            if (flag.equals(args[i])) return args[i + 1];
+        }
+        return null;
+    }
+
+    /*
+     * Helper method to print one line of the fee table; a rate adjusted
+     * for occupancy shows its multiplier.
+     */
+    private static void printFee(String label, DynamicPricing.PriceTable prices, int typeCode) {
+        double multiplier = prices.getMultiplier(typeCode);
+        if (multiplier == 1.0) {
+            System.out.printf("%-20s : $%6.2f / min%n", label, prices.getRate(typeCode));
+        } else {
+            System.out.printf("%-20s : $%6.2f / min (x%.2f, occupancy)%n", label, prices.getRate(typeCode), multiplier);
+        }
+    }
+
+    /*
+     * Helper method to check for a command line flag without a value.
+     */
+    private static boolean hasFlag(String[] args, String flag) {
+        if (args == null) return false;
+        for (int i = 0; i < args.length; i++) {
+            if (flag.equals(args[i])) return true;
+        }
+        return false;
+    }
+
+    /*
+     * Helper method to look a booking up by numeric ID, or else by the
+     * license plate of a registered vehicle with an open booking
+     * (all-digit plates are tried as a booking ID first).
+     */
+    private static Booking findBookingByIdOrPlate(ParkingSystem parkingSystem, String input) {
+        String text = input.trim();
+        Booking booking = null;
+        try {
+            booking = parkingSystem.findBookingById(Integer.parseInt(text));
+        } catch (NumberFormatException e) {
+            // not an ID
+        }
+        return (booking != null) ? booking : parkingSystem.findOpenBookingByPlate(text);
+    }
+
+    /*
+     * Helper method to read integers safely from the scanner.
+     * Prevents the application from crashing if non-numeric input is entered.
+     */
+    private static int readInt(Scanner scanner, String prompt) {
+        while (true) {
+            System.out.print(prompt);
+            String line = scanner.nextLine();
+            try {
+                return Integer.parseInt(line.trim());
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input. Please enter a valid number.");
+            }
+        }
+    }
+
+    /*
+     * Helper method to read passwords securely.
+     * Uses System.console() to mask characters if available (Command Prompt).
+     * Falls back to standard Scanner input if running in an IDE (where Console is null).
+     */
+    private static String readPasswordSecurely(Scanner scanner, String prompt) {
+        System.out.print(prompt);
+        
+        // Attempt to get the system console
+        Console systemConsole = System.console();
+        
+        if (systemConsole != null) {
+            char[] passwordArray = systemConsole.readPassword();
+            if (passwordArray != null) {
+                return new String(passwordArray);
+            }
+            return "";
+        } else {
+            return scanner.nextLine();
+        }
+    }
 }
\ No newline at end of file
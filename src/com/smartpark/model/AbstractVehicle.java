@@ -1,50 +1,65 @@
-package com.smartpark.model;
-
-/*
- * Abstract base class for different vehicle types.
- * - Demonstrates an abstract class
- * - Provides overloaded constructors
- */
-public abstract class AbstractVehicle {
-    private String licensePlate;
-    private String ownerName;
-
-    /*
-     * Constructor: create vehicle with license plate only.
-     * Owner name will be set to an empty string.
-     */
-    public AbstractVehicle(String licensePlate) {
-        this.licensePlate = licensePlate;
-        this.ownerName = "";
-    }
-
-    /*
-     * Overloaded constructor: create vehicle with license plate and owner name.
-     */
-    public AbstractVehicle(String licensePlate, String ownerName) {
-        this.licensePlate = licensePlate;
-        this.ownerName = ownerName;
-    }
-
-    /*
-     * Return the vehicle type as a String.
-     * This is abstract so subclasses must provide their specific type string.
-     */
-    public abstract String getType();
-    
-    public String getLicensePlate() {
-        return licensePlate;
-    }
-
-    public void setLicensePlate(String licensePlate) {
-        this.licensePlate = licensePlate;
-    }
-
-    public String getOwnerName() {
-        return ownerName;
-    }
-
-    public void setOwnerName(String ownerName) {
-        this.ownerName = ownerName;
-    }
+package com.smartpark.model;
+
+/*
+ * Abstract base class for different vehicle types.
+ * - Demonstrates an abstract class
+ * - Provides overloaded constructors
+ */
+public abstract class AbstractVehicle {
+    private String licensePlate;
+    private String ownerName;
+    private String sizeClass;   // Constants.SIZE_*; subclasses set their usual size
+
+    /*
+     * Constructor: create vehicle with license plate only.
+     * Owner name will be set to an empty string.
+     */
+    public AbstractVehicle(String licensePlate) {
+        this.licensePlate = licensePlate;
+        this.ownerName = "";
+        this.sizeClass = Constants.SIZE_MEDIUM;
+    }
+
+    /*
+     * Overloaded constructor: create vehicle with license plate and owner name.
+     */
+    public AbstractVehicle(String licensePlate, String ownerName) {
+        this.licensePlate = licensePlate;
+        this.ownerName = ownerName;
+        this.sizeClass = Constants.SIZE_MEDIUM;
+    }
+
+    /*
+     * Return the vehicle type as a String.
+     * This is abstract so subclasses must provide their specific type string.
+     */
+    public abstract String getType();
+    
+    public String getLicensePlate() {
+        return licensePlate;
+    }
+
+    public void setLicensePlate(String licensePlate) {
+        this.licensePlate = licensePlate;
+    }
+
+    /*
+     * Size class (Constants.SIZE_SMALL, SIZE_MEDIUM or SIZE_LARGE) used
+     * to choose a fitting slot.
+     */
+    public String getSizeClass() {
+        return sizeClass;
+    }
+
+    public void setSizeClass(String sizeClass) {
+        this.sizeClass = sizeClass;
+    }
+
+    public String getOwnerName() {
+        return ownerName;
+    }
+
+    public void setOwnerName(String ownerName) {
+        this.ownerName = ownerName;
+    }
 }
\ No newline at end of file
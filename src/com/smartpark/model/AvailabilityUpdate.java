@@ -0,0 +1,61 @@
+package com.smartpark.model;
+
+/*
+ * Immutable batch of availability changes for one subscription scope
+ * (the whole lot, one slot type or one zone).
+ *
+ * Changes are coalesced: a slot that was taken and freed again within the
+ * same batch does not appear at all. The same instance is handed to every
+ * subscriber of the scope, so it must never be modified.
+ */
+public final class AvailabilityUpdate {
+
+    // SCOPES
+    public static final String SCOPE_LOT = "LOT";
+    public static final String SCOPE_TYPE = "TYPE";
+    public static final String SCOPE_ZONE = "ZONE";
+
+    private final String scope;
+    private final String key;            // slot type or zone name; empty for the whole lot
+    private final long sequence;         // dispatch round that produced this update
+    private final int freeCount;
+    private final int totalCount;
+    private final int[] freedSlotIds;
+    private final int[] takenSlotIds;
+
+    public AvailabilityUpdate(String scope, String key, long sequence, int freeCount, int totalCount,
+                              int[] freedSlotIds, int[] takenSlotIds) {
+        this.scope = scope;
+        this.key = key;
+        this.sequence = sequence;
+        this.freeCount = freeCount;
+        this.totalCount = totalCount;
+        this.freedSlotIds = freedSlotIds;
+        this.takenSlotIds = takenSlotIds;
+    }
+
+    public String getScope() { return scope; }
+    public String getKey() { return key; }
+    public long getSequence() { return sequence; }
+    public int getFreeCount() { return freeCount; }
+    public int getTotalCount() { return totalCount; }
+
+    /*
+     * Slots that became free since the previous update of this scope.
+     */
+    public int getFreedSlotCount() { return freedSlotIds.length; }
+    public int getFreedSlotId(int i) { return freedSlotIds[i]; }
+
+    /*
+     * Slots that became occupied since the previous update of this scope.
+     */
+    public int getTakenSlotCount() { return takenSlotIds.length; }
+    public int getTakenSlotId(int i) { return takenSlotIds[i]; }
+
+    @Override
+    public String toString() {
+        return "AvailabilityUpdate[" + scope + (key.length() == 0 ? "" : ":" + key) +
+               ", seq=" + sequence + ", free=" + freeCount + "/" + totalCount +
+               ", freed=" + freedSlotIds.length + ", taken=" + takenSlotIds.length + "]";
+    }
+}
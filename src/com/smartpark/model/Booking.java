@@ -1,133 +1,258 @@
-package com.smartpark.model;
-
-/*
- * Represents a reservation or completed parking session.
- * Stores user details, slot assignment, status, and timestamps for billing.
- */
-public class Booking {
-
-    private Integer bookingId;        // Unique identifier for the booking
-    private String username;          // Name of the user who made the booking
-    private int slotId;               // ID of the assigned parking slot
-    private String status;            // PENDING, ACTIVE, COMPLETED, CANCELLED
-    private Double amount;            // Final fee charged (null until exit)
-
-    // TIMESTAMPS FOR TRACKING AND BILLING
-    private long creationTime;        // When the booking was made (for auto-expiration)
-    private long entryTime;           // When the vehicle physically entered
-    private long exitTime;            // When the vehicle physically exited
-
-    /*
-     * Constructor 1: Basic booking creation.
-     * Captures the creation timestamp immediately.
-     */
-    public Booking(String username, int slotId) {
-        this.bookingId = null;
-        this.username = username;
-        this.slotId = slotId;
-        this.status = Constants.STATUS_PENDING;
-        this.amount = null;
-        
-        // Initialize timestamps
-        this.creationTime = System.currentTimeMillis();
-        this.entryTime = 0;
-        this.exitTime = 0;
-    }
-
-    /*
-     * Constructor 2: Overloaded constructor with specific booking ID.
-     * Useful for loading data or testing.
-     */
-    public Booking(Integer bookingId, String username, int slotId) {
-        this.bookingId = bookingId;
-        this.username = username;
-        this.slotId = slotId;
-        this.status = Constants.STATUS_PENDING;
-        this.amount = null;
-        
-        this.creationTime = System.currentTimeMillis();
-        this.entryTime = 0;
-        this.exitTime = 0;
-    }
-
-    // GETTERS AND SETTERS
-
-    public Integer getBookingId() {
-        return bookingId;
-    }
-
-    public void setBookingId(Integer bookingId) {
-        this.bookingId = bookingId;
-    }
-
-    public String getUsername() {
-        return username;
-    }
-
-    public void setUsername(String username) {
-        this.username = username;
-    }
-
-    public int getSlotId() {
-        return slotId;
-    }
-
-    public void setSlotId(int slotId) {
-        this.slotId = slotId;
-    }
-
-    public String getStatus() {
-        return status;
-    }
-
-    public void setStatus(String status) {
-        this.status = status;
-    }
-
-    public Double getAmount() {
-        return amount;
-    }
-
-    public void setAmount(Double amount) {
-        this.amount = amount;
-    }
-
-    // TIMESTAMP ACCESSORS
-
-    public long getCreationTime() {
-        return creationTime;
-    }
-
-    public void setCreationTime(long creationTime) {
-        this.creationTime = creationTime;
-    }
-
-    public long getEntryTime() {
-        return entryTime;
-    }
-
-    public void setEntryTime(long entryTime) {
-        this.entryTime = entryTime;
-    }
-
-    public long getExitTime() {
-        return exitTime;
-    }
-
-    public void setExitTime(long exitTime) {
-        this.exitTime = exitTime;
-    }
-
-    @Override
-    public String toString() {
-        String idStr = (bookingId == null) ? "unassigned" : String.valueOf(bookingId);
-        String amtStr = (amount == null) ? "pending" : String.format("$%.2f", amount);
-        String userStr = (username == null) ? "unknown" : username;
-
-        return "Booking[id=" + idStr +
-               ", user=" + userStr +
-               ", slot=" + slotId +
-               ", status=" + status +
-               ", amount=" + amtStr + "]";
-    }
+package com.smartpark.model;
+
+/*
+ * Represents a reservation or completed parking session.
+ * Stores user details, slot assignment, status, and timestamps for billing.
+ *
+ * Status is held as a Symbols code; the getter hands out the shared
+ * String instance. The username is kept as given: bookings made for a
+ * User share its name instance, and loaders share one instance per name
+ * within a load, so thousands of bookings of one user do not each carry
+ * a copy. Usernames stay out of the global symbol table, which never
+ * releases anything.
+ */
+public class Booking {
+
+    private Integer bookingId;        // Unique identifier for the booking
+    private String username;          // User who made the booking
+    private int slotId;               // ID of the assigned parking slot
+    private int statusCode;           // Constants.STATUS_CODE_* (PENDING, ACTIVE, COMPLETED, CANCELLED)
+    private double amount;            // Final fee charged (valid once hasAmount is set)
+    private boolean hasAmount;        // false until exit
+    private long plateCode;           // LicensePlate code of the linked vehicle (NONE if none)
+
+    // TIMESTAMPS FOR TRACKING AND BILLING
+    private long creationTime;        // When the booking was made (for auto-expiration)
+    private long entryTime;           // When the vehicle physically entered
+    private long exitTime;            // When the vehicle physically exited
+
+    // RESERVED TIME WINDOW (both 0 for a booking that starts now)
+    private long windowStart;         // Start of the reserved window [windowStart, windowEnd)
+    private long windowEnd;
+
+    /*
+     * Constructor 1: Basic booking creation.
+     * Captures the creation timestamp immediately.
+     */
+    public Booking(String username, int slotId) {
+        this.bookingId = null;
+        this.username = username;
+        this.slotId = slotId;
+        this.statusCode = Constants.STATUS_CODE_PENDING;
+        this.hasAmount = false;
+        
+        // Initialize timestamps
+        this.creationTime = System.currentTimeMillis();
+        this.entryTime = 0;
+        this.exitTime = 0;
+    }
+
+    /*
+     * Constructor 2: Overloaded constructor with specific booking ID.
+     * Useful for loading data or testing.
+     */
+    public Booking(Integer bookingId, String username, int slotId) {
+        this.bookingId = bookingId;
+        this.username = username;
+        this.slotId = slotId;
+        this.statusCode = Constants.STATUS_CODE_PENDING;
+        this.hasAmount = false;
+        
+        this.creationTime = System.currentTimeMillis();
+        this.entryTime = 0;
+        this.exitTime = 0;
+    }
+
+    // GETTERS AND SETTERS
+
+    public Integer getBookingId() {
+        return bookingId;
+    }
+
+    public void setBookingId(Integer bookingId) {
+        this.bookingId = bookingId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public int getSlotId() {
+        return slotId;
+    }
+
+    public void setSlotId(int slotId) {
+        this.slotId = slotId;
+    }
+
+    public String getStatus() {
+        return Symbols.name(statusCode);
+    }
+
+    public void setStatus(String status) {
+        this.statusCode = Symbols.code(status);
+    }
+
+    /*
+     * Status as one of the Constants.STATUS_CODE_* values (int compare on hot paths).
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    public boolean hasStatus(int code) {
+        return statusCode == code;
+    }
+
+    /*
+     * STATUS TRANSITIONS
+     * The gate and expiry paths move a booking only along these edges:
+     *
+     *   SCHEDULED -> PENDING    its window begins
+     *   SCHEDULED -> CANCELLED  window cancelled or missed
+     *   PENDING   -> ACTIVE     entry
+     *   PENDING   -> CANCELLED  expired or cancelled
+     *   ACTIVE    -> COMPLETED  exit
+     *
+     * Restores (files, stores, a primary) copy the status as given instead.
+     */
+    private static final boolean[][] TRANSITIONS = new boolean[Constants.STATUS_CODE_SCHEDULED + 1][Constants.STATUS_CODE_SCHEDULED + 1];
+    static {
+        TRANSITIONS[Constants.STATUS_CODE_SCHEDULED][Constants.STATUS_CODE_PENDING] = true;
+        TRANSITIONS[Constants.STATUS_CODE_SCHEDULED][Constants.STATUS_CODE_CANCELLED] = true;
+        TRANSITIONS[Constants.STATUS_CODE_PENDING][Constants.STATUS_CODE_ACTIVE] = true;
+        TRANSITIONS[Constants.STATUS_CODE_PENDING][Constants.STATUS_CODE_CANCELLED] = true;
+        TRANSITIONS[Constants.STATUS_CODE_ACTIVE][Constants.STATUS_CODE_COMPLETED] = true;
+    }
+
+    public static boolean isLegalTransition(int fromCode, int toCode) {
+        return fromCode >= 0 && fromCode < TRANSITIONS.length && toCode >= 0 && toCode < TRANSITIONS.length
+            && TRANSITIONS[fromCode][toCode];
+    }
+
+    /*
+     * True if the booking may move to the given status from its current one.
+     */
+    public boolean canMoveTo(int toCode) {
+        return isLegalTransition(statusCode, toCode);
+    }
+
+    /*
+     * Move to the given status if that is a legal transition; returns false
+     * (and changes nothing) otherwise.
+     */
+    public boolean moveTo(int toCode) {
+        if (!isLegalTransition(statusCode, toCode)) return false;
+        statusCode = toCode;
+        return true;
+    }
+
+    /*
+     * Final fee, or null until exit. Boxes on every call; hot paths use
+     * hasAmount() and getAmountValue() instead.
+     */
+    public Double getAmount() {
+        return hasAmount ? Double.valueOf(amount) : null;
+    }
+
+    public void setAmount(Double amount) {
+        this.hasAmount = (amount != null);
+        this.amount = (amount == null) ? 0.0 : amount.doubleValue();
+    }
+
+    public void setAmount(double amount) {
+        this.amount = amount;
+        this.hasAmount = true;
+    }
+
+    public boolean hasAmount() {
+        return hasAmount;
+    }
+
+    public double getAmountValue() {
+        return amount;
+    }
+
+    /*
+     * Plate of the vehicle this booking is linked to, or null if none.
+     */
+    public String getLicensePlate() {
+        return LicensePlate.decode(plateCode);
+    }
+
+    public long getPlateCode() {
+        return plateCode;
+    }
+
+    public void setPlateCode(long plateCode) {
+        this.plateCode = plateCode;
+    }
+
+    // TIMESTAMP ACCESSORS
+
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    public void setCreationTime(long creationTime) {
+        this.creationTime = creationTime;
+    }
+
+    public long getEntryTime() {
+        return entryTime;
+    }
+
+    public void setEntryTime(long entryTime) {
+        this.entryTime = entryTime;
+    }
+
+    public long getExitTime() {
+        return exitTime;
+    }
+
+    public void setExitTime(long exitTime) {
+        this.exitTime = exitTime;
+    }
+
+    public long getWindowStart() {
+        return windowStart;
+    }
+
+    public long getWindowEnd() {
+        return windowEnd;
+    }
+
+    public void setWindow(long windowStart, long windowEnd) {
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+    }
+
+    /*
+     * True for an advance booking of a time window.
+     */
+    public boolean hasWindow() {
+        return windowEnd > 0;
+    }
+
+    @Override
+    public String toString() {
+        String idStr = (bookingId == null) ? "unassigned" : String.valueOf(bookingId);
+        String amtStr = hasAmount ? String.format("$%.2f", amount) : "pending";
+        String username = getUsername();
+        String userStr = (username == null) ? "unknown" : username;
+
+        return "Booking[id=" + idStr +
+               ", user=" + userStr +
+               ", slot=" + slotId +
+               ", status=" + getStatus() +
+               ", amount=" + amtStr + "]";
+    }
 }
\ No newline at end of file
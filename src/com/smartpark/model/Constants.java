@@ -1,57 +1,211 @@
-package com.smartpark.model;
-
-/*
- * Stores all constant values used throughout the Smart Parking System.
- * This class acts as a central configuration file for roles, slot types, 
- * status flags, billing rates, and system timeouts.
- */
-public final class Constants {
-
-    // Private constructor prevents instantiation of this utility class
-    private Constants() { }
-
-    /*
-     * USER ROLES
-     * Defines the hierarchy of access within the application.
-    */
-    
-    public static final String ROLE_ADMIN = "ADMIN";          // Full system access (Infrastructure, Files)
-    public static final String ROLE_ATTENDANT = "ATTENDANT";  // Operational access (Gates, Payments)
-    public static final String ROLE_USER = "USER";            // Customer access (Reservations, History)
-
-    /* PARKING SLOT TYPES
-     * Categorizes the physical spaces available in the lot.
-     */
-    public static final String SLOT_COMPACT = "COMPACT";
-    public static final String SLOT_REGULAR = "REGULAR";
-    public static final String SLOT_LARGE = "LARGE";
-    public static final String SLOT_HANDICAPPED = "HANDICAPPED";
-
-    /* BOOKING STATUS FLAGS
-     * Tracks the lifecycle of a vehicle's stay.
-     */
-    public static final String STATUS_PENDING = "PENDING";     // User reserved, but hasn't arrived yet
-    public static final String STATUS_ACTIVE = "ACTIVE";       // Vehicle is currently parked inside
-    public static final String STATUS_CANCELLED = "CANCELLED"; // Booking expired or was manually cancelled
-    public static final String STATUS_COMPLETED = "COMPLETED"; // Vehicle exited and payment processed
-
-    /*
-     * BILLING RATES (PER MINUTE)
-     * Fees are calculated by multiplying the duration in minutes by this rate.
-     */
-    public static final double RATE_COMPACT_FEE = 7.0;       // Cost per minute for compact cars
-    public static final double RATE_REGULAR_FEE = 10.0;      // Cost per minute for regular cars
-    public static final double RATE_LARGE_FEE = 20.0;        // Cost per minute for large vehicles
-    public static final double RATE_HANDICAPPED_FEE = 5.0;   // Discounted rate per minute
-
-    /*
-     * SYSTEM CONFIGURATION
-     * File paths and logic thresholds.
-     */
-    
-    // The filename used for persisting booking data
-    public static final String FILE_BOOKINGS_TEXT = "bookings.txt";
-
-    // Auto-Expiration Timeout: 1 Minute (in milliseconds)
-    public static final long BOOKING_TIMEOUT_MS = 60000;
-}
\ No newline at end of file
+package com.smartpark.model;
+
+/*
+ * Stores all constant values used throughout the Smart Parking System.
+ * This class acts as a central configuration file for roles, slot types, 
+ * status flags, billing rates, and system timeouts.
+ */
+public final class Constants {
+
+    // Private constructor prevents instantiation of this utility class
+    private Constants() { }
+
+    /*
+     * USER ROLES
+     * Defines the hierarchy of access within the application.
+    */
+    
+    public static final String ROLE_ADMIN = "ADMIN";          // Full system access (Infrastructure, Files)
+    public static final String ROLE_ATTENDANT = "ATTENDANT";  // Operational access (Gates, Payments)
+    public static final String ROLE_USER = "USER";            // Customer access (Reservations, History)
+
+    /* PARKING SLOT TYPES
+     * Categorizes the physical spaces available in the lot.
+     */
+    public static final String SLOT_COMPACT = "COMPACT";
+    public static final String SLOT_REGULAR = "REGULAR";
+    public static final String SLOT_LARGE = "LARGE";
+    public static final String SLOT_HANDICAPPED = "HANDICAPPED";
+
+    // Fixed symbol codes of the standard slot types (see Symbols)
+    public static final int SLOT_CODE_COMPACT = 4;
+    public static final int SLOT_CODE_REGULAR = 5;
+    public static final int SLOT_CODE_LARGE = 6;
+    public static final int SLOT_CODE_HANDICAPPED = 7;
+
+    /* VEHICLE SIZE CLASSES
+     * How much space a vehicle needs; decides which slot types it may use.
+     */
+    public static final String SIZE_SMALL = "SMALL";   // Motorcycles, scooters
+    public static final String SIZE_MEDIUM = "MEDIUM"; // Ordinary cars
+    public static final String SIZE_LARGE = "LARGE";   // Vans, SUVs, pickups
+
+    /* BOOKING STATUS FLAGS
+     * Tracks the lifecycle of a vehicle's stay.
+     */
+    public static final String STATUS_PENDING = "PENDING";     // User reserved, but hasn't arrived yet
+    public static final String STATUS_ACTIVE = "ACTIVE";       // Vehicle is currently parked inside
+    public static final String STATUS_CANCELLED = "CANCELLED"; // Booking expired or was manually cancelled
+    public static final String STATUS_COMPLETED = "COMPLETED"; // Vehicle exited and payment processed
+    public static final String STATUS_SCHEDULED = "SCHEDULED"; // Booked for a future time window
+
+    // Fixed symbol codes of the statuses (see Symbols); used for fast checks and on disk
+    public static final int STATUS_CODE_PENDING = 0;
+    public static final int STATUS_CODE_ACTIVE = 1;
+    public static final int STATUS_CODE_CANCELLED = 2;
+    public static final int STATUS_CODE_COMPLETED = 3;
+    public static final int STATUS_CODE_SCHEDULED = 8; // added after the slot types, see Symbols
+
+    /*
+     * BILLING RATES (PER MINUTE)
+     * Fees are calculated by multiplying the duration in minutes by this rate.
+     */
+    public static final double RATE_COMPACT_FEE = 7.0;       // Cost per minute for compact cars
+    public static final double RATE_REGULAR_FEE = 10.0;      // Cost per minute for regular cars
+    public static final double RATE_LARGE_FEE = 20.0;        // Cost per minute for large vehicles
+    public static final double RATE_HANDICAPPED_FEE = 5.0;   // Discounted rate per minute
+
+    /*
+     * SYSTEM CONFIGURATION
+     * File paths and logic thresholds.
+     */
+    
+    // The filename used for persisting booking data
+    public static final String FILE_BOOKINGS_TEXT = "bookings.txt";
+
+    // Auto-Expiration Timeout: 1 Minute (in milliseconds)
+    public static final long BOOKING_TIMEOUT_MS = 60000;
+
+    /*
+     * ANPR GATES
+     * Largest edit distance (after folding look-alike characters such as
+     * O/0 and B/8) at which a misread plate is still matched to a booking.
+     */
+    public static final int PLATE_MAX_EDIT_DISTANCE = 2;
+
+    /*
+     * SLOT LAYOUT
+     * Distance (in the same unit as slot and gate x/y positions) counted for
+     * changing level when looking for the nearest free slot to a gate.
+     */
+    public static final double LAYOUT_LEVEL_DISTANCE = 50.0;
+
+    /*
+     * AVAILABILITY UPDATES
+     * Minimum time between two pushes to availability subscribers.
+     */
+    public static final long AVAILABILITY_UPDATE_INTERVAL_MS = 250;
+
+    /*
+     * OCCUPANCY SNAPSHOTS
+     * Gate entries and exits leave publishing to a background thread, which
+     * publishes their changes this often and stops after being idle for
+     * the idle time (the next gate change starts it again).
+     */
+    public static final long SNAPSHOT_PUBLISH_INTERVAL_MS = 50;
+    public static final long SNAPSHOT_PUBLISHER_IDLE_MS = 5000;
+
+    /*
+     * REPLICATION
+     * The primary sends a heartbeat when idle; a standby that hears nothing
+     * for the timeout treats the primary as lost.
+     */
+    public static final long REPLICATION_HEARTBEAT_MS = 1000;
+    public static final long REPLICATION_TIMEOUT_MS = 3000;
+
+    /*
+     * USER CACHE
+     * Users kept in memory when UserService is backed by a UserStore;
+     * the least recently used ones beyond this are dropped from memory.
+     */
+    public static final int USER_CACHE_SIZE = 10000;
+
+    /*
+     * BOOKING STORE
+     * Booking writes queued for the store writer before changes have to wait
+     * for it, and the most writes it makes per sync of the store.
+     */
+    public static final int STORE_QUEUE_CAPACITY = 65536;
+    public static final int STORE_WRITE_BATCH = 512;
+
+    /*
+     * CHECKPOINTING
+     * Default spacing of background checkpoints of the bookings file, and the
+     * number of booking changes that triggers one early.
+     */
+    public static final long CHECKPOINT_INTERVAL_MS = 30000;
+    public static final int CHECKPOINT_CHANGE_COUNT = 500;
+    // Bookings read per batch (and per lock hold) when a warm start loads its history
+    public static final int HISTORY_LOAD_BATCH = 1024;
+
+    /*
+     * BOOKING QUERIES
+     * Arguments of ParkingSystem.queryBookings.
+     */
+    public static final int QUERY_ANY = -1;         // any status / any slot / no time range
+    public static final int QUERY_BY_CREATION = 0;  // time range over the creation time
+    public static final int QUERY_BY_ENTRY = 1;     // time range over the entry time
+
+    /*
+     * SETTLEMENT
+     * Batching, pipelining and retry limits for sending payments to the gateway.
+     */
+    public static final int SETTLEMENT_BATCH_SIZE = 50;
+    public static final long SETTLEMENT_LINGER_MS = 5;
+    public static final int SETTLEMENT_MAX_IN_FLIGHT = 4;
+    public static final int SETTLEMENT_MAX_ATTEMPTS = 6;
+    public static final long SETTLEMENT_RETRY_BASE_MS = 200;
+    // How long, and for how many intents, final settlement states are remembered
+    public static final long SETTLEMENT_STATE_RETENTION_MS = 60 * 60 * 1000;
+    public static final int SETTLEMENT_STATE_CAPACITY = 100000;
+
+    /*
+     * GATE COMMAND DEDUPLICATION
+     * How many recent request ids are remembered, and for how long.
+     */
+    public static final int GATE_DEDUP_CAPACITY = 100000;
+    public static final long GATE_DEDUP_TTL_MS = 10 * 60 * 1000;
+
+    /*
+     * ADMISSION CONTROL
+     * Reservation rate limits (whole system and per user) and the number of
+     * PENDING bookings one user may hold at a time.
+     */
+    public static final double GLOBAL_RESERVATIONS_PER_SECOND = 200.0;
+    public static final double GLOBAL_RESERVATION_BURST = 400.0;
+    public static final double USER_RESERVATIONS_PER_MINUTE = 6.0;
+    public static final double USER_RESERVATION_BURST = 3.0;
+    public static final int MAX_PENDING_PER_USER = 2;
+    public static final int ADMISSION_SWEEP_STEP = 4;      // Users checked for idleness per admit()
+
+    /*
+     * GATE CONTROLLERS
+     * Size of each of the two direct buffers (requests in, replies out)
+     * a GateServer connection gets.
+     */
+    public static final int GATE_BUFFER_BYTES = 16 * 1024;
+
+    /*
+     * HTTP API
+     * Largest accepted request body, connections the OS may queue before
+     * they are accepted, and the pool size used when the JDK has no virtual
+     * threads.
+     */
+    public static final int API_MAX_BODY_BYTES = 8192;
+    public static final int API_BACKLOG = 1024;
+    public static final int API_FALLBACK_THREADS = 64;
+    // Login tokens: idle and absolute lifetime, and how many are held at most
+    public static final long API_SESSION_IDLE_MS = 30 * 60 * 1000;
+    public static final long API_SESSION_MAX_AGE_MS = 12 * 60 * 60 * 1000;
+    public static final int API_MAX_SESSIONS = 100000;
+
+    /*
+     * DYNAMIC PRICING
+     * Occupancy share of a slot type above which its rate surges, and below
+     * which it is discounted, with the multipliers applied to the base rate.
+     */
+    public static final double PRICING_SURGE_ABOVE = 0.85;
+    public static final double PRICING_DISCOUNT_BELOW = 0.15;
+    public static final double PRICING_SURGE_MULTIPLIER = 1.5;
+    public static final double PRICING_DISCOUNT_MULTIPLIER = 0.8;
+}
@@ -0,0 +1,33 @@
+package com.smartpark.model;
+
+/*
+ * Result of a gate command (entry or exit), so callers can tell a
+ * replayed duplicate or a rejected command apart from success.
+ * Ordinals are sent over the wire (GateProtocol): only append new values.
+ */
+public enum GateOutcome {
+
+    SUCCESS("Done."),
+    BOOKING_NOT_FOUND("Booking not found."),
+    INVALID_STATE("The booking's status does not allow this command."),
+    SLOT_NOT_FOUND("The booking's slot does not exist."),
+    INVALID_TIME("Time missing, or the entry is after the exit."),
+    REQUEST_ID_CONFLICT("Request id already used for a different command.");
+
+    private final String message;
+
+    GateOutcome(String message) {
+        this.message = message;
+    }
+
+    public boolean isSuccess() {
+        return this == SUCCESS;
+    }
+
+    /*
+     * Text for people (CLI, logs); the gate paths themselves print nothing.
+     */
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,69 @@
+package com.smartpark.model;
+
+/*
+ * Normalization and compact encoding of license plates.
+ *
+ * A plate is normalized by dropping spaces, '-' and '.', and upper-casing
+ * letters, so "ab-12 cd" and "AB12CD" are the same plate. The normalized
+ * plate (digits and A-Z, at most MAX_LENGTH characters) is packed into a
+ * long in base 37, with every character counted from 1 so "0A" and "A"
+ * stay distinct. Encoding walks the characters once and allocates nothing,
+ * which keeps plate lookups from ANPR gates cheap.
+ */
+public final class LicensePlate {
+
+    public static final long NONE = 0;      // empty plate / no plate
+    public static final long INVALID = -1;  // characters or length not allowed
+    public static final int MAX_LENGTH = 12; // 37^12 still fits in a long
+
+    private static final int RADIX = 37;
+
+    private LicensePlate() { }
+
+    /*
+     * Encoded plate, NONE for null or empty, INVALID if it cannot be encoded.
+     */
+    public static long encode(CharSequence plate) {
+        if (plate == null) return NONE;
+        long code = 0;
+        int length = 0;
+        for (int i = 0; i < plate.length(); i++) {
+            int v = valueOf(plate.charAt(i));
+            if (v == 0) continue;      // separator
+            if (v < 0 || ++length > MAX_LENGTH) return INVALID;
+            code = code * RADIX + v;
+        }
+        return code;
+    }
+
+    /*
+     * Normalized plate text for an encoded plate, or null for NONE/INVALID.
+     */
+    public static String decode(long code) {
+        if (code <= 0) return null;
+        char[] chars = new char[MAX_LENGTH];
+        int pos = MAX_LENGTH;
+        while (code > 0) {
+            int v = (int) (code % RADIX);
+            chars[--pos] = (v <= 10) ? (char) ('0' + v - 1) : (char) ('A' + v - 11);
+            code /= RADIX;
+        }
+        return new String(chars, pos, MAX_LENGTH - pos);
+    }
+
+    /*
+     * Normalized form of a plate, or null if it cannot be encoded.
+     */
+    public static String normalize(CharSequence plate) {
+        return decode(encode(plate));
+    }
+
+    // 1..10 for digits, 11..36 for letters, 0 for separators, -1 otherwise
+    private static int valueOf(char c) {
+        if (c >= '0' && c <= '9') return c - '0' + 1;
+        if (c >= 'A' && c <= 'Z') return c - 'A' + 11;
+        if (c >= 'a' && c <= 'z') return c - 'a' + 11;
+        if (c == ' ' || c == '-' || c == '.') return 0;
+        return -1;
+    }
+}
@@ -0,0 +1,63 @@
+package com.smartpark.model;
+
+/*
+ * A charge or refund waiting to be settled with the payment gateway.
+ * Immutable; retries reuse the same intent so the idempotency key stays put.
+ */
+public class PaymentIntent {
+
+    public static final String KIND_CHARGE = "CHARGE";
+    public static final String KIND_REFUND = "REFUND";
+
+    private final String idempotencyKey;
+    private final int bookingId;
+    private final String username;
+    private final String kind;
+    private final double amount;
+    private final long createdAt;
+
+    public PaymentIntent(String idempotencyKey, int bookingId, String username, String kind, double amount) {
+        this.idempotencyKey = idempotencyKey;
+        this.bookingId = bookingId;
+        this.username = username;
+        this.kind = kind;
+        this.amount = amount;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    /*
+     * Charge for a completed booking. One per booking, so the key is
+     * derived from the booking id alone.
+     */
+    public static PaymentIntent charge(Booking booking, double amount) {
+        int id = booking.getBookingId().intValue();
+        return new PaymentIntent(chargeKey(id), id, booking.getUsername(), KIND_CHARGE, amount);
+    }
+
+    public static String chargeKey(int bookingId) {
+        return "CHG-" + bookingId;
+    }
+
+    /*
+     * Refund for a booking; the amount (in cents) is part of the key so
+     * two different refunds on one booking are not merged.
+     */
+    public static PaymentIntent refund(Booking booking, double amount) {
+        int id = booking.getBookingId().intValue();
+        long cents = Math.round(amount * 100);
+        return new PaymentIntent("REF-" + id + "-" + cents, id, booking.getUsername(), KIND_REFUND, amount);
+    }
+
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public int getBookingId() { return bookingId; }
+    public String getUsername() { return username; }
+    public String getKind() { return kind; }
+    public double getAmount() { return amount; }
+    public long getCreatedAt() { return createdAt; }
+
+    @Override
+    public String toString() {
+        return "PaymentIntent[" + idempotencyKey + ", " + kind + ", booking=" + bookingId
+                + ", amount=" + String.format("$%.2f", amount) + "]";
+    }
+}
@@ -0,0 +1,79 @@
+package com.smartpark.model;
+
+/*
+ * Description of a facility's slots as parallel arrays: id, type, zone,
+ * level and position. Produced by SlotLayoutFile and handed to
+ * ParkingSystem.provisionSlots() to create all slots in one go.
+ */
+public class SlotLayout {
+
+    private int[] ids;
+    private String[] types;
+    private String[] zones;
+    private int[] levels;
+    private double[] xs;
+    private double[] ys;
+    private int count;
+
+    public SlotLayout() {
+        this(64);
+    }
+
+    /*
+     * Overloaded constructor: pre-size for a known number of slots.
+     */
+    public SlotLayout(int initialCapacity) {
+        if (initialCapacity <= 0) initialCapacity = 64;
+        this.ids = new int[initialCapacity];
+        this.types = new String[initialCapacity];
+        this.zones = new String[initialCapacity];
+        this.levels = new int[initialCapacity];
+        this.xs = new double[initialCapacity];
+        this.ys = new double[initialCapacity];
+        this.count = 0;
+    }
+
+    /*
+     * Append one slot description.
+     */
+    public void add(int id, String type, String zone, int level, double x, double y) {
+        if (count == ids.length) {
+            int n = ids.length * 2;
+            int[] newIds = new int[n];
+            String[] newTypes = new String[n];
+            String[] newZones = new String[n];
+            int[] newLevels = new int[n];
+            double[] newXs = new double[n];
+            double[] newYs = new double[n];
+            for (int i = 0; i < count; i++) {
+                newIds[i] = ids[i];
+                newTypes[i] = types[i];
+                newZones[i] = zones[i];
+                newLevels[i] = levels[i];
+                newXs[i] = xs[i];
+                newYs[i] = ys[i];
+            }
+            ids = newIds;
+            types = newTypes;
+            zones = newZones;
+            levels = newLevels;
+            xs = newXs;
+            ys = newYs;
+        }
+        ids[count] = id;
+        types[count] = type;
+        zones[count] = zone;
+        levels[count] = level;
+        xs[count] = x;
+        ys[count] = y;
+        count++;
+    }
+
+    public int getCount() { return count; }
+    public int getId(int i) { return ids[i]; }
+    public String getType(int i) { return types[i]; }
+    public String getZone(int i) { return zones[i]; }
+    public int getLevel(int i) { return levels[i]; }
+    public double getX(int i) { return xs[i]; }
+    public double getY(int i) { return ys[i]; }
+}
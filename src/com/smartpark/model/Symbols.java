@@ -0,0 +1,72 @@
+package com.smartpark.model;
+
+import com.smartpark.util.SymbolTable;
+
+/*
+ * The shared symbol table for booking statuses and slot types.
+ *
+ * Statuses and the standard slot types are registered first, so their
+ * codes are fixed (see the *_CODE_* values in Constants) and can be used
+ * in comparisons and on disk. Custom slot types get codes as they are
+ * first seen; those codes are only valid within one run.
+ *
+ * The table never releases a symbol, so only small, bounded vocabularies
+ * belong here. Usernames do not: code that needs them as ints keeps its
+ * own SymbolTable (see VehicleRegistry) or one scoped to a load.
+ */
+public final class Symbols {
+
+    private static final SymbolTable TABLE = new SymbolTable();
+
+    static {
+        // Order matters: it defines the fixed codes in Constants
+        TABLE.encode(Constants.STATUS_PENDING);
+        TABLE.encode(Constants.STATUS_ACTIVE);
+        TABLE.encode(Constants.STATUS_CANCELLED);
+        TABLE.encode(Constants.STATUS_COMPLETED);
+        TABLE.encode(Constants.SLOT_COMPACT);
+        TABLE.encode(Constants.SLOT_REGULAR);
+        TABLE.encode(Constants.SLOT_LARGE);
+        TABLE.encode(Constants.SLOT_HANDICAPPED);
+        // New fixed symbols go at the end so existing codes never change
+        TABLE.encode(Constants.STATUS_SCHEDULED);
+    }
+
+    private Symbols() { }
+
+    /*
+     * Code for s (added if new); SymbolTable.NO_CODE for null.
+     */
+    public static int code(String s) {
+        return TABLE.encode(s);
+    }
+
+    /*
+     * Code for s, or SymbolTable.NO_CODE if s was never seen.
+     */
+    public static int lookup(String s) {
+        return TABLE.lookup(s);
+    }
+
+    /*
+     * Shared String instance for a code.
+     */
+    public static String name(int code) {
+        return TABLE.decode(code);
+    }
+
+    /*
+     * True for the fixed status codes.
+     */
+    public static boolean isStatusCode(int code) {
+        return (code >= Constants.STATUS_CODE_PENDING && code <= Constants.STATUS_CODE_COMPLETED)
+                || code == Constants.STATUS_CODE_SCHEDULED;
+    }
+
+    /*
+     * Strings are interned through the table so equal values share one instance.
+     */
+    public static String intern(String s) {
+        return name(code(s));
+    }
+}
@@ -0,0 +1,129 @@
+package com.smartpark.replication;
+
+import com.smartpark.model.Booking;
+import com.smartpark.model.Symbols;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Binary record format shared by ReplicationPrimary and ReplicationStandby.
+ *
+ * Every frame is:  [length:int][type:byte][seq:long][payload]
+ * where length counts the bytes after the length field itself.
+ * Booking payloads carry the full booking state so applying a record twice
+ * (or applying a snapshot record followed by a newer live record) is safe.
+ */
+final class ReplicationCodec {
+
+    private ReplicationCodec() { }
+
+    // RECORD TYPES
+    static final byte TYPE_HEARTBEAT = 0;
+    static final byte TYPE_SNAPSHOT = 1;      // Booking sent as part of the initial state transfer
+    static final byte TYPE_RESERVED = 2;
+    static final byte TYPE_ENTERED = 3;
+    static final byte TYPE_EXITED = 4;
+    static final byte TYPE_EXPIRED = 5;
+    static final byte TYPE_RESTORED = 6;
+    static final byte TYPE_SNAPSHOT_END = 7;  // seq = last sequence covered by the snapshot
+
+    // Frames larger than this are treated as a corrupt stream
+    static final int MAX_FRAME_LENGTH = 64 * 1024;
+
+    // type + seq
+    private static final int HEADER_LENGTH = 1 + 8;
+
+    // id, slot, status, hasAmount, amount, 3 timestamps, username length;
+    // the username is followed by the reserved window (start, end) and the
+    // plate code of the linked vehicle
+    private static final int BOOKING_FIXED_LENGTH = 4 + 4 + 1 + 1 + 8 + 8 + 8 + 8 + 2;
+    private static final int WINDOW_LENGTH = 8 + 8;
+    private static final int PLATE_LENGTH = 8;
+
+    /*
+     * Encode a record without payload (heartbeat, snapshot end).
+     */
+    static byte[] encodeControl(byte type, long seq) {
+        ByteBuffer buf = ByteBuffer.allocate(4 + HEADER_LENGTH);
+        buf.putInt(HEADER_LENGTH);
+        buf.put(type);
+        buf.putLong(seq);
+        return buf.array();
+    }
+
+    /*
+     * Encode a booking record.
+     */
+    static byte[] encodeBooking(byte type, long seq, Booking b) {
+        byte[] user = (b.getUsername() == null) ? new byte[0] : b.getUsername().getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_LENGTH + BOOKING_FIXED_LENGTH + user.length + WINDOW_LENGTH + PLATE_LENGTH;
+
+        ByteBuffer buf = ByteBuffer.allocate(4 + length);
+        buf.putInt(length);
+        buf.put(type);
+        buf.putLong(seq);
+        buf.putInt(b.getBookingId().intValue());
+        buf.putInt(b.getSlotId());
+        buf.put((byte) b.getStatusCode());
+        buf.put((byte) (b.getAmount() == null ? 0 : 1));
+        buf.putDouble(b.getAmount() == null ? 0.0 : b.getAmount().doubleValue());
+        buf.putLong(b.getCreationTime());
+        buf.putLong(b.getEntryTime());
+        buf.putLong(b.getExitTime());
+        buf.putShort((short) user.length);
+        buf.put(user);
+        buf.putLong(b.getWindowStart());
+        buf.putLong(b.getWindowEnd());
+        buf.putLong(b.getPlateCode());
+        return buf.array();
+    }
+
+    /*
+     * Read one frame body (everything after the length prefix) from the stream.
+     */
+    static ByteBuffer readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < HEADER_LENGTH || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Corrupt replication frame length: " + length);
+        }
+        byte[] body = new byte[length];
+        in.readFully(body);
+        return ByteBuffer.wrap(body);
+    }
+
+    static boolean isBookingRecord(byte type) {
+        return type >= TYPE_SNAPSHOT && type <= TYPE_RESTORED;
+    }
+
+    /*
+     * Decode the booking payload; the buffer must be positioned after the header.
+     */
+    static Booking decodeBooking(ByteBuffer buf) {
+        int id = buf.getInt();
+        int slotId = buf.getInt();
+        int status = buf.get();
+        boolean hasAmount = buf.get() != 0;
+        double amount = buf.getDouble();
+        long creationTime = buf.getLong();
+        long entryTime = buf.getLong();
+        long exitTime = buf.getLong();
+        int userLength = buf.getShort() & 0xFFFF;
+        String username = new String(buf.array(), buf.position(), userLength, StandardCharsets.UTF_8);
+        buf.position(buf.position() + userLength);
+
+        Booking b = new Booking(Integer.valueOf(id), username, slotId);
+        if (Symbols.isStatusCode(status)) b.setStatusCode(status);
+        else b.setStatus(null);
+        b.setAmount(hasAmount ? Double.valueOf(amount) : null);
+        b.setCreationTime(creationTime);
+        b.setEntryTime(entryTime);
+        b.setExitTime(exitTime);
+        // Records from older primaries end after the username, or after the window
+        if (buf.remaining() >= WINDOW_LENGTH) b.setWindow(buf.getLong(), buf.getLong());
+        if (buf.remaining() >= PLATE_LENGTH) b.setPlateCode(buf.getLong());
+        return b;
+    }
+}
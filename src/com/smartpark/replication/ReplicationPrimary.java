@@ -0,0 +1,227 @@
+package com.smartpark.replication;
+
+import com.smartpark.interfaces.BookingListener;
+import com.smartpark.model.Booking;
+import com.smartpark.model.Constants;
+import com.smartpark.service.ParkingSystem;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Primary side of hot-standby replication.
+ * Registered as a BookingListener on the live ParkingSystem, it turns every
+ * state change into a sequenced binary record and streams it to the
+ * connected standby. Gate operations only pay for encoding and a queue
+ * offer; socket writes happen on a separate sender thread.
+ */
+public class ReplicationPrimary implements BookingListener {
+
+    // Records buffered for a slow standby before it is disconnected
+    private static final int QUEUE_CAPACITY = 65536;
+
+    private final ParkingSystem parkingSystem;
+    private final int port;
+
+    private ServerSocket serverSocket;
+    private Thread acceptThread;
+    private volatile boolean running;
+
+    private long nextSeq;          // guarded by this
+    private StandbyLink link;      // current standby connection, guarded by this
+
+    public ReplicationPrimary(ParkingSystem parkingSystem, int port) {
+        this.parkingSystem = parkingSystem;
+        this.port = port;
+        this.nextSeq = 1;
+    }
+
+    /*
+     * Open the listening socket and start accepting a standby.
+     */
+    public synchronized void start() throws IOException {
+        if (running) return;
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(port));
+        running = true;
+
+        acceptThread = new Thread(this::acceptLoop, "replication-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            if (serverSocket != null) serverSocket.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+        synchronized (this) {
+            if (link != null) {
+                link.close();
+                link = null;
+            }
+        }
+    }
+
+    public int getPort() {
+        return (serverSocket == null) ? port : serverSocket.getLocalPort();
+    }
+
+    public synchronized long getLastSequence() {
+        return nextSeq - 1;
+    }
+
+    public synchronized boolean hasStandby() {
+        return link != null && !link.closed;
+    }
+
+    /*
+     * BookingListener: every change becomes one sequenced record.
+     */
+    public void bookingReserved(Booking booking) { publish(ReplicationCodec.TYPE_RESERVED, booking); }
+    public void bookingEntered(Booking booking) { publish(ReplicationCodec.TYPE_ENTERED, booking); }
+    public void bookingExited(Booking booking) { publish(ReplicationCodec.TYPE_EXITED, booking); }
+    public void bookingExpired(Booking booking) { publish(ReplicationCodec.TYPE_EXPIRED, booking); }
+    public void bookingRestored(Booking booking) { publish(ReplicationCodec.TYPE_RESTORED, booking); }
+
+    private synchronized void publish(byte type, Booking booking) {
+        if (booking == null || booking.getBookingId() == null) return;
+        long seq = nextSeq++;
+        if (link == null) return;
+        if (link.closed) {
+            link = null;
+            return;
+        }
+
+        if (!link.queue.offer(ReplicationCodec.encodeBooking(type, seq, booking))) {
+            // Standby cannot keep up: drop it, it will reconnect and resync from a snapshot
+            System.out.println("[Replication] Standby fell behind, disconnecting it.");
+            link.close();
+            link = null;
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                attach(socket);
+                System.out.println("[Replication] Standby connected from " + socket.getRemoteSocketAddress());
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("[Replication] Accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /*
+     * Hand a new standby a snapshot of every booking followed by the live stream.
+     * Taking the snapshot under the same lock as publish() means every record
+     * numbered below the live start is already reflected in the snapshot.
+     * Bookings change under the Attendant monitor, so the snapshot is also
+     * encoded under it, or a booking in the middle of a transition could go
+     * out with a torn status, amount or window. publish() runs inside that
+     * monitor too, so the order is the Attendant monitor, then this one.
+     */
+    private void attach(Socket socket) throws IOException {
+        synchronized (parkingSystem.getAttendant()) {
+            synchronized (this) {
+                if (link != null) link.close();
+
+                long snapshotSeq = nextSeq - 1;
+                Booking[] all = parkingSystem.getBookingsArray();
+                byte[][] snapshot = new byte[all.length + 1][];
+                int n = 0;
+                for (Booking b : all) {
+                    if (b != null && b.getBookingId() != null) {
+                        snapshot[n++] = ReplicationCodec.encodeBooking(ReplicationCodec.TYPE_SNAPSHOT, snapshotSeq, b);
+                    }
+                }
+                snapshot[n++] = ReplicationCodec.encodeControl(ReplicationCodec.TYPE_SNAPSHOT_END, snapshotSeq);
+
+                link = new StandbyLink(socket, snapshot, n);
+                link.start();
+            }
+        }
+    }
+
+    /*
+     * One connected standby: a bounded queue drained by a sender thread.
+     */
+    private final class StandbyLink implements Runnable {
+        private final Socket socket;
+        private final byte[][] snapshot;
+        private final int snapshotCount;
+        private final ArrayBlockingQueue<byte[]> queue;
+        private volatile boolean closed;
+
+        StandbyLink(Socket socket, byte[][] snapshot, int snapshotCount) {
+            this.socket = socket;
+            this.snapshot = snapshot;
+            this.snapshotCount = snapshotCount;
+            this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        }
+
+        void start() {
+            Thread t = new Thread(this, "replication-sender");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        public void run() {
+            try (OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024)) {
+                for (int i = 0; i < snapshotCount; i++) out.write(snapshot[i]);
+                out.flush();
+
+                long lastSeq = 0;
+                while (!closed) {
+                    byte[] record = queue.poll(Constants.REPLICATION_HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+                    if (record == null) {
+                        out.write(ReplicationCodec.encodeControl(ReplicationCodec.TYPE_HEARTBEAT, lastSeq));
+                        out.flush();
+                        continue;
+                    }
+                    // Drain whatever else is ready before flushing once
+                    do {
+                        out.write(record);
+                        lastSeq = readSeq(record);
+                        record = queue.poll();
+                    } while (record != null);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                if (!closed) System.out.println("[Replication] Standby link lost: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            closed = true;
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+
+        private long readSeq(byte[] record) {
+            long seq = 0;
+            for (int i = 5; i < 13; i++) seq = (seq << 8) | (record[i] & 0xFF);
+            return seq;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.smartpark.replication;
+
+import com.smartpark.model.Constants;
+import com.smartpark.service.ParkingSystem;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+
+/*
+ * Standby side of hot-standby replication.
+ * Connects to a ReplicationPrimary, loads its snapshot and then applies the
+ * live record stream to a local ParkingSystem. When the primary goes silent
+ * for REPLICATION_TIMEOUT_MS the standby can promote itself, after which the
+ * local ParkingSystem is safe to drive from the caller's thread.
+ */
+public class ReplicationStandby implements Runnable {
+
+    // Delay between connection attempts while the primary is not reachable
+    private static final long RECONNECT_DELAY_MS = 500;
+
+    private final ParkingSystem parkingSystem;
+    private final String host;
+    private final int port;
+    private final boolean autoPromote;
+
+    private Thread applyThread;
+    private volatile Socket socket;
+    private volatile boolean promoted;
+    private volatile boolean synced;        // snapshot received on the current connection
+    private volatile long lastAppliedSeq;
+    private volatile long appliedCount;
+
+    /*
+     * autoPromote: promote as soon as an established primary connection is lost.
+     */
+    public ReplicationStandby(ParkingSystem parkingSystem, String host, int port, boolean autoPromote) {
+        this.parkingSystem = parkingSystem;
+        this.host = host;
+        this.port = port;
+        this.autoPromote = autoPromote;
+    }
+
+    public void start() {
+        applyThread = new Thread(this, "replication-standby");
+        applyThread.setDaemon(true);
+        applyThread.start();
+    }
+
+    /*
+     * Stop applying records and hand the ParkingSystem to the caller.
+     * Returns once the apply thread has exited.
+     */
+    public void promote() {
+        promoted = true;
+        closeSocket();
+        if (applyThread != null && Thread.currentThread() != applyThread) {
+            try {
+                applyThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    /*
+     * Block until this standby has been promoted (manually or automatically).
+     */
+    public synchronized void awaitPromotion() throws InterruptedException {
+        while (!promoted || (applyThread != null && applyThread.isAlive())) {
+            wait(Constants.REPLICATION_HEARTBEAT_MS);
+        }
+    }
+
+    public boolean isPromoted() { return promoted; }
+    public boolean isSynced() { return synced; }
+    public long getLastAppliedSeq() { return lastAppliedSeq; }
+    public long getAppliedCount() { return appliedCount; }
+
+    public void run() {
+        boolean everConnected = false;
+
+        while (!promoted) {
+            try (Socket s = new Socket()) {
+                s.connect(new InetSocketAddress(host, port), (int) Constants.REPLICATION_TIMEOUT_MS);
+                s.setTcpNoDelay(true);
+                s.setSoTimeout((int) Constants.REPLICATION_TIMEOUT_MS);
+                socket = s;
+                everConnected = true;
+                System.out.println("[Standby] Connected to primary " + host + ":" + port);
+
+                streamFrom(new DataInputStream(new BufferedInputStream(s.getInputStream(), 64 * 1024)));
+            } catch (SequenceGapException e) {
+                System.out.println("[Standby] " + e.getMessage() + ". Resyncing.");
+                socket = null;
+                synced = false;
+                sleepQuietly(RECONNECT_DELAY_MS);
+                continue;
+            } catch (EOFException e) {
+                if (!promoted) System.out.println("[Standby] Primary closed the connection.");
+            } catch (SocketTimeoutException e) {
+                System.out.println("[Standby] Primary silent for " + Constants.REPLICATION_TIMEOUT_MS + " ms.");
+            } catch (IOException e) {
+                if (!promoted && everConnected) {
+                    System.out.println("[Standby] Primary connection lost: " + e.getMessage());
+                }
+            }
+            socket = null;
+            synced = false;
+
+            if (promoted) break;
+            if (everConnected && autoPromote) {
+                System.out.println("[Standby] Promoting to primary at sequence " + lastAppliedSeq + ".");
+                promoted = true;
+                break;
+            }
+            sleepQuietly(RECONNECT_DELAY_MS);
+        }
+
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    /*
+     * Apply records until the connection ends. A sequence gap closes the
+     * connection so the next attempt starts from a fresh snapshot.
+     */
+    private void streamFrom(DataInputStream in) throws IOException {
+        while (!promoted) {
+            ByteBuffer frame = ReplicationCodec.readFrame(in);
+            byte type = frame.get();
+            long seq = frame.getLong();
+
+            if (type == ReplicationCodec.TYPE_HEARTBEAT) {
+                continue;
+            }
+            if (type == ReplicationCodec.TYPE_SNAPSHOT_END) {
+                lastAppliedSeq = seq;
+                synced = true;
+                System.out.println("[Standby] Snapshot applied up to sequence " + seq + ".");
+                continue;
+            }
+            if (!ReplicationCodec.isBookingRecord(type)) {
+                throw new IOException("Unknown replication record type " + type);
+            }
+
+            if (type != ReplicationCodec.TYPE_SNAPSHOT) {
+                if (!synced || seq != lastAppliedSeq + 1) {
+                    throw new SequenceGapException("Sequence gap: expected " + (lastAppliedSeq + 1) + " but got " + seq);
+                }
+                lastAppliedSeq = seq;
+            }
+            parkingSystem.restoreBooking(ReplicationCodec.decodeBooking(frame));
+            appliedCount++;
+        }
+    }
+
+    private void closeSocket() {
+        Socket s = socket;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+
+    // Raised when the live stream skips a record; triggers a resync, not a promotion
+    private static final class SequenceGapException extends IOException {
+        SequenceGapException(String message) {
+            super(message);
+        }
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.smartpark.service;
+
+import com.smartpark.exceptions.ReservationRejectedException;
+import com.smartpark.interfaces.BookingListener;
+import com.smartpark.model.Booking;
+import com.smartpark.model.Constants;
+import com.smartpark.model.User;
+import com.smartpark.util.TokenBucket;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Admission control in front of the reservation path.
+ *
+ * A request is admitted only if
+ *   1. the user holds fewer than maxPendingPerUser PENDING bookings,
+ *   2. the global token bucket has a token, and
+ *   3. the user's own token bucket has a token.
+ * Otherwise it is rejected at once with a ReservationRejectedException;
+ * nothing is queued. PENDING counts are kept per user from booking events
+ * (a set of pending booking ids plus a counter per user), so checking a
+ * quota never looks at User.getBookingIds().
+ *
+ * The check in admit() runs before the reservation, so concurrent requests
+ * from one user could all pass it before any of their bookings exists.
+ * ParkingSystem therefore repeats the quota check (checkPendingQuota) under
+ * the Attendant monitor right before it creates the booking; the booking
+ * event that raises the count is fired inside that same monitor.
+ *
+ * A user's state is only worth keeping while it differs from a new one.
+ * Every admit() advances a shared cursor over the users by a few entries
+ * (ADMISSION_SWEEP_STEP) and drops those whose bucket is full again and
+ * who hold no PENDING booking, so the map tracks recently active users
+ * rather than everyone who ever reserved. Pending counts change only
+ * inside users.compute(), as does the removal, so a count can never land
+ * on a dropped state. A request that took its token from a state dropped
+ * at that moment gets a full bucket back, which costs at most one token.
+ */
+public class AdmissionController implements BookingListener {
+
+    private final double userBurst;
+    private final double userRatePerSecond;
+    private final int maxPendingPerUser;
+    private final TokenBucket global;
+
+    private final ConcurrentHashMap<String, UserState> users = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, String> pendingOwners = new ConcurrentHashMap<>();
+    private final AtomicInteger rejected = new AtomicInteger();
+
+    // Idle-state sweep: one thread at a time advances the cursor
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private Iterator<String> sweepCursor;
+
+    /*
+     * Per-user limiter state.
+     */
+    private final class UserState {
+        final TokenBucket bucket = new TokenBucket(userBurst, userRatePerSecond);
+        final AtomicInteger pending = new AtomicInteger();
+    }
+
+    public AdmissionController() {
+        this(Constants.GLOBAL_RESERVATION_BURST, Constants.GLOBAL_RESERVATIONS_PER_SECOND,
+                Constants.USER_RESERVATION_BURST, Constants.USER_RESERVATIONS_PER_MINUTE / 60.0,
+                Constants.MAX_PENDING_PER_USER);
+    }
+
+    public AdmissionController(double globalBurst, double globalRatePerSecond,
+                               double userBurst, double userRatePerSecond, int maxPendingPerUser) {
+        this.global = new TokenBucket(globalBurst, globalRatePerSecond);
+        this.userBurst = userBurst;
+        this.userRatePerSecond = userRatePerSecond;
+        this.maxPendingPerUser = Math.max(1, maxPendingPerUser);
+    }
+
+    /*
+     * Admit one reservation request for user, or throw.
+     */
+    public void admit(User user) throws ReservationRejectedException {
+        String name = user.getUsername();
+        UserState state = stateOf(name);
+        sweepIdle(Constants.ADMISSION_SWEEP_STEP);
+
+        checkPendingQuota(name, state);
+
+        long wait = global.tryAcquire();
+        if (wait > 0) {
+            rejected.incrementAndGet();
+            throw new ReservationRejectedException(ReservationRejectedException.REASON_GLOBAL_RATE,
+                    "Reservation rejected: system busy, retry in " + wait + " ms.", wait);
+        }
+
+        wait = state.bucket.tryAcquire();
+        if (wait > 0) {
+            global.release(); // this request never used the global capacity
+            rejected.incrementAndGet();
+            throw new ReservationRejectedException(ReservationRejectedException.REASON_USER_RATE,
+                    "Reservation rejected: too many requests from " + name + ", retry in " + wait + " ms.", wait);
+        }
+    }
+
+    /*
+     * The pending-quota part of admit() on its own. ParkingSystem calls it
+     * under the Attendant monitor just before creating a PENDING booking,
+     * which makes the check and the count's increase one atomic step.
+     */
+    public void checkPendingQuota(User user) throws ReservationRejectedException {
+        checkPendingQuota(user.getUsername(), users.get(user.getUsername()));
+    }
+
+    private void checkPendingQuota(String name, UserState state) throws ReservationRejectedException {
+        if (state != null && state.pending.get() >= maxPendingPerUser) {
+            rejected.incrementAndGet();
+            throw new ReservationRejectedException(ReservationRejectedException.REASON_PENDING_QUOTA,
+                    "Reservation rejected: " + name + " already holds " + maxPendingPerUser
+                            + " pending bookings.", 0);
+        }
+    }
+
+    /*
+     * Number of PENDING bookings currently held by username.
+     */
+    public int getPendingCount(String username) {
+        UserState state = users.get(username);
+        return (state == null) ? 0 : state.pending.get();
+    }
+
+    public int getRejectedCount() {
+        return rejected.get();
+    }
+
+    /*
+     * Number of users whose limiter state is currently kept.
+     */
+    public int getTrackedUserCount() {
+        return users.size();
+    }
+
+    private UserState stateOf(String username) {
+        UserState state = users.get(username);
+        return (state != null) ? state : users.computeIfAbsent(username, k -> new UserState());
+    }
+
+    /*
+     * Look at up to max users from the sweep cursor and drop the idle ones
+     * (bucket full, nothing PENDING). Skipped if another thread is sweeping.
+     */
+    private void sweepIdle(int max) {
+        if (!sweeping.compareAndSet(false, true)) return;
+        try {
+            for (int i = 0; i < max; i++) {
+                if (sweepCursor == null || !sweepCursor.hasNext()) {
+                    sweepCursor = users.keySet().iterator();
+                    if (!sweepCursor.hasNext()) return;
+                }
+                users.computeIfPresent(sweepCursor.next(),
+                        (k, state) -> (state.pending.get() == 0 && state.bucket.isFull()) ? null : state);
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    /*
+     * PENDING TRACKING
+     * A booking counts against its owner while it is PENDING. The set of
+     * pending ids makes every event idempotent, so restores and replays
+     * cannot push a counter out of step.
+     */
+
+    @Override
+    public void bookingReserved(Booking booking) {
+        sync(booking);
+    }
+
+    @Override
+    public void bookingEntered(Booking booking) {
+        sync(booking);
+    }
+
+    @Override
+    public void bookingExited(Booking booking) {
+        sync(booking);
+    }
+
+    @Override
+    public void bookingExpired(Booking booking) {
+        sync(booking);
+    }
+
+    @Override
+    public void bookingRestored(Booking booking) {
+        sync(booking);
+    }
+
+    private void sync(Booking booking) {
+        if (booking.getBookingId() == null || booking.getUsername() == null) return;
+        Integer id = booking.getBookingId();
+
+        if (booking.hasStatus(Constants.STATUS_CODE_PENDING)) {
+            if (pendingOwners.putIfAbsent(id, booking.getUsername()) == null) {
+                users.compute(booking.getUsername(), (k, state) -> {
+                    if (state == null) state = new UserState();
+                    state.pending.incrementAndGet();
+                    return state;
+                });
+            }
+        } else {
+            String owner = pendingOwners.remove(id);
+            if (owner != null) {
+                users.computeIfPresent(owner, (k, state) -> {
+                    state.pending.decrementAndGet();
+                    return state;
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.smartpark.service;
+
+import com.smartpark.interfaces.AvailabilityListener;
+import com.smartpark.model.AvailabilityUpdate;
+
+import java.util.HashMap;
+
+/*
+ * Push-based slot availability for signage and apps.
+ *
+ * The writer thread only records "slot i is now occupied/free" (last write
+ * wins, one entry per slot). A dispatcher thread wakes at most once per
+ * interval, coalesces those records against what it reported last time and
+ * builds one immutable AvailabilityUpdate per scope (lot, slot type, zone)
+ * that actually changed. That single object is then handed to every
+ * subscriber of the scope, so the cost per round depends on the number of
+ * changes and scopes, not on the number of subscribers.
+ */
+final class AvailabilityHub implements Runnable {
+
+    private static final int LOT_CHANNEL = 0;
+
+    /*
+     * One subscription scope and its subscribers.
+     */
+    private static final class Channel {
+        final String scope;
+        final String key;
+
+        volatile AvailabilityListener[] subscribers = new AvailabilityListener[0];
+        AvailabilityListener[] newcomers = new AvailabilityListener[0]; // guarded by hub; get an initial update
+
+        // Dispatcher-owned
+        int total;
+        int free;
+        boolean countsChanged;
+        int[] freed = new int[8];
+        int freedCount;
+        int[] taken = new int[8];
+        int takenCount;
+
+        Channel(String scope, String key) {
+            this.scope = scope;
+            this.key = key;
+        }
+    }
+
+    // Slot registry, guarded by this. Arrays only grow; entries never change.
+    private int[] slotIds;
+    private int[] typeChannels;
+    private int[] zoneChannels;
+    private int slotCount;
+
+    // Pending changes from the writer, guarded by this
+    private boolean[] pendingOccupied;
+    private boolean[] pendingDirty;
+    private int[] dirty;
+    private int dirtyCount;
+
+    // Channels, guarded by this (the array reference is copied for each round)
+    private Channel[] channels;
+    private int channelCount;
+    private final HashMap<String, Integer> typeChannelByKey;
+    private final HashMap<String, Integer> zoneChannelByKey;
+
+    // Dispatcher-owned state
+    private boolean[] reported;        // occupancy last reported per slot
+    private int reportedSlotCount;
+    private int[] roundDirty;
+    private boolean[] roundOccupied;
+    private long sequence;
+
+    private volatile long intervalMs;
+    private volatile boolean running;
+    private Thread thread;
+
+    AvailabilityHub(int initialSlotCapacity, long intervalMs) {
+        if (initialSlotCapacity <= 0) initialSlotCapacity = 20;
+        this.slotIds = new int[initialSlotCapacity];
+        this.typeChannels = new int[initialSlotCapacity];
+        this.zoneChannels = new int[initialSlotCapacity];
+        this.pendingOccupied = new boolean[initialSlotCapacity];
+        this.pendingDirty = new boolean[initialSlotCapacity];
+        this.dirty = new int[initialSlotCapacity];
+        this.reported = new boolean[initialSlotCapacity];
+        this.roundDirty = new int[0];
+        this.roundOccupied = new boolean[0];
+        this.channels = new Channel[8];
+        this.typeChannelByKey = new HashMap<>();
+        this.zoneChannelByKey = new HashMap<>();
+        this.intervalMs = intervalMs;
+        addChannel(AvailabilityUpdate.SCOPE_LOT, "");
+    }
+
+    /*
+     * WRITER SIDE
+     */
+
+    synchronized void addSlot(int index, int slotId, String type, String zone) {
+        if (index >= slotIds.length) ensureCapacity(Math.max(index + 1, slotIds.length * 2));
+        slotIds[index] = slotId;
+        typeChannels[index] = channel(AvailabilityUpdate.SCOPE_TYPE, type);
+        zoneChannels[index] = channel(AvailabilityUpdate.SCOPE_ZONE, zone);
+        if (index >= slotCount) slotCount = index + 1;
+    }
+
+    /*
+     * Pre-size for a known total number of slots (bulk provisioning).
+     */
+    synchronized void ensureCapacity(int totalSlots) {
+        if (totalSlots <= slotIds.length) return;
+        slotIds = grow(slotIds, totalSlots);
+        typeChannels = grow(typeChannels, totalSlots);
+        zoneChannels = grow(zoneChannels, totalSlots);
+        pendingOccupied = grow(pendingOccupied, totalSlots);
+        pendingDirty = grow(pendingDirty, totalSlots);
+        dirty = grow(dirty, totalSlots);
+    }
+
+    synchronized void slotChanged(int index, boolean occupied) {
+        pendingOccupied[index] = occupied;
+        if (!pendingDirty[index]) {
+            pendingDirty[index] = true;
+            dirty[dirtyCount++] = index;
+        }
+    }
+
+    /*
+     * SUBSCRIPTIONS
+     */
+
+    synchronized void subscribe(String scope, String key, AvailabilityListener listener) {
+        if (!AvailabilityUpdate.SCOPE_LOT.equals(scope) && !AvailabilityUpdate.SCOPE_TYPE.equals(scope)
+                && !AvailabilityUpdate.SCOPE_ZONE.equals(scope)) {
+            return; // unknown scope
+        }
+        Channel c = channels[channel(scope, key == null ? "" : key)];
+        c.newcomers = append(c.newcomers, listener);
+        if (!running) start();
+    }
+
+    synchronized boolean unsubscribe(AvailabilityListener listener) {
+        boolean removed = false;
+        for (int i = 0; i < channelCount; i++) {
+            Channel c = channels[i];
+            AvailabilityListener[] subs = remove(c.subscribers, listener);
+            if (subs != c.subscribers) {
+                c.subscribers = subs;
+                removed = true;
+            }
+            AvailabilityListener[] waiting = remove(c.newcomers, listener);
+            if (waiting != c.newcomers) {
+                c.newcomers = waiting;
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    /*
+     * Minimum time between two dispatch rounds, i.e. the maximum update rate.
+     */
+    void setIntervalMs(long intervalMs) {
+        this.intervalMs = Math.max(1, intervalMs);
+    }
+
+    private void start() {
+        running = true;
+        thread = new Thread(this, "availability-dispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        if (thread != null) thread.interrupt();
+    }
+
+    /*
+     * DISPATCHER SIDE
+     */
+
+    public void run() {
+        while (running) {
+            try {
+                Thread.sleep(intervalMs);
+            } catch (InterruptedException e) {
+                if (!running) return;
+            }
+            dispatchRound();
+        }
+    }
+
+    /*
+     * Collect pending changes and deliver one update per changed scope.
+     * Package-private so it can also be driven directly.
+     */
+    void dispatchRound() {
+        Channel[] chans;
+        int chanCount;
+        int[] slotIdsNow;
+        int[] typesNow;
+        int[] zonesNow;
+        int slotsNow;
+        int changes;
+        AvailabilityListener[][] arrivals;
+
+        synchronized (this) {
+            chans = channels;
+            chanCount = channelCount;
+            slotIdsNow = slotIds;
+            typesNow = typeChannels;
+            zonesNow = zoneChannels;
+            slotsNow = slotCount;
+
+            changes = dirtyCount;
+            if (roundDirty.length < changes) {
+                roundDirty = new int[dirty.length];
+                roundOccupied = new boolean[dirty.length];
+            }
+            for (int i = 0; i < changes; i++) {
+                int s = dirty[i];
+                roundDirty[i] = s;
+                roundOccupied[i] = pendingOccupied[s];
+                pendingDirty[s] = false;
+            }
+            dirtyCount = 0;
+
+            arrivals = new AvailabilityListener[chanCount][];
+            for (int c = 0; c < chanCount; c++) {
+                if (chans[c].newcomers.length > 0) {
+                    arrivals[c] = chans[c].newcomers;
+                    chans[c].newcomers = new AvailabilityListener[0];
+                }
+            }
+        }
+
+        // Newly registered slots start out free
+        if (reported.length < slotsNow) reported = grow(reported, Math.max(slotsNow, reported.length * 2));
+        for (int s = reportedSlotCount; s < slotsNow; s++) {
+            reported[s] = false;
+            countNewSlot(chans[LOT_CHANNEL]);
+            countNewSlot(chans[typesNow[s]]);
+            countNewSlot(chans[zonesNow[s]]);
+        }
+        reportedSlotCount = slotsNow;
+
+        // Coalesce: only report slots whose state differs from the last report
+        for (int i = 0; i < changes; i++) {
+            int s = roundDirty[i];
+            boolean occupied = roundOccupied[i];
+            if (s >= slotsNow || reported[s] == occupied) continue;
+            reported[s] = occupied;
+            int id = slotIdsNow[s];
+            record(chans[LOT_CHANNEL], id, occupied);
+            record(chans[typesNow[s]], id, occupied);
+            record(chans[zonesNow[s]], id, occupied);
+        }
+
+        sequence++;
+        for (int c = 0; c < chanCount; c++) {
+            Channel ch = chans[c];
+            boolean changed = ch.freedCount > 0 || ch.takenCount > 0 || ch.countsChanged;
+            if (changed) {
+                AvailabilityListener[] subs = ch.subscribers;
+                if (subs.length > 0) {
+                    deliver(subs, new AvailabilityUpdate(ch.scope, ch.key, sequence, ch.free, ch.total,
+                            copy(ch.freed, ch.freedCount), copy(ch.taken, ch.takenCount)));
+                }
+                ch.freedCount = 0;
+                ch.takenCount = 0;
+                ch.countsChanged = false;
+            }
+
+            if (arrivals[c] != null) {
+                // New subscribers start from the current totals, without deltas
+                deliver(arrivals[c], new AvailabilityUpdate(ch.scope, ch.key, sequence, ch.free, ch.total,
+                        new int[0], new int[0]));
+                synchronized (this) {
+                    ch.subscribers = concat(ch.subscribers, arrivals[c]);
+                }
+            }
+        }
+    }
+
+    private static void countNewSlot(Channel ch) {
+        ch.total++;
+        ch.free++;
+        ch.countsChanged = true;
+    }
+
+    private static void record(Channel ch, int slotId, boolean occupied) {
+        if (occupied) {
+            ch.free--;
+            if (ch.takenCount == ch.taken.length) ch.taken = grow(ch.taken, ch.taken.length * 2);
+            ch.taken[ch.takenCount++] = slotId;
+        } else {
+            ch.free++;
+            if (ch.freedCount == ch.freed.length) ch.freed = grow(ch.freed, ch.freed.length * 2);
+            ch.freed[ch.freedCount++] = slotId;
+        }
+    }
+
+    private static void deliver(AvailabilityListener[] subs, AvailabilityUpdate update) {
+        for (AvailabilityListener l : subs) {
+            try {
+                l.availabilityChanged(update);
+            } catch (RuntimeException e) {
+                System.out.println("[Availability] Subscriber failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /*
+     * HELPERS
+     */
+
+    // Caller holds the lock
+    private int channel(String scope, String key) {
+        HashMap<String, Integer> byKey;
+        if (AvailabilityUpdate.SCOPE_TYPE.equals(scope)) byKey = typeChannelByKey;
+        else if (AvailabilityUpdate.SCOPE_ZONE.equals(scope)) byKey = zoneChannelByKey;
+        else return LOT_CHANNEL;
+
+        Integer existing = byKey.get(key);
+        if (existing != null) return existing.intValue();
+        int c = addChannel(scope, key);
+        byKey.put(key, Integer.valueOf(c));
+        return c;
+    }
+
+    private int addChannel(String scope, String key) {
+        if (channelCount == channels.length) {
+            Channel[] larger = new Channel[channels.length * 2];
+            for (int i = 0; i < channelCount; i++) larger[i] = channels[i];
+            channels = larger;
+        }
+        channels[channelCount] = new Channel(scope, key);
+        return channelCount++;
+    }
+
+    private static int[] copy(int[] src, int n) {
+        int[] out = new int[n];
+        for (int i = 0; i < n; i++) out[i] = src[i];
+        return out;
+    }
+
+    private static int[] grow(int[] a, int n) {
+        int[] out = new int[n];
+        for (int i = 0; i < a.length; i++) out[i] = a[i];
+        return out;
+    }
+
+    private static boolean[] grow(boolean[] a, int n) {
+        boolean[] out = new boolean[n];
+        for (int i = 0; i < a.length; i++) out[i] = a[i];
+        return out;
+    }
+
+    private static AvailabilityListener[] append(AvailabilityListener[] a, AvailabilityListener l) {
+        AvailabilityListener[] out = new AvailabilityListener[a.length + 1];
+        for (int i = 0; i < a.length; i++) out[i] = a[i];
+        out[a.length] = l;
+        return out;
+    }
+
+    private static AvailabilityListener[] concat(AvailabilityListener[] a, AvailabilityListener[] b) {
+        AvailabilityListener[] out = new AvailabilityListener[a.length + b.length];
+        for (int i = 0; i < a.length; i++) out[i] = a[i];
+        for (int i = 0; i < b.length; i++) out[a.length + i] = b[i];
+        return out;
+    }
+
+    private static AvailabilityListener[] remove(AvailabilityListener[] a, AvailabilityListener l) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == l) {
+                AvailabilityListener[] out = new AvailabilityListener[a.length - 1];
+                for (int j = 0, k = 0; j < a.length; j++) {
+                    if (j != i) out[k++] = a[j];
+                }
+                return out;
+            }
+        }
+        return a;
+    }
+}
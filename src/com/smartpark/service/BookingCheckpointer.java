@@ -0,0 +1,261 @@
+package com.smartpark.service;
+
+import com.smartpark.interfaces.BookingListener;
+import com.smartpark.model.Booking;
+import com.smartpark.util.Persistence;
+
+import java.io.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Background checkpointer for the bookings file.
+ *
+ * A checkpoint is taken every intervalMs, or sooner once changeThreshold
+ * booking changes have happened since the last one. Capturing a checkpoint
+ * only records the bookings array reference and count, so the foreground
+ * pause is constant no matter how many bookings there are. While the file
+ * is being written, ParkingSystem hands the checkpointer a copy of every
+ * booking just before it changes it for the first time; the writer prefers
+ * that copy, so the file shows every booking exactly as it was at capture.
+ *
+ * The file is written in the Persistence text format to a temporary file,
+ * synced and renamed over the previous checkpoint. Open bookings come first,
+ * behind a checkpoint header, so a restart can warm-start from the file.
+ * If the history of a warm start is still being read, a checkpoint first
+ * waits for it, so the file never loses the rows not loaded yet; if reading
+ * it failed, checkpoints fail too until the bookings are reloaded.
+ */
+public class BookingCheckpointer implements Runnable, BookingListener {
+
+    private final ParkingSystem parkingSystem;
+    private final String filename;
+    private final long intervalMs;
+    private final int changeThreshold;
+
+    private final Object signal = new Object();
+    private volatile boolean running;
+    private Thread thread;
+
+    private volatile Capture capture;        // non-null while a checkpoint is being written
+    private int changesSinceCapture;         // guarded by signal
+    private volatile long lastCheckpointTime;
+    private volatile long checkpointCount;
+
+    /*
+     * State frozen at capture time.
+     */
+    private static final class Capture {
+        final Booking[] bookings;
+        final int count;
+        final int nextBookingId;
+        final ConcurrentHashMap<Booking, Booking> before = new ConcurrentHashMap<>();
+
+        Capture(Booking[] bookings, int count, int nextBookingId) {
+            this.bookings = bookings;
+            this.count = count;
+            this.nextBookingId = nextBookingId;
+        }
+    }
+
+    public BookingCheckpointer(ParkingSystem parkingSystem, String filename, long intervalMs, int changeThreshold) {
+        this.parkingSystem = parkingSystem;
+        this.filename = filename;
+        this.intervalMs = Math.max(1, intervalMs);
+        this.changeThreshold = Math.max(1, changeThreshold);
+    }
+
+    public void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this, "booking-checkpointer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /*
+     * Stop the background thread after writing one final checkpoint.
+     */
+    public void stop() {
+        running = false;
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+     * Write a checkpoint on the calling thread right away.
+     */
+    public synchronized void checkpointNow() throws IOException {
+        if (!parkingSystem.ensureHistoryLoaded()) {
+            throw new IOException("the booking history could not be loaded; keeping the previous file");
+        }
+        Capture c;
+        // Booking changes run under the ParkingSystem or Attendant monitor, so
+        // holding both means no change is half done when the capture is taken
+        synchronized (parkingSystem) {
+            synchronized (parkingSystem.getAttendant()) {
+                Booking[] array = parkingSystem.liveBookings();
+                c = new Capture(array, Math.min(parkingSystem.getBookingCount(), array.length),
+                        parkingSystem.getNextBookingId());
+                capture = c;
+            }
+        }
+        synchronized (signal) {
+            changesSinceCapture = 0;
+        }
+        try {
+            write(c);
+            lastCheckpointTime = System.currentTimeMillis();
+            checkpointCount++;
+        } finally {
+            capture = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        long next = System.currentTimeMillis() + intervalMs;
+        while (running) {
+            synchronized (signal) {
+                long wait = next - System.currentTimeMillis();
+                if (wait > 0 && changesSinceCapture < changeThreshold && running) {
+                    try {
+                        signal.wait(wait);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    continue;
+                }
+            }
+            checkpointQuietly();
+            next = System.currentTimeMillis() + intervalMs;
+        }
+        checkpointQuietly();
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpointNow();
+        } catch (IOException e) {
+            System.out.println("[Error] Checkpoint to " + filename + " failed: " + e.getMessage());
+        }
+    }
+
+    /*
+     * Called by ParkingSystem right before it modifies an existing booking.
+     * Costs nothing unless a checkpoint is being written.
+     */
+    void beforeChange(Booking booking) {
+        Capture c = capture;
+        if (c != null && !c.before.containsKey(booking)) {
+            c.before.putIfAbsent(booking, copyOf(booking));
+        }
+    }
+
+    private void write(Capture c) throws IOException {
+        File target = new File(filename);
+        File tmp = Persistence.tempFileFor(target);
+        Booking scratch = new Booking(null, null, 0);
+
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             PrintWriter pw = new PrintWriter(new BufferedWriter(new OutputStreamWriter(fos), 64 * 1024))) {
+
+            int openCount = 0;
+            for (int i = 0; i < c.count; i++) {
+                Booking b = atCapture(c, i, scratch);
+                if (b != null && Persistence.isOpen(b)) openCount++;
+            }
+            Persistence.writeCheckpointHeader(pw, c.nextBookingId, openCount);
+            Persistence.writeHeader(pw);
+
+            // Open bookings first, then the history
+            for (int pass = 0; pass < 2; pass++) {
+                boolean open = (pass == 0);
+                for (int i = 0; i < c.count; i++) {
+                    Booking b = atCapture(c, i, scratch);
+                    if (b != null && Persistence.isOpen(b) == open) Persistence.writeBooking(pw, b);
+                }
+            }
+            Persistence.finish(pw, fos);
+        }
+        Persistence.replaceFile(tmp, target);
+    }
+
+    /*
+     * Booking i as it was at capture time (in scratch or a pre-change copy),
+     * or null. Every pass over the capture sees the same state.
+     */
+    private static Booking atCapture(Capture c, int i, Booking scratch) {
+        Booking live = c.bookings[i];
+        if (live == null) return null;
+
+        // Read the live booking first, then look for a pre-change copy:
+        // any change that could have raced with the read recorded its
+        // copy before touching the booking, so it is found here.
+        copyInto(live, scratch);
+        Booking before = c.before.get(live);
+        return (before != null) ? before : scratch;
+    }
+
+    /*
+     * BookingListener: count changes so a busy lot checkpoints sooner.
+     */
+
+    @Override
+    public void bookingReserved(Booking booking) { countChange(); }
+
+    @Override
+    public void bookingEntered(Booking booking) { countChange(); }
+
+    @Override
+    public void bookingExited(Booking booking) { countChange(); }
+
+    @Override
+    public void bookingExpired(Booking booking) { countChange(); }
+
+    @Override
+    public void bookingRestored(Booking booking) { countChange(); }
+
+    private void countChange() {
+        synchronized (signal) {
+            changesSinceCapture++;
+            if (changesSinceCapture == changeThreshold) signal.notifyAll();
+        }
+    }
+
+    public long getLastCheckpointTime() {
+        return lastCheckpointTime;
+    }
+
+    public long getCheckpointCount() {
+        return checkpointCount;
+    }
+
+    // Also used by ParkingSystem's store writer
+    static Booking copyOf(Booking b) {
+        Booking copy = new Booking(b.getBookingId(), b.getUsername(), b.getSlotId());
+        copyInto(b, copy);
+        return copy;
+    }
+
+    private static void copyInto(Booking from, Booking to) {
+        to.setBookingId(from.getBookingId());
+        to.setUsername(from.getUsername());
+        to.setSlotId(from.getSlotId());
+        to.setStatusCode(from.getStatusCode());
+        if (from.hasAmount()) to.setAmount(from.getAmountValue());
+        else to.setAmount((Double) null);
+        to.setCreationTime(from.getCreationTime());
+        to.setEntryTime(from.getEntryTime());
+        to.setExitTime(from.getExitTime());
+        to.setWindow(from.getWindowStart(), from.getWindowEnd());
+        to.setPlateCode(from.getPlateCode());
+    }
+}
@@ -0,0 +1,262 @@
+package com.smartpark.service;
+
+import com.smartpark.model.Booking;
+import com.smartpark.model.Constants;
+import com.smartpark.util.IntIntMap;
+import com.smartpark.util.TimeIndex;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/*
+ * Secondary indexes over the bookings array, by array position:
+ *
+ *   status   one bitset per status code
+ *   slot     slot id -> list of positions
+ *   time     creation times and entry times, each in a sorted TimeIndex
+ *
+ * The index keeps its own copy of the indexed fields per position, so an
+ * update only has to touch the entries that actually changed, and a query
+ * can check a position against any predicate with array reads. A query
+ * walks the most selective of its predicates (fewest positions) and checks
+ * the others per position, instead of scanning every booking.
+ *
+ * A time of 0 means "not set" and is never indexed, so a time predicate
+ * only matches bookings whose time is set (e.g. entered bookings).
+ * Not thread-safe; ParkingSystem guards it with the Attendant monitor.
+ */
+class BookingIndex {
+
+    private static final int NOT_INDEXED = -1;
+
+    private final BitSet[] byStatus;
+    private final int[] statusCounts;
+    private final IntIntMap slotLists;        // slot id -> index into slotPositions
+    private int[][] slotPositions;
+    private int[] slotSizes;
+    private int slotListCount;
+    private final TimeIndex byCreation;
+    private final TimeIndex byEntry;
+
+    // Indexed values per position
+    private int[] statuses;
+    private int[] slots;
+    private long[] created;
+    private long[] entered;
+    private int capacity;
+
+    BookingIndex(int expectedBookings) {
+        int codes = Constants.STATUS_CODE_SCHEDULED + 1;
+        byStatus = new BitSet[codes];
+        // Sized up front: a bitset growing under a gate command would allocate
+        for (int i = 0; i < codes; i++) byStatus[i] = new BitSet(Math.max(64, expectedBookings));
+        statusCounts = new int[codes];
+        slotLists = new IntIntMap(64, -1);
+        slotPositions = new int[64][];
+        slotSizes = new int[64];
+        byCreation = new TimeIndex(expectedBookings);
+        byEntry = new TimeIndex(expectedBookings);
+        allocate(Math.max(16, expectedBookings));
+    }
+
+    void clear() {
+        for (int i = 0; i < byStatus.length; i++) {
+            byStatus[i].clear();
+            statusCounts[i] = 0;
+        }
+        slotLists.clear();
+        slotListCount = 0;
+        byCreation.clear();
+        byEntry.clear();
+        for (int i = 0; i < capacity; i++) statuses[i] = NOT_INDEXED;
+    }
+
+    /*
+     * (Re-)index the booking at the given array position.
+     */
+    void update(int position, Booking b) {
+        if (position >= capacity) grow(position + 1);
+        boolean fresh = statuses[position] == NOT_INDEXED;
+
+        int status = b.getStatusCode();
+        if (fresh || statuses[position] != status) {
+            if (!fresh && isIndexable(statuses[position])) {
+                byStatus[statuses[position]].clear(position);
+                statusCounts[statuses[position]]--;
+            }
+            if (isIndexable(status)) {
+                byStatus[status].set(position);
+                statusCounts[status]++;
+            }
+            statuses[position] = status;
+        }
+
+        int slotId = b.getSlotId();
+        if (fresh || slots[position] != slotId) {
+            if (!fresh) removeFromSlot(slots[position], position);
+            addToSlot(slotId, position);
+            slots[position] = slotId;
+        }
+
+        long creationTime = b.getCreationTime();
+        if (fresh || created[position] != creationTime) {
+            if (!fresh && created[position] != 0) byCreation.remove(created[position], position);
+            if (creationTime != 0) byCreation.insert(creationTime, position);
+            created[position] = creationTime;
+        }
+
+        long entryTime = b.getEntryTime();
+        if (fresh || entered[position] != entryTime) {
+            if (!fresh && entered[position] != 0) byEntry.remove(entered[position], position);
+            if (entryTime != 0) byEntry.insert(entryTime, position);
+            entered[position] = entryTime;
+        }
+    }
+
+    /*
+     * Positions of the bookings matching every given predicate, in array
+     * order. statusCode and slotId may be QUERY_ANY; timeField is
+     * QUERY_BY_CREATION, QUERY_BY_ENTRY or QUERY_ANY (no time range), and
+     * the range is [from, to).
+     */
+    int[] query(int statusCode, int slotId, int timeField, long from, long to) {
+        boolean byStatusCode = statusCode != Constants.QUERY_ANY;
+        boolean bySlot = slotId != Constants.QUERY_ANY;
+        boolean byTime = timeField != Constants.QUERY_ANY;
+        if (byStatusCode && !isIndexable(statusCode)) return new int[0];
+        if (byTime && from >= to) return new int[0];
+
+        // Size of each usable index; walk the smallest
+        int statusSize = byStatusCode ? statusCounts[statusCode] : Integer.MAX_VALUE;
+        int slotList = bySlot ? slotLists.get(slotId) : -1;
+        int slotSize = bySlot ? (slotList < 0 ? 0 : slotSizes[slotList]) : Integer.MAX_VALUE;
+        TimeIndex times = (timeField == Constants.QUERY_BY_ENTRY) ? byEntry : byCreation;
+        int timeLo = 0;
+        int timeHi = 0;
+        int timeSize = Integer.MAX_VALUE;
+        if (byTime) {
+            timeLo = times.lowerBound(Math.max(from, 1));
+            timeHi = times.lowerBound(to);
+            timeSize = timeHi - timeLo;
+        }
+
+        int[] result;
+        int n = 0;
+        if (!byStatusCode && !bySlot && !byTime) {
+            result = new int[capacity];
+            for (int p = 0; p < capacity; p++) {
+                if (statuses[p] != NOT_INDEXED) result[n++] = p;
+            }
+        } else if (slotSize <= statusSize && slotSize <= timeSize) {
+            result = new int[slotSize];
+            for (int i = 0; i < slotSize; i++) {
+                int p = slotPositions[slotList][i];
+                if (matches(p, statusCode, Constants.QUERY_ANY, timeField, from, to)) result[n++] = p;
+            }
+        } else if (timeSize <= statusSize) {
+            result = new int[timeSize];
+            for (int i = timeLo; i < timeHi; i++) {
+                int p = times.valueAt(i);
+                if (matches(p, statusCode, slotId, Constants.QUERY_ANY, 0, 0)) result[n++] = p;
+            }
+        } else {
+            result = new int[statusSize];
+            BitSet set = byStatus[statusCode];
+            for (int p = set.nextSetBit(0); p >= 0; p = set.nextSetBit(p + 1)) {
+                if (matches(p, Constants.QUERY_ANY, slotId, timeField, from, to)) result[n++] = p;
+            }
+        }
+
+        int[] exact = new int[n];
+        for (int i = 0; i < n; i++) exact[i] = result[i];
+        Arrays.sort(exact);
+        return exact;
+    }
+
+    int countByStatus(int statusCode) {
+        return isIndexable(statusCode) ? statusCounts[statusCode] : 0;
+    }
+
+    // Check one position against the predicates (QUERY_ANY skips one)
+    private boolean matches(int p, int statusCode, int slotId, int timeField, long from, long to) {
+        if (statusCode != Constants.QUERY_ANY && statuses[p] != statusCode) return false;
+        if (slotId != Constants.QUERY_ANY && slots[p] != slotId) return false;
+        if (timeField != Constants.QUERY_ANY) {
+            long t = (timeField == Constants.QUERY_BY_ENTRY) ? entered[p] : created[p];
+            if (t == 0 || t < from || t >= to) return false;
+        }
+        return true;
+    }
+
+    private boolean isIndexable(int statusCode) {
+        return statusCode >= 0 && statusCode < byStatus.length;
+    }
+
+    private void addToSlot(int slotId, int position) {
+        int list = slotLists.get(slotId);
+        if (list < 0) {
+            if (slotListCount == slotPositions.length) {
+                int[][] largerLists = new int[slotPositions.length * 2][];
+                int[] largerSizes = new int[slotSizes.length * 2];
+                for (int i = 0; i < slotListCount; i++) {
+                    largerLists[i] = slotPositions[i];
+                    largerSizes[i] = slotSizes[i];
+                }
+                slotPositions = largerLists;
+                slotSizes = largerSizes;
+            }
+            list = slotListCount++;
+            slotLists.put(slotId, list);
+            slotPositions[list] = new int[8];
+            slotSizes[list] = 0;
+        }
+        int[] positions = slotPositions[list];
+        if (slotSizes[list] == positions.length) {
+            int[] larger = new int[positions.length * 2];
+            for (int i = 0; i < positions.length; i++) larger[i] = positions[i];
+            slotPositions[list] = positions = larger;
+        }
+        positions[slotSizes[list]++] = position;
+    }
+
+    private void removeFromSlot(int slotId, int position) {
+        int list = slotLists.get(slotId);
+        if (list < 0) return;
+        int[] positions = slotPositions[list];
+        int size = slotSizes[list];
+        for (int i = 0; i < size; i++) {
+            if (positions[i] == position) {
+                // Order within a slot list does not matter: move the last one here
+                positions[i] = positions[size - 1];
+                slotSizes[list] = size - 1;
+                return;
+            }
+        }
+    }
+
+    private void allocate(int size) {
+        statuses = new int[size];
+        slots = new int[size];
+        created = new long[size];
+        entered = new long[size];
+        for (int i = 0; i < size; i++) statuses[i] = NOT_INDEXED;
+        capacity = size;
+    }
+
+    private void grow(int needed) {
+        int size = capacity;
+        while (size < needed) size *= 2;
+        int[] oldStatuses = statuses;
+        int[] oldSlots = slots;
+        long[] oldCreated = created;
+        long[] oldEntered = entered;
+        int oldCapacity = capacity;
+        allocate(size);
+        for (int i = 0; i < oldCapacity; i++) {
+            statuses[i] = oldStatuses[i];
+            slots[i] = oldSlots[i];
+            created[i] = oldCreated[i];
+            entered[i] = oldEntered[i];
+        }
+    }
+}
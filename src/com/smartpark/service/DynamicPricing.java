@@ -0,0 +1,164 @@
+package com.smartpark.service;
+
+import com.smartpark.model.Constants;
+
+/*
+ * Occupancy-driven pricing per slot type.
+ *
+ * ParkingSystem reports every slot that is added, taken or freed, so the
+ * per-type total and occupied counters are always current and a type's
+ * multiplier follows from them in O(1): PRICING_SURGE_MULTIPLIER while the
+ * type is more than PRICING_SURGE_ABOVE full, PRICING_DISCOUNT_MULTIPLIER
+ * while it is less than PRICING_DISCOUNT_BELOW full, 1 otherwise.
+ *
+ * Multipliers only change when a type crosses a threshold. Then a new
+ * immutable PriceTable is published through a volatile field, so exits and
+ * fee displays read the current table without locking, and the gate path
+ * allocates nothing in between. With pricing disabled every multiplier is 1.
+ *
+ * Updates are not thread-safe: ParkingSystem makes them under the Attendant
+ * monitor, together with the slot change they report.
+ */
+public class DynamicPricing {
+
+    /*
+     * Immutable per-minute rates by slot type code (see Symbols).
+     */
+    public static final class PriceTable {
+        private final double[] multipliers;
+        private final long version;
+
+        PriceTable(double[] multipliers, long version) {
+            this.multipliers = multipliers;
+            this.version = version;
+        }
+
+        public double getMultiplier(int typeCode) {
+            return (typeCode >= 0 && typeCode < multipliers.length) ? multipliers[typeCode] : 1.0;
+        }
+
+        /*
+         * Effective per-minute rate of a slot type.
+         */
+        public double getRate(int typeCode) {
+            return baseRate(typeCode) * getMultiplier(typeCode);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    private int[] totals;          // slots per type code
+    private int[] occupied;        // occupied slots per type code
+    private double[] multipliers;  // multipliers of the published table
+    private boolean enabled;
+    private long version;
+    private volatile PriceTable current;
+
+    public DynamicPricing() {
+        int codes = Constants.SLOT_CODE_HANDICAPPED + 1;
+        totals = new int[codes];
+        occupied = new int[codes];
+        multipliers = new double[codes];
+        for (int i = 0; i < codes; i++) multipliers[i] = 1.0;
+        current = new PriceTable(multipliers.clone(), version);
+    }
+
+    /*
+     * Current price table. Lock-free; the table never changes.
+     */
+    public PriceTable current() {
+        return current;
+    }
+
+    /*
+     * Per-minute rate of a slot type before any multiplier (the regular
+     * rate for types without one of their own).
+     */
+    public static double baseRate(int typeCode) {
+        if (typeCode == Constants.SLOT_CODE_COMPACT) return Constants.RATE_COMPACT_FEE;
+        if (typeCode == Constants.SLOT_CODE_LARGE) return Constants.RATE_LARGE_FEE;
+        if (typeCode == Constants.SLOT_CODE_HANDICAPPED) return Constants.RATE_HANDICAPPED_FEE;
+        return Constants.RATE_REGULAR_FEE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    int getTotal(int typeCode) {
+        return (typeCode >= 0 && typeCode < totals.length) ? totals[typeCode] : 0;
+    }
+
+    int getOccupied(int typeCode) {
+        return (typeCode >= 0 && typeCode < occupied.length) ? occupied[typeCode] : 0;
+    }
+
+    /*
+     * UPDATES (under the Attendant monitor)
+     */
+
+    void setEnabled(boolean enabled) {
+        if (this.enabled == enabled) return;
+        this.enabled = enabled;
+        boolean changed = false;
+        for (int t = 0; t < totals.length; t++) changed |= refresh(t);
+        if (changed) publish();
+    }
+
+    void slotAdded(int typeCode) {
+        ensureType(typeCode);
+        totals[typeCode]++;
+        if (refresh(typeCode)) publish();
+    }
+
+    void slotTaken(int typeCode) {
+        ensureType(typeCode);
+        occupied[typeCode]++;
+        if (refresh(typeCode)) publish();
+    }
+
+    void slotFreed(int typeCode) {
+        ensureType(typeCode);
+        occupied[typeCode]--;
+        if (refresh(typeCode)) publish();
+    }
+
+    // Recompute one type's multiplier; true if it changed
+    private boolean refresh(int typeCode) {
+        double m = multiplierFor(totals[typeCode], occupied[typeCode]);
+        if (m == multipliers[typeCode]) return false;
+        multipliers[typeCode] = m;
+        return true;
+    }
+
+    private double multiplierFor(int total, int taken) {
+        if (!enabled || total == 0) return 1.0;
+        if (taken > total * Constants.PRICING_SURGE_ABOVE) return Constants.PRICING_SURGE_MULTIPLIER;
+        if (taken < total * Constants.PRICING_DISCOUNT_BELOW) return Constants.PRICING_DISCOUNT_MULTIPLIER;
+        return 1.0;
+    }
+
+    private void publish() {
+        version++;
+        current = new PriceTable(multipliers.clone(), version);
+    }
+
+    private void ensureType(int typeCode) {
+        if (typeCode < totals.length) return;
+        int size = Math.max(typeCode + 1, totals.length * 2);
+        int[] largerTotals = new int[size];
+        int[] largerOccupied = new int[size];
+        double[] largerMultipliers = new double[size];
+        for (int i = 0; i < size; i++) largerMultipliers[i] = 1.0;
+        for (int i = 0; i < totals.length; i++) {
+            largerTotals[i] = totals[i];
+            largerOccupied[i] = occupied[i];
+            largerMultipliers[i] = multipliers[i];
+        }
+        totals = largerTotals;
+        occupied = largerOccupied;
+        multipliers = largerMultipliers;
+    }
+}
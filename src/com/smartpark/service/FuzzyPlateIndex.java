@@ -0,0 +1,338 @@
+package com.smartpark.service;
+
+import com.smartpark.model.Booking;
+import com.smartpark.model.LicensePlate;
+import com.smartpark.util.LongIntMap;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/*
+ * Edit-distance index over the plates of open bookings, for camera reads
+ * that came out slightly wrong.
+ *
+ * Plates are first folded so characters that OCR commonly confuses are the
+ * same symbol (O/Q/0, I/L/1, Z/2, S/5, G/6, B/8); such a mix-up then costs
+ * nothing. Dropped, extra and other wrong characters are found with the
+ * symmetric-delete method: every indexed plate is stored under each string
+ * obtained by deleting up to maxDistance of its characters, and a query
+ * looks up its own deletion strings. Any plate within maxDistance edits
+ * shares at least one of them, so a search costs a few dozen hash probes
+ * plus an exact distance check of the few candidates found, independent of
+ * how many plates are indexed.
+ *
+ * A swap of two neighbouring characters counts as one edit in the ranking,
+ * but is only sure to be found when searching with a distance of 2.
+ *
+ * Deletion strings are packed into longs the same way as LicensePlate, and
+ * each maps to a chain of postings in parallel arrays. They are generated
+ * into scratch buffers owned by the index, so add() and remove() (called
+ * on every gate entry and exit with a linked vehicle) allocate nothing
+ * once the buffers have grown. Not thread-safe; VehicleRegistry calls it
+ * under its own lock.
+ */
+public class FuzzyPlateIndex {
+
+    private static final int NONE = -1;
+    private static final int RADIX = 37;
+    private static final int MAX_QUERY_LENGTH = 32;
+
+    /*
+     * One ranked search result.
+     */
+    public static final class Match {
+        public final String plate;
+        public final Booking booking;
+        public final int distance;      // edits after folding confusable characters
+        public final int exactDistance; // edits counting confusable characters too
+
+        Match(String plate, Booking booking, int distance, int exactDistance) {
+            this.plate = plate;
+            this.booking = booking;
+            this.distance = distance;
+            this.exactDistance = exactDistance;
+        }
+
+        @Override
+        public String toString() {
+            return plate + " (distance " + distance + "/" + exactDistance + ", booking #" + booking.getBookingId() + ")";
+        }
+    }
+
+    private final int maxDistance;
+    private final LongIntMap heads;   // deletion string -> first posting
+    private Booking[] postBooking;
+    private int[] postNext;
+    private int postCount;
+    private int freePost = NONE;      // chain of recycled postings
+    private int size;
+
+    // Scratch space
+    private final byte[] plateChars = new byte[LicensePlate.MAX_LENGTH];
+    private final byte[][] shorter;   // one buffer per deletion level
+    private long[] keys = new long[64];
+    private int keyCount;
+
+    public FuzzyPlateIndex(int maxDistance) {
+        this.maxDistance = Math.max(0, maxDistance);
+        this.heads = new LongIntMap(1024, NONE);
+        this.postBooking = new Booking[1024];
+        this.postNext = new int[1024];
+        this.shorter = new byte[this.maxDistance][MAX_QUERY_LENGTH];
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    /*
+     * Number of bookings indexed.
+     */
+    public int size() {
+        return size;
+    }
+
+    /*
+     * Index a booking under its plate code (ignored if it has none).
+     */
+    public void add(Booking booking) {
+        int n = foldPlate(booking.getPlateCode());
+        if (n == 0) return;
+        deletions(plateChars, n, maxDistance);
+        for (int k = 0; k < keyCount; k++) {
+            long key = keys[k];
+            int p = allocPosting();
+            postBooking[p] = booking;
+            postNext[p] = heads.put(key, p);
+        }
+        size++;
+    }
+
+    /*
+     * Remove a booking added earlier; its plate code must not have changed since.
+     */
+    public void remove(Booking booking) {
+        int n = foldPlate(booking.getPlateCode());
+        if (n == 0) return;
+        deletions(plateChars, n, maxDistance);
+        boolean found = false;
+        for (int k = 0; k < keyCount; k++) {
+            long key = keys[k];
+            int prev = NONE;
+            int p = heads.get(key);
+            while (p != NONE && postBooking[p] != booking) {
+                prev = p;
+                p = postNext[p];
+            }
+            if (p == NONE) continue;
+            found = true;
+            if (prev != NONE) {
+                postNext[prev] = postNext[p];
+            } else if (postNext[p] != NONE) {
+                heads.put(key, postNext[p]);
+            } else {
+                heads.remove(key);
+            }
+            postBooking[p] = null;
+            postNext[p] = freePost;
+            freePost = p;
+        }
+        if (found) size--;
+    }
+
+    public void clear() {
+        heads.clear();
+        for (int i = 0; i < postCount; i++) postBooking[i] = null;
+        postCount = 0;
+        freePost = NONE;
+        size = 0;
+    }
+
+    /*
+     * Bookings whose plate is within maxDistance edits of the read,
+     * best first: fewest edits after folding, then fewest exact edits.
+     */
+    public Match[] search(CharSequence read, int maxDistance) {
+        int limit = Math.min(maxDistance, this.maxDistance);
+        byte[] exact = values(read);
+        if (exact == null || exact.length == 0) return new Match[0];
+        byte[] query = exact.clone();
+        for (int i = 0; i < query.length; i++) query[i] = FOLD[query[i]];
+
+        deletions(query, query.length, limit);
+        IdentityHashMap<Booking, Boolean> seen = new IdentityHashMap<>();
+        Match[] found = new Match[8];
+        int count = 0;
+
+        for (int k = 0; k < keyCount; k++) {
+            for (int p = heads.get(keys[k]); p != NONE; p = postNext[p]) {
+                Booking b = postBooking[p];
+                if (seen.put(b, Boolean.TRUE) != null) continue;
+
+                byte[] plateExact = values(b.getLicensePlate());
+                byte[] plate = plateExact.clone();
+                for (int i = 0; i < plate.length; i++) plate[i] = FOLD[plate[i]];
+                int d = distance(query, plate);
+                if (d > limit) continue;
+
+                if (count == found.length) {
+                    Match[] larger = new Match[count * 2];
+                    for (int i = 0; i < count; i++) larger[i] = found[i];
+                    found = larger;
+                }
+                found[count++] = new Match(b.getLicensePlate(), b, d, distance(exact, plateExact));
+            }
+        }
+
+        Match[] result = new Match[count];
+        for (int i = 0; i < count; i++) result[i] = found[i];
+        Arrays.sort(result, (x, y) -> {
+            if (x.distance != y.distance) return Integer.compare(x.distance, y.distance);
+            if (x.exactDistance != y.exactDistance) return Integer.compare(x.exactDistance, y.exactDistance);
+            return x.plate.compareTo(y.plate);
+        });
+        return result;
+    }
+
+    /*
+     * CHARACTER HANDLING
+     * Characters are LicensePlate values: 1..10 for digits, 11..36 for A-Z.
+     */
+
+    private static final byte[] FOLD = new byte[RADIX];
+
+    static {
+        for (int v = 0; v < RADIX; v++) FOLD[v] = (byte) v;
+        fold('O', '0');
+        fold('Q', '0');
+        fold('I', '1');
+        fold('L', '1');
+        fold('Z', '2');
+        fold('S', '5');
+        fold('G', '6');
+        fold('B', '8');
+    }
+
+    private static void fold(char letter, char digit) {
+        FOLD[letter - 'A' + 11] = (byte) (digit - '0' + 1);
+    }
+
+    // Plate characters of a read, separators dropped; null if it has others
+    private static byte[] values(CharSequence s) {
+        if (s == null || s.length() > MAX_QUERY_LENGTH) return null;
+        byte[] out = new byte[s.length()];
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') out[n++] = (byte) (c - '0' + 1);
+            else if (c >= 'A' && c <= 'Z') out[n++] = (byte) (c - 'A' + 11);
+            else if (c >= 'a' && c <= 'z') out[n++] = (byte) (c - 'a' + 11);
+            else if (c != ' ' && c != '-' && c != '.') return null;
+        }
+        if (n == out.length) return out;
+        byte[] trimmed = new byte[n];
+        for (int i = 0; i < n; i++) trimmed[i] = out[i];
+        return trimmed;
+    }
+
+    /*
+     * Folded characters of an encoded plate into plateChars (the code holds
+     * the same character values, base RADIX); returns the length, 0 for no plate.
+     */
+    private int foldPlate(long code) {
+        if (code <= 0) return 0;
+        int n = 0;
+        for (long c = code; c > 0; c /= RADIX) n++;
+        for (int i = n - 1; i >= 0; i--) {
+            plateChars[i] = FOLD[(int) (code % RADIX)];
+            code /= RADIX;
+        }
+        return n;
+    }
+
+    /*
+     * Packed codes of every distinct string made by deleting up to depth
+     * characters of s[0..n), s itself included, into keys[0..keyCount).
+     * Strings too long to pack cannot match an indexed plate and are skipped.
+     */
+    private void deletions(byte[] s, int n, int depth) {
+        keyCount = 0;
+        collect(s, n, depth, 0);
+    }
+
+    private void collect(byte[] s, int n, int depth, int from) {
+        if (n <= LicensePlate.MAX_LENGTH) {
+            long code = 0;
+            for (int i = 0; i < n; i++) code = code * RADIX + s[i];
+            boolean duplicate = false;
+            for (int i = 0; i < keyCount && !duplicate; i++) duplicate = (keys[i] == code);
+            if (!duplicate) {
+                if (keyCount == keys.length) {
+                    long[] larger = new long[keys.length * 2];
+                    for (int i = 0; i < keys.length; i++) larger[i] = keys[i];
+                    keys = larger;
+                }
+                keys[keyCount++] = code;
+            }
+        }
+        if (depth == 0 || n == 0) return;
+
+        // Delete positions in increasing order so each set of deletions is visited once;
+        // each level has its own buffer, as the one above is still being read
+        byte[] next = shorter[depth - 1];
+        for (int i = from; i < n; i++) {
+            System.arraycopy(s, 0, next, 0, i);
+            System.arraycopy(s, i + 1, next, i, n - i - 1);
+            collect(next, n - 1, depth - 1, i);
+        }
+    }
+
+    /*
+     * Optimal string alignment distance (Levenshtein plus swaps of two
+     * neighbouring characters, a common OCR slip).
+     */
+    private static int distance(byte[] a, byte[] b) {
+        int n = a.length;
+        int m = b.length;
+        int[] prev2 = new int[m + 1];
+        int[] prev = new int[m + 1];
+        int[] cur = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j;
+
+        for (int i = 1; i <= n; i++) {
+            cur[0] = i;
+            for (int j = 1; j <= m; j++) {
+                int cost = (a[i - 1] == b[j - 1]) ? 0 : 1;
+                int d = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a[i - 1] == b[j - 2] && a[i - 2] == b[j - 1]) {
+                    d = Math.min(d, prev2[j - 2] + 1);
+                }
+                cur[j] = d;
+            }
+            int[] t = prev2;
+            prev2 = prev;
+            prev = cur;
+            cur = t;
+        }
+        return prev[m];
+    }
+
+    private int allocPosting() {
+        if (freePost != NONE) {
+            int p = freePost;
+            freePost = postNext[p];
+            return p;
+        }
+        if (postCount == postBooking.length) {
+            Booking[] largerBookings = new Booking[postCount * 2];
+            int[] largerNext = new int[postCount * 2];
+            for (int i = 0; i < postCount; i++) {
+                largerBookings[i] = postBooking[i];
+                largerNext[i] = postNext[i];
+            }
+            postBooking = largerBookings;
+            postNext = largerNext;
+        }
+        return postCount++;
+    }
+}
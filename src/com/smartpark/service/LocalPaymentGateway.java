@@ -0,0 +1,105 @@
+package com.smartpark.service;
+
+import com.smartpark.interfaces.PaymentGateway;
+import com.smartpark.model.PaymentIntent;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * In-process stand-in for a payment processor, for development and testing.
+ *
+ * Every batch is answered after latencyMs. A fraction of intents (and of
+ * whole batches) can be made to fail transiently, and charges above
+ * declineAbove are declined. Results are remembered per idempotency key,
+ * so a resubmitted key gets its original answer and is never charged twice.
+ */
+public class LocalPaymentGateway implements PaymentGateway {
+
+    private final long latencyMs;
+    private final double failureRate;   // chance that one intent answers RETRY
+    private final double batchFailureRate; // chance that a whole batch fails
+    private final double declineAbove;
+    private final Random random = new Random();
+
+    private final ScheduledExecutorService timer;
+    private final ConcurrentHashMap<String, Integer> results = new ConcurrentHashMap<>();
+    private final AtomicLong chargedCents = new AtomicLong();
+    private final AtomicLong refundedCents = new AtomicLong();
+    private final AtomicLong duplicateCount = new AtomicLong();
+
+    public LocalPaymentGateway(long latencyMs) {
+        this(latencyMs, 0.0, 0.0, Double.MAX_VALUE);
+    }
+
+    public LocalPaymentGateway(long latencyMs, double failureRate, double batchFailureRate, double declineAbove) {
+        this.latencyMs = Math.max(0, latencyMs);
+        this.failureRate = failureRate;
+        this.batchFailureRate = batchFailureRate;
+        this.declineAbove = declineAbove;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "local-gateway");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public CompletableFuture<int[]> submit(PaymentIntent[] intents, int count) {
+        final PaymentIntent[] batch = new PaymentIntent[count];
+        for (int i = 0; i < count; i++) batch[i] = intents[i];
+
+        CompletableFuture<int[]> future = new CompletableFuture<>();
+        timer.schedule(() -> {
+            if (nextDouble() < batchFailureRate) {
+                future.completeExceptionally(new RuntimeException("Gateway unavailable"));
+                return;
+            }
+            int[] codes = new int[batch.length];
+            for (int i = 0; i < batch.length; i++) codes[i] = process(batch[i]);
+            future.complete(codes);
+        }, latencyMs, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    private int process(PaymentIntent intent) {
+        Integer previous = results.get(intent.getIdempotencyKey());
+        if (previous != null) {
+            duplicateCount.incrementAndGet();
+            return previous.intValue();
+        }
+        if (nextDouble() < failureRate) return RESULT_RETRY;
+
+        int code;
+        long cents = Math.round(intent.getAmount() * 100);
+        if (PaymentIntent.KIND_REFUND.equals(intent.getKind())) {
+            refundedCents.addAndGet(cents);
+            code = RESULT_OK;
+        } else if (intent.getAmount() > declineAbove) {
+            code = RESULT_DECLINED;
+        } else {
+            chargedCents.addAndGet(cents);
+            code = RESULT_OK;
+        }
+        results.put(intent.getIdempotencyKey(), Integer.valueOf(code));
+        return code;
+    }
+
+    private synchronized double nextDouble() {
+        return random.nextDouble();
+    }
+
+    public void shutdown() {
+        timer.shutdown();
+    }
+
+    public double getTotalCharged() { return chargedCents.get() / 100.0; }
+    public double getTotalRefunded() { return refundedCents.get() / 100.0; }
+    public long getDuplicateCount() { return duplicateCount.get(); }
+    public int getProcessedCount() { return results.size(); }
+}
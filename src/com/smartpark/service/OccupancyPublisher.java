@@ -0,0 +1,210 @@
+package com.smartpark.service;
+
+import com.smartpark.model.Booking;
+
+/*
+ * Writer side of OccupancySnapshot.
+ * ParkingSystem records slot changes here as they happen and calls publish()
+ * once per operation, or once per interval for gate commands (see
+ * ParkingSystem.schedulePublish). Recording a change only notes the booking now holding the slot;
+ * the ActiveBooking views and copied chunks are made in publish(), so a
+ * stream of changes without a publish allocates nothing. Only chunks touched
+ * since the previous publish are copied, so a publish costs
+ * O(changed slots + slots/64) rather than O(slots).
+ * Not thread-safe: ParkingSystem guards it with the Attendant monitor.
+ */
+final class OccupancyPublisher {
+
+    private volatile OccupancySnapshot current;
+
+    private int[] slotIds;
+    private String[] slotTypes;
+    private int slotCount;
+
+    private OccupancySnapshot.ActiveBooking[][] chunks;
+    private boolean chunksShared;     // top-level array is referenced by the published snapshot
+    private boolean[] chunkOwned;     // chunk was copied since the last publish
+    private int[] dirtyChunks;
+    private int dirtyCount;
+
+    // Slot changes recorded since the last publish, by slot position
+    private Booking[] pendingBookings;
+    private boolean[] pendingDirty;
+    private int[] dirtySlots;
+    private int dirtySlotCount;
+    private boolean[] occupied;       // occupancy including unpublished changes
+
+    private int occupiedCount;
+    private long version;
+    private volatile boolean changed;
+
+    OccupancyPublisher(int initialSlotCapacity) {
+        if (initialSlotCapacity <= 0) initialSlotCapacity = OccupancySnapshot.CHUNK_SIZE;
+        int chunkCapacity = (initialSlotCapacity + OccupancySnapshot.CHUNK_MASK) >>> OccupancySnapshot.CHUNK_SHIFT;
+
+        this.slotIds = new int[initialSlotCapacity];
+        this.slotTypes = new String[initialSlotCapacity];
+        this.pendingBookings = new Booking[initialSlotCapacity];
+        this.pendingDirty = new boolean[initialSlotCapacity];
+        this.dirtySlots = new int[initialSlotCapacity];
+        this.occupied = new boolean[initialSlotCapacity];
+        this.chunks = new OccupancySnapshot.ActiveBooking[0][];
+        this.chunkOwned = new boolean[chunkCapacity];
+        this.dirtyChunks = new int[chunkCapacity];
+        this.current = new OccupancySnapshot(0, 0, slotIds, slotTypes, chunks, 0);
+        this.chunksShared = true;
+    }
+
+    OccupancySnapshot get() {
+        return current;
+    }
+
+    /*
+     * True if changes were recorded since the last publish.
+     */
+    boolean hasUnpublishedChanges() {
+        return changed;
+    }
+
+    /*
+     * Pre-size for a known total number of slots (bulk provisioning).
+     */
+    void ensureCapacity(int totalSlots) {
+        if (totalSlots <= slotIds.length) return;
+        resize(totalSlots);
+    }
+
+    /*
+     * Register a new slot at the next position. Returns that position.
+     */
+    int addSlot(int slotId, String type) {
+        int index = slotCount;
+
+        if (index == slotIds.length) resize(slotIds.length * 2);
+        // Positions past a snapshot's slotCount are never read by it, so appending in place is safe
+        slotIds[index] = slotId;
+        slotTypes[index] = type;
+
+        int c = index >>> OccupancySnapshot.CHUNK_SHIFT;
+        if (c == chunks.length) {
+            OccupancySnapshot.ActiveBooking[][] larger = new OccupancySnapshot.ActiveBooking[c + 1][];
+            for (int i = 0; i < c; i++) larger[i] = chunks[i];
+            larger[c] = new OccupancySnapshot.ActiveBooking[OccupancySnapshot.CHUNK_SIZE];
+            chunks = larger;
+            chunksShared = false;
+            markOwned(c);
+        }
+
+        slotCount++;
+        changed = true;
+        return index;
+    }
+
+    /*
+     * Record the booking now holding the slot at this position (null = free).
+     * Its view is taken when the change is published, so it shows the
+     * booking's state at that time.
+     */
+    void set(int index, Booking booking) {
+        if (!pendingDirty[index]) {
+            pendingDirty[index] = true;
+            dirtySlots[dirtySlotCount++] = index;
+        }
+        pendingBookings[index] = booking;
+
+        if (!occupied[index] && booking != null) occupiedCount++;
+        else if (occupied[index] && booking == null) occupiedCount--;
+        occupied[index] = (booking != null);
+        changed = true;
+    }
+
+    /*
+     * Publish everything recorded since the last call as a new snapshot.
+     * Does nothing if there were no changes.
+     */
+    OccupancySnapshot publish() {
+        if (!changed) return current;
+
+        for (int i = 0; i < dirtySlotCount; i++) {
+            int index = dirtySlots[i];
+            apply(index, view(pendingBookings[index]));
+            pendingBookings[index] = null;
+            pendingDirty[index] = false;
+        }
+        dirtySlotCount = 0;
+
+        version++;
+        OccupancySnapshot snapshot = new OccupancySnapshot(version, slotCount, slotIds, slotTypes,
+                chunks, occupiedCount);
+
+        for (int i = 0; i < dirtyCount; i++) chunkOwned[dirtyChunks[i]] = false;
+        dirtyCount = 0;
+        chunksShared = true;
+        changed = false;
+
+        current = snapshot;
+        return snapshot;
+    }
+
+    // Copy-on-write store of one slot's view into the chunks
+    private void apply(int index, OccupancySnapshot.ActiveBooking view) {
+        int c = index >>> OccupancySnapshot.CHUNK_SHIFT;
+        int o = index & OccupancySnapshot.CHUNK_MASK;
+
+        if (chunksShared) {
+            chunks = chunks.clone();
+            chunksShared = false;
+        }
+        OccupancySnapshot.ActiveBooking[] chunk = chunks[c];
+        if (!chunkOwned[c]) {
+            chunk = chunk.clone();
+            chunks[c] = chunk;
+            markOwned(c);
+        }
+        chunk[o] = view;
+    }
+
+    private static OccupancySnapshot.ActiveBooking view(Booking booking) {
+        if (booking == null) return null;
+        return new OccupancySnapshot.ActiveBooking(booking.getBookingId().intValue(), booking.getUsername(),
+                booking.getSlotId(), booking.getStatus(), booking.getCreationTime(), booking.getEntryTime());
+    }
+
+    private void resize(int capacity) {
+        int[] largerIds = new int[capacity];
+        String[] largerTypes = new String[capacity];
+        Booking[] largerPending = new Booking[capacity];
+        boolean[] largerDirty = new boolean[capacity];
+        int[] largerDirtySlots = new int[capacity];
+        boolean[] largerOccupied = new boolean[capacity];
+        for (int i = 0; i < slotCount; i++) {
+            largerIds[i] = slotIds[i];
+            largerTypes[i] = slotTypes[i];
+            largerPending[i] = pendingBookings[i];
+            largerDirty[i] = pendingDirty[i];
+            largerOccupied[i] = occupied[i];
+        }
+        for (int i = 0; i < dirtySlotCount; i++) largerDirtySlots[i] = dirtySlots[i];
+        slotIds = largerIds;
+        slotTypes = largerTypes;
+        pendingBookings = largerPending;
+        pendingDirty = largerDirty;
+        dirtySlots = largerDirtySlots;
+        occupied = largerOccupied;
+    }
+
+    private void markOwned(int c) {
+        if (c >= chunkOwned.length) {
+            boolean[] largerOwned = new boolean[Math.max(c + 1, chunkOwned.length * 2)];
+            for (int i = 0; i < chunkOwned.length; i++) largerOwned[i] = chunkOwned[i];
+            chunkOwned = largerOwned;
+        }
+        if (dirtyCount == dirtyChunks.length) {
+            int[] largerDirty = new int[Math.max(dirtyCount + 1, dirtyChunks.length * 2)];
+            for (int i = 0; i < dirtyCount; i++) largerDirty[i] = dirtyChunks[i];
+            dirtyChunks = largerDirty;
+        }
+        chunkOwned[c] = true;
+        dirtyChunks[dirtyCount++] = c;
+    }
+}
@@ -0,0 +1,133 @@
+package com.smartpark.service;
+
+/*
+ * Immutable, versioned point-in-time view of slot occupancy and of the
+ * bookings currently holding slots (PENDING or ACTIVE).
+ *
+ * Snapshots are published by ParkingSystem through a volatile reference, so
+ * readers (slot listings, signage, apps) never lock and never see a
+ * half-applied change. Successive snapshots share every 64-slot chunk that
+ * did not change between them.
+ */
+public final class OccupancySnapshot {
+
+    static final int CHUNK_SHIFT = 6;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final long version;
+    private final int slotCount;
+    private final int[] slotIds;              // append-only, shared between versions
+    private final String[] slotTypes;         // append-only, shared between versions
+    private final ActiveBooking[][] chunks;   // chunks[i >> 6][i & 63] = booking holding slot i
+    private final int occupiedCount;
+
+    OccupancySnapshot(long version, int slotCount, int[] slotIds, String[] slotTypes,
+                      ActiveBooking[][] chunks, int occupiedCount) {
+        this.version = version;
+        this.slotCount = slotCount;
+        this.slotIds = slotIds;
+        this.slotTypes = slotTypes;
+        this.chunks = chunks;
+        this.occupiedCount = occupiedCount;
+    }
+
+    /*
+     * Immutable copy of a booking that currently holds a slot.
+     */
+    public static final class ActiveBooking {
+        private final int bookingId;
+        private final String username;
+        private final int slotId;
+        private final String status;
+        private final long creationTime;
+        private final long entryTime;
+
+        ActiveBooking(int bookingId, String username, int slotId, String status,
+                      long creationTime, long entryTime) {
+            this.bookingId = bookingId;
+            this.username = username;
+            this.slotId = slotId;
+            this.status = status;
+            this.creationTime = creationTime;
+            this.entryTime = entryTime;
+        }
+
+        public int getBookingId() { return bookingId; }
+        public String getUsername() { return username; }
+        public int getSlotId() { return slotId; }
+        public String getStatus() { return status; }
+        public long getCreationTime() { return creationTime; }
+        public long getEntryTime() { return entryTime; }
+
+        @Override
+        public String toString() {
+            return "ActiveBooking[id=" + bookingId + ", user=" + username +
+                   ", slot=" + slotId + ", status=" + status + "]";
+        }
+    }
+
+    public long getVersion() { return version; }
+    public int getSlotCount() { return slotCount; }
+    public int getOccupiedCount() { return occupiedCount; }
+    public int getFreeCount() { return slotCount - occupiedCount; }
+
+    /*
+     * Free slots of the given type (null = any type) at the time of this
+     * snapshot. Walks the slots, so it costs O(slots).
+     */
+    public int getFreeCount(String type) {
+        if (type == null) return getFreeCount();
+        int free = 0;
+        for (int i = 0; i < slotCount; i++) {
+            if (type.equals(slotTypes[i]) && chunks[i >>> CHUNK_SHIFT][i & CHUNK_MASK] == null) free++;
+        }
+        return free;
+    }
+
+    /*
+     * Slot accessors by position (0 .. getSlotCount()-1), in the order slots were added.
+     */
+    public int getSlotId(int index) {
+        checkIndex(index);
+        return slotIds[index];
+    }
+
+    public String getSlotType(int index) {
+        checkIndex(index);
+        return slotTypes[index];
+    }
+
+    public boolean isOccupied(int index) {
+        return getActiveBooking(index) != null;
+    }
+
+    /*
+     * Booking holding the slot at this position, or null if the slot is free.
+     */
+    public ActiveBooking getActiveBooking(int index) {
+        checkIndex(index);
+        return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    /*
+     * All bookings holding a slot at the time of this snapshot, in slot order.
+     */
+    public ActiveBooking[] getActiveBookings() {
+        ActiveBooking[] result = new ActiveBooking[occupiedCount];
+        int n = 0;
+        for (int c = 0; c < chunks.length && n < occupiedCount; c++) {
+            ActiveBooking[] chunk = chunks[c];
+            for (int o = 0; o < CHUNK_SIZE; o++) {
+                if (chunk[o] != null) result[n++] = chunk[o];
+            }
+        }
+        return result;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= slotCount) {
+            throw new IndexOutOfBoundsException("Slot index " + index + " out of range 0.." + (slotCount - 1));
+        }
+    }
+}
@@ -1,494 +1,1936 @@
-package com.smartpark.service;
-
-import com.smartpark.interfaces.*;
-import com.smartpark.model.*;
-import com.smartpark.exceptions.SlotNotAvailableException;
-
-import java.io.IOException;
-
-/*
- * Core manager class for the Smart Parking System.
- * Handles slot management, booking creation, and attendant operations.
- */
-public class ParkingSystem {
-	
-    private ParkingSlot[] parkingSlots; // Array storage for slots
-    private int slotCount;
-
-    private Booking[] bookings;         // Array storage for bookings
-    private int bookingCount;
-
-    private Integer nextBookingId;      // Auto-incrementing ID for bookings
-
-    private Attendant attendant;        // Inner class instance handling operations
-
-    /*
-     * Constructor with custom capacity.
-     */
-    public ParkingSystem(int initialSlotCapacity, int initialBookingCapacity) {
-        if (initialSlotCapacity <= 0) initialSlotCapacity = 20;
-        if (initialBookingCapacity <= 0) initialBookingCapacity = 100;
-
-        this.parkingSlots = new ParkingSlot[initialSlotCapacity];
-        this.slotCount = 0;
-
-        this.bookings = new Booking[initialBookingCapacity];
-        this.bookingCount = 0;
-
-        this.nextBookingId = 1;
-        this.attendant = new Attendant();
-    }
-
-    /*
-     * Default constructor.
-     */
-    public ParkingSystem() {
-        this(20, 100);
-    }
-
-    /* NESTED CLASS: ParkingSlot (Static)
-     * Represents a physical space in the parking lot.
-     */
-    public static class ParkingSlot {
-        private int id;
-        private String type;             // e.g., COMPACT, REGULAR
-        private boolean occupied;        // Tracker for availability
-        private Integer currentBookingId;// Reference to the active booking
-
-        public ParkingSlot(int id, String type) {
-            this.id = id;
-            this.type = type;
-            this.occupied = false;
-            this.currentBookingId = null;
-        }
-
-        public int getId() { return id; }
-        public String getType() { return type; }
-        public boolean isOccupied() { return occupied; }
-
-        // Mark the slot as occupied by a specific booking
-        public void assign(Integer bookingId) {
-            this.occupied = true;
-            this.currentBookingId = bookingId;
-        }
-
-        // Free up the slot
-        public void release() {
-            this.occupied = false;
-            this.currentBookingId = null;
-        }
-        
-        public Integer getCurrentBookingId() {
-            return currentBookingId;
-        }
-    }
-
-    /*
-     * INNER CLASS: Attendant
-     * Handles operational tasks: Entry, Exit, and Payments.
-     * Implements multiple interfaces (EntryExitHandler, Payment).
-     */
-    public class Attendant implements EntryExitHandler, Payment {
-
-        /*
-         * Marks the vehicle entry.
-         * Updates status to ACTIVE and records the Entry Timestamp.
-         */
-    	public void markEntry(Booking booking) {
-    	    if (booking == null) {
-    	        System.out.println("[Error] Cannot mark entry: Booking is null.");
-    	        return;
-    	    }
-
-    	    // Validate booking status - can only mark entry for PENDING bookings
-    	    String currentStatus = booking.getStatus();
-    	    if (!Constants.STATUS_PENDING.equals(currentStatus)) {
-    	        System.out.println("[Error] Cannot mark entry for Booking ID " + booking.getBookingId() + 
-    	                         ". Current status: " + currentStatus + ". Only PENDING bookings can be marked as entry.");
-    	        return;
-    	    }
-
-    	    // 1. Set status to ACTIVE (Vehicle is now inside)
-    	    booking.setStatus(Constants.STATUS_ACTIVE);
-    	    
-    	    // 2. Capture Entry Time (Critical for billing)
-    	    long entryTimestamp = System.currentTimeMillis();
-    	    booking.setEntryTime(entryTimestamp);
-
-    	    // 3. Ensure slot exists and is properly assigned
-    	    int slotId = booking.getSlotId();
-    	    ParkingSlot slot = findSlotById(slotId);
-    	    
-    	    if (slot == null) {
-    	        System.out.println("[Error] Slot ID " + slotId + " not found during markEntry for Booking ID " + booking.getBookingId());
-    	        // Revert status change if slot doesn't exist
-    	        booking.setStatus(Constants.STATUS_PENDING);
-    	        return;
-    	    }
-    	    
-    	    // Ensure slot is marked as occupied (should already be from reservation, but verify)
-    	    if (!slot.isOccupied()) {
-    	        slot.assign(booking.getBookingId());
-    	    }
-    	}
-
-        /*
-         * Marks the vehicle exit.
-         * Updates status to COMPLETED, records Exit Timestamp, and calculates DURATION-BASED Fee.
-         * Fee is calculated PER MINUTE.
-         * Only works on ACTIVE bookings (vehicles that have entered).
-         */
-        public void markExit(Booking booking) {
-            if (booking == null) {
-                System.out.println("[Error] Cannot mark exit: Booking is null.");
-                return;
-            }
-
-            // Validate booking status - can only mark exit for ACTIVE bookings
-            String currentStatus = booking.getStatus();
-            if (!Constants.STATUS_ACTIVE.equals(currentStatus)) {
-                System.out.println("[Error] Cannot mark exit for Booking ID " + booking.getBookingId() + 
-                                 ". Current status: " + currentStatus + ". Only ACTIVE bookings can be marked as exit.");
-                return;
-            }
-
-            // Validate that entry was actually marked (entryTime should be set)
-            long entryTimestamp = booking.getEntryTime();
-            if (entryTimestamp <= 0) {
-                System.out.println("[Error] Cannot mark exit for Booking ID " + booking.getBookingId() + 
-                                 ". Entry time was never recorded. Please mark entry first.");
-                return;
-            }
-
-            // 1. Capture Exit Time
-            long exitTimestamp = System.currentTimeMillis();
-            booking.setExitTime(exitTimestamp);
-
-            // 2. Validate exit time is after entry time
-            if (exitTimestamp < entryTimestamp) {
-                System.out.println("[Error] Exit time cannot be before entry time for Booking ID " + booking.getBookingId());
-                booking.setExitTime(0); // Reset exit time
-                return;
-            }
-
-            // 3. Calculate Duration in Minutes
-            long durationInMillis = exitTimestamp - entryTimestamp;
-            // Convert milliseconds to minutes, rounding up
-            double minutesParked = Math.ceil(durationInMillis / (1000.0 * 60));
-            
-            // Ensure at least 1 minute is charged 
-            if (minutesParked < 1.0) minutesParked = 1.0;
-
-            // 4. Determine Per-Minute Rate based on Slot Type
-            int slotId = booking.getSlotId();
-            ParkingSlot slot = findSlotById(slotId);
-            double perMinuteRate = Constants.RATE_REGULAR_FEE; // Default fallback
-
-            if (slot != null) {
-                String type = slot.getType();
-                if (Constants.SLOT_COMPACT.equals(type)) perMinuteRate = Constants.RATE_COMPACT_FEE;
-                else if (Constants.SLOT_REGULAR.equals(type)) perMinuteRate = Constants.RATE_REGULAR_FEE;
-                else if (Constants.SLOT_LARGE.equals(type)) perMinuteRate = Constants.RATE_LARGE_FEE;
-                else if (Constants.SLOT_HANDICAPPED.equals(type)) perMinuteRate = Constants.RATE_HANDICAPPED_FEE;
-            } else {
-                System.out.println("[Warning] Slot ID " + slotId + " not found for Booking ID " + booking.getBookingId() + 
-                                 ". Using default rate: $" + perMinuteRate + "/min");
-            }
-
-            // 5. Final Calculation: Minutes * Rate
-            double totalAmount = minutesParked * perMinuteRate;
-            booking.setAmount(Double.valueOf(totalAmount));
-
-            // 6. Set status to COMPLETED
-            booking.setStatus(Constants.STATUS_COMPLETED);
-
-            // 7. Free the physical parking slot
-            if (slot != null) {
-                slot.release();
-            } else {
-                System.out.println("[Warning] Could not release slot " + slotId + " - slot not found.");
-            }
-        }
-
-        /**
-         * Process payment for a completed booking.
-         * Validates that the booking is in a payable state and amount is sufficient.
-         * Returns true if payment succeeds, false otherwise.
-         */
-        public boolean pay(Booking booking, Double amount) {
-            if (booking == null || amount == null) {
-                System.out.println("[Error] Payment failed: Booking or amount is null.");
-                return false;
-            }
-            
-            if (amount.doubleValue() < 0) {
-                System.out.println("[Error] Payment failed: Amount cannot be negative.");
-                return false;
-            }
-            
-            // Only allow payment for COMPLETED bookings
-            String status = booking.getStatus();
-            if (!Constants.STATUS_COMPLETED.equals(status)) {
-                System.out.println("[Error] Payment failed: Booking ID " + booking.getBookingId() + 
-                                 " is not in COMPLETED status. Current status: " + status);
-                return false;
-            }
-            
-            Double due = booking.getAmount();
-            
-            if (due == null) {
-                // If amount wasn't calculated yet, accept the payment amount
-                booking.setAmount(amount);
-                return true;
-            }
-            
-            boolean paymentAccepted = amount.doubleValue() >= due.doubleValue();
-            if (!paymentAccepted) {
-                System.out.println("[Error] Payment failed: Amount $" + String.format("%.2f", amount) + 
-                                 " is less than due amount $" + String.format("%.2f", due));
-            }
-            return paymentAccepted;
-        }
-
-        /**
-         * Check if a refund can be processed for a booking.
-         * Returns true if refund is possible, false otherwise.
-         * Note: This validates refund eligibility but doesn't actually process the refund.
-         */
-        public boolean refund(Booking booking, Double amount) {
-            if (booking == null || amount == null) {
-                System.out.println("[Error] Refund check failed: Booking or amount is null.");
-                return false;
-            }
-            
-            if (amount.doubleValue() < 0) {
-                System.out.println("[Error] Refund check failed: Amount cannot be negative.");
-                return false;
-            }
-            
-            // Only allow refunds for COMPLETED bookings
-            String status = booking.getStatus();
-            if (!Constants.STATUS_COMPLETED.equals(status)) {
-                System.out.println("[Error] Refund not allowed: Booking ID " + booking.getBookingId() + 
-                                 " is not in COMPLETED status. Current status: " + status);
-                return false;
-            }
-            
-            return true;
-        }
-    }
-
-    /*
-     * Cleanup method to auto-cancel bookings that have timed out.
-     * Should be called before performing operations like showing slots or reserving.
-     */
-    public void processExpirations() {
-        long currentTime = System.currentTimeMillis();
-
-        for (int i = 0; i < bookingCount; i++) {
-            Booking booking = bookings[i];
-            
-            // We only check bookings that are still PENDING (user hasn't arrived yet)
-            if (booking != null && Constants.STATUS_PENDING.equals(booking.getStatus())) {
-                
-                long creationTime = booking.getCreationTime();
-                long ageInMillis = currentTime - creationTime;
-
-                // Check if the booking is older than the allowed timeout (i.e., 1 min)
-                if (ageInMillis > Constants.BOOKING_TIMEOUT_MS) {
-                    
-                    // 1. Change status to CANCELLED
-                    booking.setStatus(Constants.STATUS_CANCELLED);
-                    
-                    // 2. Free the slot immediately
-                    ParkingSlot slot = findSlotById(booking.getSlotId());
-                    if (slot != null) {
-                        slot.release();
-                    }
-                    
-                    System.out.println("[System] Booking ID " + booking.getBookingId() + " expired and was auto-cancelled.");
-                }
-            }
-        }
-    }
-
-    /*
-     * Add a single parking slot. Resizes array if necessary.
-     */
-    public void addSlot(String type) {
-        if (slotCount == parkingSlots.length) {
-            ParkingSlot[] larger = new ParkingSlot[parkingSlots.length * 2];
-            for (int i = 0; i < parkingSlots.length; i++) larger[i] = parkingSlots[i];
-            parkingSlots = larger;
-        }
-        int id = slotCount + 1;
-        parkingSlots[slotCount] = new ParkingSlot(id, type);
-        slotCount++;
-    }
-
-    /*
-     * Vararg overloading: Add multiple slots at once.
-     */
-    public void addSlot(String... types) {
-        if (types == null) return;
-        for (String t : types) {
-            addSlot(t);
-        }
-    }
-
-    public ParkingSlot findSlotById(int id) {
-        for (int i = 0; i < slotCount; i++) {
-            ParkingSlot s = parkingSlots[i];
-            if (s != null && s.getId() == id) return s;
-        }
-        return null;
-    }
-
-    /*
-     * Reserve a specific slot by ID.
-     * Validates slot existence and availability before creating the booking.
-     */
-    public Booking reserveSlot(int slotId, User user) throws SlotNotAvailableException {
-        if (user == null) {
-            throw new SlotNotAvailableException("Cannot reserve slot: User is null.");
-        }
-        
-        ParkingSlot slot = findSlotById(slotId);
-        
-        if (slot == null) {
-            throw new SlotNotAvailableException("Slot id " + slotId + " does not exist.");
-        }
-        if (slot.isOccupied()) {
-            throw new SlotNotAvailableException("Slot id " + slotId + " is already occupied.");
-        }
-
-        // Create new booking
-        Booking newBooking = new Booking(user.getUsername(), slotId);
-        
-        // Note: Creation time is set inside the Booking constructor now
-        newBooking.setStatus(Constants.STATUS_PENDING);
-        newBooking.setBookingId(nextBookingId);
-        nextBookingId++;
-
-        // Store booking (resize array if necessary)
-        if (bookingCount == bookings.length) {
-            Booking[] larger = new Booking[bookings.length * 2];
-            for (int i = 0; i < bookings.length; i++) larger[i] = bookings[i];
-            bookings = larger;
-        }
-        bookings[bookingCount] = newBooking;
-        bookingCount++;
-
-        // Mark slot as physically assigned (reserved for this booking)
-        slot.assign(newBooking.getBookingId());
-
-        // Link booking to user
-        user.addBookingId(newBooking.getBookingId());
-
-        return newBooking;
-    }
-
-    /*
-     * Overloaded reserve method: Find any available slot for the user.
-     * Automatically selects the first available slot.
-     */
-    public Booking reserveSlot(String username, User user) throws SlotNotAvailableException {
-        if (user == null) {
-            throw new SlotNotAvailableException("Cannot reserve slot: User is null.");
-        }
-        if (username == null || username.trim().isEmpty()) {
-            throw new SlotNotAvailableException("Cannot reserve slot: Invalid username.");
-        }
-        
-        for (int i = 0; i < slotCount; i++) {
-            ParkingSlot slot = parkingSlots[i];
-            
-            if (slot != null && !slot.isOccupied()) {
-                Booking newBooking = new Booking(username, slot.getId());
-                newBooking.setStatus(Constants.STATUS_PENDING);
-                newBooking.setBookingId(nextBookingId);
-                nextBookingId++;
-
-                // Store booking (resize array if necessary)
-                if (bookingCount == bookings.length) {
-                    Booking[] larger = new Booking[bookings.length * 2];
-                    for (int j = 0; j < bookings.length; j++) larger[j] = bookings[j];
-                    bookings = larger;
-                }
-                bookings[bookingCount] = newBooking;
-                bookingCount++;
-
-                // Mark slot as physically assigned (reserved for this booking)
-                slot.assign(newBooking.getBookingId());
-                
-                // Link booking to user
-                user.addBookingId(newBooking.getBookingId());
-                
-                return newBooking;
-            }
-        }
-        throw new SlotNotAvailableException("No free slot available for reservation.");
-    }
-    
-    /*
-     * Find a booking object by its ID.
-     * Required by Main.java to locate bookings for Entry/Exit operations.
-     */
-    public Booking findBookingById(Integer bookingId) {
-        if (bookingId == null) return null;
-        for (int i = 0; i < bookingCount; i++) {
-            Booking b = bookings[i];
-            if (b != null && b.getBookingId() != null && b.getBookingId().equals(bookingId)) {
-                return b;
-            }
-        }
-        return null;
-    }
-
-    public void saveBookingsToFile(String filename) {
-        try {
-            com.smartpark.util.Persistence.saveBookings(this.bookings, this.bookingCount, filename);
-        } catch (IOException e) {
-            System.out.println("Error saving bookings: " + e.getMessage());
-        }
-    }
-
-    public void loadBookingsFromFile(String filename) {
-        try {
-            Booking[] loaded = com.smartpark.util.Persistence.loadBookings(this.bookings.length, filename);
-            this.bookings = loaded;
-            this.bookingCount = com.smartpark.util.Persistence.getLastLoadedBookingCount();
-
-            int maxId = 0;
-            for (int i = 0; i < bookingCount; i++) {
-                Booking booking = bookings[i];
-                if (booking != null) {
-                    if (booking.getBookingId() != null) {
-                        int id = booking.getBookingId().intValue();
-                        if (id > maxId) maxId = id;
-                    }
-                    // Sync slot status: If PENDING or ACTIVE, mark slot occupied
-                    String status = booking.getStatus();
-                    if (Constants.STATUS_PENDING.equals(status) || Constants.STATUS_ACTIVE.equals(status)) {
-                        ParkingSlot slot = findSlotById(booking.getSlotId());
-                        if (slot != null) {
-                            slot.assign(booking.getBookingId());
-                        }
-                    }
-                }
-            }
-            this.nextBookingId = Integer.valueOf(maxId + 1);
-        } catch (IOException e) {
-            System.out.println("Error loading bookings: " + e.getMessage());
-        }
-    }
-
-    public int getSlotCount() { return slotCount; }
-    public Attendant getAttendant() { return attendant; }
-    
-    public ParkingSlot[] getSlotsArray() {
-        ParkingSlot[] copy = new ParkingSlot[this.slotCount];
-        for(int i = 0; i < this.slotCount; i++) copy[i] = this.parkingSlots[i];
-        return copy;
-    }
+package com.smartpark.service;
+
+import com.smartpark.interfaces.*;
+import com.smartpark.model.*;
+import com.smartpark.exceptions.SlotNotAvailableException;
+import com.smartpark.util.BookingExporter;
+import com.smartpark.util.DedupCache;
+import com.smartpark.util.IntIntMap;
+import com.smartpark.util.IntervalRuns;
+import com.smartpark.util.Persistence.WarmStart;
+import com.smartpark.util.SymbolTable;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Core manager class for the Smart Parking System.
+ * Handles slot management, booking creation, and attendant operations.
+ */
+public class ParkingSystem {
+	
+    private ParkingSlot[] parkingSlots; // Array storage for slots
+    private int slotCount;
+    private IntIntMap slotIndexById;    // Slot id -> position in parkingSlots
+    private int maxSlotId;              // Highest slot id in use (new slots get the next one)
+
+    private Booking[] bookings;         // Array storage for bookings
+    private int bookingCount;
+
+    private Integer nextBookingId;      // Auto-incrementing ID for bookings
+    private IntIntMap bookingIndexById; // Booking id -> position in bookings, guarded by the Attendant monitor
+    private BookingIndex secondaryIndex; // Status, slot and time indexes for queries, guarded by the Attendant monitor
+
+    private Attendant attendant;        // Inner class instance handling operations
+
+    private BookingListener[] listeners; // Observers notified of booking changes
+    private int listenerCount;
+
+    private OccupancyPublisher occupancy; // Copy-on-write snapshots for lock-free readers
+    private DynamicPricing pricing;       // Per-type rates from live occupancy counters
+    private boolean snapshotPublisherRunning; // Guarded by the Attendant monitor
+    private SlotLayoutIndex layout;       // Spatial index for nearest-free-slot queries
+    private SlotWindowIndex windows;      // Per-type index for free-over-a-window queries
+    private ReservationWaitlist waitlist; // Requests waiting for a slot type to free up
+    private AvailabilityHub availability; // Push updates for availability subscribers
+    private BookingStore bookingStore;    // Optional durable store written behind every change
+    private StoreWriter storeWriter;      // Writer thread of bookingStore
+    private boolean loadingFromStore;     // Suppresses write-back while the store itself is read
+    private BookingCheckpointer checkpointer; // Optional background writer of the bookings file
+    private SettlementPipeline settlement;    // Optional asynchronous payment settlement
+    private DedupCache<GateReply> gateReplies; // Outcomes of recent gate commands by request id
+    private AdmissionController admission;     // Optional rate limits and quotas for reservations
+    private VehicleRegistry vehicles;          // Registered vehicles and plate -> open booking index
+    private SlotAllocator allocator;           // Best-fit slot choice by vehicle size
+    private volatile WarmStart pendingHistory; // History not read yet after a warm start
+    private volatile boolean historyIncomplete; // Reading the history failed; the file has rows we lack
+    private final Object historyLock = new Object(); // Serializes history loading
+
+    /*
+     * Constructor with custom capacity.
+     */
+    public ParkingSystem(int initialSlotCapacity, int initialBookingCapacity) {
+        if (initialSlotCapacity <= 0) initialSlotCapacity = 20;
+        if (initialBookingCapacity <= 0) initialBookingCapacity = 100;
+
+        this.parkingSlots = new ParkingSlot[initialSlotCapacity];
+        this.slotCount = 0;
+        this.slotIndexById = new IntIntMap(initialSlotCapacity, -1);
+        this.maxSlotId = 0;
+
+        this.bookings = new Booking[initialBookingCapacity];
+        this.bookingCount = 0;
+        this.bookingIndexById = new IntIntMap(initialBookingCapacity, -1);
+        this.secondaryIndex = new BookingIndex(initialBookingCapacity);
+
+        this.nextBookingId = 1;
+        this.attendant = new Attendant();
+
+        this.listeners = new BookingListener[4];
+        this.listenerCount = 0;
+
+        this.occupancy = new OccupancyPublisher(initialSlotCapacity);
+        this.pricing = new DynamicPricing();
+        this.layout = new SlotLayoutIndex(initialSlotCapacity, Constants.LAYOUT_LEVEL_DISTANCE);
+        this.windows = new SlotWindowIndex(initialSlotCapacity);
+        this.waitlist = new ReservationWaitlist();
+        this.availability = new AvailabilityHub(initialSlotCapacity, Constants.AVAILABILITY_UPDATE_INTERVAL_MS);
+        this.gateReplies = new DedupCache<>(Constants.GATE_DEDUP_CAPACITY, Constants.GATE_DEDUP_TTL_MS);
+        this.vehicles = new VehicleRegistry();
+        this.allocator = new SlotAllocator(layout);
+    }
+
+    /*
+     * Default constructor.
+     */
+    public ParkingSystem() {
+        this(20, 100);
+    }
+
+    /* NESTED CLASS: ParkingSlot (Static)
+     * Represents a physical space in the parking lot.
+     */
+    public static class ParkingSlot {
+        private int id;
+        private int typeCode;            // Symbols code of the type, e.g. COMPACT, REGULAR
+        private boolean occupied;        // Tracker for availability
+        private Integer currentBookingId;// Reference to the active booking
+        private int index;               // Position in the owning system's snapshots
+
+        // PHYSICAL LAYOUT
+        private String zone;             // Named area, e.g. "A" or "North"
+        private int level;               // Floor of the structure (0 = ground)
+        private double x;                // Position on the level, same unit as gates
+        private double y;
+
+        // ADVANCE RESERVATIONS: windows booked on this slot (null until the first one)
+        private IntervalRuns schedule;
+
+        public ParkingSlot(int id, String type) {
+            this(id, type, "", 0, id, 0);
+        }
+
+        /*
+         * Overloaded constructor: slot with a known physical position.
+         */
+        public ParkingSlot(int id, String type, String zone, int level, double x, double y) {
+            this.id = id;
+            this.typeCode = Symbols.code(type);
+            this.occupied = false;
+            this.currentBookingId = null;
+            this.index = -1;
+            this.zone = (zone == null) ? "" : zone;
+            this.level = level;
+            this.x = x;
+            this.y = y;
+        }
+
+        public int getId() { return id; }
+        public String getType() { return Symbols.name(typeCode); }
+        public int getTypeCode() { return typeCode; }
+        public boolean isOccupied() { return occupied; }
+        public String getZone() { return zone; }
+        public int getLevel() { return level; }
+        public double getX() { return x; }
+        public double getY() { return y; }
+        int getIndex() { return index; }
+
+        // Mark the slot as occupied by a specific booking
+        public void assign(Integer bookingId) {
+            this.occupied = true;
+            this.currentBookingId = bookingId;
+        }
+
+        // Free up the slot
+        public void release() {
+            this.occupied = false;
+            this.currentBookingId = null;
+        }
+        
+        public Integer getCurrentBookingId() {
+            return currentBookingId;
+        }
+
+        /*
+         * True if no advance booking of this slot overlaps [start, end). O(log n).
+         */
+        public boolean isFreeOver(long start, long end) {
+            return schedule == null || !schedule.overlaps(start, end);
+        }
+
+        /*
+         * Id of the advance booking whose window contains time t, or -1.
+         */
+        public int getScheduledBookingAt(long t) {
+            return (schedule == null) ? -1 : schedule.valueCovering(t);
+        }
+
+        public int getScheduledCount() {
+            return (schedule == null) ? 0 : schedule.size();
+        }
+    }
+
+    /*
+     * Remembered result of a gate command, keyed by its request id.
+     */
+    private static final class GateReply {
+        final boolean entry;
+        final int bookingId;
+        final GateOutcome outcome;
+
+        GateReply(boolean entry, int bookingId, GateOutcome outcome) {
+            this.entry = entry;
+            this.bookingId = bookingId;
+            this.outcome = outcome;
+        }
+
+        boolean matches(boolean entry, int bookingId) {
+            return this.entry == entry && this.bookingId == bookingId;
+        }
+    }
+
+    private static int bookingIdOf(Booking booking) {
+        return (booking == null || booking.getBookingId() == null) ? -1 : booking.getBookingId().intValue();
+    }
+
+    /*
+     * INNER CLASS: Attendant
+     * Handles operational tasks: Entry, Exit, and Payments.
+     * Implements multiple interfaces (EntryExitHandler, Payment).
+     */
+    public class Attendant implements EntryExitHandler, Payment {
+
+        /*
+         * Marks the vehicle entry.
+         * Updates status to ACTIVE and records the Entry Timestamp.
+         *
+         * Entry and exit are the gate hot path: every check happens before
+         * anything is changed, failures come back as a GateOutcome (the
+         * caller decides what to print), and a successful command allocates
+         * nothing. The occupancy snapshot is published shortly after by the
+         * background publisher, see getOccupancySnapshot().
+         */
+    	public GateOutcome markEntry(Booking booking) {
+    	    return markEntry(booking, System.currentTimeMillis());
+    	}
+
+        /*
+         * Entry at a given time rather than now, for gate events recorded
+         * earlier (BatchRunner replays of a controller outage).
+         */
+    	public synchronized GateOutcome markEntry(Booking booking, long entryTime) {
+    	    if (booking == null) return GateOutcome.BOOKING_NOT_FOUND;
+    	    if (entryTime <= 0) return GateOutcome.INVALID_TIME;
+
+    	    // An advance booking can be used as soon as its window begins,
+    	    // even if no expiration pass has started it yet
+    	    if (booking.hasStatus(Constants.STATUS_CODE_SCHEDULED)
+    	            && booking.getWindowStart() <= entryTime) {
+    	        activateWindow(booking);
+    	    }
+
+    	    // Only PENDING bookings can be marked as entry
+    	    if (!booking.canMoveTo(Constants.STATUS_CODE_ACTIVE)) return GateOutcome.INVALID_STATE;
+
+    	    ParkingSlot slot = findSlotById(booking.getSlotId());
+    	    if (slot == null) return GateOutcome.SLOT_NOT_FOUND;
+
+    	    // 1. Set status to ACTIVE (Vehicle is now inside) and capture the entry time (critical for billing)
+    	    beforeBookingChange(booking);
+    	    booking.moveTo(Constants.STATUS_CODE_ACTIVE);
+    	    booking.setEntryTime(entryTime);
+
+    	    // 2. Ensure slot is marked as occupied (should already be from reservation, but verify)
+    	    // and refresh its snapshot entry with the ACTIVE status
+    	    occupySlot(slot, booking);
+
+    	    fireEntered(booking);
+    	    return GateOutcome.SUCCESS;
+    	}
+
+        /*
+         * Marks the vehicle exit.
+         * Updates status to COMPLETED, records Exit Timestamp, and calculates DURATION-BASED Fee.
+         * Fee is calculated PER MINUTE.
+         * Only works on ACTIVE bookings (vehicles that have entered).
+         */
+        public GateOutcome markExit(Booking booking) {
+            return markExit(booking, System.currentTimeMillis());
+        }
+
+        /*
+         * Exit at a given time rather than now; the fee is charged for the
+         * time between the recorded entry and exitTime.
+         */
+        public synchronized GateOutcome markExit(Booking booking, long exitTimestamp) {
+            if (booking == null) return GateOutcome.BOOKING_NOT_FOUND;
+
+            // Only ACTIVE bookings can be marked as exit
+            if (!booking.canMoveTo(Constants.STATUS_CODE_COMPLETED)) return GateOutcome.INVALID_STATE;
+
+            // Entry must have been recorded, and the exit cannot come before it
+            long entryTimestamp = booking.getEntryTime();
+            if (entryTimestamp <= 0 || exitTimestamp < entryTimestamp) return GateOutcome.INVALID_TIME;
+
+            // 1. Calculate Duration in Minutes (rounded up, at least 1 minute is charged)
+            double minutesParked = Math.ceil((exitTimestamp - entryTimestamp) / (1000.0 * 60));
+            if (minutesParked < 1.0) minutesParked = 1.0;
+
+            // 2. Current per-minute rate of the slot type (regular rate if the slot is gone)
+            ParkingSlot slot = findSlotById(booking.getSlotId());
+            double perMinuteRate = pricing.current().getRate(
+                    (slot != null) ? slot.getTypeCode() : Constants.SLOT_CODE_REGULAR);
+
+            // 3. Record exit time and fee, set status to COMPLETED
+            beforeBookingChange(booking);
+            booking.setExitTime(exitTimestamp);
+            booking.setAmount(minutesParked * perMinuteRate);
+            booking.moveTo(Constants.STATUS_CODE_COMPLETED);
+            vehicles.unlink(booking);
+            unschedule(booking); // an early exit frees the rest of the window
+
+            // 4. Free the physical parking slot
+            if (slot != null) releaseSlot(slot);
+
+            fireExited(booking);
+            return GateOutcome.SUCCESS;
+        }
+
+        /*
+         * Gate commands with a request id. Gate hardware retries on timeouts,
+         * so the same command can arrive more than once; a repeated request id
+         * gets the outcome of the first attempt without doing the work again.
+         * A null request id means "no deduplication".
+         */
+        public GateOutcome markEntry(String requestId, Booking booking) {
+            return runGateCommand(requestId, true, booking);
+        }
+
+        public GateOutcome markExit(String requestId, Booking booking) {
+            return runGateCommand(requestId, false, booking);
+        }
+
+        /*
+         * Gate commands from an ANPR camera: the plate read at the barrier
+         * selects the vehicle's open booking, no booking id needed. A read
+         * with a few wrong or missing characters is still accepted when it
+         * matches exactly one booking in the right state best.
+         */
+        public GateOutcome markEntryByPlate(String licensePlate) {
+            Booking booking = vehicles.resolveOpenBooking(licensePlate, Constants.STATUS_CODE_PENDING);
+            return (booking == null) ? GateOutcome.BOOKING_NOT_FOUND : markEntry(booking);
+        }
+
+        public GateOutcome markExitByPlate(String licensePlate) {
+            Booking booking = vehicles.resolveOpenBooking(licensePlate, Constants.STATUS_CODE_ACTIVE);
+            return (booking == null) ? GateOutcome.BOOKING_NOT_FOUND : markExit(booking);
+        }
+
+        private GateOutcome runGateCommand(String requestId, boolean entry, Booking booking) {
+            if (requestId == null) {
+                return entry ? markEntry(booking) : markExit(booking);
+            }
+
+            // Fast path for retries: one lock-free map read
+            GateReply reply = gateReplies.get(requestId);
+            if (reply == null) {
+                synchronized (this) {
+                    reply = gateReplies.get(requestId);
+                    if (reply == null) {
+                        GateOutcome outcome = entry ? markEntry(booking) : markExit(booking);
+                        gateReplies.put(requestId, new GateReply(entry, bookingIdOf(booking), outcome));
+                        return outcome;
+                    }
+                }
+            }
+            return reply.matches(entry, bookingIdOf(booking)) ? reply.outcome : GateOutcome.REQUEST_ID_CONFLICT;
+        }
+
+        /**
+         * Process payment for a completed booking.
+         * Validates that the booking is in a payable state and amount is sufficient.
+         * Returns true if payment succeeds, false otherwise.
+         */
+        public synchronized boolean pay(Booking booking, Double amount) {
+            if (booking == null || amount == null) {
+                System.out.println("[Error] Payment failed: Booking or amount is null.");
+                return false;
+            }
+            
+            if (amount.doubleValue() < 0) {
+                System.out.println("[Error] Payment failed: Amount cannot be negative.");
+                return false;
+            }
+            
+            // Only allow payment for COMPLETED bookings
+            String status = booking.getStatus();
+            if (!booking.hasStatus(Constants.STATUS_CODE_COMPLETED)) {
+                System.out.println("[Error] Payment failed: Booking ID " + booking.getBookingId() + 
+                                 " is not in COMPLETED status. Current status: " + status);
+                return false;
+            }
+            
+            Double due = booking.getAmount();
+            
+            if (due == null) {
+                // If amount wasn't calculated yet, accept the payment amount
+                beforeBookingChange(booking);
+                booking.setAmount(amount);
+                return true;
+            }
+            
+            boolean paymentAccepted = amount.doubleValue() >= due.doubleValue();
+            if (!paymentAccepted) {
+                System.out.println("[Error] Payment failed: Amount $" + String.format("%.2f", amount) + 
+                                 " is less than due amount $" + String.format("%.2f", due));
+            }
+            return paymentAccepted;
+        }
+
+        /**
+         * Check if a refund can be processed for a booking.
+         * Returns true if refund is possible, false otherwise.
+         * Note: This validates refund eligibility but doesn't actually process the refund.
+         */
+        public boolean refund(Booking booking, Double amount) {
+            if (booking == null || amount == null) {
+                System.out.println("[Error] Refund check failed: Booking or amount is null.");
+                return false;
+            }
+            
+            if (amount.doubleValue() < 0) {
+                System.out.println("[Error] Refund check failed: Amount cannot be negative.");
+                return false;
+            }
+            
+            // Only allow refunds for COMPLETED bookings
+            String status = booking.getStatus();
+            if (!booking.hasStatus(Constants.STATUS_CODE_COMPLETED)) {
+                System.out.println("[Error] Refund not allowed: Booking ID " + booking.getBookingId() + 
+                                 " is not in COMPLETED status. Current status: " + status);
+                return false;
+            }
+            
+            return true;
+        }
+    }
+
+    /*
+     * Cleanup method to auto-cancel bookings that have timed out.
+     * Should be called before performing operations like showing slots or reserving.
+     */
+    public void processExpirations() {
+        processExpirations(System.currentTimeMillis());
+    }
+
+    /*
+     * Expirations as of currentTime (epoch milliseconds) instead of now,
+     * for replaying recorded events in their own time.
+     */
+    public synchronized void processExpirations(long currentTime) {
+        for (int i = 0; i < bookingCount; i++) {
+            Booking booking = bookings[i];
+
+            // Advance bookings whose window has begun take their slot now
+            if (booking != null && booking.hasStatus(Constants.STATUS_CODE_SCHEDULED)) {
+                if (booking.getWindowStart() <= currentTime) activateWindow(booking);
+                continue;
+            }
+            
+            // We only check bookings that are still PENDING (user hasn't arrived yet)
+            if (booking != null && booking.hasStatus(Constants.STATUS_CODE_PENDING)) {
+                
+                long creationTime = booking.getCreationTime();
+                long ageInMillis = currentTime - creationTime;
+
+                // Check if the booking is older than the allowed timeout (i.e., 1 min);
+                // an advance booking may be used until its window ends
+                boolean expired = booking.hasWindow() ? currentTime >= booking.getWindowEnd()
+                                                      : ageInMillis > Constants.BOOKING_TIMEOUT_MS;
+                if (expired) {
+                    synchronized (attendant) {
+                        // The vehicle may have entered since the check above
+                        if (!booking.canMoveTo(Constants.STATUS_CODE_CANCELLED)) continue;
+
+                        // 1. Change status to CANCELLED
+                        beforeBookingChange(booking);
+                        booking.moveTo(Constants.STATUS_CODE_CANCELLED);
+                        vehicles.unlink(booking);
+                        unschedule(booking);
+
+                        // 2. Free the slot immediately
+                        ParkingSlot slot = findSlotById(booking.getSlotId());
+                        if (slot != null) {
+                            releaseSlot(slot);
+                        }
+                    }
+                    
+                    System.out.println("[System] Booking ID " + booking.getBookingId() + " expired and was auto-cancelled.");
+
+                    fireExpired(booking);
+                }
+            }
+        }
+
+        // One snapshot for the whole batch of expirations
+        publishSnapshot();
+    }
+
+    /*
+     * Add a single parking slot. Resizes array if necessary.
+     */
+    public void addSlot(String type) {
+        appendSlot(type);
+        publishSnapshot();
+    }
+
+    /*
+     * Overloaded: add a slot at a known position. Slots added without a
+     * position are laid out in a row at x = id on level 0.
+     */
+    public void addSlot(String type, String zone, int level, double x, double y) {
+        appendSlot(new ParkingSlot(maxSlotId + 1, type, zone, level, x, y));
+        publishSnapshot();
+    }
+
+    /*
+     * Bulk provisioning: create every slot of a layout in one pass.
+     * Storage for slots and all derived indexes is sized once up front and a
+     * single snapshot is published at the end. Slot ids must be positive and
+     * unique (also against existing slots); otherwise nothing is added.
+     * Returns the number of slots added.
+     */
+    public int provisionSlots(SlotLayout layoutSpec) {
+        if (layoutSpec == null || layoutSpec.getCount() == 0) return 0;
+        int n = layoutSpec.getCount();
+
+        // Validate everything before touching any state
+        IntIntMap seen = new IntIntMap(n, -1);
+        for (int i = 0; i < n; i++) {
+            int id = layoutSpec.getId(i);
+            if (id <= 0 || slotIndexById.containsKey(id) || seen.put(id, i) != -1) {
+                System.out.println("[Error] Layout rejected: slot id " + id + " is invalid or already in use.");
+                return 0;
+            }
+        }
+
+        int total = slotCount + n;
+        if (total > parkingSlots.length) {
+            ParkingSlot[] sized = new ParkingSlot[total];
+            for (int i = 0; i < slotCount; i++) sized[i] = parkingSlots[i];
+            parkingSlots = sized;
+        }
+        slotIndexById.ensureCapacity(total);
+        synchronized (attendant) {
+            occupancy.ensureCapacity(total);
+        }
+        layout.ensureCapacity(total);
+        availability.ensureCapacity(total);
+
+        for (int i = 0; i < n; i++) {
+            appendSlot(new ParkingSlot(layoutSpec.getId(i), layoutSpec.getType(i), layoutSpec.getZone(i),
+                    layoutSpec.getLevel(i), layoutSpec.getX(i), layoutSpec.getY(i)));
+        }
+        layout.prepare();
+        publishSnapshot();
+        return n;
+    }
+
+    /*
+     * Vararg overloading: Add multiple slots at once.
+     */
+    public void addSlot(String... types) {
+        if (types == null) return;
+        for (String t : types) {
+            appendSlot(t);
+        }
+        publishSnapshot();
+    }
+
+    private void appendSlot(String type) {
+        appendSlot(new ParkingSlot(maxSlotId + 1, type));
+    }
+
+    private void appendSlot(ParkingSlot slot) {
+        if (slotCount == parkingSlots.length) {
+            ParkingSlot[] larger = new ParkingSlot[parkingSlots.length * 2];
+            for (int i = 0; i < parkingSlots.length; i++) larger[i] = parkingSlots[i];
+            parkingSlots = larger;
+        }
+        synchronized (attendant) {
+            slot.index = occupancy.addSlot(slot.getId(), slot.getType());
+            pricing.slotAdded(slot.getTypeCode());
+            windows.addSlot(slot);
+        }
+        layout.addSlot(slot.index, slot.getId(), slot.getType(), slot.getLevel(), slot.getX(), slot.getY());
+        availability.addSlot(slot.index, slot.getId(), slot.getType(), slot.getZone());
+        parkingSlots[slotCount] = slot;
+        slotIndexById.put(slot.getId(), slotCount);
+        if (slot.getId() > maxSlotId) maxSlotId = slot.getId();
+        slotCount++;
+    }
+
+    /*
+     * Register a gate (entry point) used for nearest-slot reservations.
+     * Re-adding an existing gate id moves it.
+     */
+    public void addGate(int gateId, int level, double x, double y) {
+        layout.addGate(gateId, level, x, y);
+    }
+
+    /*
+     * Free slots of the given type (null = any type), live. Takes the
+     * Attendant monitor, which guards the layout index; readers that must
+     * not lock use getOccupancySnapshot().getFreeCount(type) instead.
+     */
+    public int getFreeSlotCount(String type) {
+        synchronized (attendant) {
+            return layout.freeCount(type);
+        }
+    }
+
+    public ParkingSlot findSlotById(int id) {
+        int index = slotIndexById.get(id);
+        return (index < 0) ? null : parkingSlots[index];
+    }
+
+    /*
+     * Reserve a specific slot by ID.
+     * Validates slot existence and availability before creating the booking.
+     */
+    public Booking reserveSlot(int slotId, User user) throws SlotNotAvailableException {
+        if (user == null) {
+            throw new SlotNotAvailableException("Cannot reserve slot: User is null.");
+        }
+        
+        admit(user);
+        ParkingSlot slot = findSlotById(slotId);
+        
+        if (slot == null) {
+            throw new SlotNotAvailableException("Slot id " + slotId + " does not exist.");
+        }
+        synchronized (attendant) {
+            if (slot.isOccupied()) {
+                throw new SlotNotAvailableException("Slot id " + slotId + " is already occupied.");
+            }
+            checkPendingQuota(user);
+            return createBooking(slot, user.getUsername(), user);
+        }
+    }
+
+    /*
+     * Overloaded reserve method: Find any available slot for the user.
+     * Automatically selects the first available slot.
+     */
+    public Booking reserveSlot(String username, User user) throws SlotNotAvailableException {
+        if (user == null) {
+            throw new SlotNotAvailableException("Cannot reserve slot: User is null.");
+        }
+        if (username == null || username.trim().isEmpty()) {
+            throw new SlotNotAvailableException("Cannot reserve slot: Invalid username.");
+        }
+        admit(user);
+        
+        synchronized (attendant) {
+            for (int i = 0; i < slotCount; i++) {
+                ParkingSlot slot = parkingSlots[i];
+
+                if (slot != null && !slot.isOccupied()) {
+                    checkPendingQuota(user);
+                    return createBooking(slot, username, user);
+                }
+            }
+        }
+        throw new SlotNotAvailableException("No free slot available for reservation.");
+    }
+
+    /*
+     * Overloaded reserve method: nearest free slot of a type to a gate.
+     * Uses the spatial layout index, so the cost does not grow with the
+     * number of occupied slots the driver would otherwise be sent past.
+     */
+    public Booking reserveSlot(String slotType, int gateId, User user) throws SlotNotAvailableException {
+        if (user == null) {
+            throw new SlotNotAvailableException("Cannot reserve slot: User is null.");
+        }
+        if (!layout.hasGate(gateId)) {
+            throw new SlotNotAvailableException("Gate " + gateId + " does not exist.");
+        }
+        admit(user);
+
+        synchronized (attendant) {
+            int index = layout.findNearestFree(slotType, gateId);
+            if (index < 0) {
+                throw new SlotNotAvailableException("No free " + (slotType == null ? "" : slotType + " ") +
+                                                    "slot available near gate " + gateId + ".");
+            }
+            checkPendingQuota(user);
+            return createBooking(parkingSlots[index], user.getUsername(), user);
+        }
+    }
+
+    /*
+     * Overloaded reserve method: best-fitting free slot for a vehicle.
+     * Slot types are tried in the SlotAllocator's fallback order for the
+     * vehicle's size class, so a motorcycle does not take a LARGE slot
+     * while a COMPACT one is free, and a large vehicle never gets COMPACT.
+     * A registered vehicle is linked to the booking for ANPR gates.
+     */
+    public Booking reserveSlot(AbstractVehicle vehicle, User user) throws SlotNotAvailableException {
+        return reserveForVehicle(vehicle, -1, user);
+    }
+
+    /*
+     * As above, taking the nearest fitting slot to a gate.
+     */
+    public Booking reserveSlot(AbstractVehicle vehicle, int gateId, User user) throws SlotNotAvailableException {
+        if (!layout.hasGate(gateId)) {
+            throw new SlotNotAvailableException("Gate " + gateId + " does not exist.");
+        }
+        return reserveForVehicle(vehicle, gateId, user);
+    }
+
+    private Booking reserveForVehicle(AbstractVehicle vehicle, int gateId, User user) throws SlotNotAvailableException {
+        if (user == null || vehicle == null) {
+            throw new SlotNotAvailableException("Cannot reserve slot: User or vehicle is null.");
+        }
+        admit(user);
+
+        long plate = LicensePlate.encode(vehicle.getLicensePlate());
+        synchronized (attendant) {
+            int index = allocator.allocate(vehicle, gateId);
+            if (index < 0) {
+                throw new SlotNotAvailableException("No free slot fits a " + SlotAllocator.sizeOf(vehicle) +
+                                                    " vehicle (" + vehicle.getType() + ").");
+            }
+            checkPendingQuota(user);
+            return createBooking(parkingSlots[index], user.getUsername(), user, (plate > 0) ? plate : LicensePlate.NONE);
+        }
+    }
+
+    public SlotAllocator getSlotAllocator() {
+        return allocator;
+    }
+
+    /*
+     * Reserve a slot of the given type, or join the waitlist if none is free.
+     * The returned future completes with the booking as soon as a slot of that
+     * type is released by an exit or an expiration, so clients do not need to
+     * poll. Priority waiters (handicapped permit holders) are served first,
+     * then first-come, first-served. Cancelling the future leaves the queue.
+     *
+     * The future is completed on the thread that released the slot.
+     */
+    public CompletableFuture<Booking> reserveOrWait(String slotType, User user, boolean priority) {
+        CompletableFuture<Booking> result;
+        if (user == null || slotType == null) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(new SlotNotAvailableException("Cannot reserve slot: User or slot type is null."));
+            return result;
+        }
+        try {
+            admit(user);
+        } catch (SlotNotAvailableException e) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        synchronized (attendant) {
+            int index = layout.findAnyFree(slotType);
+            if (index >= 0) {
+                try {
+                    checkPendingQuota(user);
+                } catch (SlotNotAvailableException e) {
+                    result = new CompletableFuture<>();
+                    result.completeExceptionally(e);
+                    return result;
+                }
+                return CompletableFuture.completedFuture(createBooking(parkingSlots[index], user.getUsername(), user));
+            }
+            return waitlist.offer(slotType, user, priority).future;
+        }
+    }
+
+    /*
+     * ADVANCE RESERVATIONS
+     * A booking for a future window [start, end) is SCHEDULED: it does not
+     * hold its slot until the window begins, but the window goes into the
+     * slot's schedule (sorted non-overlapping runs, IntervalRuns), so other
+     * advance bookings of the slot are checked against it in O(log n).
+     * When the window begins the booking becomes PENDING and takes the slot
+     * (see activateWindow); a PENDING advance booking expires when its
+     * window ends rather than after BOOKING_TIMEOUT_MS.
+     *
+     * Schedules are read and changed under the Attendant monitor, which
+     * markEntry and markExit already hold.
+     */
+
+    /*
+     * Book a specific slot for [start, end).
+     */
+    public synchronized Booking reserveWindow(int slotId, long start, long end, User user) throws SlotNotAvailableException {
+        checkWindow(user, start, end);
+        synchronized (attendant) {
+            ParkingSlot slot = findSlotById(slotId);
+            if (slot == null) {
+                throw new SlotNotAvailableException("Slot id " + slotId + " does not exist.");
+            }
+            if (!slot.isFreeOver(start, end)) {
+                throw new SlotNotAvailableException("Slot id " + slotId + " is already booked during that window.");
+            }
+            admit(user);
+            return createScheduledBooking(slot, user, start, end);
+        }
+    }
+
+    /*
+     * Book any slot of a type (null = any type) that is free for all of [start, end).
+     */
+    public synchronized Booking reserveWindow(String slotType, long start, long end, User user) throws SlotNotAvailableException {
+        checkWindow(user, start, end);
+        synchronized (attendant) {
+            ParkingSlot slot = findSlotFreeOver(slotType, start, end);
+            if (slot == null) {
+                throw new SlotNotAvailableException("No " + (slotType == null ? "" : slotType + " ") +
+                                                    "slot is free for the whole window.");
+            }
+            admit(user);
+            return createScheduledBooking(slot, user, start, end);
+        }
+    }
+
+    /*
+     * A slot of the type (null = any type) with no advance booking
+     * overlapping [start, end), or null. Slots without advance bookings
+     * answer at once; only slots of the type that have some are checked,
+     * each in O(log n) of its own bookings (see SlotWindowIndex).
+     */
+    public ParkingSlot findSlotFreeOver(String slotType, long start, long end) {
+        int type = (slotType == null) ? -1 : Symbols.lookup(slotType);
+        if (slotType != null && type < 0) return null;
+
+        synchronized (attendant) {
+            return windows.findFreeOver(type, start, end);
+        }
+    }
+
+    /*
+     * Cancel an advance booking before its window begins.
+     */
+    public synchronized boolean cancelWindow(Booking booking) {
+        synchronized (attendant) {
+            if (booking == null || !booking.hasStatus(Constants.STATUS_CODE_SCHEDULED)) return false;
+            beforeBookingChange(booking);
+            booking.moveTo(Constants.STATUS_CODE_CANCELLED);
+            unschedule(booking);
+        }
+        fireExpired(booking);
+        return true;
+    }
+
+    private void checkWindow(User user, long start, long end) throws SlotNotAvailableException {
+        if (user == null) {
+            throw new SlotNotAvailableException("Cannot reserve slot: User is null.");
+        }
+        if (end <= start) {
+            throw new SlotNotAvailableException("Invalid window: it must end after it starts.");
+        }
+        if (start <= System.currentTimeMillis()) {
+            throw new SlotNotAvailableException("Invalid window: it must start in the future.");
+        }
+    }
+
+    private Booking createScheduledBooking(ParkingSlot slot, User user, long start, long end) {
+        Booking newBooking = new Booking(user.getUsername(), slot.getId());
+        newBooking.setStatusCode(Constants.STATUS_CODE_SCHEDULED);
+        newBooking.setWindow(start, end);
+        newBooking.setBookingId(nextBookingId);
+        nextBookingId++;
+        appendBooking(newBooking);
+        schedule(newBooking);
+
+        user.addBookingId(newBooking.getBookingId());
+        fireReserved(newBooking);
+        return newBooking;
+    }
+
+    /*
+     * Start a SCHEDULED booking whose window has begun: it becomes PENDING
+     * and takes its slot. If someone who arrived without a reservation
+     * still holds the slot, the booking moves to another slot of the same
+     * type that is free now and for its whole window; with none left it
+     * is CANCELLED. Returns true if the booking is now PENDING.
+     */
+    private boolean activateWindow(Booking booking) {
+        synchronized (attendant) {
+            if (!booking.hasStatus(Constants.STATUS_CODE_SCHEDULED)) {
+                return booking.hasStatus(Constants.STATUS_CODE_PENDING);
+            }
+            beforeBookingChange(booking);
+
+            ParkingSlot slot = findSlotById(booking.getSlotId());
+            if (slot == null || slot.isOccupied()) {
+                unschedule(booking);
+                ParkingSlot other = (slot == null) ? null
+                        : findVacantSlotFreeOver(slot.getTypeCode(), booking.getWindowStart(), booking.getWindowEnd());
+                if (other == null) {
+                    booking.moveTo(Constants.STATUS_CODE_CANCELLED);
+                    System.out.println("[System] Booking ID " + booking.getBookingId() + " could not start: slot " +
+                                       booking.getSlotId() + " is still occupied and no other slot is free. Booking cancelled.");
+                    fireExpired(booking);
+                    return false;
+                }
+                System.out.println("[System] Booking ID " + booking.getBookingId() + " moved from occupied slot " +
+                                   booking.getSlotId() + " to slot " + other.getId() + ".");
+                booking.setSlotId(other.getId());
+                slot = other;
+                schedule(booking);
+            }
+
+            booking.moveTo(Constants.STATUS_CODE_PENDING);
+            occupySlot(slot, booking);
+            vehicles.link(booking);
+            publishSnapshot();
+        }
+        fireReserved(booking);
+        return true;
+    }
+
+    // Unoccupied slot of a type with no advance booking overlapping [start, end), or null
+    private ParkingSlot findVacantSlotFreeOver(int typeCode, long start, long end) {
+        synchronized (attendant) {
+            return windows.findVacantFreeOver(typeCode, start, end);
+        }
+    }
+
+    /*
+     * Enter an advance booking's window into its slot's schedule (open
+     * bookings only), or take it out again.
+     */
+    private void schedule(Booking booking) {
+        if (!booking.hasWindow()) return;
+        if (!booking.hasStatus(Constants.STATUS_CODE_SCHEDULED) && !holdsSlot(booking)) return;
+        synchronized (attendant) {
+            ParkingSlot slot = findSlotById(booking.getSlotId());
+            if (slot == null) return;
+            if (slot.schedule == null) slot.schedule = new IntervalRuns();
+            if (!slot.schedule.add(booking.getWindowStart(), booking.getWindowEnd(), booking.getBookingId().intValue())) {
+                System.out.println("[Warning] Window of Booking ID " + booking.getBookingId() +
+                                   " overlaps another booking of slot " + slot.getId() + ".");
+            }
+            windows.refresh(slot);
+        }
+    }
+
+    private void unschedule(Booking booking) {
+        if (!booking.hasWindow()) return;
+        synchronized (attendant) {
+            ParkingSlot slot = findSlotById(booking.getSlotId());
+            if (slot != null && slot.schedule != null) {
+                slot.schedule.remove(booking.getWindowStart(), booking.getBookingId().intValue());
+                windows.refresh(slot);
+            }
+        }
+    }
+
+    /*
+     * ADMISSION CONTROL
+     */
+
+    /*
+     * Put rate limits and PENDING quotas in front of every reserve method
+     * (null removes them). Bookings that are already PENDING count toward
+     * their owners' quotas right away.
+     */
+    public void setAdmissionController(AdmissionController controller) {
+        if (admission != null) removeBookingListener(admission);
+        admission = controller;
+        if (controller == null) return;
+
+        for (int i = 0; i < bookingCount; i++) {
+            if (bookings[i] != null) controller.bookingRestored(bookings[i]);
+        }
+        addBookingListener(controller);
+    }
+
+    public AdmissionController getAdmissionController() {
+        return admission;
+    }
+
+    private void admit(User user) throws SlotNotAvailableException {
+        AdmissionController controller = admission;
+        if (controller != null) controller.admit(user);
+    }
+
+    /*
+     * Pending quota once more, under the Attendant monitor, right before a
+     * reserve method creates a PENDING booking (see AdmissionController).
+     */
+    private void checkPendingQuota(User user) throws SlotNotAvailableException {
+        AdmissionController controller = admission;
+        if (controller != null) controller.checkPendingQuota(user);
+    }
+
+    /*
+     * Number of requests queued for a slot type.
+     */
+    public int getWaitlistSize(String slotType) {
+        return waitlist.size(slotType);
+    }
+
+    /*
+     * Shared tail of the reserve methods: create a PENDING booking on a free
+     * slot, store it, occupy the slot and link it to the user.
+     * Callers hold the Attendant monitor from choosing the slot until
+     * here, so two concurrent reservations cannot take the same slot.
+     */
+    private Booking createBooking(ParkingSlot slot, String username, User user) {
+        return createBooking(slot, username, user, LicensePlate.NONE);
+    }
+
+    /*
+     * plateCode picks the vehicle to link the booking to (NONE = the
+     * owner's first vehicle without an open booking).
+     */
+    private Booking createBooking(ParkingSlot slot, String username, User user, long plateCode) {
+        // Note: Creation time is set inside the Booking constructor
+        Booking newBooking = new Booking(username, slot.getId());
+        newBooking.setStatusCode(Constants.STATUS_CODE_PENDING);
+        newBooking.setPlateCode(plateCode);
+        newBooking.setBookingId(nextBookingId);
+        nextBookingId++;
+        appendBooking(newBooking);
+
+        // Mark slot as physically assigned (reserved for this booking)
+        occupySlot(slot, newBooking);
+        publishSnapshot();
+
+        // Link booking to user, and to one of the user's vehicles for ANPR gates
+        user.addBookingId(newBooking.getBookingId());
+        vehicles.link(newBooking);
+
+        fireReserved(newBooking);
+        return newBooking;
+    }
+    
+    /*
+     * Add a booking to the bookings array (resize array if necessary).
+     * Under the Attendant monitor: reservations append holding only that
+     * monitor, restores and history loads the ParkingSystem one.
+     */
+    private void appendBooking(Booking booking) {
+        synchronized (attendant) {
+            if (bookingCount == bookings.length) {
+                Booking[] larger = new Booking[bookings.length * 2];
+                for (int i = 0; i < bookings.length; i++) larger[i] = bookings[i];
+                bookings = larger;
+            }
+            bookings[bookingCount] = booking;
+            if (booking.getBookingId() != null) {
+                bookingIndexById.put(booking.getBookingId().intValue(), bookingCount);
+            }
+            bookingCount++;
+        }
+    }
+
+    /*
+     * Find a booking object by its ID.
+     * Required by Main.java to locate bookings for Entry/Exit operations.
+     * One hash probe: gate servers call this for every command.
+     */
+    public Booking findBookingById(Integer bookingId) {
+        if (bookingId == null) return null;
+        return findBookingById(bookingId.intValue());
+    }
+
+    public Booking findBookingById(int bookingId) {
+        synchronized (attendant) {
+            int index = bookingIndexById.get(bookingId);
+            return (index < 0) ? null : bookings[index];
+        }
+    }
+
+    /*
+     * QUERIES
+     * Bookings matching all of: a status (STATUS_CODE_*), a slot id and a
+     * time range [from, to) over the creation or entry time (timeField
+     * QUERY_BY_CREATION or QUERY_BY_ENTRY). QUERY_ANY turns a predicate off.
+     * Answered from the secondary indexes (see BookingIndex) rather than a
+     * scan; results are in booking order. For example:
+     *
+     *   ACTIVE for more than 12 hours:
+     *     queryBookings(STATUS_CODE_ACTIVE, QUERY_ANY, QUERY_BY_ENTRY, 0, now - 12 * 3600000L)
+     *   everything on slot 42 this week:
+     *     queryBookings(QUERY_ANY, 42, QUERY_BY_CREATION, weekStart, weekEnd)
+     *   today's cancellations:
+     *     queryBookings(STATUS_CODE_CANCELLED, QUERY_ANY, QUERY_BY_CREATION, dayStart, dayEnd)
+     */
+    public Booking[] queryBookings(int statusCode, int slotId, int timeField, long from, long to) {
+        if (mayBeHistory(statusCode)) ensureHistoryLoaded();
+        synchronized (attendant) {
+            int[] positions = secondaryIndex.query(statusCode, slotId, timeField, from, to);
+            Booking[] result = new Booking[positions.length];
+            for (int i = 0; i < positions.length; i++) result[i] = bookings[positions[i]];
+            return result;
+        }
+    }
+
+    public Booking[] findBookingsByStatus(int statusCode) {
+        return queryBookings(statusCode, Constants.QUERY_ANY, Constants.QUERY_ANY, 0, 0);
+    }
+
+    /*
+     * Bookings on a slot created in [from, to).
+     */
+    public Booking[] findBookingsBySlot(int slotId, long from, long to) {
+        return queryBookings(Constants.QUERY_ANY, slotId, Constants.QUERY_BY_CREATION, from, to);
+    }
+
+    /*
+     * Number of bookings with the given status, without building a result.
+     */
+    public int countBookingsByStatus(int statusCode) {
+        if (mayBeHistory(statusCode)) ensureHistoryLoaded();
+        synchronized (attendant) {
+            return secondaryIndex.countByStatus(statusCode);
+        }
+    }
+
+    // Open bookings are all in memory after a warm start; anything else may be history
+    private static boolean mayBeHistory(int statusCode) {
+        return statusCode != Constants.STATUS_CODE_PENDING && statusCode != Constants.STATUS_CODE_ACTIVE
+            && statusCode != Constants.STATUS_CODE_SCHEDULED;
+    }
+
+    /*
+     * VEHICLES
+     */
+
+    /*
+     * Register a vehicle to a user. Later reservations by the user are
+     * linked to the first of the user's vehicles without an open booking,
+     * so ANPR gates can find them by plate. Returns false if the plate is
+     * invalid or belongs to another user.
+     */
+    public boolean registerVehicle(User user, AbstractVehicle vehicle) {
+        if (user == null || vehicle == null) return false;
+        return vehicles.register(vehicle, user.getUsername());
+    }
+
+    /*
+     * Open (PENDING or ACTIVE) booking of the vehicle with this plate, or null.
+     * Spacing and case of the plate do not matter.
+     */
+    public Booking findOpenBookingByPlate(String licensePlate) {
+        return vehicles.findOpenBooking(licensePlate);
+    }
+
+    /*
+     * Open bookings whose plate is close to a camera read, best first,
+     * for an attendant resolving a read the gate could not.
+     */
+    public FuzzyPlateIndex.Match[] findOpenBookingsNearPlate(String read) {
+        return vehicles.findOpenBookingsNear(read, Constants.PLATE_MAX_EDIT_DISTANCE);
+    }
+
+    public VehicleRegistry getVehicleRegistry() {
+        return vehicles;
+    }
+
+    public void saveBookingsToFile(String filename) {
+        if (!ensureHistoryLoaded()) {
+            System.out.println("[Error] Bookings not saved: the booking history could not be loaded, "
+                    + "so saving now would drop it. Reload the bookings first.");
+            return;
+        }
+        try {
+            com.smartpark.util.Persistence.saveBookings(this.bookings, this.bookingCount, this.nextBookingId.intValue(), filename);
+        } catch (IOException e) {
+            System.out.println("Error saving bookings: " + e.getMessage());
+        }
+    }
+
+    /*
+     * Checkpoint the bookings to filename in the background every intervalMs,
+     * or after changeThreshold booking changes, whichever comes first.
+     * Replaces any checkpointer already running.
+     */
+    public BookingCheckpointer startCheckpointing(String filename, long intervalMs, int changeThreshold) {
+        stopCheckpointing();
+        BookingCheckpointer c = new BookingCheckpointer(this, filename, intervalMs, changeThreshold);
+        checkpointer = c;
+        addBookingListener(c);
+        c.start();
+        return c;
+    }
+
+    /*
+     * Settle payments through the given gateway from now on. Every exit
+     * queues its fee as a charge; the returned pipeline is also the Payment
+     * to use for explicit pay/refund calls. Replaces any running pipeline.
+     */
+    public SettlementPipeline startSettlement(PaymentGateway gateway) {
+        stopSettlement();
+        SettlementPipeline p = new SettlementPipeline(attendant, gateway);
+        settlement = p;
+        addBookingListener(p);
+        p.start();
+        return p;
+    }
+
+    public void stopSettlement() {
+        SettlementPipeline p = settlement;
+        if (p == null) return;
+        settlement = null;
+        removeBookingListener(p);
+        p.stop();
+    }
+
+    public SettlementPipeline getSettlement() {
+        return settlement;
+    }
+
+    /*
+     * Stop background checkpointing after one last checkpoint.
+     */
+    public void stopCheckpointing() {
+        BookingCheckpointer c = checkpointer;
+        if (c == null) return;
+        checkpointer = null;
+        removeBookingListener(c);
+        c.stop();
+    }
+
+    /*
+     * Export bookings to a file on a background thread.
+     * Only the booking array reference and count are captured here, both
+     * under the Attendant monitor that guards them (so they come from the
+     * same resize), and the caller (and every gate operation after it)
+     * continues immediately.
+     * Bookings created after this call are not included; a booking that
+     * changes state while the export runs is written with either its old
+     * or its new state. The future yields the number of rows written.
+     * If the history of a warm start is still being read, the worker waits
+     * for it and captures the bookings once it is in.
+     */
+    public Future<Long> exportBookingsAsync(final BookingExporter exporter, final String filename) {
+        FutureTask<Long> task;
+        if (pendingHistory == null) {
+            final Booking[] captured;
+            final int count;
+            synchronized (attendant) {
+                captured = this.bookings;
+                count = this.bookingCount;
+            }
+            task = new FutureTask<>(() -> Long.valueOf(exporter.exportToFile(captured, count, filename)));
+        } else {
+            task = new FutureTask<>(() -> {
+                ensureHistoryLoaded();
+                Booking[] captured;
+                int count;
+                synchronized (attendant) {
+                    captured = this.bookings;
+                    count = this.bookingCount;
+                }
+                return Long.valueOf(exporter.exportToFile(captured, count, filename));
+            });
+        }
+        Thread worker = new Thread(task, "booking-export");
+        worker.setDaemon(true);
+        worker.start();
+        return task;
+    }
+
+    public void loadBookingsFromFile(String filename) {
+        discardPendingHistory();
+        try {
+            Booking[] loaded = com.smartpark.util.Persistence.loadBookings(this.bookings.length, filename);
+            adoptLoadedBookings(loaded, com.smartpark.util.Persistence.getLastLoadedBookingCount());
+        } catch (IOException e) {
+            System.out.println("Error loading bookings: " + e.getMessage());
+        }
+    }
+
+    /*
+     * WARM START
+     * Restore only what the gates need from a bookings file: the open
+     * (PENDING, ACTIVE, SCHEDULED) bookings and the id high-water mark from
+     * its checkpoint header. The COMPLETED/CANCELLED history stays in the
+     * file until ensureHistoryLoaded() or loadHistoryInBackground() reads
+     * it, so startup time does not grow with the history. Files without a
+     * checkpoint header are loaded in full.
+     */
+    public void warmStartFromFile(String filename) {
+        discardPendingHistory();
+        WarmStart warm;
+        try {
+            warm = com.smartpark.util.Persistence.openWarmStart(filename);
+        } catch (IOException e) {
+            System.out.println("Error loading bookings: " + e.getMessage());
+            return;
+        }
+        if (warm == null) {
+            loadBookingsFromFile(filename);
+            return;
+        }
+
+        Booking[] open = warm.getOpenBookings();
+        Booking[] loaded = new Booking[Math.max(bookings.length, open.length * 2)];
+        for (int i = 0; i < open.length; i++) loaded[i] = open[i];
+        synchronized (this) {
+            adoptLoadedBookings(loaded, open.length);
+            // History ids lie below the header's mark; never hand them out again
+            if (warm.getNextBookingId() > nextBookingId.intValue()) {
+                nextBookingId = Integer.valueOf(warm.getNextBookingId());
+            }
+            pendingHistory = warm;
+        }
+    }
+
+    /*
+     * Read the rest of a warm start's bookings file (the history), if any is
+     * still pending. The file is parsed outside the locks and appended in
+     * batches, so gate operations keep running meanwhile. Callers that need
+     * every booking (saving, checkpoints, exports, history views) call this
+     * first; it returns at once when there is nothing left to load.
+     *
+     * Returns false if the history could not be read in full. That state
+     * sticks until the bookings are loaded again: the file still holds rows
+     * that are not in memory, so it must not be overwritten (see
+     * saveBookingsToFile and BookingCheckpointer).
+     */
+    public boolean ensureHistoryLoaded() {
+        if (pendingHistory == null) return !historyIncomplete;
+        synchronized (historyLock) {
+            WarmStart warm = pendingHistory;
+            if (warm == null) return !historyIncomplete;
+            try {
+                Booking[] batch;
+                while ((batch = warm.readHistory(Constants.HISTORY_LOAD_BATCH)).length > 0) {
+                    synchronized (this) {
+                        // Reservations append holding only the Attendant monitor, so the
+                        // batch is appended under it too; listeners run after it is released
+                        int appended = 0;
+                        synchronized (attendant) {
+                            for (int i = 0; i < batch.length; i++) {
+                                Booking booking = batch[i];
+                                // Already known, e.g. restored from a primary in the meantime
+                                if (booking.getBookingId() != null && findBookingById(booking.getBookingId()) != null) continue;
+                                appendBooking(booking);
+                                batch[appended++] = booking;
+                            }
+                        }
+                        for (int i = 0; i < appended; i++) fireRestored(batch[i]);
+                    }
+                }
+            } catch (IOException e) {
+                historyIncomplete = true;
+                System.out.println("[Error] Could not load booking history: " + e.getMessage()
+                        + " Saving and checkpoints are disabled until the bookings are reloaded.");
+            } finally {
+                pendingHistory = null;
+                closeQuietly(warm);
+            }
+            return !historyIncomplete;
+        }
+    }
+
+    /*
+     * Load the pending history on a daemon thread; returns the thread.
+     */
+    public Thread loadHistoryInBackground() {
+        Thread loader = new Thread(this::ensureHistoryLoaded, "history-loader");
+        loader.setDaemon(true);
+        loader.start();
+        return loader;
+    }
+
+    public boolean isHistoryLoaded() {
+        return pendingHistory == null;
+    }
+
+    // Forget the pending history of an earlier warm start (a full load replaces it)
+    private void discardPendingHistory() {
+        synchronized (historyLock) {
+            WarmStart warm = pendingHistory;
+            pendingHistory = null;
+            if (warm != null) closeQuietly(warm);
+        }
+    }
+
+    private static void closeQuietly(WarmStart warm) {
+        try {
+            warm.close();
+        } catch (IOException e) {
+            // nothing left to read from it anyway
+        }
+    }
+
+    /*
+     * STORAGE SPI
+     */
+
+    /*
+     * Write every booking change to the given store from now on. Each
+     * reservation, entry, exit or expiry becomes one point write of that
+     * booking, made by a writer thread so the gate never waits on storage
+     * (see StoreWriter). Passing null detaches the current store once every
+     * queued write has reached it.
+     */
+    public void setBookingStore(BookingStore store) {
+        if (storeWriter != null) {
+            removeBookingListener(storeWriter);
+            storeWriter.stop();
+            storeWriter = null;
+        }
+        this.bookingStore = store;
+        if (store != null) {
+            storeWriter = new StoreWriter(store);
+            addBookingListener(storeWriter);
+            storeWriter.start();
+        }
+    }
+
+    public BookingStore getBookingStore() {
+        return bookingStore;
+    }
+
+    /*
+     * Replace the in-memory bookings with the contents of the attached store.
+     */
+    public void loadBookingsFromStore() {
+        if (bookingStore == null) {
+            System.out.println("[Error] No booking store attached.");
+            return;
+        }
+        discardPendingHistory();
+        final Booking[][] loaded = { new Booking[Math.max(bookings.length, 16)] };
+        final int[] count = { 0 };
+        final SymbolTable usernames = new SymbolTable(); // shares name instances within this load
+        try {
+            bookingStore.scanBookings(0, Integer.MAX_VALUE, b -> {
+                b.setUsername(usernames.decode(usernames.encode(b.getUsername())));
+                if (count[0] == loaded[0].length) {
+                    Booking[] larger = new Booking[loaded[0].length * 2];
+                    for (int i = 0; i < count[0]; i++) larger[i] = loaded[0][i];
+                    loaded[0] = larger;
+                }
+                loaded[0][count[0]++] = b;
+                return true;
+            });
+        } catch (IOException e) {
+            System.out.println("[Error] Could not load bookings from store: " + e.getMessage());
+            return;
+        }
+
+        loadingFromStore = true;
+        try {
+            adoptLoadedBookings(loaded[0], count[0]);
+        } finally {
+            loadingFromStore = false;
+        }
+    }
+
+    /*
+     * Take over a freshly loaded booking array: re-sync slot occupancy,
+     * move nextBookingId past the highest id and notify listeners.
+     */
+    private void adoptLoadedBookings(Booking[] loaded, int count) {
+        synchronized (attendant) {
+            this.bookings = loaded;
+            this.bookingCount = count;
+            this.historyIncomplete = false; // a complete set of bookings replaces the old one
+            secondaryIndex.clear(); // refilled as each booking is announced below
+            bookingIndexById.clear();
+            bookingIndexById.ensureCapacity(count);
+            for (int i = 0; i < count; i++) {
+                if (loaded[i] != null && loaded[i].getBookingId() != null) {
+                    bookingIndexById.put(loaded[i].getBookingId().intValue(), i);
+                }
+            }
+        }
+        vehicles.unlinkAll();
+        for (int i = 0; i < slotCount; i++) {
+            parkingSlots[i].schedule = null;
+            windows.refresh(parkingSlots[i]);
+        }
+
+        int maxId = 0;
+        for (int i = 0; i < bookingCount; i++) {
+            Booking booking = bookings[i];
+            if (booking != null) {
+                if (booking.getBookingId() != null) {
+                    int id = booking.getBookingId().intValue();
+                    if (id > maxId) maxId = id;
+                }
+                // Sync slot status: If PENDING or ACTIVE, mark slot occupied
+                if (holdsSlot(booking)) {
+                    ParkingSlot slot = findSlotById(booking.getSlotId());
+                    if (slot != null) {
+                        occupySlot(slot, booking);
+                    }
+                    vehicles.link(booking);
+                }
+                schedule(booking);
+                fireRestored(booking);
+            }
+        }
+        this.nextBookingId = Integer.valueOf(maxId + 1);
+        publishSnapshot();
+    }
+
+    /*
+     * Listener that mirrors booking changes into the attached BookingStore.
+     *
+     * Listeners run under the Attendant monitor, so the listener only
+     * copies the booking and queues the copy; a writer thread takes the
+     * queued copies in order, writes them and syncs the store once per
+     * batch (group commit). A change is durable once its batch is synced;
+     * a crash loses at most the writes still queued. When the writer falls
+     * STORE_QUEUE_CAPACITY writes behind, changes wait for room rather than
+     * being dropped. Store failures are reported but never undo the
+     * in-memory change.
+     */
+    private class StoreWriter implements BookingListener, Runnable {
+
+        private final BookingStore store;
+        private final ArrayBlockingQueue<StoreWrite> queue =
+                new ArrayBlockingQueue<>(Constants.STORE_QUEUE_CAPACITY);
+        private volatile boolean running;
+        private Thread thread;
+
+        StoreWriter(BookingStore store) {
+            this.store = store;
+        }
+
+        void start() {
+            running = true;
+            thread = new Thread(this, "booking-store-writer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /*
+         * Write out whatever is queued, then end the writer thread.
+         */
+        void stop() {
+            running = false;
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void bookingReserved(Booking booking) {
+            write(booking, false);
+        }
+
+        @Override
+        public void bookingEntered(Booking booking) {
+            write(booking, true);
+        }
+
+        @Override
+        public void bookingExited(Booking booking) {
+            write(booking, true);
+        }
+
+        @Override
+        public void bookingExpired(Booking booking) {
+            write(booking, true);
+        }
+
+        @Override
+        public void bookingRestored(Booking booking) {
+            if (!loadingFromStore) write(booking, false);
+        }
+
+        private void write(Booking booking, boolean statusOnly) {
+            StoreWrite w = new StoreWrite(BookingCheckpointer.copyOf(booking), statusOnly);
+            try {
+                queue.put(w);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.out.println("[Error] Could not queue booking #" + booking.getBookingId() + " for the store.");
+            }
+        }
+
+        @Override
+        public void run() {
+            StoreWrite[] batch = new StoreWrite[Constants.STORE_WRITE_BATCH];
+            while (running || !queue.isEmpty()) {
+                StoreWrite first;
+                try {
+                    first = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    continue; // stop() decides when to end
+                }
+                if (first == null) continue;
+
+                int n = 0;
+                batch[n++] = first;
+                StoreWrite next;
+                while (n < batch.length && (next = queue.poll()) != null) batch[n++] = next;
+
+                for (int i = 0; i < n; i++) {
+                    Booking b = batch[i].booking;
+                    try {
+                        if (batch[i].statusOnly) {
+                            store.updateStatus(b);
+                        } else {
+                            store.putBooking(b);
+                        }
+                    } catch (IOException e) {
+                        System.out.println("[Error] Could not store booking #" + b.getBookingId() + ": " + e.getMessage());
+                    }
+                    batch[i] = null;
+                }
+                try {
+                    store.sync();
+                } catch (IOException e) {
+                    System.out.println("[Error] Could not sync the booking store: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /*
+     * One queued store write: a copy of the booking as it was when it changed.
+     */
+    private static final class StoreWrite {
+        final Booking booking;
+        final boolean statusOnly;
+
+        StoreWrite(Booking booking, boolean statusOnly) {
+            this.booking = booking;
+            this.statusOnly = statusOnly;
+        }
+    }
+
+    /*
+     * Insert or overwrite a booking that was produced elsewhere (for example
+     * streamed from a primary instance). The slot is re-synced from the
+     * booking status and nextBookingId is moved past the restored id.
+     */
+    public synchronized void restoreBooking(Booking restored) {
+        if (restored == null || restored.getBookingId() == null) return;
+
+        Integer id = restored.getBookingId();
+        Booking booking = findBookingById(id);
+
+        if (booking == null) {
+            booking = restored;
+            appendBooking(booking);
+        } else {
+            beforeBookingChange(booking);
+            unschedule(booking);
+            booking.setUsername(restored.getUsername());
+            booking.setSlotId(restored.getSlotId());
+            booking.setStatusCode(restored.getStatusCode());
+            booking.setAmount(restored.getAmount());
+            booking.setCreationTime(restored.getCreationTime());
+            booking.setEntryTime(restored.getEntryTime());
+            booking.setExitTime(restored.getExitTime());
+            booking.setWindow(restored.getWindowStart(), restored.getWindowEnd());
+            // Records from older primaries carry no plate; keep the current link then
+            if (restored.getPlateCode() > 0 && restored.getPlateCode() != booking.getPlateCode()) {
+                vehicles.unlink(booking);
+                booking.setPlateCode(restored.getPlateCode());
+            }
+        }
+        schedule(booking);
+
+        if (holdsSlot(booking)) {
+            vehicles.link(booking);
+        } else {
+            vehicles.unlink(booking);
+        }
+
+        // Sync slot status: PENDING/ACTIVE hold the slot, anything else frees it
+        ParkingSlot slot = findSlotById(booking.getSlotId());
+        if (slot != null) {
+            if (holdsSlot(booking)) {
+                occupySlot(slot, booking);
+            } else if (id.equals(slot.getCurrentBookingId())) {
+                vacateSlot(slot);
+            }
+            publishSnapshot();
+        }
+
+        if (id.intValue() >= nextBookingId.intValue()) {
+            nextBookingId = Integer.valueOf(id.intValue() + 1);
+        }
+
+        fireRestored(booking);
+    }
+
+    /*
+     * Must be called right before an existing booking is modified, so a
+     * checkpoint in progress can keep the version it captured.
+     */
+    private void beforeBookingChange(Booking booking) {
+        BookingCheckpointer c = checkpointer;
+        if (c != null) c.beforeChange(booking);
+    }
+
+    // PENDING and ACTIVE bookings keep their slot occupied
+    private static boolean holdsSlot(Booking booking) {
+        int status = booking.getStatusCode();
+        return status == Constants.STATUS_CODE_PENDING || status == Constants.STATUS_CODE_ACTIVE;
+    }
+
+    /*
+     * SLOT STATE HELPERS
+     * Every occupancy change goes through these so the published
+     * snapshots stay in step with the slots themselves. They run under
+     * the Attendant monitor, which guards the occupancy publisher.
+     */
+
+    private void occupySlot(ParkingSlot slot, Booking booking) {
+        synchronized (attendant) {
+            if (!slot.isOccupied()) pricing.slotTaken(slot.getTypeCode());
+            slot.assign(booking.getBookingId());
+            layout.setFree(slot.index, false);
+            windows.refresh(slot);
+            availability.slotChanged(slot.index, true);
+            occupancy.set(slot.index, booking);
+            schedulePublish();
+        }
+    }
+
+    private void vacateSlot(ParkingSlot slot) {
+        synchronized (attendant) {
+            if (slot.isOccupied()) pricing.slotFreed(slot.getTypeCode());
+            slot.release();
+            layout.setFree(slot.index, true);
+            windows.refresh(slot);
+            availability.slotChanged(slot.index, false);
+            occupancy.set(slot.index, null);
+            schedulePublish();
+        }
+    }
+
+    /*
+     * Free a slot after an exit or expiration and hand it straight to the
+     * next waiter for its type, if any.
+     */
+    private void releaseSlot(ParkingSlot slot) {
+        vacateSlot(slot);
+
+        ReservationWaitlist.Waiter next = waitlist.poll(slot.getType());
+        if (next != null) {
+            Booking booking = createBooking(slot, next.user.getUsername(), next.user);
+            next.future.complete(booking);
+        }
+    }
+
+    private void publishSnapshot() {
+        synchronized (attendant) {
+            occupancy.publish();
+        }
+    }
+
+    /*
+     * Make sure the changes just recorded get published. Gate entries and
+     * exits do not publish themselves (that would allocate a snapshot per
+     * command); a background thread publishes whatever accumulated every
+     * SNAPSHOT_PUBLISH_INTERVAL_MS, on the writer side, so readers never
+     * lock or wait. The thread ends after SNAPSHOT_PUBLISHER_IDLE_MS without
+     * changes, so a busy gate never starts a new one.
+     * Called under the Attendant monitor.
+     */
+    private void schedulePublish() {
+        if (snapshotPublisherRunning) return;
+        snapshotPublisherRunning = true;
+        Thread publisher = new Thread(this::runSnapshotPublisher, "occupancy-publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+    }
+
+    private void runSnapshotPublisher() {
+        long idleMs = 0;
+        while (true) {
+            try {
+                Thread.sleep(Constants.SNAPSHOT_PUBLISH_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                // publish what is there and carry on
+            }
+            synchronized (attendant) {
+                if (occupancy.hasUnpublishedChanges()) {
+                    occupancy.publish();
+                    idleMs = 0;
+                } else {
+                    idleMs += Constants.SNAPSHOT_PUBLISH_INTERVAL_MS;
+                    if (idleMs >= Constants.SNAPSHOT_PUBLISHER_IDLE_MS) {
+                        snapshotPublisherRunning = false;
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Latest occupancy snapshot. Safe to call from any thread; the returned
+     * object never changes, and reading it never locks. Reservations and
+     * expirations publish right away; gate entries and exits show up within
+     * SNAPSHOT_PUBLISH_INTERVAL_MS (see schedulePublish).
+     */
+    public OccupancySnapshot getOccupancySnapshot() {
+        return occupancy.get();
+    }
+
+    /*
+     * DYNAMIC PRICING
+     * Rates per slot type follow the type's occupancy (see DynamicPricing).
+     * The price table is read without locking and never changes; exits
+     * charge the rates of the table current at the exit.
+     */
+
+    public DynamicPricing.PriceTable getPriceTable() {
+        return pricing.current();
+    }
+
+    public boolean isDynamicPricingEnabled() {
+        return pricing.isEnabled();
+    }
+
+    /*
+     * Turn dynamic pricing on or off. Off, every slot type has its base rate.
+     */
+    public void setDynamicPricing(boolean enabled) {
+        synchronized (attendant) {
+            pricing.setEnabled(enabled);
+        }
+    }
+
+    /*
+     * AVAILABILITY SUBSCRIPTIONS
+     * Subscribers receive coalesced AvailabilityUpdates for the whole lot
+     * (AvailabilityUpdate.SCOPE_LOT), one slot type (SCOPE_TYPE + type) or
+     * one zone (SCOPE_ZONE + zone) at most once per update interval. The
+     * first update after subscribing carries the current totals.
+     */
+
+    public void subscribeAvailability(String scope, String key, AvailabilityListener listener) {
+        if (scope == null || listener == null) return;
+        availability.subscribe(scope, key, listener);
+    }
+
+    public boolean unsubscribeAvailability(AvailabilityListener listener) {
+        return availability.unsubscribe(listener);
+    }
+
+    public void setAvailabilityUpdateInterval(long intervalMs) {
+        availability.setIntervalMs(intervalMs);
+    }
+
+    /*
+     * LISTENER REGISTRATION
+     */
+
+    public void addBookingListener(BookingListener listener) {
+        if (listener == null) return;
+        if (listenerCount == listeners.length) {
+            BookingListener[] larger = new BookingListener[listeners.length * 2];
+            for (int i = 0; i < listeners.length; i++) larger[i] = listeners[i];
+            listeners = larger;
+        }
+        listeners[listenerCount] = listener;
+        listenerCount++;
+    }
+
+    public boolean removeBookingListener(BookingListener listener) {
+        for (int i = 0; i < listenerCount; i++) {
+            if (listeners[i] == listener) {
+                for (int j = i; j < listenerCount - 1; j++) listeners[j] = listeners[j + 1];
+                listenerCount--;
+                listeners[listenerCount] = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Refresh the secondary indexes for a booking that was just created or
+     * changed. Every change is announced through one of the fire methods
+     * below, so they call this first.
+     */
+    private void indexBooking(Booking booking) {
+        if (booking.getBookingId() == null) return;
+        synchronized (attendant) {
+            int index = bookingIndexById.get(booking.getBookingId().intValue());
+            if (index >= 0 && bookings[index] == booking) secondaryIndex.update(index, booking);
+        }
+    }
+
+    private void fireReserved(Booking booking) {
+        indexBooking(booking);
+        for (int i = 0; i < listenerCount; i++) listeners[i].bookingReserved(booking);
+    }
+
+    private void fireEntered(Booking booking) {
+        indexBooking(booking);
+        for (int i = 0; i < listenerCount; i++) listeners[i].bookingEntered(booking);
+    }
+
+    private void fireExited(Booking booking) {
+        indexBooking(booking);
+        for (int i = 0; i < listenerCount; i++) listeners[i].bookingExited(booking);
+    }
+
+    private void fireExpired(Booking booking) {
+        indexBooking(booking);
+        for (int i = 0; i < listenerCount; i++) listeners[i].bookingExpired(booking);
+    }
+
+    private void fireRestored(Booking booking) {
+        indexBooking(booking);
+        for (int i = 0; i < listenerCount; i++) listeners[i].bookingRestored(booking);
+    }
+
+    public int getSlotCount() { return slotCount; }
+    public Attendant getAttendant() { return attendant; }
+    public int getGateReplyCacheSize() { return gateReplies.size(); }
+    
+    public ParkingSlot[] getSlotsArray() {
+        ParkingSlot[] copy = new ParkingSlot[this.slotCount];
+        for(int i = 0; i < this.slotCount; i++) copy[i] = this.parkingSlots[i];
+        return copy;
+    }
+
+    public int getBookingCount() { return bookingCount; }
+    public int getNextBookingId() { return nextBookingId.intValue(); }
+
+    /*
+     * The live bookings array (not a copy); only the first getBookingCount()
+     * entries are valid. For in-package readers that must not pay for a copy.
+     */
+    Booking[] liveBookings() {
+        return bookings;
+    }
+
+    public Booking[] getBookingsArray() {
+        Booking[] copy = new Booking[this.bookingCount];
+        for (int i = 0; i < this.bookingCount; i++) copy[i] = this.bookings[i];
+        return copy;
+    }
 }
\ No newline at end of file
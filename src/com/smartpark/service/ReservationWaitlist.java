@@ -0,0 +1,146 @@
+package com.smartpark.service;
+
+import com.smartpark.model.Booking;
+import com.smartpark.model.User;
+
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Queue of reservation requests that could not be served because no slot
+ * of the requested type was free.
+ *
+ * There is one binary heap per slot type. Priority waiters (drivers with a
+ * handicapped permit) are served before everyone else; within the same
+ * class requests are served first-come, first-served. Offer and poll are
+ * O(log n). Waiters whose future was cancelled are dropped when reached.
+ */
+final class ReservationWaitlist {
+
+    /*
+     * One queued request.
+     */
+    static final class Waiter {
+        final User user;
+        final boolean priority;
+        final long seq;
+        final CompletableFuture<Booking> future;
+
+        Waiter(User user, boolean priority, long seq) {
+            this.user = user;
+            this.priority = priority;
+            this.seq = seq;
+            this.future = new CompletableFuture<>();
+        }
+    }
+
+    private String[] types;
+    private Waiter[][] heaps;
+    private int[] sizes;
+    private int typeCount;
+    private long nextSeq;
+
+    ReservationWaitlist() {
+        this.types = new String[4];
+        this.heaps = new Waiter[4][];
+        this.sizes = new int[4];
+        this.typeCount = 0;
+        this.nextSeq = 0;
+    }
+
+    /*
+     * Queue a request for a slot of this type and return its waiter.
+     */
+    Waiter offer(String type, User user, boolean priority) {
+        int t = typeIndex(type, true);
+        Waiter w = new Waiter(user, priority, nextSeq++);
+
+        Waiter[] heap = heaps[t];
+        if (sizes[t] == heap.length) {
+            Waiter[] larger = new Waiter[heap.length * 2];
+            for (int i = 0; i < heap.length; i++) larger[i] = heap[i];
+            heap = larger;
+            heaps[t] = heap;
+        }
+
+        // Sift up
+        int i = sizes[t]++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(w, heap[parent])) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = w;
+        return w;
+    }
+
+    /*
+     * Remove and return the next live waiter for this type, or null.
+     */
+    Waiter poll(String type) {
+        int t = typeIndex(type, false);
+        if (t < 0) return null;
+
+        while (sizes[t] > 0) {
+            Waiter[] heap = heaps[t];
+            Waiter top = heap[0];
+
+            int n = --sizes[t];
+            Waiter last = heap[n];
+            heap[n] = null;
+            if (n > 0) {
+                // Sift down
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= n) break;
+                    if (child + 1 < n && before(heap[child + 1], heap[child])) child++;
+                    if (!before(heap[child], last)) break;
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                heap[i] = last;
+            }
+
+            if (!top.future.isDone()) return top;
+        }
+        return null;
+    }
+
+    /*
+     * Number of queued requests for this type (including cancelled ones not yet dropped).
+     */
+    int size(String type) {
+        int t = typeIndex(type, false);
+        return (t < 0) ? 0 : sizes[t];
+    }
+
+    private static boolean before(Waiter a, Waiter b) {
+        if (a.priority != b.priority) return a.priority;
+        return a.seq < b.seq;
+    }
+
+    private int typeIndex(String type, boolean create) {
+        for (int i = 0; i < typeCount; i++) {
+            if (types[i].equals(type)) return i;
+        }
+        if (!create) return -1;
+        if (typeCount == types.length) {
+            String[] largerTypes = new String[types.length * 2];
+            Waiter[][] largerHeaps = new Waiter[types.length * 2][];
+            int[] largerSizes = new int[types.length * 2];
+            for (int i = 0; i < typeCount; i++) {
+                largerTypes[i] = types[i];
+                largerHeaps[i] = heaps[i];
+                largerSizes[i] = sizes[i];
+            }
+            types = largerTypes;
+            heaps = largerHeaps;
+            sizes = largerSizes;
+        }
+        types[typeCount] = type;
+        heaps[typeCount] = new Waiter[16];
+        sizes[typeCount] = 0;
+        return typeCount++;
+    }
+}
@@ -0,0 +1,368 @@
+package com.smartpark.service;
+
+import com.smartpark.interfaces.BookingListener;
+import com.smartpark.interfaces.Payment;
+import com.smartpark.interfaces.PaymentGateway;
+import com.smartpark.model.Booking;
+import com.smartpark.model.Constants;
+import com.smartpark.model.PaymentIntent;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Asynchronous settlement of payments.
+ *
+ * pay/refund (and every exit, via BookingListener) only validate the request
+ * and queue a PaymentIntent, so the gate never waits for the processor. A
+ * worker thread collects queued intents into batches (up to batchSize, or
+ * whatever arrived within lingerMs) and submits them to the gateway, keeping
+ * up to maxInFlight batches outstanding at once. Transient failures are
+ * retried with exponential backoff under the same idempotency key, so a
+ * retry of a charge that did go through is not charged twice.
+ *
+ * The state of an intent is kept while it is outstanding and for
+ * stateRetentionMs after it reaches a final state (SETTLED, DECLINED,
+ * FAILED); at most stateCapacity final states are kept, oldest dropped
+ * first. A key queued again after its state was dropped is submitted
+ * again, and the gateway's idempotency check stops a second charge.
+ * Declines and failures are counted (getDeclinedCount, getFailedCount),
+ * not printed, since they arrive on the gateway's callback thread.
+ */
+public class SettlementPipeline implements Payment, BookingListener, Runnable {
+
+    public static final String STATE_QUEUED = "QUEUED";
+    public static final String STATE_SUBMITTED = "SUBMITTED";
+    public static final String STATE_SETTLED = "SETTLED";
+    public static final String STATE_DECLINED = "DECLINED";
+    public static final String STATE_FAILED = "FAILED";
+
+    private final Payment validator;   // in-memory checks (the Attendant)
+    private final PaymentGateway gateway;
+    private final int batchSize;
+    private final long lingerMs;
+    private final int maxAttempts;
+    private final long retryBaseMs;
+    private final Semaphore inFlight;
+    private final long stateRetentionMs;
+    private final int stateCapacity;
+
+    private final DelayQueue<Pending> queue = new DelayQueue<>();
+    private final ConcurrentHashMap<String, String> states = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Finished> finished = new ConcurrentLinkedQueue<>(); // oldest first
+    private final AtomicInteger finishedCount = new AtomicInteger();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong settledCount = new AtomicLong();
+    private final AtomicLong declinedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    /*
+     * Queued intent plus its retry bookkeeping.
+     */
+    private static final class Pending implements Delayed {
+        final PaymentIntent intent;
+        int attempts;
+        long dueNanos;
+
+        Pending(PaymentIntent intent) {
+            this.intent = intent;
+            this.dueNanos = System.nanoTime();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNanos, ((Pending) other).dueNanos);
+        }
+    }
+
+    /*
+     * An intent that reached a final state, remembered until its state expires.
+     */
+    private static final class Finished {
+        final String key;
+        final String state;
+        final long expiresAt;
+
+        Finished(String key, String state, long expiresAt) {
+            this.key = key;
+            this.state = state;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public SettlementPipeline(Payment validator, PaymentGateway gateway) {
+        this(validator, gateway, Constants.SETTLEMENT_BATCH_SIZE, Constants.SETTLEMENT_LINGER_MS,
+                Constants.SETTLEMENT_MAX_IN_FLIGHT, Constants.SETTLEMENT_MAX_ATTEMPTS,
+                Constants.SETTLEMENT_RETRY_BASE_MS);
+    }
+
+    public SettlementPipeline(Payment validator, PaymentGateway gateway, int batchSize, long lingerMs,
+                              int maxInFlight, int maxAttempts, long retryBaseMs) {
+        this(validator, gateway, batchSize, lingerMs, maxInFlight, maxAttempts, retryBaseMs,
+                Constants.SETTLEMENT_STATE_RETENTION_MS, Constants.SETTLEMENT_STATE_CAPACITY);
+    }
+
+    public SettlementPipeline(Payment validator, PaymentGateway gateway, int batchSize, long lingerMs,
+                              int maxInFlight, int maxAttempts, long retryBaseMs,
+                              long stateRetentionMs, int stateCapacity) {
+        this.validator = validator;
+        this.gateway = gateway;
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerMs = Math.max(0, lingerMs);
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBaseMs = Math.max(1, retryBaseMs);
+        this.stateRetentionMs = Math.max(1, stateRetentionMs);
+        this.stateCapacity = Math.max(1, stateCapacity);
+    }
+
+    public void start() {
+        if (running) return;
+        running = true;
+        worker = new Thread(this, "settlement");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /*
+     * Stop submitting new batches. Batches already with the gateway still
+     * complete; anything left queued stays QUEUED.
+     */
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+     * Wait until every queued intent has reached a final state.
+     * Returns false if that did not happen within timeoutMs.
+     */
+    public boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (outstanding.get() > 0) {
+            if (System.currentTimeMillis() >= deadline) return false;
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    /*
+     * PAYMENT INTERFACE
+     * "true" means the request passed validation and is queued for
+     * settlement; the outcome is available later through getState.
+     */
+
+    @Override
+    public boolean pay(Booking booking, Double amount) {
+        if (!validator.pay(booking, amount)) return false;
+        enqueue(PaymentIntent.charge(booking, amount.doubleValue()));
+        return true;
+    }
+
+    @Override
+    public boolean refund(Booking booking, Double amount) {
+        if (!validator.refund(booking, amount)) return false;
+        enqueue(PaymentIntent.refund(booking, amount.doubleValue()));
+        return true;
+    }
+
+    /*
+     * Queue an intent. An intent whose key is already queued or settled is
+     * ignored; one that previously failed or was declined is tried again.
+     * Returns true if the intent was queued.
+     */
+    public boolean enqueue(PaymentIntent intent) {
+        String key = intent.getIdempotencyKey();
+        String previous = states.putIfAbsent(key, STATE_QUEUED);
+        if (previous != null) {
+            boolean finalFailure = STATE_FAILED.equals(previous) || STATE_DECLINED.equals(previous);
+            if (!finalFailure || !states.replace(key, previous, STATE_QUEUED)) return false;
+        }
+        outstanding.incrementAndGet();
+        queue.add(new Pending(intent));
+        return true;
+    }
+
+    /*
+     * BOOKING LISTENER: every exit queues the charge for its fee.
+     */
+
+    @Override
+    public void bookingExited(Booking booking) {
+        if (booking.hasAmount() && booking.getBookingId() != null) {
+            enqueue(PaymentIntent.charge(booking, booking.getAmountValue()));
+        }
+    }
+
+    @Override
+    public void bookingReserved(Booking booking) { }
+
+    @Override
+    public void bookingEntered(Booking booking) { }
+
+    @Override
+    public void bookingExpired(Booking booking) { }
+
+    @Override
+    public void bookingRestored(Booking booking) { }
+
+    /*
+     * WORKER
+     */
+
+    @Override
+    public void run() {
+        Pending[] batch = new Pending[batchSize];
+        while (running) {
+            expireStates(System.currentTimeMillis());
+            int n = 0;
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch[n++] = first;
+
+                // Linger briefly so a burst of exits goes out as one batch
+                long lingerEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (n < batchSize) {
+                    long left = lingerEnd - System.nanoTime();
+                    Pending p = (left > 0) ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (p == null) break;
+                    batch[n++] = p;
+                }
+
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                // Put back whatever was taken but not submitted
+                for (int i = 0; i < n; i++) queue.add(batch[i]);
+                return;
+            }
+
+            Pending[] sent = new Pending[n];
+            for (int i = 0; i < n; i++) {
+                sent[i] = batch[i];
+                batch[i] = null;
+            }
+            submit(sent);
+        }
+    }
+
+    private void submit(final Pending[] sent) {
+        PaymentIntent[] intents = new PaymentIntent[sent.length];
+        for (int i = 0; i < sent.length; i++) {
+            intents[i] = sent[i].intent;
+            sent[i].attempts++;
+            states.put(intents[i].getIdempotencyKey(), STATE_SUBMITTED);
+        }
+        batchCount.incrementAndGet();
+
+        try {
+            gateway.submit(intents, intents.length).whenComplete((codes, error) -> {
+                inFlight.release();
+                complete(sent, codes, error);
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            complete(sent, null, e);
+        }
+    }
+
+    private void complete(Pending[] sent, int[] codes, Throwable error) {
+        for (int i = 0; i < sent.length; i++) {
+            Pending p = sent[i];
+            String key = p.intent.getIdempotencyKey();
+            int code = (error != null || codes == null || i >= codes.length)
+                    ? PaymentGateway.RESULT_RETRY : codes[i];
+
+            if (code == PaymentGateway.RESULT_OK) {
+                finish(key, STATE_SETTLED);
+                settledCount.incrementAndGet();
+            } else if (code == PaymentGateway.RESULT_DECLINED) {
+                finish(key, STATE_DECLINED);
+                declinedCount.incrementAndGet();
+            } else if (p.attempts >= maxAttempts) {
+                finish(key, STATE_FAILED);
+                failedCount.incrementAndGet();
+            } else {
+                long backoffMs = retryBaseMs << Math.min(p.attempts - 1, 16);
+                p.dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs);
+                states.put(key, STATE_QUEUED);
+                retryCount.incrementAndGet();
+                queue.add(p);
+            }
+        }
+    }
+
+    private void finish(String key, String state) {
+        long now = System.currentTimeMillis();
+        states.put(key, state);
+        finished.add(new Finished(key, state, now + stateRetentionMs));
+        finishedCount.incrementAndGet();
+        outstanding.decrementAndGet();
+        expireStates(now);
+    }
+
+    /*
+     * Drop final states that have expired, or that are beyond stateCapacity.
+     * A key that was queued again keeps its state while it is outstanding.
+     */
+    private void expireStates(long now) {
+        while (true) {
+            Finished head = finished.peek();
+            if (head == null) return;
+            if (finishedCount.get() <= stateCapacity && head.expiresAt >= now) return;
+            if (finished.remove(head)) {
+                finishedCount.decrementAndGet();
+                states.remove(head.key, head.state);
+            }
+        }
+    }
+
+    /*
+     * STATUS
+     */
+
+    /*
+     * STATE_* of the intent with this idempotency key, or null if unknown.
+     */
+    public String getState(String idempotencyKey) {
+        return states.get(idempotencyKey);
+    }
+
+    /*
+     * State of the charge for a booking, or null if none was queued.
+     */
+    public String getChargeState(int bookingId) {
+        return states.get(PaymentIntent.chargeKey(bookingId));
+    }
+
+    public int getOutstandingCount() { return outstanding.get(); }
+    public int getStateCount() { return states.size(); }
+    public long getSettledCount() { return settledCount.get(); }
+    public long getDeclinedCount() { return declinedCount.get(); }
+    public long getFailedCount() { return failedCount.get(); }
+    public long getRetryCount() { return retryCount.get(); }
+    public long getBatchCount() { return batchCount.get(); }
+}
@@ -0,0 +1,114 @@
+package com.smartpark.service;
+
+import com.smartpark.model.AbstractVehicle;
+import com.smartpark.model.Constants;
+
+/*
+ * Chooses the best-fitting free slot for a vehicle.
+ *
+ * Every size class has a fallback order of slot types, tightest fit first;
+ * by default
+ *   SMALL  -> COMPACT, REGULAR, LARGE
+ *   MEDIUM -> REGULAR, LARGE
+ *   LARGE  -> LARGE
+ * HANDICAPPED slots are never chosen here; they stay for permit holders,
+ * who reserve them by type. A vehicle goes to the first type in its order
+ * that has a free slot. The SlotLayoutIndex keeps a free count per type
+ * (read in O(1)) and finds a free slot of one type in O(log n), so a
+ * decision is O(log n) for the handful of types in an order.
+ */
+public class SlotAllocator {
+
+    private final SlotLayoutIndex layout;
+
+    private String[] sizeClasses = new String[4];
+    private String[][] orders = new String[4][];
+    private int sizeClassCount;
+
+    SlotAllocator(SlotLayoutIndex layout) {
+        this.layout = layout;
+        setFallbackOrder(Constants.SIZE_SMALL, Constants.SLOT_COMPACT, Constants.SLOT_REGULAR, Constants.SLOT_LARGE);
+        setFallbackOrder(Constants.SIZE_MEDIUM, Constants.SLOT_REGULAR, Constants.SLOT_LARGE);
+        setFallbackOrder(Constants.SIZE_LARGE, Constants.SLOT_LARGE);
+    }
+
+    /*
+     * Replace the slot types a size class may use, in order of preference.
+     */
+    public synchronized void setFallbackOrder(String sizeClass, String... slotTypes) {
+        if (sizeClass == null || slotTypes == null) return;
+        String[] order = slotTypes.clone();
+
+        for (int i = 0; i < sizeClassCount; i++) {
+            if (sizeClasses[i].equals(sizeClass)) {
+                orders[i] = order;
+                return;
+            }
+        }
+        if (sizeClassCount == sizeClasses.length) {
+            String[] largerClasses = new String[sizeClassCount * 2];
+            String[][] largerOrders = new String[sizeClassCount * 2][];
+            for (int i = 0; i < sizeClassCount; i++) {
+                largerClasses[i] = sizeClasses[i];
+                largerOrders[i] = orders[i];
+            }
+            sizeClasses = largerClasses;
+            orders = largerOrders;
+        }
+        sizeClasses[sizeClassCount] = sizeClass;
+        orders[sizeClassCount] = order;
+        sizeClassCount++;
+    }
+
+    /*
+     * Slot types a size class may use, best fit first (empty if unknown).
+     */
+    public synchronized String[] getFallbackOrder(String sizeClass) {
+        String[] order = orderFor(sizeClass);
+        return (order == null) ? new String[0] : order.clone();
+    }
+
+    /*
+     * True if a vehicle of this size class may park in a slot of this type.
+     */
+    public synchronized boolean fits(String sizeClass, String slotType) {
+        String[] order = orderFor(sizeClass);
+        if (order == null) return false;
+        for (String type : order) {
+            if (type.equals(slotType)) return true;
+        }
+        return false;
+    }
+
+    /*
+     * Slot position of the best free slot for the vehicle, or -1 if none
+     * fits. With a gate (gateId >= 0) the nearest slot of the chosen type
+     * to that gate is taken.
+     */
+    int allocate(AbstractVehicle vehicle, int gateId) {
+        String[] order;
+        synchronized (this) {
+            order = orderFor(sizeOf(vehicle));
+        }
+        if (order == null) return -1;
+
+        for (String type : order) {
+            if (layout.freeCount(type) == 0) continue;
+            int index = (gateId >= 0) ? layout.findNearestFree(type, gateId) : layout.findAnyFree(type);
+            if (index >= 0) return index;
+        }
+        return -1;
+    }
+
+    static String sizeOf(AbstractVehicle vehicle) {
+        String size = vehicle.getSizeClass();
+        return (size == null) ? Constants.SIZE_MEDIUM : size;
+    }
+
+    private String[] orderFor(String sizeClass) {
+        for (int i = 0; i < sizeClassCount; i++) {
+            if (sizeClasses[i].equals(sizeClass)) return orders[i];
+        }
+        return null;
+    }
+}
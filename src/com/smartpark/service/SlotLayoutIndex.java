@@ -0,0 +1,421 @@
+package com.smartpark.service;
+
+/*
+ * Spatial index over slot positions used to answer
+ * "nearest free slot of type X to gate G".
+ *
+ * Slots are arranged in an implicit, balanced k-d tree on (x, y, level).
+ * Every tree node also keeps its subtree's bounding box and, per slot type,
+ * how many free slots the subtree contains, so the nearest-neighbour search
+ * skips full or distant regions outright and a slot changing state only
+ * touches one root-to-node path.
+ * Positions are fixed once added; adding slots marks the tree for a lazy
+ * rebuild on the next query.
+ */
+final class SlotLayoutIndex {
+
+    // Distance counted for moving between two adjacent levels (same unit as x/y)
+    private final double levelDistance;
+
+    // Per slot (by position in ParkingSystem)
+    private double[] xs;
+    private double[] ys;
+    private double[] zs;            // level * levelDistance
+    private int[] typeOf;           // ordinal into types[]
+    private int[] slotIds;
+    private boolean[] free;
+    private int slotCount;
+
+    // Slot types seen so far (few, so a linear list is fine)
+    private String[] types;
+    private int typeCount;
+
+    // Implicit tree: node for range [lo, hi) lives at mid = (lo + hi) >>> 1
+    private int[] tree;             // tree position -> slot position
+    private int[] treePos;          // slot position -> tree position
+    private double[] boxes;         // subtree bounding box per tree position: minX,maxX,minY,maxY,minZ,maxZ
+    private int[][] freeCounts;     // [type][tree position] free slots of that type in the subtree
+    private int treeSize;
+    private boolean dirty;
+
+    // Gates (entry points) by id
+    private int[] gateIds;
+    private double[] gateXs;
+    private double[] gateYs;
+    private double[] gateZs;
+    private int gateCount;
+
+    // Search state, reused between queries (writer thread only)
+    private int bestSlot;
+    private double bestDist;
+
+    SlotLayoutIndex(int initialCapacity, double levelDistance) {
+        if (initialCapacity <= 0) initialCapacity = 20;
+        this.levelDistance = levelDistance;
+        this.xs = new double[initialCapacity];
+        this.ys = new double[initialCapacity];
+        this.zs = new double[initialCapacity];
+        this.typeOf = new int[initialCapacity];
+        this.slotIds = new int[initialCapacity];
+        this.free = new boolean[initialCapacity];
+        this.types = new String[4];
+        this.gateIds = new int[4];
+        this.gateXs = new double[4];
+        this.gateYs = new double[4];
+        this.gateZs = new double[4];
+        this.dirty = true;
+    }
+
+    /*
+     * Pre-size for a known total number of slots (bulk provisioning).
+     */
+    void ensureCapacity(int totalSlots) {
+        ensureSlotCapacity(totalSlots);
+    }
+
+    /*
+     * Build the tree now instead of on the next query.
+     */
+    void prepare() {
+        if (dirty) rebuild();
+    }
+
+    /*
+     * Register the slot at the next position. New slots start free.
+     */
+    void addSlot(int index, int slotId, String type, int level, double x, double y) {
+        ensureSlotCapacity(index + 1);
+        xs[index] = x;
+        ys[index] = y;
+        zs[index] = level * levelDistance;
+        typeOf[index] = typeOrdinal(type, true);
+        slotIds[index] = slotId;
+        free[index] = true;
+        if (index >= slotCount) slotCount = index + 1;
+        dirty = true;
+    }
+
+    /*
+     * Record a slot becoming free or taken. O(log n) once the tree is built.
+     */
+    void setFree(int index, boolean isFree) {
+        if (index < 0 || index >= slotCount || free[index] == isFree) return;
+        free[index] = isFree;
+        if (dirty) return; // counts are recomputed on rebuild
+
+        int target = treePos[index];
+        int delta = isFree ? 1 : -1;
+        int[] counts = freeCounts[typeOf[index]];
+        int lo = 0;
+        int hi = treeSize;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            counts[mid] += delta;
+            if (mid == target) break;
+            if (target < mid) hi = mid;
+            else lo = mid + 1;
+        }
+    }
+
+    void addGate(int gateId, int level, double x, double y) {
+        for (int i = 0; i < gateCount; i++) {
+            if (gateIds[i] == gateId) {
+                gateXs[i] = x;
+                gateYs[i] = y;
+                gateZs[i] = level * levelDistance;
+                return;
+            }
+        }
+        if (gateCount == gateIds.length) {
+            int n = gateIds.length * 2;
+            int[] ids = new int[n];
+            double[] gx = new double[n];
+            double[] gy = new double[n];
+            double[] gz = new double[n];
+            for (int i = 0; i < gateCount; i++) {
+                ids[i] = gateIds[i];
+                gx[i] = gateXs[i];
+                gy[i] = gateYs[i];
+                gz[i] = gateZs[i];
+            }
+            gateIds = ids;
+            gateXs = gx;
+            gateYs = gy;
+            gateZs = gz;
+        }
+        gateIds[gateCount] = gateId;
+        gateXs[gateCount] = x;
+        gateYs[gateCount] = y;
+        gateZs[gateCount] = level * levelDistance;
+        gateCount++;
+    }
+
+    boolean hasGate(int gateId) {
+        return gateIndex(gateId) >= 0;
+    }
+
+    /*
+     * Position of the free slot of this type closest to the gate,
+     * or -1 if there is none. Ties go to the lower slot id.
+     */
+    int findNearestFree(String type, int gateId) {
+        int g = gateIndex(gateId);
+        if (g < 0) return -1;
+        return findNearestFree(type, gateXs[g], gateYs[g], gateZs[g]);
+    }
+
+    /*
+     * Position of the free slot of this type closest to a point, or -1.
+     * A null type matches any slot type.
+     */
+    int findNearestFree(String type, double x, double y, double z) {
+        if (dirty) rebuild();
+        if (treeSize == 0) return -1;
+
+        bestSlot = -1;
+        bestDist = Double.POSITIVE_INFINITY;
+        if (type == null) {
+            for (int t = 0; t < typeCount; t++) search(t, 0, treeSize, x, y, z);
+        } else {
+            int t = typeOrdinal(type, false);
+            if (t < 0) return -1;
+            search(t, 0, treeSize, x, y, z);
+        }
+        return bestSlot;
+    }
+
+    /*
+     * Position of some free slot of this type, or -1. O(log n).
+     */
+    int findAnyFree(String type) {
+        if (dirty) rebuild();
+        int t = typeOrdinal(type, false);
+        if (t < 0 || treeSize == 0) return -1;
+
+        int[] counts = freeCounts[t];
+        int lo = 0;
+        int hi = treeSize;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (counts[mid] == 0) return -1;
+            int s = tree[mid];
+            if (free[s] && typeOf[s] == t) return s;
+            if (lo < mid && counts[(lo + mid) >>> 1] > 0) hi = mid;
+            else lo = mid + 1;
+        }
+        return -1;
+    }
+
+    /*
+     * Number of free slots of the given type (null = all types).
+     */
+    int freeCount(String type) {
+        if (dirty) rebuild();
+        if (treeSize == 0) return 0;
+        int root = treeSize >>> 1;
+        if (type != null) {
+            int t = typeOrdinal(type, false);
+            return (t < 0) ? 0 : freeCounts[t][root];
+        }
+        int total = 0;
+        for (int t = 0; t < typeCount; t++) total += freeCounts[t][root];
+        return total;
+    }
+
+    private void search(int t, int lo, int hi, double x, double y, double z) {
+        if (lo >= hi) return;
+        int mid = (lo + hi) >>> 1;
+        if (freeCounts[t][mid] == 0) return; // nothing free of this type down here
+        if (boxDistance(mid, x, y, z) > bestDist) return; // whole subtree is farther than the best so far
+
+        int s = tree[mid];
+        if (free[s] && typeOf[s] == t) {
+            double dx = xs[s] - x;
+            double dy = ys[s] - y;
+            double dz = zs[s] - z;
+            double d = dx * dx + dy * dy + dz * dz;
+            if (d < bestDist || (d == bestDist && slotIds[s] < slotIds[bestSlot])) {
+                bestDist = d;
+                bestSlot = s;
+            }
+        }
+
+        // Visit the child whose box is closer first so the bound tightens early
+        int leftMid = (lo + mid) >>> 1;
+        int rightMid = (mid + 1 + hi) >>> 1;
+        double leftDist = (lo < mid) ? boxDistance(leftMid, x, y, z) : Double.POSITIVE_INFINITY;
+        double rightDist = (mid + 1 < hi) ? boxDistance(rightMid, x, y, z) : Double.POSITIVE_INFINITY;
+        if (leftDist <= rightDist) {
+            search(t, lo, mid, x, y, z);
+            search(t, mid + 1, hi, x, y, z);
+        } else {
+            search(t, mid + 1, hi, x, y, z);
+            search(t, lo, mid, x, y, z);
+        }
+    }
+
+    /*
+     * Squared distance from a point to the bounding box of a subtree (0 if inside).
+     */
+    private double boxDistance(int node, double x, double y, double z) {
+        int b = node * 6;
+        double d = 0;
+        double delta;
+        if (x < boxes[b]) { delta = boxes[b] - x; d += delta * delta; }
+        else if (x > boxes[b + 1]) { delta = x - boxes[b + 1]; d += delta * delta; }
+        if (y < boxes[b + 2]) { delta = boxes[b + 2] - y; d += delta * delta; }
+        else if (y > boxes[b + 3]) { delta = y - boxes[b + 3]; d += delta * delta; }
+        if (z < boxes[b + 4]) { delta = boxes[b + 4] - z; d += delta * delta; }
+        else if (z > boxes[b + 5]) { delta = z - boxes[b + 5]; d += delta * delta; }
+        return d;
+    }
+
+    /*
+     * Rebuild the tree and the free counts from scratch. O(n log^2 n).
+     */
+    private void rebuild() {
+        treeSize = slotCount;
+        tree = new int[treeSize];
+        treePos = new int[treeSize];
+        boxes = new double[treeSize * 6];
+        for (int i = 0; i < treeSize; i++) tree[i] = i;
+
+        build(0, treeSize);
+        for (int p = 0; p < treeSize; p++) treePos[tree[p]] = p;
+
+        freeCounts = new int[typeCount][treeSize];
+        for (int t = 0; t < typeCount; t++) countFree(t, 0, treeSize);
+        dirty = false;
+    }
+
+    private void build(int lo, int hi) {
+        if (lo >= hi) return;
+        int mid = (lo + hi) >>> 1;
+
+        // Split on the axis with the widest spread in this range
+        byte a = widestAxis(lo, hi, mid * 6);
+        if (hi - lo <= 1) return;
+        select(lo, hi - 1, mid, a);
+
+        build(lo, mid);
+        build(mid + 1, hi);
+    }
+
+    private int countFree(int t, int lo, int hi) {
+        if (lo >= hi) return 0;
+        int mid = (lo + hi) >>> 1;
+        int s = tree[mid];
+        int count = (free[s] && typeOf[s] == t) ? 1 : 0;
+        count += countFree(t, lo, mid);
+        count += countFree(t, mid + 1, hi);
+        freeCounts[t][mid] = count;
+        return count;
+    }
+
+    /*
+     * Compute the bounding box of tree[lo..hi) into boxes[box..box+5] and
+     * return the axis with the largest extent.
+     */
+    private byte widestAxis(int lo, int hi, int box) {
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        double minZ = Double.POSITIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = lo; i < hi; i++) {
+            int s = tree[i];
+            if (xs[s] < minX) minX = xs[s];
+            if (xs[s] > maxX) maxX = xs[s];
+            if (ys[s] < minY) minY = ys[s];
+            if (ys[s] > maxY) maxY = ys[s];
+            if (zs[s] < minZ) minZ = zs[s];
+            if (zs[s] > maxZ) maxZ = zs[s];
+        }
+        boxes[box] = minX;
+        boxes[box + 1] = maxX;
+        boxes[box + 2] = minY;
+        boxes[box + 3] = maxY;
+        boxes[box + 4] = minZ;
+        boxes[box + 5] = maxZ;
+
+        double sx = maxX - minX, sy = maxY - minY, sz = maxZ - minZ;
+        if (sx >= sy && sx >= sz) return 0;
+        return (sy >= sz) ? (byte) 1 : (byte) 2;
+    }
+
+    /*
+     * Quickselect: put the k-th smallest element of tree[lo..hi] on axis a at position k.
+     */
+    private void select(int lo, int hi, int k, byte a) {
+        while (hi > lo) {
+            double pivot = coord(tree[(lo + hi) >>> 1], a);
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (coord(tree[i], a) < pivot) i++;
+                while (coord(tree[j], a) > pivot) j--;
+                if (i <= j) {
+                    int tmp = tree[i];
+                    tree[i] = tree[j];
+                    tree[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return;
+        }
+    }
+
+    private double coord(int s, byte a) {
+        if (a == 0) return xs[s];
+        if (a == 1) return ys[s];
+        return zs[s];
+    }
+
+    private int gateIndex(int gateId) {
+        for (int i = 0; i < gateCount; i++) {
+            if (gateIds[i] == gateId) return i;
+        }
+        return -1;
+    }
+
+    private int typeOrdinal(String type, boolean create) {
+        for (int i = 0; i < typeCount; i++) {
+            if (types[i].equals(type)) return i;
+        }
+        if (!create) return -1;
+        if (typeCount == types.length) {
+            String[] larger = new String[types.length * 2];
+            for (int i = 0; i < typeCount; i++) larger[i] = types[i];
+            types = larger;
+        }
+        types[typeCount] = type;
+        dirty = true;
+        return typeCount++;
+    }
+
+    private void ensureSlotCapacity(int needed) {
+        if (needed <= xs.length) return;
+        int n = Math.max(needed, xs.length * 2);
+        double[] nx = new double[n];
+        double[] ny = new double[n];
+        double[] nz = new double[n];
+        int[] nt = new int[n];
+        int[] ni = new int[n];
+        boolean[] nf = new boolean[n];
+        for (int i = 0; i < slotCount; i++) {
+            nx[i] = xs[i];
+            ny[i] = ys[i];
+            nz[i] = zs[i];
+            nt[i] = typeOf[i];
+            ni[i] = slotIds[i];
+            nf[i] = free[i];
+        }
+        xs = nx;
+        ys = ny;
+        zs = nz;
+        typeOf = nt;
+        slotIds = ni;
+        free = nf;
+    }
+}
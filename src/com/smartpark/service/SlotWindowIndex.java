@@ -0,0 +1,171 @@
+package com.smartpark.service;
+
+/*
+ * Per-type index answering "a slot of type X free for all of [start, end)"
+ * without visiting every slot in the lot.
+ *
+ * Each slot sits in exactly one bucket of its type:
+ *   CLEAR      no advance bookings and vacant now
+ *   BUSY       no advance bookings, occupied now
+ *   SCHEDULED  at least one advance booking
+ * A slot without advance bookings is free over any window, so a CLEAR or
+ * BUSY slot answers a window query at once; only the type's SCHEDULED
+ * slots need an interval check each (O(log n) of that slot's bookings).
+ * Buckets are arrays with swap-remove, so moving a slot is O(1).
+ *
+ * The owner calls refresh(slot) after changing a slot's occupancy or
+ * schedule. Guarded by the Attendant monitor.
+ */
+final class SlotWindowIndex {
+
+    private static final int CLEAR = 0;
+    private static final int BUSY = 1;
+    private static final int SCHEDULED = 2;
+    private static final int BUCKETS = 3;
+    private static final int NONE = -1;
+
+    // Per type code: [type][bucket] slots and how many are in use
+    private ParkingSystem.ParkingSlot[][][] slots;
+    private int[][] counts;
+
+    // Per slot (by ParkingSlot.index): its bucket and position in it
+    private int[] bucketOf;
+    private int[] positionOf;
+
+    SlotWindowIndex(int initialCapacity) {
+        if (initialCapacity <= 0) initialCapacity = 20;
+        this.slots = new ParkingSystem.ParkingSlot[4][][];
+        this.counts = new int[4][];
+        this.bucketOf = new int[initialCapacity];
+        this.positionOf = new int[initialCapacity];
+    }
+
+    /*
+     * Register a new slot (its index must already be assigned).
+     */
+    void addSlot(ParkingSystem.ParkingSlot slot) {
+        ensureSlotCapacity(slot.getIndex() + 1);
+        bucketOf[slot.getIndex()] = NONE;
+        insert(slot, bucketFor(slot));
+    }
+
+    /*
+     * Move the slot to the bucket matching its current occupancy and schedule.
+     */
+    void refresh(ParkingSystem.ParkingSlot slot) {
+        if (slot.getIndex() < 0 || slot.getIndex() >= bucketOf.length) return;
+        int bucket = bucketFor(slot);
+        int current = bucketOf[slot.getIndex()];
+        if (current == bucket) return;
+        if (current != NONE) remove(slot, current);
+        insert(slot, bucket);
+    }
+
+    /*
+     * A slot of the type (-1 = any type) with no advance booking
+     * overlapping [start, end), occupied or not; null if none.
+     */
+    ParkingSystem.ParkingSlot findFreeOver(int typeCode, long start, long end) {
+        if (typeCode >= 0) return findFreeOverOfType(typeCode, start, end, false);
+        for (int t = 0; t < slots.length; t++) {
+            ParkingSystem.ParkingSlot slot = findFreeOverOfType(t, start, end, false);
+            if (slot != null) return slot;
+        }
+        return null;
+    }
+
+    /*
+     * An unoccupied slot of the type with no advance booking overlapping
+     * [start, end), or null.
+     */
+    ParkingSystem.ParkingSlot findVacantFreeOver(int typeCode, long start, long end) {
+        if (typeCode < 0) return null;
+        return findFreeOverOfType(typeCode, start, end, true);
+    }
+
+    private ParkingSystem.ParkingSlot findFreeOverOfType(int type, long start, long end, boolean vacantOnly) {
+        if (type >= slots.length || slots[type] == null) return null;
+        int[] count = counts[type];
+
+        if (count[CLEAR] > 0) return slots[type][CLEAR][0];
+        if (!vacantOnly && count[BUSY] > 0) return slots[type][BUSY][0];
+
+        ParkingSystem.ParkingSlot[] scheduled = slots[type][SCHEDULED];
+        for (int i = 0; i < count[SCHEDULED]; i++) {
+            ParkingSystem.ParkingSlot slot = scheduled[i];
+            if (vacantOnly && slot.isOccupied()) continue;
+            if (slot.isFreeOver(start, end)) return slot;
+        }
+        return null;
+    }
+
+    private static int bucketFor(ParkingSystem.ParkingSlot slot) {
+        if (slot.getScheduledCount() > 0) return SCHEDULED;
+        return slot.isOccupied() ? BUSY : CLEAR;
+    }
+
+    private void insert(ParkingSystem.ParkingSlot slot, int bucket) {
+        int type = slot.getTypeCode();
+        ensureType(type);
+        ParkingSystem.ParkingSlot[] list = slots[type][bucket];
+        int n = counts[type][bucket];
+        if (n == list.length) {
+            ParkingSystem.ParkingSlot[] larger = new ParkingSystem.ParkingSlot[list.length * 2];
+            for (int i = 0; i < n; i++) larger[i] = list[i];
+            list = larger;
+            slots[type][bucket] = list;
+        }
+        list[n] = slot;
+        counts[type][bucket] = n + 1;
+        bucketOf[slot.getIndex()] = bucket;
+        positionOf[slot.getIndex()] = n;
+    }
+
+    // Swap-remove: the bucket's last slot takes the removed one's position
+    private void remove(ParkingSystem.ParkingSlot slot, int bucket) {
+        int type = slot.getTypeCode();
+        ParkingSystem.ParkingSlot[] list = slots[type][bucket];
+        int last = counts[type][bucket] - 1;
+        int at = positionOf[slot.getIndex()];
+        ParkingSystem.ParkingSlot moved = list[last];
+        list[at] = moved;
+        positionOf[moved.getIndex()] = at;
+        list[last] = null;
+        counts[type][bucket] = last;
+        bucketOf[slot.getIndex()] = NONE;
+    }
+
+    private void ensureType(int type) {
+        if (type >= slots.length) {
+            int capacity = slots.length;
+            while (capacity <= type) capacity *= 2;
+            ParkingSystem.ParkingSlot[][][] largerSlots = new ParkingSystem.ParkingSlot[capacity][][];
+            int[][] largerCounts = new int[capacity][];
+            for (int i = 0; i < slots.length; i++) {
+                largerSlots[i] = slots[i];
+                largerCounts[i] = counts[i];
+            }
+            slots = largerSlots;
+            counts = largerCounts;
+        }
+        if (slots[type] == null) {
+            slots[type] = new ParkingSystem.ParkingSlot[BUCKETS][];
+            for (int b = 0; b < BUCKETS; b++) slots[type][b] = new ParkingSystem.ParkingSlot[4];
+            counts[type] = new int[BUCKETS];
+        }
+    }
+
+    private void ensureSlotCapacity(int needed) {
+        if (needed <= bucketOf.length) return;
+        int capacity = bucketOf.length;
+        while (capacity < needed) capacity *= 2;
+        int[] largerBuckets = new int[capacity];
+        int[] largerPositions = new int[capacity];
+        for (int i = 0; i < bucketOf.length; i++) {
+            largerBuckets[i] = bucketOf[i];
+            largerPositions[i] = positionOf[i];
+        }
+        bucketOf = largerBuckets;
+        positionOf = largerPositions;
+    }
+}
@@ -1,168 +1,437 @@
-package com.smartpark.service;
-
-import com.smartpark.interfaces.Authenticator;
-import com.smartpark.model.User;
-import com.smartpark.model.Constants;
-
-/*
- * Simple user manager implementing Authenticator.
- * Handles user storage, registration, and login validation.
- */
-public class UserService implements Authenticator {
-
-    private User[] users; // Simple array to hold users
-    private int userCount;
-
-    private Integer nextUserId; // Next user id to assign
-
-    /*
-     * Default constructor creates space for a small number of users.
-     */
-    public UserService() {
-        this.users = new User[20]; // can hold up to 20 users initially
-        this.userCount = 0;
-        this.nextUserId = 1; // start IDs from 1
-    }
-
-    /**
-     * Overloaded constructor: allow specifying initial capacity.
-     */
-    public UserService(int initialCapacity) {
-        if (initialCapacity <= 0) {
-            initialCapacity = 20;
-        }
-        this.users = new User[initialCapacity];
-        this.userCount = 0;
-        this.nextUserId = 1;
-    }
-
-    /*
-     * REGISTRATION METHODS (Overloaded)
-     */
-    
-    /*
-     * PRIMARY REGISTRATION METHOD: Creates a user with a specified role.
-     * This is used by the Admin to create staff/management accounts.
-     * Returns the created User object or null if username already exists.
-     */
-    public User register(String username, String password, String role) {
-        if (username == null || username.trim().length() == 0) {
-            return null; // invalid username
-        }
-
-        // Check if username already exists
-        if (findUserByUsername(username) != null) {
-            return null; // already registered
-        }
-
-        // Ensure capacity, resize if needed
-        if (userCount == users.length) {
-            User[] larger = new User[users.length * 2];
-            for (int i = 0; i < users.length; i++) {
-                larger[i] = users[i];
-            }
-            users = larger;
-        }
-
-        // Create user and assign role based on parameter
-        User u = new User(username, password);
-        u.setUserId(nextUserId);
-        nextUserId = nextUserId + 1;
-        
-        u.setRole(role); 
-
-        users[userCount] = u;
-        userCount++;
-
-        return u;
-    }
-    
-    /*
-     * Register with username only. Password defaults to empty string.
-     * Delegates to the primary method, setting the default role to USER.
-     */
-    public User register(String username) {
-        return register(username, "", Constants.ROLE_USER);
-    }
-
-    /*
-     * Overloaded register method: username + password.
-     * Delegates to the primary method, setting the default role to USER.
-     */
-    public User register(String username, String password) {
-        return register(username, password, Constants.ROLE_USER);
-    }
-
-    /*
-     * AUTHENTICATION & LOOKUP
-     */
-
-    /*
-     * Attempt to log in. Returns the User object on success, null on failure.
-     */
-    @Override
-    public User login(String username, String password) {
-        if (username == null) return null;
-
-        User u = findUserByUsername(username);
-        if (u == null) return null;
-
-        if (u.checkPassword(password)) {
-            return u; // Successful login
-        }
-
-        return null;
-    }
-
-    /*
-     * Find a user by username. Returns null if not found.
-     */
-    public User findUserByUsername(String username) {
-        if (username == null) return null;
-        for (int i = 0; i < userCount; i++) {
-            User u = users[i];
-            if (u != null && username.equals(u.getUsername())) {
-                return u;
-            }
-        }
-        return null;
-    }
-
-    /*
-     * Find user by ID.
-     */
-    public User findUserById(Integer id) {
-        if (id == null) return null;
-        for (int i = 0; i < userCount; i++) {
-            User u = users[i];
-            if (u != null && u.getUserId() != null && u.getUserId().equals(id)) {
-                return u;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Create a simple admin user if none exists — convenience for testing.
-     * Username: admin, password: admin
-     */
-    public void ensureDefaultAdmin() {
-        User existing = findUserByUsername("admin");
-        if (existing == null) {
-            User admin = register("admin", "admin"); 
-            if (admin != null) {
-                admin.setRole(Constants.ROLE_ADMIN);
-            }
-        }
-    }
-    
-    // Getters for array access remain unchanged
-
-    public User[] getUsers() {
-        return users;
-    }
-
-    public int getUserCount() {
-        return userCount;
-    }
+package com.smartpark.service;
+
+import com.smartpark.interfaces.Authenticator;
+import com.smartpark.interfaces.BookingListener;
+import com.smartpark.interfaces.UserStore;
+import com.smartpark.model.Booking;
+import com.smartpark.model.User;
+import com.smartpark.model.Constants;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Simple user manager implementing Authenticator.
+ * Handles user storage, registration, and login validation.
+ *
+ * Without a UserStore every user lives in the users array. Once a store is
+ * attached the store is the source of truth: users are loaded on first
+ * lookup and only the most recently used ones are kept in memory.
+ */
+public class UserService implements Authenticator {
+
+    private User[] users; // Simple array to hold users
+    private int userCount;
+
+    private Integer nextUserId; // Next user id to assign
+
+    private UserStore userStore; // Optional durable store written through on every change
+    private LinkedHashMap<String, User> cache; // Recently used users (store mode only)
+    private StoreSync storeSync;                // Writer of new booking ids, see getStoreSync()
+
+    /*
+     * Default constructor creates space for a small number of users.
+     */
+    public UserService() {
+        this.users = new User[20]; // can hold up to 20 users initially
+        this.userCount = 0;
+        this.nextUserId = 1; // start IDs from 1
+    }
+
+    /**
+     * Overloaded constructor: allow specifying initial capacity.
+     */
+    public UserService(int initialCapacity) {
+        if (initialCapacity <= 0) {
+            initialCapacity = 20;
+        }
+        this.users = new User[initialCapacity];
+        this.userCount = 0;
+        this.nextUserId = 1;
+    }
+
+    /*
+     * REGISTRATION METHODS (Overloaded)
+     */
+    
+    /*
+     * PRIMARY REGISTRATION METHOD: Creates a user with a specified role.
+     * This is used by the Admin to create staff/management accounts.
+     * Returns the created User object or null if username already exists.
+     */
+    public synchronized User register(String username, String password, String role) {
+        if (username == null || username.trim().length() == 0) {
+            return null; // invalid username
+        }
+
+        // Check if username already exists
+        if (findUserByUsername(username) != null) {
+            return null; // already registered
+        }
+
+        if (userStore != null) {
+            User u = new User(username, password);
+            u.setUserId(nextUserId);
+            nextUserId = nextUserId + 1;
+            u.setRole(role);
+            saveUser(u);
+            synchronized (cache) {
+                cache.put(username, u);
+            }
+            return u;
+        }
+
+        // Ensure capacity, resize if needed
+        if (userCount == users.length) {
+            User[] larger = new User[users.length * 2];
+            for (int i = 0; i < users.length; i++) {
+                larger[i] = users[i];
+            }
+            users = larger;
+        }
+
+        // Create user and assign role based on parameter
+        User u = new User(username, password);
+        u.setUserId(nextUserId);
+        nextUserId = nextUserId + 1;
+        
+        u.setRole(role); 
+
+        users[userCount] = u;
+        userCount++;
+
+        saveUser(u);
+        return u;
+    }
+    
+    /*
+     * Register with username only. Password defaults to empty string.
+     * Delegates to the primary method, setting the default role to USER.
+     */
+    public User register(String username) {
+        return register(username, "", Constants.ROLE_USER);
+    }
+
+    /*
+     * Overloaded register method: username + password.
+     * Delegates to the primary method, setting the default role to USER.
+     */
+    public User register(String username, String password) {
+        return register(username, password, Constants.ROLE_USER);
+    }
+
+    /*
+     * AUTHENTICATION & LOOKUP
+     */
+
+    /*
+     * Attempt to log in. Returns the User object on success, null on failure.
+     */
+    @Override
+    public User login(String username, String password) {
+        if (username == null) return null;
+
+        User u = findUserByUsername(username);
+        if (u == null) return null;
+
+        if (u.checkPassword(password)) {
+            return u; // Successful login
+        }
+
+        return null;
+    }
+
+    /*
+     * Find a user by username. Returns null if not found.
+     */
+    public User findUserByUsername(String username) {
+        if (username == null) return null;
+        if (userStore != null) return loadUser(username);
+        for (int i = 0; i < userCount; i++) {
+            User u = users[i];
+            if (u != null && username.equals(u.getUsername())) {
+                return u;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Find user by ID.
+     */
+    public User findUserById(Integer id) {
+        if (id == null) return null;
+        if (userStore != null) {
+            try {
+                User stored = userStore.getUserById(id.intValue());
+                // Return the cached instance if there is one, so callers share it
+                return (stored == null) ? null : loadUser(stored.getUsername());
+            } catch (IOException e) {
+                System.out.println("[Error] Could not read user #" + id + ": " + e.getMessage());
+                return null;
+            }
+        }
+        for (int i = 0; i < userCount; i++) {
+            User u = users[i];
+            if (u != null && u.getUserId() != null && u.getUserId().equals(id)) {
+                return u;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Create a simple admin user if none exists — convenience for testing.
+     * Username: admin, password: admin
+     */
+    public void ensureDefaultAdmin() {
+        User existing = findUserByUsername("admin");
+        if (existing == null) {
+            User admin = register("admin", "admin"); 
+            if (admin != null) {
+                admin.setRole(Constants.ROLE_ADMIN);
+                saveUser(admin);
+            }
+        }
+    }
+
+    /*
+     * STORAGE SPI
+     */
+
+    /*
+     * Back this service with a store. Users already held in memory are
+     * written to it, then dropped; from now on users are read on demand and
+     * at most cacheCapacity of them stay in memory. Nothing is read up front
+     * except the last user id.
+     */
+    public synchronized void setUserStore(UserStore store, int cacheCapacity) {
+        if (store == null) return;
+        final int capacity = (cacheCapacity > 0) ? cacheCapacity : Constants.USER_CACHE_SIZE;
+
+        this.userStore = store;
+        this.cache = new LinkedHashMap<String, User>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, User> eldest) {
+                return size() > capacity;
+            }
+        };
+
+        for (int i = 0; i < userCount; i++) {
+            saveUser(users[i]);
+            int[] ids = users[i].getBookingIds();
+            for (int id : ids) {
+                try {
+                    store.addBookingId(users[i].getUsername(), id);
+                } catch (IOException e) {
+                    System.out.println("[Error] Could not store booking #" + id + " of " + users[i].getUsername()
+                            + ": " + e.getMessage());
+                }
+            }
+        }
+        users = new User[0];
+        userCount = 0;
+
+        try {
+            int lastId = store.getLastUserId();
+            if (lastId + 1 > nextUserId.intValue()) nextUserId = lastId + 1;
+        } catch (IOException e) {
+            System.out.println("[Error] Could not read last user id: " + e.getMessage());
+        }
+    }
+
+    public void setUserStore(UserStore store) {
+        setUserStore(store, Constants.USER_CACHE_SIZE);
+    }
+
+    /*
+     * Cached user, or read it (and its booking ids) from the store and cache it.
+     */
+    private User loadUser(String username) {
+        synchronized (cache) {
+            User u = cache.get(username);
+            if (u != null) return u;
+        }
+        User stored;
+        try {
+            stored = userStore.getUser(username);
+            if (stored != null) stored.addBookingId(userStore.getBookingIds(username));
+        } catch (IOException e) {
+            System.out.println("[Error] Could not read user " + username + ": " + e.getMessage());
+            return null;
+        }
+        if (stored == null) return null;
+        synchronized (cache) {
+            // Another thread may have loaded it meanwhile; keep the first copy
+            User u = cache.get(username);
+            if (u != null) return u;
+            cache.put(username, stored);
+            return stored;
+        }
+    }
+
+    /*
+     * Write one user to the attached store, if any.
+     */
+    public void saveUser(User u) {
+        if (userStore == null || u == null) return;
+        try {
+            userStore.putUser(u);
+        } catch (IOException e) {
+            System.out.println("[Error] Could not store user " + u.getUsername() + ": " + e.getMessage());
+        }
+    }
+
+    /*
+     * Listener for ParkingSystem that records every new booking under its
+     * user in the store, so the stored booking ids stay current even after
+     * the user has dropped out of the cache. The first call starts its
+     * writer thread; stopStoreSync() ends it.
+     */
+    public synchronized BookingListener getStoreSync() {
+        if (storeSync == null) {
+            storeSync = new StoreSync();
+            storeSync.start();
+        }
+        return storeSync;
+    }
+
+    /*
+     * Write out the booking ids still queued, then end the writer thread.
+     */
+    public void stopStoreSync() {
+        StoreSync s;
+        synchronized (this) {
+            s = storeSync;
+            storeSync = null;
+        }
+        if (s != null) s.stop();
+    }
+
+    /*
+     * Write-behind of new booking ids. Reservations fire listeners under
+     * the Attendant monitor, so the listener only updates a cached User and
+     * queues the booking; a writer thread adds one key per booking to the
+     * store and syncs it once per batch. A user that is not in memory is
+     * never read for this, and the account record is not rewritten.
+     */
+    private final class StoreSync implements BookingListener, Runnable {
+
+        private final ArrayBlockingQueue<Booking> queue =
+                new ArrayBlockingQueue<>(Constants.STORE_QUEUE_CAPACITY);
+        private volatile boolean running;
+        private Thread thread;
+
+        void start() {
+            running = true;
+            thread = new Thread(this, "user-store-writer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() {
+            running = false;
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void bookingReserved(Booking booking) {
+            if (userStore == null || booking.getBookingId() == null) return;
+            // The User that made the reservation may be an older copy than
+            // the cached one (e.g. a session kept across an eviction)
+            addToCachedUser(booking.getUsername(), booking.getBookingId().intValue());
+            try {
+                queue.put(booking);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.out.println("[Error] Could not queue booking #" + booking.getBookingId() + " for the user store.");
+            }
+        }
+
+        @Override
+        public void bookingEntered(Booking booking) { }
+
+        @Override
+        public void bookingExited(Booking booking) { }
+
+        @Override
+        public void bookingExpired(Booking booking) { }
+
+        @Override
+        public void bookingRestored(Booking booking) { }
+
+        @Override
+        public void run() {
+            Booking[] batch = new Booking[Constants.STORE_WRITE_BATCH];
+            while (running || !queue.isEmpty()) {
+                Booking first;
+                try {
+                    first = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    continue; // stop() decides when to end
+                }
+                if (first == null) continue;
+
+                int n = 0;
+                batch[n++] = first;
+                Booking next;
+                while (n < batch.length && (next = queue.poll()) != null) batch[n++] = next;
+
+                for (int i = 0; i < n; i++) {
+                    String username = batch[i].getUsername();
+                    int id = batch[i].getBookingId().intValue();
+                    batch[i] = null;
+                    try {
+                        userStore.addBookingId(username, id);
+                    } catch (IOException e) {
+                        System.out.println("[Error] Could not store booking #" + id + " of " + username + ": " + e.getMessage());
+                        continue;
+                    }
+                    // The user may have been loaded from the store just before the write
+                    addToCachedUser(username, id);
+                }
+                try {
+                    userStore.sync();
+                } catch (IOException e) {
+                    System.out.println("[Error] Could not sync the user store: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Add a booking id to the cached copy of a user, if there is one
+    private void addToCachedUser(String username, int bookingId) {
+        synchronized (cache) {
+            User u = cache.get(username);
+            if (u != null && !u.hasBookingId(bookingId)) u.addBookingId(bookingId);
+        }
+    }
+    
+    // Getters for array access remain unchanged
+    // (in store mode the array is empty; users live in the store)
+
+    public User[] getUsers() {
+        return users;
+    }
+
+    public int getUserCount() {
+        return userCount;
+    }
+
+    /*
+     * Number of users currently held in memory.
+     */
+    public int getCachedUserCount() {
+        if (cache == null) return userCount;
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
 }
\ No newline at end of file
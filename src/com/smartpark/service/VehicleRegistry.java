@@ -0,0 +1,251 @@
+package com.smartpark.service;
+
+import com.smartpark.model.AbstractVehicle;
+import com.smartpark.model.Booking;
+import com.smartpark.model.Constants;
+import com.smartpark.model.LicensePlate;
+import com.smartpark.model.Symbols;
+import com.smartpark.util.IntIntMap;
+import com.smartpark.util.LongIntMap;
+import com.smartpark.util.SymbolTable;
+
+/*
+ * Registered vehicles and the plate -> open booking index used by ANPR gates.
+ *
+ * Every registered plate gets a dense vehicle number. The encoded plate maps
+ * to that number through a LongIntMap, and parallel arrays hold the owner,
+ * the vehicle type and the vehicle's open (PENDING or ACTIVE) booking, so a
+ * lookup is one hash probe plus an array read, with no boxing or String
+ * building. A user's vehicles are chained through nextOfOwner, starting at
+ * firstOfOwner[owner code]. Owner codes come from the registry's own
+ * SymbolTable, which holds only users with a registered vehicle (and so
+ * grows with the vehicles, not with every username ever seen).
+ *
+ * A booking is linked to the first of its owner's vehicles that has no open
+ * booking; the link is dropped when the booking is completed or cancelled.
+ * Linked plates are also kept in a FuzzyPlateIndex, so a misread plate can
+ * still be matched to its open booking.
+ * All methods are synchronized; the work done under the lock is tiny.
+ */
+public class VehicleRegistry {
+
+    private static final int NO_VEHICLE = -1;
+
+    private final LongIntMap vehicleByPlate;
+    private final SymbolTable owners;         // owner username -> owner code
+    private final IntIntMap firstOfOwner;     // owner code -> first vehicle number
+    private final IntIntMap lastOfOwner;      // owner code -> last vehicle number
+    private final FuzzyPlateIndex fuzzy;      // plates of open bookings, for misreads
+
+    private long[] plateCodes;
+    private int[] ownerCodes;
+    private String[] types;
+    private int[] nextOfOwner;
+    private Booking[] openBookings;
+    private int vehicleCount;
+    private int linkedCount;
+
+    public VehicleRegistry() {
+        this(1024);
+    }
+
+    public VehicleRegistry(int expectedVehicles) {
+        int capacity = Math.max(16, expectedVehicles);
+        vehicleByPlate = new LongIntMap(capacity, NO_VEHICLE);
+        owners = new SymbolTable();
+        firstOfOwner = new IntIntMap(capacity, NO_VEHICLE);
+        lastOfOwner = new IntIntMap(capacity, NO_VEHICLE);
+        fuzzy = new FuzzyPlateIndex(Constants.PLATE_MAX_EDIT_DISTANCE);
+        plateCodes = new long[capacity];
+        ownerCodes = new int[capacity];
+        types = new String[capacity];
+        nextOfOwner = new int[capacity];
+        openBookings = new Booking[capacity];
+    }
+
+    /*
+     * Register a vehicle to its owner. The vehicle's owner name is set to
+     * username. Returns false if the plate cannot be encoded or is already
+     * registered to someone else; registering a plate again for the same
+     * owner just updates its type.
+     */
+    public synchronized boolean register(AbstractVehicle vehicle, String username) {
+        if (vehicle == null || username == null) return false;
+        long plate = LicensePlate.encode(vehicle.getLicensePlate());
+        if (plate <= 0) return false;
+
+        int owner = owners.encode(username);
+        int existing = vehicleByPlate.get(plate);
+        if (existing != NO_VEHICLE) {
+            if (ownerCodes[existing] != owner) return false;
+            types[existing] = Symbols.intern(vehicle.getType());
+            vehicle.setOwnerName(username);
+            return true;
+        }
+
+        if (vehicleCount == plateCodes.length) grow();
+        int v = vehicleCount++;
+        plateCodes[v] = plate;
+        ownerCodes[v] = owner;
+        types[v] = Symbols.intern(vehicle.getType());
+        openBookings[v] = null;
+
+        // Append to the owner's chain so the first registered vehicle is preferred
+        nextOfOwner[v] = NO_VEHICLE;
+        int last = lastOfOwner.put(owner, v);
+        if (last == NO_VEHICLE) {
+            firstOfOwner.put(owner, v);
+        } else {
+            nextOfOwner[last] = v;
+        }
+        vehicleByPlate.put(plate, v);
+        vehicle.setOwnerName(username);
+        return true;
+    }
+
+    /*
+     * Link an open booking to a vehicle: the plate already on the booking
+     * if it has one (it must be registered to the booking's owner),
+     * otherwise the first of the owner's vehicles with no open booking.
+     * Returns false if no vehicle was free.
+     */
+    public synchronized boolean link(Booking booking) {
+        int v;
+        long plate = booking.getPlateCode();
+        if (plate > 0) {
+            v = vehicleByPlate.get(plate);
+            if (v != NO_VEHICLE && ownerCodes[v] != owners.lookup(booking.getUsername())) v = NO_VEHICLE;
+            if (v != NO_VEHICLE && openBookings[v] != null && openBookings[v] != booking) v = NO_VEHICLE;
+        } else {
+            int owner = owners.lookup(booking.getUsername());
+            v = (owner == SymbolTable.NO_CODE) ? NO_VEHICLE : firstOfOwner.get(owner);
+            while (v != NO_VEHICLE && openBookings[v] != null && openBookings[v] != booking) {
+                v = nextOfOwner[v];
+            }
+        }
+        if (v == NO_VEHICLE) return false;
+
+        if (openBookings[v] == null) {
+            linkedCount++;
+            openBookings[v] = booking;
+            booking.setPlateCode(plateCodes[v]);
+            fuzzy.add(booking);
+        }
+        return true;
+    }
+
+    /*
+     * Drop the link of a booking that is no longer open. The plate stays
+     * on the booking as a record of which vehicle used it.
+     */
+    public synchronized void unlink(Booking booking) {
+        long plate = booking.getPlateCode();
+        if (plate <= 0) return;
+        int v = vehicleByPlate.get(plate);
+        if (v != NO_VEHICLE && openBookings[v] == booking) {
+            openBookings[v] = null;
+            linkedCount--;
+            fuzzy.remove(booking);
+        }
+    }
+
+    /*
+     * Forget every link (used before re-linking a freshly loaded booking set).
+     */
+    public synchronized void unlinkAll() {
+        for (int v = 0; v < vehicleCount; v++) openBookings[v] = null;
+        linkedCount = 0;
+        fuzzy.clear();
+    }
+
+    /*
+     * Open booking of the vehicle with this plate (any spacing or case),
+     * or null if the plate is unknown or has no open booking.
+     */
+    public synchronized Booking findOpenBooking(CharSequence plate) {
+        int v = vehicleByPlate.get(LicensePlate.encode(plate));
+        return (v == NO_VEHICLE) ? null : openBookings[v];
+    }
+
+    /*
+     * Open bookings whose plate is within maxDistance edits of a camera
+     * read, best match first (see FuzzyPlateIndex).
+     */
+    public synchronized FuzzyPlateIndex.Match[] findOpenBookingsNear(CharSequence read, int maxDistance) {
+        return fuzzy.search(read, maxDistance);
+    }
+
+    /*
+     * Booking for a camera read at a gate that needs the given status:
+     * the exact plate if it has such a booking, otherwise the best fuzzy
+     * match with that status, provided no other match is equally good.
+     * An exact plate in the wrong state is returned as is, so the gate
+     * reports the state. Returns null when a person has to decide.
+     */
+    public synchronized Booking resolveOpenBooking(CharSequence read, int statusCode) {
+        Booking exact = findOpenBooking(read);
+        if (exact != null && exact.hasStatus(statusCode)) return exact;
+
+        FuzzyPlateIndex.Match best = null;
+        for (FuzzyPlateIndex.Match m : fuzzy.search(read, fuzzy.getMaxDistance())) {
+            if (!m.booking.hasStatus(statusCode)) continue;
+            if (best == null) {
+                best = m;
+            } else {
+                // A second match as good as the best one makes the read ambiguous
+                if (m.distance == best.distance && m.exactDistance == best.exactDistance) return null;
+                break;
+            }
+        }
+        return (best == null) ? exact : best.booking;
+    }
+
+    /*
+     * Owner of a registered plate, or null.
+     */
+    public synchronized String getOwner(CharSequence plate) {
+        int v = vehicleByPlate.get(LicensePlate.encode(plate));
+        return (v == NO_VEHICLE) ? null : owners.decode(ownerCodes[v]);
+    }
+
+    /*
+     * Vehicle type ("Car", "Motorcycle", ...) of a registered plate, or null.
+     */
+    public synchronized String getType(CharSequence plate) {
+        int v = vehicleByPlate.get(LicensePlate.encode(plate));
+        return (v == NO_VEHICLE) ? null : types[v];
+    }
+
+    public synchronized boolean isRegistered(CharSequence plate) {
+        return vehicleByPlate.containsKey(LicensePlate.encode(plate));
+    }
+
+    public synchronized int getVehicleCount() {
+        return vehicleCount;
+    }
+
+    public synchronized int getLinkedCount() {
+        return linkedCount;
+    }
+
+    private void grow() {
+        int capacity = plateCodes.length * 2;
+        long[] newPlates = new long[capacity];
+        int[] newOwners = new int[capacity];
+        String[] newTypes = new String[capacity];
+        int[] newNext = new int[capacity];
+        Booking[] newOpen = new Booking[capacity];
+        for (int i = 0; i < vehicleCount; i++) {
+            newPlates[i] = plateCodes[i];
+            newOwners[i] = ownerCodes[i];
+            newTypes[i] = types[i];
+            newNext[i] = nextOfOwner[i];
+            newOpen[i] = openBookings[i];
+        }
+        plateCodes = newPlates;
+        ownerCodes = newOwners;
+        types = newTypes;
+        nextOfOwner = newNext;
+        openBookings = newOpen;
+    }
+}
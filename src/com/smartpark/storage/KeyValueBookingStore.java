@@ -0,0 +1,296 @@
+package com.smartpark.storage;
+
+import com.smartpark.interfaces.BookingStore;
+import com.smartpark.interfaces.UserStore;
+import com.smartpark.model.Booking;
+import com.smartpark.model.Constants;
+import com.smartpark.model.Symbols;
+import com.smartpark.model.User;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * BookingStore and UserStore on top of any KeyValueStore.
+ *
+ * Keys:
+ *   "b:" + booking id, zero padded to 10 digits so key order = id order
+ *   "u:" + username
+ *   "i:" + user id, zero padded, -> username (secondary index)
+ *   "ub:" + username length + ":" + username + ":" + booking id, zero
+ *         padded, -> booking id (one key per booking of the user; the
+ *         length keeps one username from being a prefix of another)
+ *   "m:lastUserId" -> highest user id stored so far
+ * Values are small fixed-layout binary records (see encode methods); the
+ * status byte is the fixed Constants.STATUS_CODE_* value.
+ */
+public class KeyValueBookingStore implements BookingStore, UserStore {
+
+    private static final String BOOKING_PREFIX = "b:";
+    private static final String USER_PREFIX = "u:";
+    private static final String USER_END = "u;"; // ';' sorts right after ':'
+    private static final String USER_ID_PREFIX = "i:";
+    private static final String USER_BOOKING_PREFIX = "ub:";
+    private static final String LAST_USER_ID_KEY = "m:lastUserId";
+
+    private final KeyValueStore kv;
+    private int lastUserId = -1; // cached copy of LAST_USER_ID_KEY, -1 = not read yet
+
+    public KeyValueBookingStore(KeyValueStore kv) {
+        this.kv = kv;
+    }
+
+    public KeyValueStore getKeyValueStore() {
+        return kv;
+    }
+
+    /*
+     * BOOKINGS
+     */
+
+    @Override
+    public void putBooking(Booking booking) throws IOException {
+        kv.put(bookingKey(booking.getBookingId()), encodeBooking(booking));
+    }
+
+    @Override
+    public void updateStatus(Booking booking) throws IOException {
+        // The record is small and fixed-layout, so the new version simply
+        // replaces the old one; the log-structured backend makes this an append.
+        kv.put(bookingKey(booking.getBookingId()), encodeBooking(booking));
+    }
+
+    /*
+     * Syncs the whole key-value store, for bookings and users alike.
+     */
+    @Override
+    public void sync() throws IOException {
+        kv.sync();
+    }
+
+    @Override
+    public Booking getBooking(int bookingId) throws IOException {
+        byte[] value = kv.get(bookingKey(bookingId));
+        return (value == null) ? null : decodeBooking(value);
+    }
+
+    @Override
+    public void scanBookings(int fromId, int toId, BookingVisitor visitor) throws IOException {
+        kv.scan(bookingKey(Math.max(0, fromId)), bookingKey(Math.max(0, toId)),
+                (key, value) -> visitor.visit(decodeBooking(value)));
+    }
+
+    /*
+     * USERS
+     */
+
+    @Override
+    public synchronized void putUser(User user) throws IOException {
+        kv.put(USER_PREFIX + user.getUsername(), encodeUser(user));
+
+        Integer id = user.getUserId();
+        if (id != null) {
+            kv.put(paddedKey(USER_ID_PREFIX, id), user.getUsername().getBytes(StandardCharsets.UTF_8));
+            if (id > getLastUserId()) {
+                lastUserId = id;
+                kv.put(LAST_USER_ID_KEY, ByteBuffer.allocate(4).putInt(id).array());
+            }
+        }
+    }
+
+    @Override
+    public User getUserById(int userId) throws IOException {
+        byte[] name = kv.get(paddedKey(USER_ID_PREFIX, userId));
+        return (name == null) ? null : getUser(new String(name, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public synchronized int getLastUserId() throws IOException {
+        if (lastUserId < 0) {
+            byte[] value = kv.get(LAST_USER_ID_KEY);
+            lastUserId = (value == null) ? 0 : ByteBuffer.wrap(value).getInt();
+        }
+        return lastUserId;
+    }
+
+    @Override
+    public User getUser(String username) throws IOException {
+        byte[] value = kv.get(USER_PREFIX + username);
+        if (value == null) return null;
+        User u = decodeUser(value);
+        // Records written before booking ids had keys of their own still carry them
+        return (u.getBookingCount() > 0) ? moveBookingIds(u) : u;
+    }
+
+    @Override
+    public void scanUsers(UserVisitor visitor) throws IOException {
+        kv.scan(USER_PREFIX, USER_END, (key, value) -> visitor.visit(decodeUser(value)));
+    }
+
+    @Override
+    public void addBookingId(String username, int bookingId) throws IOException {
+        kv.put(paddedKey(userBookingPrefix(username), bookingId), ByteBuffer.allocate(4).putInt(bookingId).array());
+    }
+
+    @Override
+    public int[] getBookingIds(String username) throws IOException {
+        String prefix = userBookingPrefix(username);
+        final int[][] ids = { new int[16] };
+        final int[] count = { 0 };
+        kv.scan(prefix, prefixEnd(prefix), (key, value) -> {
+            if (count[0] == ids[0].length) {
+                int[] larger = new int[ids[0].length * 2];
+                for (int i = 0; i < count[0]; i++) larger[i] = ids[0][i];
+                ids[0] = larger;
+            }
+            ids[0][count[0]++] = ByteBuffer.wrap(value).getInt();
+            return true;
+        });
+        int[] result = new int[count[0]];
+        for (int i = 0; i < count[0]; i++) result[i] = ids[0][i];
+        return result;
+    }
+
+    /*
+     * Give the booking ids of an old-format user record keys of their own,
+     * then store the record without them. Returns the user without ids.
+     */
+    private synchronized User moveBookingIds(User u) throws IOException {
+        int[] ids = u.getBookingIds();
+        for (int id : ids) addBookingId(u.getUsername(), id);
+        byte[] value = encodeUser(u);
+        kv.put(USER_PREFIX + u.getUsername(), value);
+        return decodeUser(value);
+    }
+
+    /*
+     * ENCODING
+     */
+
+    private static String bookingKey(int id) {
+        return paddedKey(BOOKING_PREFIX, id);
+    }
+
+    private static String userBookingPrefix(String username) {
+        return USER_BOOKING_PREFIX + username.length() + ":" + username + ":";
+    }
+
+    // First key after every key that starts with prefix (which ends in ':')
+    private static String prefixEnd(String prefix) {
+        return prefix.substring(0, prefix.length() - 1) + ";";
+    }
+
+    private static String paddedKey(String prefix, int id) {
+        String digits = Integer.toString(id);
+        StringBuilder sb = new StringBuilder(12);
+        sb.append(prefix);
+        for (int i = digits.length(); i < 10; i++) sb.append('0');
+        return sb.append(digits).toString();
+    }
+
+    /*
+     * [id:int][slot:int][status:byte][hasAmount:byte][amount:double]
+     * [creation:long][entry:long][exit:long][usernameLen:short][username]
+     * [windowStart:long][windowEnd:long]  (absent in records written before windows existed)
+     * [plateCode:long]                     (absent in records written before plates were stored)
+     */
+    static byte[] encodeBooking(Booking b) {
+        byte[] name = (b.getUsername() == null) ? new byte[0] : b.getUsername().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(4 + 4 + 1 + 1 + 8 + 8 + 8 + 8 + 2 + name.length + 8 + 8 + 8);
+        buf.putInt(b.getBookingId());
+        buf.putInt(b.getSlotId());
+        buf.put((byte) b.getStatusCode());
+        Double amount = b.getAmount();
+        buf.put((byte) (amount != null ? 1 : 0));
+        buf.putDouble(amount != null ? amount : 0.0);
+        buf.putLong(b.getCreationTime());
+        buf.putLong(b.getEntryTime());
+        buf.putLong(b.getExitTime());
+        buf.putShort((short) name.length);
+        buf.put(name);
+        buf.putLong(b.getWindowStart());
+        buf.putLong(b.getWindowEnd());
+        buf.putLong(b.getPlateCode());
+        return buf.array();
+    }
+
+    static Booking decodeBooking(byte[] value) {
+        ByteBuffer buf = ByteBuffer.wrap(value);
+        int id = buf.getInt();
+        int slot = buf.getInt();
+        int status = buf.get();
+        boolean hasAmount = buf.get() != 0;
+        double amount = buf.getDouble();
+        long creation = buf.getLong();
+        long entry = buf.getLong();
+        long exit = buf.getLong();
+        int nameLen = buf.getShort() & 0xFFFF;
+        String username = new String(value, buf.position(), nameLen, StandardCharsets.UTF_8);
+        buf.position(buf.position() + nameLen);
+
+        Booking b = new Booking(id, username, slot);
+        b.setStatusCode(Symbols.isStatusCode(status) ? status : Constants.STATUS_CODE_PENDING);
+        b.setAmount(hasAmount ? amount : null);
+        b.setCreationTime(creation);
+        b.setEntryTime(entry);
+        b.setExitTime(exit);
+        // Older records end after the username, or after the window
+        if (buf.remaining() >= 16) b.setWindow(buf.getLong(), buf.getLong());
+        if (buf.remaining() >= 8) b.setPlateCode(buf.getLong());
+        return b;
+    }
+
+    /*
+     * [hasId:byte][id:int][username][password][role][bookingCount:int][ids...]
+     * with each string as [len:short][UTF-8]. Booking ids have keys of their
+     * own, so bookingCount is always written as 0; only records written
+     * before that carry ids.
+     */
+    static byte[] encodeUser(User u) {
+        byte[] name = utf8(u.getUsername());
+        byte[] password = utf8(u.getPassword());
+        byte[] role = utf8(u.getRole());
+
+        ByteBuffer buf = ByteBuffer.allocate(1 + 4 + 6 + name.length + password.length + role.length + 4);
+        buf.put((byte) (u.getUserId() != null ? 1 : 0));
+        buf.putInt(u.getUserId() != null ? u.getUserId() : 0);
+        putString(buf, name);
+        putString(buf, password);
+        putString(buf, role);
+        buf.putInt(0);
+        return buf.array();
+    }
+
+    static User decodeUser(byte[] value) {
+        ByteBuffer buf = ByteBuffer.wrap(value);
+        boolean hasId = buf.get() != 0;
+        int id = buf.getInt();
+        String name = getString(buf);
+        String password = getString(buf);
+        String role = getString(buf);
+
+        User u = new User(name, password);
+        u.setUserId(hasId ? id : null);
+        u.setRole(role);
+        int count = buf.getInt();
+        for (int i = 0; i < count; i++) u.addBookingId(buf.getInt());
+        return u;
+    }
+
+    private static byte[] utf8(String s) {
+        return (s == null) ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putString(ByteBuffer buf, byte[] bytes) {
+        buf.putShort((short) bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int len = buf.getShort() & 0xFFFF;
+        String s = new String(buf.array(), buf.position(), len, StandardCharsets.UTF_8);
+        buf.position(buf.position() + len);
+        return s;
+    }
+}
@@ -0,0 +1,45 @@
+package com.smartpark.storage;
+
+import java.io.IOException;
+
+/*
+ * Ordered key-value storage engine underneath the typed stores.
+ * Keys are compared as Strings; values are opaque byte arrays.
+ */
+public interface KeyValueStore {
+
+    /*
+     * Visitor for range scans. Return false to stop the scan early.
+     */
+    interface ScanVisitor {
+        boolean visit(String key, byte[] value);
+    }
+
+    /*
+     * Insert or replace the value stored under key.
+     */
+    void put(String key, byte[] value) throws IOException;
+
+    /*
+     * Value stored under key, or null if absent.
+     */
+    byte[] get(String key) throws IOException;
+
+    /*
+     * Remove key if present.
+     */
+    void delete(String key) throws IOException;
+
+    /*
+     * Visit every live key in [fromKey, toKey) in key order.
+     * A null toKey means "to the end".
+     */
+    void scan(String fromKey, String toKey, ScanVisitor visitor) throws IOException;
+
+    /*
+     * Force everything written so far to stable storage.
+     */
+    void sync() throws IOException;
+
+    void close() throws IOException;
+}
@@ -0,0 +1,664 @@
+package com.smartpark.storage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+
+/*
+ * Embedded log-structured key-value store.
+ *
+ * Writes go to a write-ahead log and an in-memory sorted memtable. When the
+ * memtable grows past its limit it is frozen and a background thread writes
+ * it out as a sorted segment file, then deletes its log. When enough
+ * segments pile up the same thread merges them into one (dropping deleted
+ * keys), so a point update costs one log append plus an O(log n) memtable
+ * insert instead of a rewrite of the whole data set.
+ *
+ * Directory contents:
+ *   wal-<n>.log   log of a memtable that has not been flushed yet
+ *   seg-<n>.sst   segment file (see SegmentFile)
+ *   MANIFEST      live segment names, newest first
+ *
+ * put and delete append to the log without forcing it to disk: a write is
+ * durable once sync() (or close()) has returned, and a crash can lose the
+ * writes since the last sync. Callers that need durability group their
+ * writes and sync once per group, as ParkingSystem's store writer does.
+ *
+ * Writers are serialized; readers never block. The memtable and segment
+ * references are volatile and every change publishes the newer source
+ * before dropping the older one: rotation publishes the frozen list before
+ * the new active memtable, a flush publishes the new segment list before
+ * the shorter frozen list. Readers look at them in the opposite order
+ * (active, then frozen, then segments), so a key is always found in one of
+ * them while it moves down.
+ */
+public class LogStructuredStore implements KeyValueStore {
+
+    // Marker for deleted keys in memtables and segments (compared by identity)
+    static final byte[] TOMBSTONE = new byte[0];
+
+    private static final int DEFAULT_MEMTABLE_BYTES = 4 * 1024 * 1024;
+    private static final int DEFAULT_COMPACTION_TRIGGER = 4;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final String MANIFEST = "MANIFEST";
+
+    private final File dir;
+    private final int memtableBytes;
+    private final int compactionTrigger;
+
+    private volatile Memtable active;
+    private volatile Memtable[] frozen = new Memtable[0];      // newest first
+    private volatile SegmentFile[] segments = new SegmentFile[0]; // newest first
+    private SegmentFile[] retired = new SegmentFile[0];       // closed after the next compaction
+    private long nextFileNumber = 1;
+    private volatile boolean open = true;
+    private volatile IOException backgroundError;
+
+    private final Object backgroundLock = new Object();
+    private final Thread background;
+
+    public LogStructuredStore(String directory) throws IOException {
+        this(directory, DEFAULT_MEMTABLE_BYTES, DEFAULT_COMPACTION_TRIGGER);
+    }
+
+    public LogStructuredStore(String directory, int memtableBytes, int compactionTrigger) throws IOException {
+        this.dir = new File(directory);
+        this.memtableBytes = memtableBytes;
+        this.compactionTrigger = Math.max(2, compactionTrigger);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create storage directory " + dir);
+        }
+
+        recover();
+
+        background = new Thread(this::backgroundLoop, "lsm-" + dir.getName());
+        background.setDaemon(true);
+        background.start();
+    }
+
+    /*
+     * WRITES
+     */
+
+    @Override
+    public synchronized void put(String key, byte[] value) throws IOException {
+        checkOpen();
+        if (value == null) throw new IllegalArgumentException("value must not be null");
+        active.append(OP_PUT, key, value);
+        active.map.put(key, value);
+        maybeRotate();
+    }
+
+    @Override
+    public synchronized void delete(String key) throws IOException {
+        checkOpen();
+        active.append(OP_DELETE, key, null);
+        active.map.put(key, TOMBSTONE);
+        maybeRotate();
+    }
+
+    @Override
+    public synchronized void sync() throws IOException {
+        checkOpen();
+        active.sync();
+    }
+
+    /*
+     * READS
+     */
+
+    @Override
+    public byte[] get(String key) throws IOException {
+        checkOpen();
+        // Sources are checked newest first; the first one that knows the key wins
+        byte[] v = active.map.get(key);
+        if (v == null) {
+            for (Memtable m : frozen) {
+                v = m.map.get(key);
+                if (v != null) break;
+            }
+        }
+        if (v == null) {
+            for (SegmentFile s : segments) {
+                v = s.get(key);
+                if (v != null) break;
+            }
+        }
+        return (v == TOMBSTONE) ? null : v;
+    }
+
+    @Override
+    public void scan(String fromKey, String toKey, ScanVisitor visitor) throws IOException {
+        checkOpen();
+        MergeIterator it = openMerge(fromKey, toKey, snapshotSources());
+        while (it.hasNext()) {
+            Map.Entry<String, byte[]> e = it.next();
+            if (e.getValue() == TOMBSTONE) continue;
+            if (!visitor.visit(e.getKey(), e.getValue())) break;
+        }
+    }
+
+    /*
+     * Number of segment files currently live (for monitoring).
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /*
+     * Block until every frozen memtable has been written to a segment.
+     */
+    public void flush() throws IOException {
+        synchronized (this) {
+            checkOpen();
+            if (!active.map.isEmpty()) rotate();
+        }
+        synchronized (backgroundLock) {
+            while (frozen.length > 0 && backgroundError == null && background.isAlive()) {
+                backgroundLock.notifyAll();
+                try {
+                    backgroundLock.wait(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (backgroundError != null) throw backgroundError;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (!open) return;
+            open = false;
+            active.closeLog();
+        }
+        synchronized (backgroundLock) {
+            backgroundLock.notifyAll();
+        }
+        try {
+            background.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SegmentFile s : segments) s.close();
+        for (SegmentFile s : retired) s.close();
+        // Unflushed memtables stay in their logs and are replayed on the next open
+    }
+
+    /*
+     * MEMTABLE ROTATION
+     */
+
+    private void maybeRotate() throws IOException {
+        if (active.bytes >= memtableBytes) rotate();
+    }
+
+    // Caller holds the writer lock
+    private void rotate() throws IOException {
+        if (backgroundError != null) throw backgroundError;
+        Memtable current = active;
+        current.closeLog();
+
+        Memtable[] old = frozen;
+        Memtable[] next = new Memtable[old.length + 1];
+        next[0] = current;
+        for (int i = 0; i < old.length; i++) next[i + 1] = old[i];
+        frozen = next; // before active, see the class comment
+
+        Memtable fresh = new Memtable(nextFileNumber++);
+        fresh.openLog();
+        active = fresh;
+
+        synchronized (backgroundLock) {
+            backgroundLock.notifyAll();
+        }
+    }
+
+    /*
+     * BACKGROUND FLUSH AND COMPACTION
+     */
+
+    private void backgroundLoop() {
+        while (true) {
+            try {
+                Memtable[] f = frozen;
+                if (f.length > 0) {
+                    flushMemtable(f[f.length - 1]); // oldest first
+                    continue;
+                }
+                if (segments.length >= compactionTrigger) {
+                    compact();
+                    continue;
+                }
+            } catch (IOException e) {
+                backgroundError = e;
+                System.out.println("[Error] Storage background task failed: " + e.getMessage());
+                return;
+            }
+
+            synchronized (backgroundLock) {
+                backgroundLock.notifyAll(); // wake flush() callers
+                if (!open) return;
+                try {
+                    backgroundLock.wait(1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void flushMemtable(Memtable m) throws IOException {
+        File target = new File(dir, "seg-" + m.number + ".sst");
+        SegmentFile seg = SegmentFile.write(target, m.map.entrySet().iterator(), false);
+
+        synchronized (this) {
+            SegmentFile[] old = segments;
+            SegmentFile[] next = new SegmentFile[old.length + 1];
+            next[0] = seg;
+            for (int i = 0; i < old.length; i++) next[i + 1] = old[i];
+            writeManifest(next);
+            segments = next; // before frozen, see the class comment
+
+            Memtable[] f = frozen;
+            Memtable[] remaining = new Memtable[f.length - 1];
+            int j = 0;
+            for (Memtable x : f) {
+                if (x != m) remaining[j++] = x;
+            }
+            frozen = remaining;
+        }
+        m.deleteLog();
+    }
+
+    private void compact() throws IOException {
+        SegmentFile[] inputs = segments;
+        long number;
+        synchronized (this) {
+            number = nextFileNumber++;
+        }
+
+        // All segments are merged, so deletions can be dropped for good
+        MergeIterator merged = openMerge(null, null, inputs);
+        File target = new File(dir, "seg-" + number + ".sst");
+        SegmentFile out = SegmentFile.write(target, merged, true);
+
+        synchronized (this) {
+            // Flushes may have added newer segments in front of the inputs
+            SegmentFile[] now = segments;
+            int newer = now.length - inputs.length;
+            SegmentFile[] next = new SegmentFile[newer + 1];
+            for (int i = 0; i < newer; i++) next[i] = now[i];
+            next[newer] = out;
+            writeManifest(next);
+            segments = next;
+        }
+
+        // Readers may still be inside the old segments; close them one round later
+        for (SegmentFile s : retired) s.close();
+        retired = inputs;
+        for (SegmentFile s : inputs) {
+            if (!s.file.delete()) {
+                System.out.println("[Warning] Could not delete old segment " + s.file);
+            }
+        }
+    }
+
+    /*
+     * RECOVERY
+     */
+
+    private void recover() throws IOException {
+        // 1. Segments listed in the manifest, in manifest order
+        File manifest = new File(dir, MANIFEST);
+        List<SegmentFile> live = new ArrayList<>();
+        Set<String> liveNames = new HashSet<>();
+        if (manifest.exists()) {
+            try (BufferedReader br = new BufferedReader(new FileReader(manifest, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty()) continue;
+                    live.add(SegmentFile.open(new File(dir, line)));
+                    liveNames.add(line);
+                }
+            }
+        }
+        segments = live.toArray(new SegmentFile[0]);
+
+        // 2. Leftovers: half-written or already compacted segments are removed,
+        //    unflushed logs are collected for replay
+        List<Long> logs = new ArrayList<>();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                String name = f.getName();
+                long n = fileNumber(name);
+                if (n >= nextFileNumber) nextFileNumber = n + 1;
+                if (name.startsWith("wal-") && name.endsWith(".log")) {
+                    logs.add(n);
+                } else if (name.endsWith(".tmp")
+                        || (name.startsWith("seg-") && name.endsWith(".sst") && !liveNames.contains(name))) {
+                    f.delete();
+                }
+            }
+        }
+        Collections.sort(logs);
+
+        // 3. Replay logs oldest first into one memtable, then start a fresh log.
+        //    Old logs are removed only after that memtable reaches a segment.
+        Memtable replayed = new Memtable(nextFileNumber++);
+        for (long n : logs) {
+            replayLog(new File(dir, "wal-" + n + ".log"), replayed);
+        }
+
+        if (replayed.map.isEmpty()) {
+            for (long n : logs) new File(dir, "wal-" + n + ".log").delete();
+            active = replayed;
+            active.openLog();
+        } else {
+            SegmentFile seg = SegmentFile.write(new File(dir, "seg-" + replayed.number + ".sst"),
+                    replayed.map.entrySet().iterator(), false);
+            SegmentFile[] next = new SegmentFile[segments.length + 1];
+            next[0] = seg;
+            for (int i = 0; i < segments.length; i++) next[i + 1] = segments[i];
+            writeManifest(next);
+            segments = next;
+            for (long n : logs) new File(dir, "wal-" + n + ".log").delete();
+
+            active = new Memtable(nextFileNumber++);
+            active.openLog();
+        }
+    }
+
+    private static void replayLog(File file, Memtable into) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                int expected;
+                byte[] body;
+                try {
+                    expected = in.readInt();
+                    if (length < 0 || length > (1 << 28)) return; // garbage tail
+                    body = new byte[length];
+                    in.readFully(body);
+                } catch (EOFException e) {
+                    return; // torn final record from a crash
+                }
+                crc.reset();
+                crc.update(body);
+                if ((int) crc.getValue() != expected) return;
+
+                ByteBuffer b = ByteBuffer.wrap(body);
+                byte op = b.get();
+                int keyLen = b.getInt();
+                String key = new String(body, b.position(), keyLen, StandardCharsets.UTF_8);
+                b.position(b.position() + keyLen);
+                if (op == OP_PUT) {
+                    byte[] value = new byte[b.getInt()];
+                    b.get(value);
+                    into.map.put(key, value);
+                } else {
+                    into.map.put(key, TOMBSTONE);
+                }
+            }
+        }
+    }
+
+    // Caller holds the writer lock (or is the constructor)
+    private void writeManifest(SegmentFile[] list) throws IOException {
+        File tmp = new File(dir, MANIFEST + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             Writer w = new OutputStreamWriter(fos, StandardCharsets.UTF_8)) {
+            for (SegmentFile s : list) {
+                w.write(s.file.getName());
+                w.write('\n');
+            }
+            w.flush();
+            fos.getFD().sync();
+        }
+        File manifest = new File(dir, MANIFEST);
+        if (!tmp.renameTo(manifest)) {
+            throw new IOException("Could not replace " + manifest);
+        }
+    }
+
+    private static long fileNumber(String name) {
+        int dash = name.indexOf('-');
+        int dot = name.indexOf('.');
+        if (dash < 0 || dot < dash) return 0;
+        try {
+            return Long.parseLong(name.substring(dash + 1, dot));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (!open) throw new IOException("Store is closed");
+    }
+
+    /*
+     * MERGING
+     */
+
+    // Current sources for a reader, newest first
+    private Object[] snapshotSources() {
+        Memtable a;
+        Memtable[] f;
+        SegmentFile[] s;
+        synchronized (this) {
+            a = active;
+            f = frozen;
+            s = segments;
+        }
+        Object[] sources = new Object[1 + f.length + s.length];
+        int n = 0;
+        sources[n++] = a;
+        for (Memtable m : f) sources[n++] = m;
+        for (SegmentFile seg : s) sources[n++] = seg;
+        return sources;
+    }
+
+    private static MergeIterator openMerge(String fromKey, String toKey, Object[] sources) throws IOException {
+        MergeIterator it = new MergeIterator(toKey);
+        for (int rank = 0; rank < sources.length; rank++) {
+            Object src = sources[rank];
+            if (src instanceof Memtable) {
+                NavigableMap<String, byte[]> view = ((Memtable) src).map;
+                if (fromKey != null) view = view.tailMap(fromKey, true);
+                it.add(new MapSource(rank, view.entrySet().iterator()));
+            } else {
+                it.add(new SegmentSource(rank, ((SegmentFile) src).cursor(fromKey)));
+            }
+        }
+        return it;
+    }
+
+    /*
+     * One input of a merge. Lower rank = newer data.
+     */
+    private abstract static class Source {
+        final int rank;
+        String key;
+        byte[] value;
+
+        Source(int rank) {
+            this.rank = rank;
+        }
+
+        abstract boolean advance() throws IOException;
+    }
+
+    private static final class MapSource extends Source {
+        private final Iterator<Map.Entry<String, byte[]>> it;
+
+        MapSource(int rank, Iterator<Map.Entry<String, byte[]>> it) {
+            super(rank);
+            this.it = it;
+        }
+
+        @Override
+        boolean advance() {
+            if (!it.hasNext()) return false;
+            Map.Entry<String, byte[]> e = it.next();
+            key = e.getKey();
+            value = e.getValue();
+            return true;
+        }
+    }
+
+    private static final class SegmentSource extends Source {
+        private final SegmentFile.Cursor cursor;
+
+        SegmentSource(int rank, SegmentFile.Cursor cursor) {
+            super(rank);
+            this.cursor = cursor;
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            if (!cursor.next()) return false;
+            key = cursor.key;
+            value = cursor.value;
+            return true;
+        }
+    }
+
+    /*
+     * K-way merge by key. For equal keys only the newest source's entry is
+     * returned; tombstones are passed through so compaction can decide.
+     */
+    private static final class MergeIterator implements Iterator<Map.Entry<String, byte[]>> {
+        private final String toKey;
+        private final PriorityQueue<Source> heap = new PriorityQueue<>((a, b) -> {
+            int c = a.key.compareTo(b.key);
+            return (c != 0) ? c : Integer.compare(a.rank, b.rank);
+        });
+        private Map.Entry<String, byte[]> nextEntry;
+
+        MergeIterator(String toKey) {
+            this.toKey = toKey;
+        }
+
+        void add(Source s) throws IOException {
+            if (s.advance()) heap.add(s);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (nextEntry != null) return true;
+            try {
+                Source top = heap.poll();
+                if (top == null) return false;
+                String key = top.key;
+                if (toKey != null && key.compareTo(toKey) >= 0) {
+                    heap.clear();
+                    return false;
+                }
+                nextEntry = new AbstractMap.SimpleImmutableEntry<>(key, top.value);
+                if (top.advance()) heap.add(top);
+
+                // Skip older versions of the same key
+                while (!heap.isEmpty() && heap.peek().key.equals(key)) {
+                    Source older = heap.poll();
+                    if (older.advance()) heap.add(older);
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Map.Entry<String, byte[]> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Map.Entry<String, byte[]> e = nextEntry;
+            nextEntry = null;
+            return e;
+        }
+    }
+
+    /*
+     * In-memory sorted table plus the log that makes it durable.
+     */
+    private final class Memtable {
+        final long number;
+        final ConcurrentSkipListMap<String, byte[]> map = new ConcurrentSkipListMap<>();
+        long bytes;
+        private FileOutputStream log;
+        private final CRC32 crc = new CRC32();
+        private byte[] scratch = new byte[256];
+
+        Memtable(long number) {
+            this.number = number;
+        }
+
+        File logFile() {
+            return new File(dir, "wal-" + number + ".log");
+        }
+
+        void openLog() throws IOException {
+            log = new FileOutputStream(logFile(), true);
+        }
+
+        /*
+         * Record layout: [length:int][crc:int][op:byte][keyLen:int][key][valueLen:int][value]
+         * written with a single write call so a crash leaves at most one torn record.
+         */
+        void append(byte op, String key, byte[] value) throws IOException {
+            byte[] k = key.getBytes(StandardCharsets.UTF_8);
+            int bodyLength = 1 + 4 + k.length + ((value != null) ? 4 + value.length : 0);
+            int total = 8 + bodyLength;
+            if (scratch.length < total) scratch = new byte[Math.max(total, scratch.length * 2)];
+
+            ByteBuffer b = ByteBuffer.wrap(scratch, 0, total);
+            b.putInt(bodyLength);
+            b.putInt(0); // crc placeholder
+            b.put(op);
+            b.putInt(k.length);
+            b.put(k);
+            if (value != null) {
+                b.putInt(value.length);
+                b.put(value);
+            }
+            crc.reset();
+            crc.update(scratch, 8, bodyLength);
+            ByteBuffer.wrap(scratch, 4, 4).putInt((int) crc.getValue());
+
+            log.write(scratch, 0, total);
+            bytes += total + 64; // rough per-entry overhead of the skip list
+        }
+
+        void sync() throws IOException {
+            log.getFD().sync();
+        }
+
+        void closeLog() throws IOException {
+            if (log != null) {
+                log.getFD().sync();
+                log.close();
+                log = null;
+            }
+        }
+
+        void deleteLog() {
+            File f = logFile();
+            if (f.exists() && !f.delete()) {
+                System.out.println("[Warning] Could not delete log " + f);
+            }
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.smartpark.storage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+
+/*
+ * Immutable sorted file of key/value entries (one LSM segment).
+ *
+ * Layout:
+ *   entries:  [keyLen:int][key UTF-8][valueLen:int, -1 = tombstone][value]...
+ *   index:    [keyLen:int][key UTF-8][offset:long] for every INDEX_INTERVAL-th entry
+ *   footer:   [indexOffset:long][indexCount:int][entryCount:int][MAGIC:int]
+ *
+ * The sparse index is kept in memory; a lookup binary-searches it and reads
+ * one small block with a positional read, so lookups are safe from any thread.
+ */
+final class SegmentFile {
+
+    static final int INDEX_INTERVAL = 16;
+    private static final int MAGIC = 0x534D5347; // "SMSG"
+    private static final int FOOTER_LENGTH = 8 + 4 + 4 + 4;
+
+    final File file;
+    private final FileChannel channel;
+    private final String[] indexKeys;
+    private final long[] indexOffsets;
+    private final long dataEnd;
+    private final int entryCount;
+
+    private SegmentFile(File file, FileChannel channel, String[] indexKeys, long[] indexOffsets,
+                        long dataEnd, int entryCount) {
+        this.file = file;
+        this.channel = channel;
+        this.indexKeys = indexKeys;
+        this.indexOffsets = indexOffsets;
+        this.dataEnd = dataEnd;
+        this.entryCount = entryCount;
+    }
+
+    int getEntryCount() {
+        return entryCount;
+    }
+
+    /*
+     * Write entries (already in key order) to a new segment file.
+     * Values identical to LogStructuredStore.TOMBSTONE are written as deletions;
+     * dropTombstones leaves them out entirely (safe only for a full compaction).
+     * The file is written to a temporary name, synced, then renamed.
+     */
+    static SegmentFile write(File target, Iterator<Map.Entry<String, byte[]>> entries,
+                             boolean dropTombstones) throws IOException {
+        File tmp = new File(target.getPath() + ".tmp");
+        int count = 0;
+        String[] keys = new String[64];
+        long[] offsets = new long[64];
+        int indexCount = 0;
+        long offset = 0;
+
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024))) {
+
+            while (entries.hasNext()) {
+                Map.Entry<String, byte[]> e = entries.next();
+                byte[] value = e.getValue();
+                boolean tombstone = value == LogStructuredStore.TOMBSTONE;
+                if (tombstone && dropTombstones) continue;
+
+                byte[] key = e.getKey().getBytes(StandardCharsets.UTF_8);
+                if (count % INDEX_INTERVAL == 0) {
+                    if (indexCount == keys.length) {
+                        String[] k2 = new String[keys.length * 2];
+                        long[] o2 = new long[keys.length * 2];
+                        for (int i = 0; i < indexCount; i++) {
+                            k2[i] = keys[i];
+                            o2[i] = offsets[i];
+                        }
+                        keys = k2;
+                        offsets = o2;
+                    }
+                    keys[indexCount] = e.getKey();
+                    offsets[indexCount] = offset;
+                    indexCount++;
+                }
+
+                out.writeInt(key.length);
+                out.write(key);
+                if (tombstone) {
+                    out.writeInt(-1);
+                    offset += 4 + key.length + 4;
+                } else {
+                    out.writeInt(value.length);
+                    out.write(value);
+                    offset += 4 + key.length + 4 + value.length;
+                }
+                count++;
+            }
+
+            long indexOffset = offset;
+            for (int i = 0; i < indexCount; i++) {
+                byte[] key = keys[i].getBytes(StandardCharsets.UTF_8);
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeLong(offsets[i]);
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(indexCount);
+            out.writeInt(count);
+            out.writeInt(MAGIC);
+            out.flush();
+            fos.getFD().sync();
+        }
+
+        if (!tmp.renameTo(target)) {
+            throw new IOException("Could not rename " + tmp + " to " + target);
+        }
+        return open(target);
+    }
+
+    /*
+     * Open an existing segment and load its sparse index.
+     */
+    static SegmentFile open(File file) throws IOException {
+        FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = ch.size();
+            if (size < FOOTER_LENGTH) throw new IOException("Segment too short: " + file);
+
+            ByteBuffer footer = readFully(ch, size - FOOTER_LENGTH, FOOTER_LENGTH);
+            long indexOffset = footer.getLong();
+            int indexCount = footer.getInt();
+            int entryCount = footer.getInt();
+            if (footer.getInt() != MAGIC) throw new IOException("Bad segment footer: " + file);
+
+            ByteBuffer index = readFully(ch, indexOffset, (int) (size - FOOTER_LENGTH - indexOffset));
+            String[] keys = new String[indexCount];
+            long[] offsets = new long[indexCount];
+            for (int i = 0; i < indexCount; i++) {
+                int len = index.getInt();
+                keys[i] = new String(index.array(), index.position(), len, StandardCharsets.UTF_8);
+                index.position(index.position() + len);
+                offsets[i] = index.getLong();
+            }
+            return new SegmentFile(file, ch, keys, offsets, indexOffset, entryCount);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    /*
+     * Value for key: the stored bytes, LogStructuredStore.TOMBSTONE if deleted
+     * here, or null if this segment says nothing about the key.
+     */
+    byte[] get(String key) throws IOException {
+        int block = floorIndex(key);
+        if (block < 0) return null;
+
+        long start = indexOffsets[block];
+        long end = (block + 1 < indexOffsets.length) ? indexOffsets[block + 1] : dataEnd;
+        ByteBuffer buf = readFully(channel, start, (int) (end - start));
+
+        while (buf.hasRemaining()) {
+            int keyLen = buf.getInt();
+            int cmp = compareKey(buf.array(), buf.position(), keyLen, key);
+            buf.position(buf.position() + keyLen);
+            int valueLen = buf.getInt();
+            if (cmp == 0) {
+                if (valueLen < 0) return LogStructuredStore.TOMBSTONE;
+                byte[] value = new byte[valueLen];
+                buf.get(value);
+                return value;
+            }
+            if (cmp > 0) return null; // passed the place where key would be
+            if (valueLen > 0) buf.position(buf.position() + valueLen);
+        }
+        return null;
+    }
+
+    /*
+     * Sequential reader over entries with key >= fromKey.
+     */
+    Cursor cursor(String fromKey) throws IOException {
+        int block = (fromKey == null) ? 0 : Math.max(0, floorIndex(fromKey));
+        long start = (indexOffsets.length == 0) ? dataEnd : indexOffsets[block];
+        Cursor c = new Cursor(start);
+        while (c.next()) {
+            if (fromKey == null || c.key.compareTo(fromKey) >= 0) {
+                c.pending = true;
+                break;
+            }
+        }
+        return c;
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing useful to do
+        }
+    }
+
+    /*
+     * Forward-only cursor with its own read buffer.
+     */
+    final class Cursor {
+        private long filePos;
+        private ByteBuffer buf;
+        boolean pending;     // current entry already loaded but not consumed
+        String key;
+        byte[] value;        // TOMBSTONE for deletions
+
+        Cursor(long start) {
+            this.filePos = start;
+            this.buf = ByteBuffer.allocate(64 * 1024);
+            this.buf.limit(0);
+        }
+
+        /*
+         * Advance to the next entry. Returns false at the end of the data.
+         */
+        boolean next() throws IOException {
+            if (pending) {
+                pending = false;
+                return true;
+            }
+            if (!ensure(4)) return false;
+            int keyLen = buf.getInt();
+            if (!ensure(keyLen + 4)) throw new IOException("Truncated segment " + file);
+            key = new String(buf.array(), buf.position(), keyLen, StandardCharsets.UTF_8);
+            buf.position(buf.position() + keyLen);
+            int valueLen = buf.getInt();
+            if (valueLen < 0) {
+                value = LogStructuredStore.TOMBSTONE;
+            } else {
+                if (!ensure(valueLen)) throw new IOException("Truncated segment " + file);
+                value = new byte[valueLen];
+                buf.get(value);
+            }
+            return true;
+        }
+
+        // Make sure n bytes are buffered; false if the data section ends first
+        private boolean ensure(int n) throws IOException {
+            if (buf.remaining() >= n) return true;
+            long available = dataEnd - filePos;
+            if (buf.remaining() + available < n) return false;
+
+            if (n > buf.capacity()) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(n, buf.capacity() * 2));
+                bigger.put(buf);
+                bigger.flip();
+                buf = bigger;
+            }
+            buf.compact();
+            int toRead = (int) Math.min(buf.remaining(), available);
+            buf.limit(buf.position() + toRead);
+            while (buf.hasRemaining()) {
+                int r = channel.read(buf, filePos);
+                if (r < 0) throw new EOFException("Unexpected end of " + file);
+                filePos += r;
+            }
+            buf.flip();
+            return buf.remaining() >= n;
+        }
+    }
+
+    /*
+     * HELPERS
+     */
+
+    private int floorIndex(String key) {
+        int lo = 0;
+        int hi = indexKeys.length - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (indexKeys[mid].compareTo(key) <= 0) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    // Compare a stored UTF-8 key with a String the same way String.compareTo does
+    private static int compareKey(byte[] data, int off, int len, String key) {
+        return new String(data, off, len, StandardCharsets.UTF_8).compareTo(key);
+    }
+
+    private static ByteBuffer readFully(FileChannel ch, long pos, int len) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        while (buf.hasRemaining()) {
+            int r = ch.read(buf, pos + buf.position());
+            if (r < 0) throw new EOFException("Unexpected end of segment");
+        }
+        buf.flip();
+        return buf;
+    }
+}
@@ -0,0 +1,331 @@
+package com.smartpark.util;
+
+import com.smartpark.model.Booking;
+import com.smartpark.model.Symbols;
+
+import java.io.*;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * Streaming export of bookings for accounting (CSV or NDJSON).
+ *
+ * Rows are filtered on the fly (creation-time range, statuses) and encoded
+ * straight into one reusable byte buffer, which is flushed to the stream
+ * when full. No String.format or per-field String building is involved,
+ * so memory use stays constant regardless of how many rows are written.
+ * Output can optionally be gzip-compressed.
+ */
+public class BookingExporter {
+
+    // OUTPUT FORMATS
+    public static final String FORMAT_CSV = "CSV";
+    public static final String FORMAT_NDJSON = "NDJSON";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] CSV_HEADER =
+            "bookingId,username,slotId,status,amount,creationTime,entryTime,exitTime\n".getBytes();
+
+    private final boolean json;
+    private final boolean gzip;
+
+    // FILTERS
+    private long createdFrom;            // inclusive
+    private long createdTo;              // exclusive
+    private int[] statuses;              // status codes, null = any status
+
+    private final byte[] buf;
+    private int pos;
+    private OutputStream out;
+
+    /*
+     * Constructor: format is FORMAT_CSV or FORMAT_NDJSON.
+     */
+    public BookingExporter(String format, boolean gzip) {
+        this.json = FORMAT_NDJSON.equals(format);
+        this.gzip = gzip;
+        this.createdFrom = Long.MIN_VALUE;
+        this.createdTo = Long.MAX_VALUE;
+        this.statuses = null;
+        this.buf = new byte[BUFFER_SIZE];
+    }
+
+    /*
+     * Overloaded constructor: uncompressed CSV.
+     */
+    public BookingExporter() {
+        this(FORMAT_CSV, false);
+    }
+
+    /*
+     * Only export bookings created in [fromMillis, toMillis).
+     */
+    public void setCreatedBetween(long fromMillis, long toMillis) {
+        this.createdFrom = fromMillis;
+        this.createdTo = toMillis;
+    }
+
+    /*
+     * Only export bookings in one of these statuses (none given = any).
+     */
+    public void setStatuses(String... statuses) {
+        if (statuses == null || statuses.length == 0) {
+            this.statuses = null;
+            return;
+        }
+        this.statuses = new int[statuses.length];
+        for (int i = 0; i < statuses.length; i++) {
+            this.statuses[i] = Symbols.code(statuses[i]);
+        }
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    /*
+     * Export bookings[0..count) to a file. Returns the number of rows written.
+     */
+    public long exportToFile(Booking[] bookings, int count, String filename) throws IOException {
+        try (OutputStream file = new FileOutputStream(filename)) {
+            return export(bookings, count, file);
+        }
+    }
+
+    /*
+     * Export bookings[0..count) to a stream (not closed). Returns the number of rows written.
+     * Not thread-safe: one exporter instance runs one export at a time.
+     */
+    public long export(Booking[] bookings, int count, OutputStream target) throws IOException {
+        GZIPOutputStream zip = gzip ? new GZIPOutputStream(target, BUFFER_SIZE) : null;
+        out = (zip != null) ? zip : target;
+        pos = 0;
+
+        long rows = 0;
+        try {
+            if (!json) writeBytes(CSV_HEADER);
+
+            for (int i = 0; i < count && i < bookings.length; i++) {
+                Booking b = bookings[i];
+                if (b == null || !matches(b)) continue;
+                if (json) writeJson(b);
+                else writeCsv(b);
+                rows++;
+            }
+
+            flushBuffer();
+            if (zip != null) zip.finish();
+            target.flush();
+        } finally {
+            out = null;
+        }
+        return rows;
+    }
+
+    private boolean matches(Booking b) {
+        long created = b.getCreationTime();
+        if (created < createdFrom || created >= createdTo) return false;
+        if (statuses == null) return true;
+        int status = b.getStatusCode();
+        for (int s : statuses) {
+            if (s == status) return true;
+        }
+        return false;
+    }
+
+    /*
+     * ROW ENCODERS
+     */
+
+    private void writeCsv(Booking b) throws IOException {
+        Integer id = b.getBookingId();
+        if (id != null) writeLong(id.intValue());
+        writeByte(',');
+        writeCsvText(b.getUsername());
+        writeByte(',');
+        writeLong(b.getSlotId());
+        writeByte(',');
+        writeCsvText(b.getStatus());
+        writeByte(',');
+        Double amount = b.getAmount();
+        if (amount != null) writeAmount(amount.doubleValue());
+        writeByte(',');
+        writeLong(b.getCreationTime());
+        writeByte(',');
+        writeLong(b.getEntryTime());
+        writeByte(',');
+        writeLong(b.getExitTime());
+        writeByte('\n');
+    }
+
+    private void writeJson(Booking b) throws IOException {
+        writeAscii("{\"bookingId\":");
+        Integer id = b.getBookingId();
+        if (id != null) writeLong(id.intValue());
+        else writeAscii("null");
+        writeAscii(",\"username\":");
+        writeJsonText(b.getUsername());
+        writeAscii(",\"slotId\":");
+        writeLong(b.getSlotId());
+        writeAscii(",\"status\":");
+        writeJsonText(b.getStatus());
+        writeAscii(",\"amount\":");
+        Double amount = b.getAmount();
+        if (amount != null) writeAmount(amount.doubleValue());
+        else writeAscii("null");
+        writeAscii(",\"creationTime\":");
+        writeLong(b.getCreationTime());
+        writeAscii(",\"entryTime\":");
+        writeLong(b.getEntryTime());
+        writeAscii(",\"exitTime\":");
+        writeLong(b.getExitTime());
+        writeAscii("}\n");
+    }
+
+    /*
+     * FIELD ENCODERS (all write directly into buf)
+     */
+
+    // Quote only when needed (comma, quote or line break in the value)
+    private void writeCsvText(String s) throws IOException {
+        if (s == null) return;
+        boolean quote = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                quote = true;
+                break;
+            }
+        }
+        if (!quote) {
+            writeUtf8(s);
+            return;
+        }
+        writeByte('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') writeByte('"');
+            writeChar(s, i, c);
+            if (Character.isHighSurrogate(c) && i + 1 < s.length()) i++;
+        }
+        writeByte('"');
+    }
+
+    private void writeJsonText(String s) throws IOException {
+        if (s == null) {
+            writeAscii("null");
+            return;
+        }
+        writeByte('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                writeByte('\\');
+                writeByte(c);
+            } else if (c < 0x20) {
+                writeAscii("\\u00");
+                writeByte(hex(c >> 4));
+                writeByte(hex(c & 0xF));
+            } else {
+                writeChar(s, i, c);
+                if (Character.isHighSurrogate(c) && i + 1 < s.length()) i++;
+            }
+        }
+        writeByte('"');
+    }
+
+    // Money with exactly two decimals, rounded half-up on cents
+    private void writeAmount(double amount) throws IOException {
+        long cents = Math.round(amount * 100.0);
+        if (cents < 0) {
+            writeByte('-');
+            cents = -cents;
+        }
+        writeLong(cents / 100);
+        writeByte('.');
+        long frac = cents % 100;
+        writeByte('0' + (int) (frac / 10));
+        writeByte('0' + (int) (frac % 10));
+    }
+
+    private void writeLong(long v) throws IOException {
+        if (v == Long.MIN_VALUE) {
+            writeAscii("-9223372036854775808");
+            return;
+        }
+        ensure(20);
+        if (v < 0) {
+            buf[pos++] = '-';
+            v = -v;
+        }
+        int start = pos;
+        do {
+            buf[pos++] = (byte) ('0' + (v % 10));
+            v /= 10;
+        } while (v != 0);
+        // Digits were written least significant first
+        for (int i = start, j = pos - 1; i < j; i++, j--) {
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+    }
+
+    private void writeAscii(String s) throws IOException {
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) buf[pos++] = (byte) s.charAt(i);
+    }
+
+    private void writeUtf8(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            writeChar(s, i, c);
+            if (Character.isHighSurrogate(c) && i + 1 < s.length()) i++;
+        }
+    }
+
+    // Encode the char at s[i] as UTF-8 (consumes a surrogate pair as one code point)
+    private void writeChar(String s, int i, char c) throws IOException {
+        ensure(4);
+        if (c < 0x80) {
+            buf[pos++] = (byte) c;
+        } else if (c < 0x800) {
+            buf[pos++] = (byte) (0xC0 | (c >> 6));
+            buf[pos++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < s.length()) {
+            int cp = Character.toCodePoint(c, s.charAt(i + 1));
+            buf[pos++] = (byte) (0xF0 | (cp >> 18));
+            buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+        } else {
+            buf[pos++] = (byte) (0xE0 | (c >> 12));
+            buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buf[pos++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        ensure(bytes.length);
+        for (int i = 0; i < bytes.length; i++) buf[pos++] = bytes[i];
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (pos == buf.length) flushBuffer();
+        buf[pos++] = (byte) b;
+    }
+
+    private void ensure(int n) throws IOException {
+        if (pos + n > buf.length) flushBuffer();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+
+    private static int hex(int v) {
+        return (v < 10) ? ('0' + v) : ('a' + v - 10);
+    }
+}
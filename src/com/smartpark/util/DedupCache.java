@@ -0,0 +1,88 @@
+package com.smartpark.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Bounded, time-expiring cache of request results, used to answer retried
+ * requests with the original result instead of repeating the work.
+ *
+ * Lookups are a single ConcurrentHashMap read (no locks). Inserts append the
+ * key to a FIFO queue and evict from its head while the cache is over
+ * capacity or the head has expired, so the cost of cleanup is spread over
+ * inserts and no background thread is needed.
+ */
+public class DedupCache<V> {
+
+    private static final class Entry<V> {
+        final String key;
+        final V value;
+        final long expiresAt;
+
+        Entry(String key, V value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int capacity;
+    private final long ttlMs;
+    private final ConcurrentHashMap<String, Entry<V>> map;
+    private final ConcurrentLinkedQueue<Entry<V>> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong hits = new AtomicLong();
+
+    public DedupCache(int capacity, long ttlMs) {
+        this.capacity = Math.max(1, capacity);
+        this.ttlMs = Math.max(1, ttlMs);
+        this.map = new ConcurrentHashMap<>(Math.min(this.capacity, 1 << 16));
+    }
+
+    /*
+     * Cached value for key, or null if absent or expired.
+     */
+    public V get(String key) {
+        if (key == null) return null;
+        Entry<V> e = map.get(key);
+        if (e == null || e.expiresAt < System.currentTimeMillis()) return null;
+        hits.incrementAndGet();
+        return e.value;
+    }
+
+    /*
+     * Remember value for key (replacing an older value).
+     */
+    public void put(String key, V value) {
+        if (key == null) return;
+        long now = System.currentTimeMillis();
+        Entry<V> e = new Entry<>(key, value, now + ttlMs);
+        map.put(key, e);
+        order.add(e);
+        queued.incrementAndGet();
+        evict(now);
+    }
+
+    private void evict(long now) {
+        while (true) {
+            Entry<V> head = order.peek();
+            if (head == null) return;
+            if (queued.get() <= capacity && head.expiresAt >= now) return;
+            if (order.remove(head)) {
+                queued.decrementAndGet();
+                // Only drop the map entry if it was not replaced since
+                map.remove(head.key, head);
+            }
+        }
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+}
@@ -0,0 +1,144 @@
+package com.smartpark.util;
+
+/*
+ * Minimal open-addressing hash map from int keys to int values.
+ * Used for id -> array position lookups on hot paths, where a
+ * HashMap<Integer, Integer> would box every key and value.
+ * Not thread-safe.
+ */
+public final class IntIntMap {
+
+    private static final int FREE_KEY = Integer.MIN_VALUE; // marks an empty bucket
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+    private int resizeAt;
+    private final int missingValue;
+
+    /*
+     * missingValue is returned by get() for absent keys.
+     * Integer.MIN_VALUE cannot be used as a key.
+     */
+    public IntIntMap(int expectedSize, int missingValue) {
+        this.missingValue = missingValue;
+        int capacity = 16;
+        while (capacity * 3 / 4 < expectedSize) capacity <<= 1;
+        allocate(capacity);
+    }
+
+    public int get(int key) {
+        int i = mix(key) & mask;
+        while (true) {
+            int k = keys[i];
+            if (k == key) return values[i];
+            if (k == FREE_KEY) return missingValue;
+            i = (i + 1) & mask;
+        }
+    }
+
+    public boolean containsKey(int key) {
+        int i = mix(key) & mask;
+        while (true) {
+            int k = keys[i];
+            if (k == key) return true;
+            if (k == FREE_KEY) return false;
+            i = (i + 1) & mask;
+        }
+    }
+
+    /*
+     * Insert or replace. Returns the previous value or missingValue.
+     */
+    public int put(int key, int value) {
+        if (key == FREE_KEY) throw new IllegalArgumentException("Key " + key + " is reserved");
+        int i = mix(key) & mask;
+        while (true) {
+            int k = keys[i];
+            if (k == key) {
+                int old = values[i];
+                values[i] = value;
+                return old;
+            }
+            if (k == FREE_KEY) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size >= resizeAt) rehash(keys.length * 2);
+                return missingValue;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /*
+     * Remove a key. Returns the removed value or missingValue.
+     */
+    public int remove(int key) {
+        int i = mix(key) & mask;
+        while (true) {
+            int k = keys[i];
+            if (k == FREE_KEY) return missingValue;
+            if (k == key) break;
+            i = (i + 1) & mask;
+        }
+        int old = values[i];
+
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        int gap = i;
+        int j = (i + 1) & mask;
+        while (keys[j] != FREE_KEY) {
+            int home = mix(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+            j = (j + 1) & mask;
+        }
+        keys[gap] = FREE_KEY;
+        size--;
+        return old;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /*
+     * Make room for at least this many entries without rehashing.
+     */
+    public void ensureCapacity(int expectedSize) {
+        int capacity = keys.length;
+        while (capacity * 3 / 4 < expectedSize) capacity <<= 1;
+        if (capacity != keys.length) rehash(capacity);
+    }
+
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) keys[i] = FREE_KEY;
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE_KEY) put(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        for (int i = 0; i < capacity; i++) keys[i] = FREE_KEY;
+        mask = capacity - 1;
+        resizeAt = capacity * 3 / 4;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
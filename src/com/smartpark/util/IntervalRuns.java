@@ -0,0 +1,141 @@
+package com.smartpark.util;
+
+/*
+ * Sorted, non-overlapping half-open time intervals [start, end), each
+ * carrying an int (for example a booking id).
+ *
+ * Runs are kept in parallel arrays ordered by start. Because they never
+ * overlap, the ends are ordered too, so "does [s, e) overlap anything?"
+ * is one binary search: only the last run starting before e can reach
+ * past s. Inserting shifts the later runs up by one (an array copy).
+ * Not thread-safe.
+ */
+public final class IntervalRuns {
+
+    public static final int NONE = -1;
+
+    private long[] starts;
+    private long[] ends;
+    private int[] values;
+    private int size;
+
+    public IntervalRuns() {
+        this(4);
+    }
+
+    public IntervalRuns(int expectedSize) {
+        int capacity = Math.max(4, expectedSize);
+        starts = new long[capacity];
+        ends = new long[capacity];
+        values = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /*
+     * True if [start, end) overlaps any run. O(log n).
+     */
+    public boolean overlaps(long start, long end) {
+        return findOverlap(start, end) >= 0;
+    }
+
+    /*
+     * Value of a run overlapping [start, end), or NONE. O(log n).
+     */
+    public int valueOverlapping(long start, long end) {
+        int i = findOverlap(start, end);
+        return (i < 0) ? NONE : values[i];
+    }
+
+    /*
+     * Value of the run containing time t, or NONE.
+     */
+    public int valueCovering(long t) {
+        return valueOverlapping(t, t + 1);
+    }
+
+    /*
+     * Add [start, end) unless it overlaps an existing run.
+     * Returns false (and changes nothing) on a conflict or an empty interval.
+     */
+    public boolean add(long start, long end, int value) {
+        if (end <= start) return false;
+        int i = lastStartingBefore(end);
+        if (i >= 0 && ends[i] > start) return false;
+
+        if (size == starts.length) grow();
+        int at = i + 1;
+        for (int j = size; j > at; j--) {
+            starts[j] = starts[j - 1];
+            ends[j] = ends[j - 1];
+            values[j] = values[j - 1];
+        }
+        starts[at] = start;
+        ends[at] = end;
+        values[at] = value;
+        size++;
+        return true;
+    }
+
+    /*
+     * Remove the run that starts at start and carries value.
+     * Returns false if there is none.
+     */
+    public boolean remove(long start, int value) {
+        int i = lastStartingBefore(start + 1);
+        if (i < 0 || starts[i] != start || values[i] != value) return false;
+        for (int j = i; j < size - 1; j++) {
+            starts[j] = starts[j + 1];
+            ends[j] = ends[j + 1];
+            values[j] = values[j + 1];
+        }
+        size--;
+        return true;
+    }
+
+    // Run i in start order, 0 <= i < size()
+    public long runStart(int i) { return starts[i]; }
+    public long runEnd(int i) { return ends[i]; }
+    public int runValue(int i) { return values[i]; }
+
+    // Index of a run overlapping [start, end), or -1
+    private int findOverlap(long start, long end) {
+        if (end <= start) return -1;
+        int i = lastStartingBefore(end);
+        return (i >= 0 && ends[i] > start) ? i : -1;
+    }
+
+    // Index of the last run with starts[i] < t, or -1
+    private int lastStartingBefore(long t) {
+        int lo = 0;
+        int hi = size - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] < t) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private void grow() {
+        int capacity = starts.length * 2;
+        long[] newStarts = new long[capacity];
+        long[] newEnds = new long[capacity];
+        int[] newValues = new int[capacity];
+        for (int i = 0; i < size; i++) {
+            newStarts[i] = starts[i];
+            newEnds[i] = ends[i];
+            newValues[i] = values[i];
+        }
+        starts = newStarts;
+        ends = newEnds;
+        values = newValues;
+    }
+}
@@ -1,159 +1,413 @@
-package com.smartpark.util;
-
-import com.smartpark.model.Booking;
-
-import java.io.*;
-
-/*
- * Utility class handling the saving and loading of Booking data to/from a text file.
- * This class ensures system state is persistent across application runs.
- */
-public final class Persistence {
-
-    private Persistence() { }
-
-    private static int lastLoadedBookingCount = 0;
-
-    /*
-     * Saves the current array of Booking objects to the specified filename.
-     */
-    public static void saveBookings(Booking[] bookings, int bookingCount, String filename) throws IOException {
-        File file = new File(filename);
-
-        try (FileWriter fw = new FileWriter(file);
-             BufferedWriter bw = new BufferedWriter(fw);
-             PrintWriter pw = new PrintWriter(bw)) {
-        	
-            String fmt = "%-10s, %-20s, %-10s, %-15s, %-10s, %-15s, %-15s, %-15s%n";
-
-            // Print the headers
-            pw.printf(fmt, "bookingId", "username", "slotId", "status", "amount", 
-                             "creationTime", "entryTime", "exitTime");
-
-            for (int i = 0; i < bookingCount && i < bookings.length; i++) {
-                Booking b = bookings[i];
-                if (b == null) continue;
-
-                String idStr = (b.getBookingId() == null) ? "" : String.valueOf(b.getBookingId());
-                String user = (b.getUsername() == null) ? "" : b.getUsername();
-                String slot = String.valueOf(b.getSlotId());
-                String status = (b.getStatus() == null) ? "" : b.getStatus();
-                String amount = (b.getAmount() == null) ? "" : String.valueOf(b.getAmount());
-
-                // Capture the new timestamp values (longs converted to String)
-                String creationTimeStr = String.valueOf(b.getCreationTime());
-                String entryTimeStr = String.valueOf(b.getEntryTime());
-                String exitTimeStr = String.valueOf(b.getExitTime());
-
-                // Print all 8 fields
-                pw.printf(fmt, idStr, user, slot, status, amount, creationTimeStr, entryTimeStr, exitTimeStr);
-            }
-        }
-    }
-
-    /*
-     * Loads Booking objects from the specified filename.
-     */
-    public static Booking[] loadBookings(int capacity, String filename) throws IOException {
-        Booking[] result = new Booking[capacity];
-        int filled = 0;
-
-        File file = new File(filename);
-
-        if (!file.exists()) {
-            file.createNewFile();
-            lastLoadedBookingCount = 0;
-            return result;
-        }
-
-        try (FileReader fr = new FileReader(file);
-             BufferedReader br = new BufferedReader(fr)) {
-
-            String line;
-            boolean first = true;
-
-            while ((line = br.readLine()) != null) {
-                if (first) {
-                    first = false;
-                    // Skip header row regardless of how many fields it contains
-                    if (line.startsWith("bookingId")) {
-                        continue;
-                    }
-                }
-
-                line = line.trim();
-                if (line.length() == 0) continue;
-
-                // Split by comma
-                String[] t = line.split(",", -1);
-                // Check for minimum required fields (now 8 total)
-                if (t.length < 8) continue; 
-
-                // 1. Load Original Fields
-                Integer id = null;
-                if (t[0].trim().length() > 0) {
-                    try { id = Integer.parseInt(t[0].trim()); }
-                    catch (NumberFormatException e) { continue; }
-                }
-
-                String username = t[1].trim();
-
-                int slotId;
-                try { slotId = Integer.parseInt(t[2].trim()); }
-                catch (NumberFormatException e) { continue; }
-
-                String status = t[3].trim();
-
-                Double amount = null;
-                if (t[4].trim().length() > 0) {
-                    try { amount = Double.parseDouble(t[4].trim()); }
-                    catch (NumberFormatException e) { amount = null; }
-                }
-                
-                // 2. Load New Timestamp Fields
-                long creationTime = 0;
-                long entryTime = 0;
-                long exitTime = 0;
-                
-                // Field t[5]: creationTime
-                if (t[5].trim().length() > 0) {
-                    try { creationTime = Long.parseLong(t[5].trim()); }
-                    catch (NumberFormatException e) { creationTime = 0; }
-                }
-                // Field t[6]: entryTime
-                if (t[6].trim().length() > 0) {
-                    try { entryTime = Long.parseLong(t[6].trim()); }
-                    catch (NumberFormatException e) { entryTime = 0; }
-                }
-                // Field t[7]: exitTime
-                if (t[7].trim().length() > 0) {
-                    try { exitTime = Long.parseLong(t[7].trim()); }
-                    catch (NumberFormatException e) { exitTime = 0; }
-                }
-
-                // 3. Construct Booking Object and Set Timestamps
-                // Note: Using the two-argument constructor for simplicity and then setting fields manually
-                Booking b = new Booking(id, username, slotId);
-                b.setStatus(status);
-                b.setAmount(amount);
-                
-                // Set the loaded timestamps 
-                b.setCreationTime(creationTime);
-                b.setEntryTime(entryTime);
-                b.setExitTime(exitTime);
-
-                if (filled < capacity) {
-                    result[filled] = b;
-                    filled++;
-                }
-            }
-        }
-
-        lastLoadedBookingCount = filled;
-        return result;
-    }
-
-    public static int getLastLoadedBookingCount() {
-        return lastLoadedBookingCount;
-    }
+package com.smartpark.util;
+
+import com.smartpark.model.Booking;
+import com.smartpark.model.Constants;
+import com.smartpark.model.LicensePlate;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/*
+ * Utility class handling the saving and loading of Booking data to/from a text file.
+ * This class ensures system state is persistent across application runs.
+ */
+public final class Persistence {
+
+    private Persistence() { }
+
+    private static int lastLoadedBookingCount = 0;
+
+    private static final String CHECKPOINT_PREFIX = "# checkpoint";
+
+    private static final String ROW_FORMAT = "%-10s, %-20s, %-10s, %-15s, %-10s, %-15s, %-15s, %-15s, %-15s, %-15s, %-15s%n";
+
+    /*
+     * Saves the current array of Booking objects to the specified filename.
+     * The data goes to a temporary file first, which is synced and then
+     * renamed over the target, so a crash mid-write never leaves a
+     * half-written bookings file behind.
+     */
+    public static void saveBookings(Booking[] bookings, int bookingCount, String filename) throws IOException {
+        int maxId = 0;
+        for (int i = 0; i < bookingCount && i < bookings.length; i++) {
+            Booking b = bookings[i];
+            if (b != null && b.getBookingId() != null && b.getBookingId().intValue() > maxId) {
+                maxId = b.getBookingId().intValue();
+            }
+        }
+        saveBookings(bookings, bookingCount, maxId + 1, filename);
+    }
+
+    /*
+     * As above, recording nextBookingId in the checkpoint header.
+     * Open bookings are written before the history (see openWarmStart).
+     */
+    public static void saveBookings(Booking[] bookings, int bookingCount, int nextBookingId, String filename) throws IOException {
+        File target = new File(filename);
+        File tmp = tempFileFor(target);
+        int count = Math.min(bookingCount, bookings.length);
+
+        int openCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (bookings[i] != null && isOpen(bookings[i])) openCount++;
+        }
+
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             PrintWriter pw = new PrintWriter(new BufferedWriter(new OutputStreamWriter(fos)))) {
+
+            writeCheckpointHeader(pw, nextBookingId, openCount);
+            writeHeader(pw);
+            for (int pass = 0; pass < 2; pass++) {
+                boolean open = (pass == 0);
+                for (int i = 0; i < count; i++) {
+                    Booking b = bookings[i];
+                    if (b != null && isOpen(b) == open) writeBooking(pw, b);
+                }
+            }
+            finish(pw, fos);
+        }
+        replaceFile(tmp, target);
+    }
+
+    /*
+     * First line of the bookings file: the id high-water mark and how many
+     * open bookings follow the column header, ahead of the history.
+     */
+    public static void writeCheckpointHeader(PrintWriter pw, int nextBookingId, int openCount) {
+        pw.print(CHECKPOINT_PREFIX);
+        pw.print(" nextBookingId=");
+        pw.print(nextBookingId);
+        pw.print(" openBookings=");
+        pw.print(openCount);
+        pw.println();
+    }
+
+    /*
+     * Bookings that still matter to the gates (PENDING, ACTIVE, SCHEDULED);
+     * everything else is history.
+     */
+    public static boolean isOpen(Booking b) {
+        int status = b.getStatusCode();
+        return status == Constants.STATUS_CODE_PENDING || status == Constants.STATUS_CODE_ACTIVE
+            || status == Constants.STATUS_CODE_SCHEDULED;
+    }
+
+    /*
+     * Column header line of the bookings file.
+     */
+    public static void writeHeader(PrintWriter pw) {
+        pw.printf(ROW_FORMAT, "bookingId", "username", "slotId", "status", "amount",
+                         "creationTime", "entryTime", "exitTime", "windowStart", "windowEnd", "plate");
+    }
+
+    /*
+     * One booking as a line of the bookings file.
+     */
+    public static void writeBooking(PrintWriter pw, Booking b) {
+        String idStr = (b.getBookingId() == null) ? "" : String.valueOf(b.getBookingId());
+        String user = (b.getUsername() == null) ? "" : b.getUsername();
+        String slot = String.valueOf(b.getSlotId());
+        String status = (b.getStatus() == null) ? "" : b.getStatus();
+        String amount = (b.getAmount() == null) ? "" : String.valueOf(b.getAmount());
+
+        // Capture the new timestamp values (longs converted to String)
+        String creationTimeStr = String.valueOf(b.getCreationTime());
+        String entryTimeStr = String.valueOf(b.getEntryTime());
+        String exitTimeStr = String.valueOf(b.getExitTime());
+
+        // Reserved window, left empty for bookings that started right away
+        String windowStartStr = b.hasWindow() ? String.valueOf(b.getWindowStart()) : "";
+        String windowEndStr = b.hasWindow() ? String.valueOf(b.getWindowEnd()) : "";
+
+        // Linked vehicle, left empty for bookings without one
+        String plate = (b.getLicensePlate() == null) ? "" : b.getLicensePlate();
+
+        // Print all 11 fields
+        pw.printf(ROW_FORMAT, idStr, user, slot, status, amount, creationTimeStr, entryTimeStr, exitTimeStr,
+                  windowStartStr, windowEndStr, plate);
+    }
+
+    /*
+     * Temporary sibling of target used while a new version is written.
+     */
+    public static File tempFileFor(File target) {
+        return new File(target.getPath() + ".tmp");
+    }
+
+    /*
+     * Flush pw and force the bytes of fos to disk.
+     */
+    public static void finish(PrintWriter pw, FileOutputStream fos) throws IOException {
+        pw.flush();
+        if (pw.checkError()) {
+            throw new IOException("Write failed");
+        }
+        fos.getFD().sync();
+    }
+
+    /*
+     * Atomically replace target with tmp (plain replace where the file
+     * system cannot rename atomically).
+     */
+    public static void replaceFile(File tmp, File target) throws IOException {
+        try {
+            Files.move(tmp.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /*
+     * Loads Booking objects from the specified filename.
+     */
+    public static Booking[] loadBookings(int capacity, String filename) throws IOException {
+        Booking[] result = new Booking[capacity];
+        int filled = 0;
+
+        File file = new File(filename);
+
+        if (!file.exists()) {
+            file.createNewFile();
+            lastLoadedBookingCount = 0;
+            return result;
+        }
+
+        try (FileReader fr = new FileReader(file);
+             BufferedReader br = new BufferedReader(fr)) {
+
+            SymbolTable usernames = new SymbolTable(); // shares name instances within this load
+            String line;
+            boolean first = true;
+
+            while ((line = br.readLine()) != null) {
+                if (first) {
+                    first = false;
+                    // Skip header row regardless of how many fields it contains
+                    if (line.startsWith("bookingId")) {
+                        continue;
+                    }
+                }
+                // Checkpoint header and column header of newer files
+                if (line.startsWith(CHECKPOINT_PREFIX) || line.startsWith("bookingId")) continue;
+
+                Booking b = parseBooking(line, usernames);
+                if (b == null) continue;
+
+                if (filled < capacity) {
+                    result[filled] = b;
+                    filled++;
+                }
+            }
+        }
+
+        lastLoadedBookingCount = filled;
+        return result;
+    }
+
+    /*
+     * One line of the bookings file as a Booking, or null if it is not a
+     * valid booking row. The username is shared through usernames, a table
+     * scoped to one load that is dropped with it.
+     */
+    private static Booking parseBooking(String line, SymbolTable usernames) {
+        line = line.trim();
+        if (line.length() == 0) return null;
+
+        // Split by comma
+        String[] t = line.split(",", -1);
+        // Check for minimum required fields (now 8 total)
+        if (t.length < 8) return null;
+
+        // 1. Load Original Fields
+        Integer id = null;
+        if (t[0].trim().length() > 0) {
+            try { id = Integer.parseInt(t[0].trim()); }
+            catch (NumberFormatException e) { return null; }
+        }
+
+        String username = t[1].trim();
+
+        int slotId;
+        try { slotId = Integer.parseInt(t[2].trim()); }
+        catch (NumberFormatException e) { return null; }
+
+        String status = t[3].trim();
+
+        Double amount = null;
+        if (t[4].trim().length() > 0) {
+            try { amount = Double.parseDouble(t[4].trim()); }
+            catch (NumberFormatException e) { amount = null; }
+        }
+
+        // 2. Load New Timestamp Fields
+        long creationTime = 0;
+        long entryTime = 0;
+        long exitTime = 0;
+
+        // Field t[5]: creationTime
+        if (t[5].trim().length() > 0) {
+            try { creationTime = Long.parseLong(t[5].trim()); }
+            catch (NumberFormatException e) { creationTime = 0; }
+        }
+        // Field t[6]: entryTime
+        if (t[6].trim().length() > 0) {
+            try { entryTime = Long.parseLong(t[6].trim()); }
+            catch (NumberFormatException e) { entryTime = 0; }
+        }
+        // Field t[7]: exitTime
+        if (t[7].trim().length() > 0) {
+            try { exitTime = Long.parseLong(t[7].trim()); }
+            catch (NumberFormatException e) { exitTime = 0; }
+        }
+
+        // 3. Construct Booking Object and Set Timestamps
+        // Note: Using the two-argument constructor for simplicity and then setting fields manually
+        Booking b = new Booking(id, usernames.decode(usernames.encode(username)), slotId);
+        b.setStatus(status);
+        b.setAmount(amount);
+
+        // Set the loaded timestamps
+        b.setCreationTime(creationTime);
+        b.setEntryTime(entryTime);
+        b.setExitTime(exitTime);
+
+        // Fields t[8], t[9]: reserved window (missing in files written before windows existed)
+        if (t.length >= 10 && t[9].trim().length() > 0) {
+            try { b.setWindow(Long.parseLong(t[8].trim()), Long.parseLong(t[9].trim())); }
+            catch (NumberFormatException e) { b.setWindow(0, 0); }
+        }
+
+        // Field t[10]: plate of the linked vehicle (missing in files written before plates were saved)
+        if (t.length >= 11) {
+            long plate = LicensePlate.encode(t[10].trim());
+            if (plate > 0) b.setPlateCode(plate);
+        }
+        return b;
+    }
+
+    /*
+     * WARM START
+     * A bookings file with a checkpoint header lists its open bookings
+     * first, so a restart can read just those and the id high-water mark,
+     * and open the gates before the history has been read.
+     */
+
+    /*
+     * Open a bookings file for a warm start: reads the checkpoint header and
+     * the open bookings, and keeps the file open at the first history row.
+     * Returns null if the file has no checkpoint header (older files, or no
+     * file), in which case loadBookings has to be used.
+     */
+    public static WarmStart openWarmStart(String filename) throws IOException {
+        File file = new File(filename);
+        if (!file.exists()) return null;
+
+        BufferedReader br = new BufferedReader(new FileReader(file), 64 * 1024);
+        try {
+            String header = br.readLine();
+            if (header == null || !header.startsWith(CHECKPOINT_PREFIX)) {
+                br.close();
+                return null;
+            }
+            int nextBookingId = headerValue(header, "nextBookingId=");
+            int openCount = headerValue(header, "openBookings=");
+            if (nextBookingId < 1 || openCount < 0) throw new IOException("Malformed checkpoint header: " + header);
+
+            String line = br.readLine();
+            if (line == null || !line.startsWith("bookingId")) throw new IOException("Missing column header");
+
+            SymbolTable usernames = new SymbolTable();
+            Booking[] open = new Booking[openCount];
+            int n = 0;
+            while (n < openCount) {
+                line = br.readLine();
+                if (line == null) throw new IOException("File ends after " + n + " of " + openCount + " open bookings");
+                Booking b = parseBooking(line, usernames);
+                if (b != null) open[n++] = b;
+            }
+            return new WarmStart(nextBookingId, open, br, usernames);
+        } catch (IOException | RuntimeException e) {
+            br.close();
+            throw e;
+        }
+    }
+
+    // Integer following name in the checkpoint header, or -1
+    private static int headerValue(String header, String name) {
+        int at = header.indexOf(name);
+        if (at < 0) return -1;
+        int start = at + name.length();
+        int end = start;
+        while (end < header.length() && Character.isDigit(header.charAt(end))) end++;
+        try {
+            return Integer.parseInt(header.substring(start, end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /*
+     * A bookings file being read for a warm start: the open bookings and
+     * id high-water mark are available right away, the history is read
+     * in batches afterwards. Usernames are shared through a table that
+     * lives until the history is read or the file closed. Not thread-safe.
+     */
+    public static final class WarmStart implements Closeable {
+
+        private final int nextBookingId;
+        private final Booking[] openBookings;
+        private BufferedReader reader;   // null once the history is read or closed
+        private SymbolTable usernames;   // released together with reader
+
+        private WarmStart(int nextBookingId, Booking[] openBookings, BufferedReader reader, SymbolTable usernames) {
+            this.nextBookingId = nextBookingId;
+            this.openBookings = openBookings;
+            this.reader = reader;
+            this.usernames = usernames;
+        }
+
+        public int getNextBookingId() {
+            return nextBookingId;
+        }
+
+        public Booking[] getOpenBookings() {
+            return openBookings;
+        }
+
+        /*
+         * The next history bookings, at most max of them; an empty array
+         * once the file is exhausted (the file is then closed).
+         */
+        public Booking[] readHistory(int max) throws IOException {
+            if (reader == null) return new Booking[0];
+            Booking[] batch = new Booking[max];
+            int n = 0;
+            String line;
+            while (n < max && (line = reader.readLine()) != null) {
+                Booking b = parseBooking(line, usernames);
+                if (b != null) batch[n++] = b;
+            }
+            if (n < max) close();
+            if (n == max) return batch;
+            Booking[] rest = new Booking[n];
+            for (int i = 0; i < n; i++) rest[i] = batch[i];
+            return rest;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (reader != null) {
+                reader.close();
+                reader = null;
+                usernames = null;
+            }
+        }
+    }
+
+    public static int getLastLoadedBookingCount() {
+        return lastLoadedBookingCount;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+package com.smartpark.util;
+
+import com.smartpark.model.SlotLayout;
+import com.smartpark.model.Symbols;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/*
+ * Reads facility layout files used for bulk slot provisioning.
+ *
+ * Format: one slot per line, comma separated, optional header line
+ * starting with "slotId" and '#' comment lines:
+ *
+ *     slotId,type,zone,level,x,y
+ *     101,REGULAR,A,0,12.5,40
+ *     102,COMPACT,A,0,15.0,40
+ *
+ * x and y may be omitted (the slot is then placed at x = id, y = 0).
+ * The file is read in a single streaming pass; slot types and zone names
+ * are shared String instances, not one copy per line.
+ */
+public final class SlotLayoutFile {
+
+    private SlotLayoutFile() { }
+
+    /*
+     * Load a layout. Throws IOException naming the line for malformed input,
+     * so a site is never provisioned with slots silently missing.
+     */
+    public static SlotLayout load(String filename) throws IOException {
+        File file = new File(filename);
+
+        // Rough pre-size from the file length (~24 bytes per line)
+        int estimate = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(64, file.length() / 24));
+        SlotLayout layout = new SlotLayout(estimate);
+        HashMap<String, String> names = new HashMap<>();
+
+        try (BufferedReader br = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+
+            String line;
+            int lineNo = 0;
+            int[] cut = new int[7];
+
+            while ((line = br.readLine()) != null) {
+                lineNo++;
+                int len = line.length();
+                if (len == 0 || line.charAt(0) == '#' || line.startsWith("slotId")) continue;
+
+                // Locate up to six comma-separated fields without creating substrings
+                int fields = 0;
+                cut[0] = -1;
+                for (int i = 0; i < len && fields < 6; i++) {
+                    if (line.charAt(i) == ',') cut[++fields] = i;
+                }
+                cut[++fields] = len;
+                if (fields < 4) {
+                    if (line.trim().length() == 0) continue;
+                    throw new IOException(filename + " line " + lineNo + ": expected slotId,type,zone,level[,x,y]");
+                }
+
+                try {
+                    int id = parseInt(line, cut[0] + 1, cut[1]);
+                    String type = slotType(field(line, cut[1] + 1, cut[2]));
+                    String zone = intern(names, field(line, cut[2] + 1, cut[3]));
+                    int level = parseInt(line, cut[3] + 1, cut[4]);
+                    double x = id;
+                    double y = 0;
+                    if (fields >= 6) {
+                        x = Double.parseDouble(field(line, cut[4] + 1, cut[5]));
+                        y = Double.parseDouble(field(line, cut[5] + 1, cut[6]));
+                    }
+                    layout.add(id, type, zone, level, x, y);
+                } catch (NumberFormatException e) {
+                    throw new IOException(filename + " line " + lineNo + ": " + e.getMessage());
+                }
+            }
+        }
+        return layout;
+    }
+
+    /*
+     * Parse a decimal int from s[from, to) ignoring surrounding spaces.
+     */
+    private static int parseInt(String s, int from, int to) {
+        while (from < to && s.charAt(from) == ' ') from++;
+        while (to > from && s.charAt(to - 1) == ' ') to--;
+        if (from == to) throw new NumberFormatException("empty number");
+
+        boolean negative = s.charAt(from) == '-';
+        if (negative) from++;
+        if (from == to) throw new NumberFormatException("bad number");
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') throw new NumberFormatException("bad number '" + s.substring(from, to) + "'");
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE) throw new NumberFormatException("number too large");
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    private static String field(String s, int from, int to) {
+        return s.substring(from, to).trim();
+    }
+
+    // Slot types go through the shared symbol table, so the standard types
+    // map to the Constants instances and custom types get a code up front
+    private static String slotType(String type) {
+        if (type.length() == 0) throw new NumberFormatException("missing slot type");
+        return Symbols.intern(type);
+    }
+
+    private static String intern(HashMap<String, String> names, String name) {
+        String shared = names.get(name);
+        if (shared == null) {
+            names.put(name, name);
+            shared = name;
+        }
+        return shared;
+    }
+}
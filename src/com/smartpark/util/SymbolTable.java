@@ -0,0 +1,68 @@
+package com.smartpark.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Dictionary that maps strings to small dense int codes and back.
+ *
+ * Each distinct string is stored once; objects keep the int code instead of
+ * their own String copy, and comparisons become int compares. Codes are
+ * handed out in first-seen order starting at 0 and never change.
+ *
+ * encode/decode of known strings take no locks; only adding a new string
+ * synchronizes.
+ */
+public class SymbolTable {
+
+    public static final int NO_CODE = -1; // code of null
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private int size; // guarded by this
+
+    /*
+     * Code for s, adding it if it is new. null encodes as NO_CODE.
+     */
+    public int encode(String s) {
+        if (s == null) return NO_CODE;
+        Integer code = codes.get(s);
+        return (code != null) ? code.intValue() : add(s);
+    }
+
+    /*
+     * Code for s, or NO_CODE if it was never added.
+     */
+    public int lookup(String s) {
+        if (s == null) return NO_CODE;
+        Integer code = codes.get(s);
+        return (code != null) ? code.intValue() : NO_CODE;
+    }
+
+    /*
+     * The string for code (the same instance every time), or null for NO_CODE.
+     */
+    public String decode(int code) {
+        return (code < 0) ? null : names[code];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int add(String s) {
+        Integer existing = codes.get(s);
+        if (existing != null) return existing.intValue();
+
+        if (size == names.length) {
+            String[] larger = new String[names.length * 2];
+            for (int i = 0; i < size; i++) larger[i] = names[i];
+            names = larger;
+        }
+        int code = size;
+        names[code] = s;
+        size++;
+        // Published last: a reader that finds the code also sees the name
+        codes.put(s, Integer.valueOf(code));
+        return code;
+    }
+}
@@ -0,0 +1,111 @@
+package com.smartpark.util;
+
+/*
+ * (time, value) pairs kept sorted by time (ties by value), for example
+ * booking creation times with the booking's array position as value.
+ *
+ * Entries live in parallel arrays. Times mostly arrive in increasing order,
+ * so insert() normally appends; an older time is placed by binary search
+ * and shifts the later entries up by one (an array copy), like remove().
+ * Range queries are two binary searches. Not thread-safe.
+ */
+public final class TimeIndex {
+
+    private long[] times;
+    private int[] values;
+    private int size;
+
+    public TimeIndex() {
+        this(16);
+    }
+
+    public TimeIndex(int expectedSize) {
+        int capacity = Math.max(16, expectedSize);
+        times = new long[capacity];
+        values = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void insert(long time, int value) {
+        if (size == times.length) grow();
+        int i = size;
+        if (size > 0 && compare(times[size - 1], values[size - 1], time, value) > 0) {
+            i = search(time, value);
+            System.arraycopy(times, i, times, i + 1, size - i);
+            System.arraycopy(values, i, values, i + 1, size - i);
+        }
+        times[i] = time;
+        values[i] = value;
+        size++;
+    }
+
+    /*
+     * Remove the entry (time, value); false if it is not there.
+     */
+    public boolean remove(long time, int value) {
+        int i = search(time, value);
+        if (i == size || times[i] != time || values[i] != value) return false;
+        System.arraycopy(times, i + 1, times, i, size - i - 1);
+        System.arraycopy(values, i + 1, values, i, size - i - 1);
+        size--;
+        return true;
+    }
+
+    /*
+     * Position of the first entry with time >= t (size() if none).
+     * Entries with from <= time < to are those in [lowerBound(from), lowerBound(to)).
+     */
+    public int lowerBound(long t) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] < t) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    public long timeAt(int i) {
+        return times[i];
+    }
+
+    public int valueAt(int i) {
+        return values[i];
+    }
+
+    // First position whose entry is not before (time, value)
+    private int search(long time, int value) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(times[mid], values[mid], time, value) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int compare(long t1, int v1, long t2, int v2) {
+        if (t1 != t2) return (t1 < t2) ? -1 : 1;
+        return Integer.compare(v1, v2);
+    }
+
+    private void grow() {
+        long[] newTimes = new long[times.length * 2];
+        int[] newValues = new int[values.length * 2];
+        for (int i = 0; i < size; i++) {
+            newTimes[i] = times[i];
+            newValues[i] = values[i];
+        }
+        times = newTimes;
+        values = newValues;
+    }
+}
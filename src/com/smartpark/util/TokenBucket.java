@@ -0,0 +1,60 @@
+package com.smartpark.util;
+
+/*
+ * Classic token bucket: holds up to capacity tokens, refilled continuously
+ * at ratePerSecond. Each admitted request takes one token.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double capacity, double ratePerSecond) {
+        this.capacity = Math.max(1.0, capacity);
+        this.tokensPerNano = Math.max(0.0, ratePerSecond) / 1_000_000_000.0;
+        this.tokens = this.capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /*
+     * Take one token. Returns 0 on success, otherwise the number of
+     * milliseconds until a token will be available (at least 1).
+     */
+    public synchronized long tryAcquire() {
+        refill();
+        if (tokens >= 1.0) {
+            tokens -= 1.0;
+            return 0;
+        }
+        if (tokensPerNano <= 0) return Long.MAX_VALUE;
+        double nanos = (1.0 - tokens) / tokensPerNano;
+        return Math.max(1, (long) Math.ceil(nanos / 1_000_000.0));
+    }
+
+    /*
+     * True if the bucket has refilled to capacity, i.e. it is in the same
+     * state as a new one.
+     */
+    public synchronized boolean isFull() {
+        refill();
+        return tokens >= capacity;
+    }
+
+    /*
+     * Give back a token taken by a request that was rejected further on.
+     */
+    public synchronized void release() {
+        tokens = Math.min(capacity, tokens + 1.0);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        long elapsed = now - lastRefill;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefill = now;
+        }
+    }
+}